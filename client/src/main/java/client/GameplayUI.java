@@ -33,6 +33,8 @@ public class GameplayUI implements WebSocketCommunicator.ServerMessageObserver
         UserGameCommand connectCmd = new UserGameCommand(
 
                 UserGameCommand.CommandType.CONNECT, authToken, gameID);
+        // observers get the live evaluation bar, players don't
+        connectCmd.setWantsEvaluation(playerColor == null);
         ws.sendCommand(connectCmd);
     }
 
@@ -56,6 +58,10 @@ public class GameplayUI implements WebSocketCommunicator.ServerMessageObserver
                 System.out.println("\n" + message.getMessage());
                 printPrompt();
             }
+            case EVALUATION -> {
+                System.out.println("\n" + describeEvaluation(message));
+                printPrompt();
+            }
 
         }
     }
@@ -104,6 +110,7 @@ public class GameplayUI implements WebSocketCommunicator.ServerMessageObserver
             case "leave" -> leaveGame();
             case "move" -> makeMove(input);
             case "resign" -> resign();
+            case "claim" -> claimDraw();
 
             case "highlight" -> highlightMoves(tokens);
             default -> System.out.println("Unknown command. Type 'help' for options.");
@@ -117,6 +124,7 @@ public class GameplayUI implements WebSocketCommunicator.ServerMessageObserver
                 leave - leave the game
                 move <FROM> <TO> [PROMOTION] - make a  move (e.g. move e2 e4, or move e7 e8 queen)
                 resign - forfeit the game 
+                claim - claim a draw once the position has come up three times
                 highlight <POSITION> - show legal moves for a piece (e.g. highlight e2)""");
     }
 
@@ -145,6 +153,12 @@ public class GameplayUI implements WebSocketCommunicator.ServerMessageObserver
         }
     }
 
+    private void claimDraw() throws Exception {
+        UserGameCommand claimCmd = new UserGameCommand(
+                UserGameCommand.CommandType.CLAIM_DRAW, authToken, gameID);
+        ws.sendCommand(claimCmd);
+    }
+
     private void makeMove(String input) throws Exception {
         String[] parts = input.split(" ");
         if (parts.length < 3) {
@@ -243,6 +257,16 @@ public class GameplayUI implements WebSocketCommunicator.ServerMessageObserver
         };
     }
 
+    private String describeEvaluation(ServerMessage message) {
+        String score;
+        if (message.getMateIn() != null) {
+            score = (message.getMateIn() > 0 ? "White" : "Black") + " mates in " + Math.abs(message.getMateIn());
+        } else {
+            score = String.format("%+.2f", message.getEvaluation() / 100.0);
+        }
+        return "Evaluation: " + score + " (depth " + message.getDepth() + ")";
+    }
+
     private void printPrompt() {
 
         if (currentGame != null && currentGame.getTeamTurn() != null) {
@@ -1,6 +1,5 @@
 package client;
 
-import com.google.gson.Gson;
 import model.*;
 import java.io.*;
 import java.net.*;
@@ -95,7 +94,7 @@ public class ServerFacade {
     private static void writeBody(Object request, HttpURLConnection http) throws IOException {
         if (request != null) {
             http.addRequestProperty("Content-Type", "application/json");
-            String reqData = new Gson().toJson(request);
+            String reqData = JsonCodec.GSON.toJson(request);
 
             try (OutputStream reqBody = http.getOutputStream()) {
                 reqBody.write(reqData.getBytes());
@@ -118,7 +117,7 @@ public class ServerFacade {
 
     private String extractMessage(String body) {
         try {
-            var json = new Gson().fromJson(body, java.util.Map.class);
+            var json = JsonCodec.GSON.fromJson(body, java.util.Map.class);
             if (json != null && json.containsKey("message")) {
                 String msg = json.get("message").toString();
                 return msg.startsWith("Error: ") ? msg.substring(7) : msg;
@@ -136,7 +135,7 @@ public class ServerFacade {
                 InputStreamReader reader = new InputStreamReader(respBody);
 
                 if (responseClass != null) {
-                    response = new Gson().fromJson(reader, responseClass);
+                    response = JsonCodec.GSON.fromJson(reader, responseClass);
                 }
             }
         }
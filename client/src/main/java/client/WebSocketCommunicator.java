@@ -1,6 +1,7 @@
 package client;
 
 import com.google.gson.Gson;
+import model.JsonCodec;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ServerMessage;
 
@@ -14,7 +15,7 @@ public class WebSocketCommunicator extends Endpoint {
 
     private Session session;
 
-    private final Gson gson = new Gson();
+    private final Gson gson = JsonCodec.GSON;
     private ServerMessageObserver messageObserver;
 
     public interface ServerMessageObserver    {
@@ -3,10 +3,20 @@ package dataaccess;
 import model.UserData;
 import model.AuthData;
 import model.GameData;
+import model.GameSummary;
+import model.ExplorerStat;
+import model.PositionHit;
+import model.RatingData;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 public interface DataAccess {
+    //longest game name that fits, the games indexes hold the name so it can't be any longer
+    int MAX_GAME_NAME_LENGTH = 252;
+
     //clear stuff yeye
     void clear() throws DataAccessException;
 
@@ -18,10 +28,58 @@ public interface DataAccess {
     //delete the auth
     void deleteAuth(String authToken) throws DataAccessException;
 
+    //logged out signed tokens, by signature, kept with the session rows until they'd have expired anyway
+    //a revoked token is never a session, getAuth doesn't find it
+    void revokeToken(String signature, String username, long expiresAt) throws DataAccessException;
+    Map<String, Long> listRevokedTokens() throws DataAccessException;
+    //drops every revoked token that expired before now
+    void pruneRevokedTokens(long now) throws DataAccessException;
+    //just after the last clear, in epoch millis, 0 if never cleared; kept like the rest so a signed token
+    //from before a clear stays as dead after a restart as the session rows the clear deleted
+    long tokensValidFrom() throws DataAccessException;
+
     List<GameData> listGames() throws DataAccessException;
+    //streams a page of games without their state, in id order
+    void forEachGameSummary(GameQuery query, GameSummaryVisitor visitor) throws DataAccessException, IOException;
+
+    default List<GameSummary> listGameSummaries(GameQuery query) throws DataAccessException {
+        List<GameSummary> page = new ArrayList<>();
+        try {
+            forEachGameSummary(query, page::add);
+        } catch (IOException ex) {
+            // adding to a list doesn't throw
+            throw new DataAccessException("failed to list games", ex);
+        }
+        return page;
+    }
+    //streams games in id order without loading them all, player null means every game
+    void forEachGame(String player, GameVisitor visitor) throws DataAccessException, IOException;
 
     int createGame(GameData game) throws DataAccessException;
+    //bulk insert for imports, ids come back in the same order as the games
+    //also adds every position in each game's history to the position index
+    List<Integer> createGames(List<GameData> games) throws DataAccessException;
     GameData getGame(int gameID) throws DataAccessException;
     void updateGame(GameData game) throws DataAccessException;
+    //game creates, updates and clears made by every other process sharing this store, so a change
+    //means games changed behind this one's back; a store no other process can reach says 0
+    default long outsideGameWrites() throws DataAccessException {
+        return 0;
+    }
+
+    //position index, hash is ChessGame.positionHash() and ply is the move count when it came up
+    void indexPosition(long positionHash, int gameID, int ply) throws DataAccessException;
+    List<PositionHit> findPositions(long positionHash, int limit) throws DataAccessException;
+
+    //opening explorer, the counts in each stat get added to whatever is stored for its position and move
+    void addExplorerStats(List<ExplorerStat> stats) throws DataAccessException;
+    List<ExplorerStat> getExplorerStats(long positionHash) throws DataAccessException;
+    void clearExplorerStats() throws DataAccessException;
+
+    //glicko ratings, one per player who has played a rated game, null if they haven't
+    RatingData getRating(String username) throws DataAccessException;
+    List<RatingData> listRatings() throws DataAccessException;
+    //adds or replaces each player's rating
+    void saveRatings(List<RatingData> ratings) throws DataAccessException;
 
 }
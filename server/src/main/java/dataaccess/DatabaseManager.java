@@ -56,7 +56,10 @@ public class DatabaseManager {
 
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
-        connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+        // rewriteBatchedStatements sends a batch of inserts as one multi-row statement;
+        // useCursorFetch makes statements with a fetch size read through a server-side cursor
+        connectionUrl = String.format("jdbc:mysql://%s:%d?rewriteBatchedStatements=true&useCursorFetch=true",
+                host, port);
     }
 }
 
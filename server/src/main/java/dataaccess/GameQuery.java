@@ -0,0 +1,14 @@
+package dataaccess;
+
+/**
+ * Which games {@link DataAccess#listGameSummaries} returns, in id order
+ *
+ * @param afterID   only games with a higher id; 0 for the first page
+ * @param limit     most games to return
+ * @param player    only games this player has a seat in, or null for anyone's
+ * @param openSeats only unfinished games with a seat free
+ * @param finished  only finished games if true, only unfinished ones if false, or either if null
+ */
+public record GameQuery(int afterID, int limit, String player, boolean openSeats, Boolean finished) {
+
+}
@@ -0,0 +1,14 @@
+package dataaccess;
+
+import model.GameSummary;
+
+import java.io.IOException;
+
+/**
+ * Takes game summaries one at a time from {@link DataAccess#forEachGameSummary}, so a
+ * listing can be written out without holding it all
+ */
+@FunctionalInterface
+public interface GameSummaryVisitor {
+    void visit(GameSummary game) throws IOException;
+}
@@ -0,0 +1,14 @@
+package dataaccess;
+
+import model.GameData;
+
+import java.io.IOException;
+
+/**
+ * Takes games one at a time from {@link DataAccess#forEachGame}, so a caller can write
+ * them out without holding them all
+ */
+@FunctionalInterface
+public interface GameVisitor {
+    void visit(GameData game) throws IOException;
+}
@@ -3,9 +3,18 @@ package dataaccess;
 import model.UserData;
 import model.AuthData;
 import model.GameData;
+import model.GameSummary;
+import model.ExplorerStat;
+import model.PositionHit;
+import model.RatingData;
+import java.io.IOException;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 
@@ -14,15 +23,26 @@ public class MemoryDataAccess implements DataAccess {
     private HashMap<String, UserData> users = new HashMap<>();
 
     private HashMap<String, AuthData> auths = new HashMap<>();  
-    private HashMap<Integer, GameData> games = new HashMap<>();  
+    private HashMap<String, Long> revokedTokens = new HashMap<>();
+    // read and replaced from every game's websocket thread; ids are handed out under the lock
+    private ConcurrentHashMap<Integer, GameData> games = new ConcurrentHashMap<>();
+    private HashMap<Long, List<PositionHit>> positions = new HashMap<>();
+    private HashMap<Long, LinkedHashMap<String, ExplorerStat>> explorer = new HashMap<>();
+    private HashMap<String, RatingData> ratings = new HashMap<>();
     private int nextGameId = 1;
+    private long tokensValidFrom;
 
 
     @Override
-    public void clear() throws DataAccessException {
+    public synchronized void clear() throws DataAccessException {
         users.clear();
         auths.clear();
         games.clear();
+        positions.clear();
+        explorer.clear();
+        ratings.clear();
+        revokedTokens.clear();
+        tokensValidFrom = System.currentTimeMillis() + 1;
         System.out.println("Cleared all d ata");
     }   
 
@@ -60,6 +80,29 @@ public class MemoryDataAccess implements DataAccess {
     }
 
 
+    @Override
+    public synchronized void revokeToken(String signature, String username, long expiresAt)
+            throws DataAccessException {
+        revokedTokens.put(signature, expiresAt);
+    }
+
+    @Override
+    public synchronized Map<String, Long> listRevokedTokens() throws DataAccessException {
+        return new HashMap<>(revokedTokens);
+    }
+
+    @Override
+    public synchronized void pruneRevokedTokens(long now) throws DataAccessException {
+        revokedTokens.values().removeIf(expiresAt -> expiresAt < now);
+    }
+
+
+    @Override
+    public synchronized long tokensValidFrom() throws DataAccessException {
+        return tokensValidFrom;
+    }
+
+
     @Override
     public List<GameData> listGames() throws DataAccessException {
         return new ArrayList<>(games.values());
@@ -67,7 +110,47 @@ public class MemoryDataAccess implements DataAccess {
 
 
     @Override
-    public int createGame(GameData game) throws DataAccessException {
+    public void forEachGameSummary(GameQuery query, GameSummaryVisitor visitor)
+            throws DataAccessException, IOException {
+        List<GameData> matching = new ArrayList<>();
+        for (GameData game : games.values()) {
+            if (game.gameID() > query.afterID() && matches(query, game)) {
+                matching.add(game);
+            }
+        }
+        matching.sort(Comparator.comparing(GameData::gameID));
+
+        for (GameData game : matching.subList(0, Math.min(query.limit(), matching.size()))) {
+            visitor.visit(GameSummary.of(game));
+        }
+    }
+
+    private static boolean matches(GameQuery query, GameData game) {
+        boolean finished = GameSummary.FINISHED.equals(GameSummary.statusOf(game.game()));
+        if (query.player() != null && !query.player().equals(game.whiteUsername())
+                && !query.player().equals(game.blackUsername())) {
+            return false;
+        }
+        if (query.openSeats() && (finished || game.whiteUsername() != null && game.blackUsername() != null)) {
+            return false;
+        }
+        return query.finished() == null || query.finished() == finished;
+    }
+
+    @Override
+    public void forEachGame(String player, GameVisitor visitor) throws DataAccessException, IOException {
+        List<GameData> snapshot = new ArrayList<>(games.values());
+        snapshot.sort(Comparator.comparing(GameData::gameID));
+        for (GameData game : snapshot) {
+            if (player == null || player.equals(game.whiteUsername()) || player.equals(game.blackUsername())) {
+                visitor.visit(game);
+            }
+        }
+    }
+
+
+    @Override
+    public synchronized int createGame(GameData game) throws DataAccessException {
         int id = nextGameId;
         nextGameId = nextGameId + 1;
         //I wish everything was this easy
@@ -79,6 +162,21 @@ public class MemoryDataAccess implements DataAccess {
     }
 
 
+    @Override
+    public synchronized List<Integer> createGames(List<GameData> batch) throws DataAccessException {
+        List<Integer> ids = new ArrayList<>(batch.size());
+        for (GameData game : batch) {
+            int id = createGame(game);
+            long[] hashes = game.game().positionHashes();
+            for (int ply = 1; ply < hashes.length; ply++) {
+                indexPosition(hashes[ply], id, ply);
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+
     @Override
     public GameData getGame(int gameID) throws DataAccessException {
         return games.get(gameID);
@@ -88,12 +186,75 @@ public class MemoryDataAccess implements DataAccess {
 
     @Override
     public void updateGame(GameData game) throws DataAccessException    {
-        if (!games.containsKey(game.gameID())) {
+        if (game.gameID() == null || games.replace(game.gameID(), game) == null) {
             throw new DataAccessException("bad request");
         }
-        games.put(game.gameID(), game);
 
     }
 
 
+    @Override
+    public synchronized void indexPosition(long positionHash, int gameID, int ply) throws DataAccessException {
+        List<PositionHit> hits = positions.computeIfAbsent(positionHash, hash -> new ArrayList<>());
+        PositionHit hit = new PositionHit(gameID, ply);
+        if (!hits.contains(hit)) {
+            hits.add(hit);
+        }
+    }
+
+
+    @Override
+    public synchronized List<PositionHit> findPositions(long positionHash, int limit) throws DataAccessException {
+        List<PositionHit> hits = new ArrayList<>(positions.getOrDefault(positionHash, List.of()));
+        hits.sort(Comparator.comparingInt(PositionHit::gameID).thenComparingInt(PositionHit::ply));
+        return hits.subList(0, Math.min(limit, hits.size()));
+    }
+
+
+    @Override
+    public synchronized void addExplorerStats(List<ExplorerStat> stats) throws DataAccessException {
+        for (ExplorerStat stat : stats) {
+            explorer.computeIfAbsent(stat.positionHash(), hash -> new LinkedHashMap<>())
+                    .merge(stat.move(), stat, (old, add) -> new ExplorerStat(old.positionHash(), old.move(),
+                            old.games() + add.games(), old.whiteWins() + add.whiteWins(),
+                            old.draws() + add.draws(), old.blackWins() + add.blackWins()));
+        }
+    }
+
+
+    @Override
+    public synchronized List<ExplorerStat> getExplorerStats(long positionHash) throws DataAccessException {
+        return new ArrayList<>(explorer.getOrDefault(positionHash, new LinkedHashMap<>()).values());
+    }
+
+
+    @Override
+    public synchronized void clearExplorerStats() throws DataAccessException {
+        explorer.clear();
+    }
+
+
+    @Override
+    public synchronized RatingData getRating(String username) throws DataAccessException {
+        return ratings.get(username);
+    }
+
+
+    @Override
+    public synchronized List<RatingData> listRatings() throws DataAccessException {
+        return new ArrayList<>(ratings.values());
+    }
+
+
+    @Override
+    public synchronized void saveRatings(List<RatingData> batch) throws DataAccessException {
+        for (RatingData rating : batch) {
+            if (!users.containsKey(rating.username())) {
+                throw new DataAccessException("bad request");
+            }
+        }
+        for (RatingData rating : batch) {
+            ratings.put(rating.username(), rating);
+        }
+    }
 }
@@ -2,21 +2,54 @@ package dataaccess;
 
 import chess.ChessGame;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import model.AuthData;
 
 import model.GameData;
+import model.ExplorerStat;
+import model.GameSummary;
+import model.JsonCodec;
+import model.PositionHit;
+import model.RatingData;
 import model.UserData;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 
 import java.util.List;
 
 public class MySqlDataAccess implements DataAccess {
 
-    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private static final int STREAM_FETCH_SIZE = 500;
+    // indexing a position twice is harmless, the row that's already there is kept
+    private static final String INDEX_POSITION_SQL =
+            "INSERT IGNORE INTO position_index (positionHash, gameID, ply) VALUES (?, ?, ?)";
+
+    // one range scan of a covering games index per branch; see forEachGameSummary
+    private static final String SUMMARY_BRANCH_SQL = "(SELECT gameID, whiteUsername, blackUsername, gameName, status"
+            + " FROM games WHERE %s AND gameID > ? ORDER BY gameID LIMIT ?)";
+    private static final String OPEN_SEAT_SQL = " AND (whiteUsername IS NULL OR blackUsername IS NULL)";
+    // each holds every summary column, so a page never reads the game rows themselves;
+    // with utf8mb4 they only fit InnoDB's 3072 byte key limit with gameName at 252 characters
+    private static final List<String> GAME_SUMMARY_INDEXES = List.of(
+            "INDEX games_by_status (status, gameID, whiteUsername, blackUsername, gameName)",
+            "INDEX games_by_white (whiteUsername, gameID, status, blackUsername, gameName)",
+            "INDEX games_by_black (blackUsername, gameID, status, whiteUsername, gameName)");
+    private static final int ACTIVE = 0;
+    private static final int FINISHED = 1;
+    private static final String COUNT_GAME_WRITES_SQL =
+            "INSERT INTO game_writers (writerID, writes) VALUES (?, ?) ON DUPLICATE KEY UPDATE writes = writes + ?";
+
+    private final Gson gson = JsonCodec.GSON_WITH_NULLS;
+    // this store's row in game_writers; every process gets its own, so none counts its own writes as outside
+    private final String writerID = UUID.randomUUID().toString();
 
     public MySqlDataAccess() throws DataAccessException {
         DatabaseManager.createDatabase();
@@ -45,12 +78,14 @@ public class MySqlDataAccess implements DataAccess {
                         CREATE TABLE IF NOT EXISTS auth (
                             authToken VARCHAR(256) NOT NULL,
                             username VARCHAR(256) NOT NULL,
+                            revokedUntil BIGINT NULL,
                             PRIMARY KEY (authToken),
                             INDEX (username),
                             FOREIGN KEY (username) REFERENCES users(username) ON DELETE CASCADE
 
                         )
                         """);
+                migrateAuth(conn, st);
 
 
 
@@ -59,9 +94,66 @@ public class MySqlDataAccess implements DataAccess {
                             gameID INT NOT NULL AUTO_INCREMENT,
                             whiteUsername VARCHAR(256),     
                             blackUsername VARCHAR(256), 
-                            gameName VARCHAR(256) NOT NULL,
+                            gameName VARCHAR(%d) NOT NULL,
                             gameState TEXT NOT NULL, 
-                            PRIMARY KEY (gameID)
+                            status TINYINT NOT NULL DEFAULT 0,
+                            PRIMARY KEY (gameID),
+                            %s
+                        )
+                        """.formatted(DataAccess.MAX_GAME_NAME_LENGTH, String.join(",\n", GAME_SUMMARY_INDEXES)));
+                migrateGames(conn, st);
+
+                // keyed by hash first so a lookup is one range scan of the clustered index
+                st.executeUpdate("""
+                        CREATE TABLE IF NOT EXISTS position_index (
+                            positionHash BIGINT NOT NULL,
+                            gameID INT NOT NULL,
+                            ply INT NOT NULL,
+                            PRIMARY KEY (positionHash, gameID, ply)
+                        )
+                        """);
+
+                st.executeUpdate("""
+                        CREATE TABLE IF NOT EXISTS explorer (
+                            positionHash BIGINT NOT NULL,
+                            move VARCHAR(5) NOT NULL,
+                            games INT NOT NULL,
+                            whiteWins INT NOT NULL,
+                            draws INT NOT NULL,
+                            blackWins INT NOT NULL,
+                            PRIMARY KEY (positionHash, move)
+                        )
+                        """);
+
+                // a table of its own beside users, so databases made before ratings need no migrating
+                st.executeUpdate("""
+                        CREATE TABLE IF NOT EXISTS ratings (
+                            username VARCHAR(256) NOT NULL,
+                            rating DOUBLE NOT NULL,
+                            deviation DOUBLE NOT NULL,
+                            volatility DOUBLE NOT NULL,
+                            games INT NOT NULL,
+                            PRIMARY KEY (username),
+                            FOREIGN KEY (username) REFERENCES users(username) ON DELETE CASCADE
+                        )
+                        """);
+
+                // one row, when the last clear was, since signed tokens from before it live in no table
+                st.executeUpdate("""
+                        CREATE TABLE IF NOT EXISTS token_cutoff (
+                            id TINYINT NOT NULL,
+                            validFrom BIGINT NOT NULL,
+                            PRIMARY KEY (id)
+                        )
+                        """);
+
+                // how many game writes each process has made, so a server caching what the games
+                // look like can tell when an import or another server changed them; clear keeps it
+                st.executeUpdate("""
+                        CREATE TABLE IF NOT EXISTS game_writers (
+                            writerID CHAR(36) NOT NULL,
+                            writes BIGINT NOT NULL,
+                            PRIMARY KEY (writerID)
                         )
                         """);
             }
@@ -71,6 +163,46 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
+    /**
+     * Adds the revokedUntil column to an auth table made before signed tokens; every row
+     * already there is a session, so it stays null
+     */
+    private void migrateAuth(Connection conn, Statement st) throws SQLException {
+        var sql = "SELECT COUNT(*) FROM information_schema.COLUMNS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'auth' AND COLUMN_NAME = 'revokedUntil'";
+        try (var ps = conn.prepareStatement(sql);
+             var rs = ps.executeQuery()) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                return;
+            }
+        }
+        st.executeUpdate("ALTER TABLE auth ADD COLUMN revokedUntil BIGINT NULL");
+    }
+
+    /**
+     * Adds the status column and summary indexes to a games table made before them. Game
+     * names are cut to the new length first; the longest any client sends is far shorter.
+     */
+    private void migrateGames(Connection conn, Statement st) throws SQLException {
+        var sql = "SELECT COUNT(*) FROM information_schema.COLUMNS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'games' AND COLUMN_NAME = 'status'";
+        try (var ps = conn.prepareStatement(sql);
+             var rs = ps.executeQuery()) {
+            if (rs.next() && rs.getInt(1) > 0) {
+                return;
+            }
+        }
+        st.executeUpdate("UPDATE games SET gameName = LEFT(gameName, " + DataAccess.MAX_GAME_NAME_LENGTH + ")"
+                + " WHERE CHAR_LENGTH(gameName) > " + DataAccess.MAX_GAME_NAME_LENGTH);
+        st.executeUpdate("ALTER TABLE games MODIFY gameName VARCHAR(" + DataAccess.MAX_GAME_NAME_LENGTH
+                + ") NOT NULL, ADD COLUMN status TINYINT NOT NULL DEFAULT 0, ADD "
+                + String.join(", ADD ", GAME_SUMMARY_INDEXES));
+        // teamTurn is null once a game is over
+        st.executeUpdate("UPDATE games SET status = " + FINISHED
+                + " WHERE JSON_EXTRACT(gameState, '$.teamTurn') IS NULL"
+                + " OR JSON_TYPE(JSON_EXTRACT(gameState, '$.teamTurn')) = 'NULL'");
+    }
+
     @Override
     public void clear() throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
@@ -86,9 +218,26 @@ public class MySqlDataAccess implements DataAccess {
             try (var ps3 = conn.prepareStatement("TRUNCATE TABLE users")) {
                 ps3.executeUpdate();
             }
+            try (var ps4 = conn.prepareStatement("TRUNCATE TABLE position_index")) {
+                ps4.executeUpdate();
+            }
+            try (var ps5 = conn.prepareStatement("TRUNCATE TABLE explorer")) {
+                ps5.executeUpdate();
+            }
+            try (var ps6 = conn.prepareStatement("TRUNCATE TABLE ratings")) {
+                ps6.executeUpdate();
+            }
             try (var ps = conn.prepareStatement("SET FOREIGN_KEY_CHECKS = 1")) {
                 ps.executeUpdate();
             }
+            try (var ps = conn.prepareStatement("INSERT INTO token_cutoff (id, validFrom) VALUES (0, ?)"
+                    + " ON DUPLICATE KEY UPDATE validFrom = GREATEST(validFrom, ?)")) {
+                long validFrom = System.currentTimeMillis() + 1;
+                ps.setLong(1, validFrom);
+                ps.setLong(2, validFrom);
+                ps.executeUpdate();
+            }
+            countGameWrites(conn, 1);
         } catch (SQLException ex) { 
             throw new DataAccessException("failed to clear", ex);
         }
@@ -154,7 +303,7 @@ public class MySqlDataAccess implements DataAccess {
 
     @Override
     public AuthData getAuth(String authToken) throws DataAccessException {
-        var sql = "SELECT authToken, username FROM auth WHERE authToken = ?";
+        var sql = "SELECT authToken, username FROM auth WHERE authToken = ? AND revokedUntil IS NULL";
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setString(1, authToken);
@@ -171,7 +320,8 @@ public class MySqlDataAccess implements DataAccess {
 
     @Override
     public void deleteAuth(String authToken) throws DataAccessException {
-        var sql = "DELETE FROM auth WHERE authToken = ?";
+        // a revoked token's row is only dropped once it expires
+        var sql = "DELETE FROM auth WHERE authToken = ? AND revokedUntil IS NULL";
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
             ps.setString(1, authToken);
@@ -181,6 +331,60 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
+    @Override
+    public void revokeToken(String signature, String username, long expiresAt) throws DataAccessException {
+        // a second logout of the same token changes nothing
+        var sql = "INSERT IGNORE INTO auth (authToken, username, revokedUntil) VALUES (?, ?, ?)";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, signature);
+            ps.setString(2, username);
+            ps.setLong(3, expiresAt);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to revoke token", ex);
+        }
+    }
+
+    @Override
+    public Map<String, Long> listRevokedTokens() throws DataAccessException {
+        var sql = "SELECT authToken, revokedUntil FROM auth WHERE revokedUntil IS NOT NULL";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql);
+             var rs = ps.executeQuery()) {
+            Map<String, Long> revoked = new HashMap<>();
+            while (rs.next()) {
+                revoked.put(rs.getString("authToken"), rs.getLong("revokedUntil"));
+            }
+            return revoked;
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to list revoked tokens", ex);
+        }
+    }
+
+    @Override
+    public void pruneRevokedTokens(long now) throws DataAccessException {
+        var sql = "DELETE FROM auth WHERE revokedUntil < ?";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, now);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to prune revoked tokens", ex);
+        }
+    }
+
+    @Override
+    public long tokensValidFrom() throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("SELECT validFrom FROM token_cutoff WHERE id = 0");
+             var rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to read the token cutoff", ex);
+        }
+    }
+
     @Override
     public List<GameData> listGames() throws DataAccessException {
         var sql = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState FROM games";
@@ -196,8 +400,7 @@ public class MySqlDataAccess implements DataAccess {
 
                 String name = rs.getString("gameName");
 
-                ChessGame game = gson.fromJson(rs.getString("gameState"), ChessGame.class);
-                list.add(new GameData(id, white, black, name, game));
+                list.add(GameData.encoded(id, white, black, name, rs.getString("gameState"), this::decodeGame));
             }
             return list;
         } catch (SQLException ex) {
@@ -205,9 +408,93 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
+    /**
+     * Each filter is a UNION of branches that are each a range scan of one covering index
+     * in gameID order, so a page reads at most limit entries from each and nothing from the
+     * rows: one branch per status wanted, or one per seat for a player's games.
+     */
+    @Override
+    public void forEachGameSummary(GameQuery query, GameSummaryVisitor visitor)
+            throws DataAccessException, IOException {
+        String open = query.openSeats() ? OPEN_SEAT_SQL : "";
+        List<String> branches = new ArrayList<>();
+        if (query.player() != null) {
+            // an open seat in a finished game is no use to anyone, so open seats means active games
+            Boolean finished = query.openSeats() ? Boolean.FALSE : query.finished();
+            if (!query.openSeats() || !Boolean.TRUE.equals(query.finished())) {
+                String status = finished == null ? "" : " AND status = " + (finished ? FINISHED : ACTIVE);
+                branches.add(SUMMARY_BRANCH_SQL.formatted("whiteUsername = ?" + status + open));
+                branches.add(SUMMARY_BRANCH_SQL.formatted("blackUsername = ?" + status + open));
+            }
+        } else {
+            if (!Boolean.TRUE.equals(query.finished())) {
+                branches.add(SUMMARY_BRANCH_SQL.formatted("status = " + ACTIVE + open));
+            }
+            // an open seat in a finished game is no use to anyone
+            if (!Boolean.FALSE.equals(query.finished()) && !query.openSeats()) {
+                branches.add(SUMMARY_BRANCH_SQL.formatted("status = " + FINISHED));
+            }
+        }
+        if (branches.isEmpty()) {
+            return;
+        }
+        // UNION rather than UNION ALL: a player in both seats of a game finds it twice
+        var sql = String.join(" UNION ", branches) + " ORDER BY gameID LIMIT ?";
+
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            int param = 1;
+            for (int i = 0; i < branches.size(); i++) {
+                if (query.player() != null) {
+                    ps.setString(param++, query.player());
+                }
+                ps.setInt(param++, query.afterID());
+                ps.setInt(param++, query.limit());
+            }
+            ps.setInt(param, query.limit());
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(new GameSummary(rs.getInt("gameID"), rs.getString("whiteUsername"),
+                            rs.getString("blackUsername"), rs.getString("gameName"),
+                            rs.getInt("status") == FINISHED ? GameSummary.FINISHED : GameSummary.ACTIVE));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to list games", ex);
+        }
+    }
+
+    @Override
+    public void forEachGame(String player, GameVisitor visitor) throws DataAccessException, IOException {
+        var sql = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState FROM games"
+                + (player == null ? "" : " WHERE whiteUsername = ? OR blackUsername = ?")
+                + " ORDER BY gameID";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            if (player != null) {
+                ps.setString(1, player);
+                ps.setString(2, player);
+            }
+            // with useCursorFetch on the connection this reads through a server-side cursor,
+            // a fetch at a time, instead of pulling the whole result into memory
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(GameData.encoded(rs.getInt("gameID"), rs.getString("whiteUsername"),
+                            rs.getString("blackUsername"), rs.getString("gameName"), rs.getString("gameState"),
+                            this::decodeGame));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to stream games", ex);
+        }
+    }
+
     @Override
     public int createGame(GameData game) throws DataAccessException {
-        var sql = "INSERT INTO games (whiteUsername, blackUsername, gameName, gameState) VALUES (?, ?, ?, ?)";
+        var sql = "INSERT INTO games (whiteUsername, blackUsername, gameName, gameState, status) VALUES (?, ?, ?, ?, ?)";
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
@@ -218,7 +505,9 @@ public class MySqlDataAccess implements DataAccess {
 
 
             ps.setString(4, gson.toJson(game.game()));
+            ps.setInt(5, statusOf(game));
             ps.executeUpdate();
+            countGameWrites(conn, 1);
 
             try (var rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
@@ -231,6 +520,45 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
+    @Override
+    public List<Integer> createGames(List<GameData> games) throws DataAccessException {
+        var sql = "INSERT INTO games (whiteUsername, blackUsername, gameName, gameState, status) VALUES (?, ?, ?, ?, ?)";
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (GameData game : games) {
+                    ps.setString(1, game.whiteUsername());
+                    ps.setString(2, game.blackUsername());
+                    ps.setString(3, game.gameName());
+                    ps.setString(4, gson.toJson(game.game()));
+                    ps.setInt(5, statusOf(game));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+
+                List<Integer> ids = new ArrayList<>(games.size());
+                try (var rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt(1));
+                    }
+                }
+                if (ids.size() != games.size()) {
+                    conn.rollback();
+                    throw new DataAccessException("failed to create games");
+                }
+                indexPositions(conn, games, ids);
+                countGameWrites(conn, games.size());
+                conn.commit();
+                return ids;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to create games", ex);
+        }
+    }
+
     @Override
     public GameData getGame(int gameID) throws DataAccessException {
         var sql = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState FROM games WHERE gameID = ?";
@@ -248,18 +576,25 @@ public class MySqlDataAccess implements DataAccess {
                 String black = rs.getString("blackUsername");
 
                 String name = rs.getString("gameName");
-                ChessGame game = gson.fromJson(rs.getString("gameState"), ChessGame.class);
 
-                return new GameData(id, white, black, name, game);
+                return GameData.encoded(id, white, black, name, rs.getString("gameState"), this::decodeGame);
             }
         } catch (SQLException ex) {
             throw new DataAccessException("failed to get game", ex);
         }
     }
 
+    /**
+     * A game still holding the state it was read with only has its seats and name written;
+     * its state, and so its status, can't have changed
+     */
     @Override
     public void updateGame(GameData game) throws DataAccessException {
-        var sql = "UPDATE games SET whiteUsername = ?, blackUsername = ?, gameName = ?, gameState = ? WHERE gameID = ?";
+        boolean untouched = game.encodedState() != null;
+        var sql = untouched
+                ? "UPDATE games SET whiteUsername = ?, blackUsername = ?, gameName = ? WHERE gameID = ?"
+                : "UPDATE games SET whiteUsername = ?, blackUsername = ?, gameName = ?, gameState = ?, status = ?"
+                        + " WHERE gameID = ?";
 
         try (var conn = DatabaseManager.getConnection();
              var ps = conn.prepareStatement(sql)) {
@@ -268,21 +603,256 @@ public class MySqlDataAccess implements DataAccess {
             ps.setString(2, game.blackUsername());
             ps.setString(3, game.gameName());
 
-
-            ps.setString(4, gson.toJson(game.game()));
-            ps.setInt(5, game.gameID());
+            if (untouched) {
+                ps.setInt(4, game.gameID());
+            } else {
+                ps.setString(4, gson.toJson(game.game()));
+                ps.setInt(5, statusOf(game));
+                ps.setInt(6, game.gameID());
+            }
 
             int updated = ps.executeUpdate();
             if (updated == 0) {
                 // just throw for the bad req
                 throw new DataAccessException("bad request"); 
             }
+            countGameWrites(conn, 1);
         } catch (SQLException ex) {
 
             throw new DataAccessException("failed to update game", ex);
         }
     }
 
+    @Override
+    public long outsideGameWrites() throws DataAccessException {
+        var sql = "SELECT COALESCE(SUM(writes), 0) FROM game_writers WHERE writerID <> ?";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, writerID);
+            try (var rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to count game writes", ex);
+        }
+    }
+
+    private void countGameWrites(Connection conn, int writes) throws SQLException {
+        try (var ps = conn.prepareStatement(COUNT_GAME_WRITES_SQL)) {
+            ps.setString(1, writerID);
+            ps.setLong(2, writes);
+            ps.setLong(3, writes);
+            ps.executeUpdate();
+        }
+    }
+
+    private ChessGame decodeGame(String gameState) {
+        return gson.fromJson(gameState, ChessGame.class);
+    }
+
+    private static int statusOf(GameData game) {
+        return GameSummary.FINISHED.equals(GameSummary.statusOf(game.game())) ? FINISHED : ACTIVE;
+    }
+
+    private void indexPositions(Connection conn, List<GameData> games, List<Integer> ids) throws SQLException {
+        try (var ps = conn.prepareStatement(INDEX_POSITION_SQL)) {
+            int pending = 0;
+            for (int i = 0; i < games.size(); i++) {
+                long[] hashes = games.get(i).game().positionHashes();
+                for (int ply = 1; ply < hashes.length; ply++) {
+                    ps.setLong(1, hashes[ply]);
+                    ps.setInt(2, ids.get(i));
+                    ps.setInt(3, ply);
+                    ps.addBatch();
+                    if (++pending == STREAM_FETCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+    @Override
+    public void indexPosition(long positionHash, int gameID, int ply) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(INDEX_POSITION_SQL)) {
+            ps.setLong(1, positionHash);
+            ps.setInt(2, gameID);
+            ps.setInt(3, ply);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to index position", ex);
+        }
+    }
+
+    @Override
+    public List<PositionHit> findPositions(long positionHash, int limit) throws DataAccessException {
+        var sql = "SELECT gameID, ply FROM position_index WHERE positionHash = ? ORDER BY gameID, ply LIMIT ?";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, positionHash);
+            ps.setInt(2, limit);
+            List<PositionHit> hits = new ArrayList<>();
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    hits.add(new PositionHit(rs.getInt("gameID"), rs.getInt("ply")));
+                }
+            }
+            return hits;
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to find positions", ex);
+        }
+    }
+
+    @Override
+    public void addExplorerStats(List<ExplorerStat> stats) throws DataAccessException {
+        var sql = """
+                INSERT INTO explorer (positionHash, move, games, whiteWins, draws, blackWins) VALUES (?, ?, ?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE games = games + VALUES(games), whiteWins = whiteWins + VALUES(whiteWins),
+                    draws = draws + VALUES(draws), blackWins = blackWins + VALUES(blackWins)
+                """;
+        // the same key order in every batch, so concurrent batches lock rows in the same order
+        List<ExplorerStat> sorted = new ArrayList<>(stats);
+        sorted.sort(Comparator.comparingLong(ExplorerStat::positionHash).thenComparing(ExplorerStat::move));
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var ps = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (ExplorerStat stat : sorted) {
+                    ps.setLong(1, stat.positionHash());
+                    ps.setString(2, stat.move());
+                    ps.setInt(3, stat.games());
+                    ps.setInt(4, stat.whiteWins());
+                    ps.setInt(5, stat.draws());
+                    ps.setInt(6, stat.blackWins());
+                    ps.addBatch();
+                    if (++pending == STREAM_FETCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to add explorer stats", ex);
+        }
+    }
+
+    @Override
+    public List<ExplorerStat> getExplorerStats(long positionHash) throws DataAccessException {
+        var sql = "SELECT move, games, whiteWins, draws, blackWins FROM explorer WHERE positionHash = ?";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, positionHash);
+            List<ExplorerStat> stats = new ArrayList<>();
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stats.add(new ExplorerStat(positionHash, rs.getString("move"), rs.getInt("games"),
+                            rs.getInt("whiteWins"), rs.getInt("draws"), rs.getInt("blackWins")));
+                }
+            }
+            return stats;
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to get explorer stats", ex);
+        }
+    }
+
+    @Override
+    public void clearExplorerStats() throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement("TRUNCATE TABLE explorer")) {
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to clear explorer stats", ex);
+        }
+    }
+
+    @Override
+    public RatingData getRating(String username) throws DataAccessException {
+        var sql = "SELECT username, rating, deviation, volatility, games FROM ratings WHERE username = ?";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            ps.setString(1, username);
+            try (var rs = ps.executeQuery()) {
+                return rs.next() ? readRating(rs) : null;
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to get rating", ex);
+        }
+    }
+
+    @Override
+    public List<RatingData> listRatings() throws DataAccessException {
+        var sql = "SELECT username, rating, deviation, volatility, games FROM ratings";
+        try (var conn = DatabaseManager.getConnection();
+             var ps = conn.prepareStatement(sql)) {
+            List<RatingData> ratings = new ArrayList<>();
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ratings.add(readRating(rs));
+                }
+            }
+            return ratings;
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to list ratings", ex);
+        }
+    }
+
+    @Override
+    public void saveRatings(List<RatingData> ratings) throws DataAccessException {
+        var sql = """
+                INSERT INTO ratings (username, rating, deviation, volatility, games) VALUES (?, ?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE rating = VALUES(rating), deviation = VALUES(deviation),
+                    volatility = VALUES(volatility), games = VALUES(games)
+                """;
+        // same order every time so two saves touching the same players can't deadlock
+        List<RatingData> sorted = new ArrayList<>(ratings);
+        sorted.sort(Comparator.comparing(RatingData::username));
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (var ps = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (RatingData rating : sorted) {
+                    ps.setString(1, rating.username());
+                    ps.setDouble(2, rating.rating());
+                    ps.setDouble(3, rating.deviation());
+                    ps.setDouble(4, rating.volatility());
+                    ps.setInt(5, rating.games());
+                    ps.addBatch();
+                    if (++pending == STREAM_FETCH_SIZE) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("failed to save ratings", ex);
+        }
+    }
+
+    private static RatingData readRating(ResultSet rs) throws SQLException {
+        return new RatingData(rs.getString("username"), rs.getDouble("rating"), rs.getDouble("deviation"),
+                rs.getDouble("volatility"), rs.getInt("games"));
+    }
+
     private boolean isDuplicateKey(SQLException ex) {
         return ex.getErrorCode() == 1062;
     }
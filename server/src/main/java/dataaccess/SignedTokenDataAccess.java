@@ -0,0 +1,331 @@
+package dataaccess;
+
+import model.UserData;
+import model.AuthData;
+import model.GameData;
+import model.GameSummary;
+import model.ExplorerStat;
+import model.PositionHit;
+import model.RatingData;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Auth tokens that carry their own proof, so checking one needs no trip to the database.
+ * <p>
+ * A token is its payload (issue time, expiry, a random nonce and the username) and an
+ * HMAC-SHA256 of the payload, cut to 128 bits, each base64url encoded and joined by a dot.
+ * {@link #getAuth} checks the signature and the expiry and looks the signature up in the set
+ * of revoked tokens, all in memory. Logging out adds the token to that set and to the auth
+ * table, where it stays until it would have expired anyway; the set is loaded from the table
+ * when this starts, and expired entries are dropped from both as later logouts come in.
+ * Tokens issued before the store was last cleared are refused, using the time the store
+ * keeps for it, so they stay refused after a restart too.
+ * <p>
+ * Tokens of any other shape, like ones from before signing was turned on, are looked up in
+ * the store as usual. Everything else passes straight through.
+ */
+public class SignedTokenDataAccess implements DataAccess {
+
+    public static final int MIN_KEY_BYTES = 32;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    // issue time, expiry and nonce come before the username
+    private static final int FIXED_PAYLOAD_BYTES = 3 * Long.BYTES;
+    private static final long PRUNE_INTERVAL_MILLIS = 10 * 60 * 1000;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final DataAccess delegate;
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final SecureRandom random = new SecureRandom();
+    // a Mac isn't thread-safe, and getting one from the provider costs more than using it
+    private final ThreadLocal<Mac> macs;
+    // signature of each logged out token, to when it expires
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    // tokens issued before the last clear are no good, like the auth rows it deleted
+    private volatile long notBefore;
+    private volatile long nextPrune;
+
+    /**
+     * @param key       at least {@value #MIN_KEY_BYTES} bytes; tokens signed with it stay good across restarts
+     * @param ttlMillis how long a token lasts
+     */
+    public SignedTokenDataAccess(DataAccess delegate, byte[] key, long ttlMillis) throws DataAccessException {
+        if (key.length < MIN_KEY_BYTES) {
+            throw new IllegalArgumentException("token key must be at least " + MIN_KEY_BYTES + " bytes");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("token lifetime must be positive");
+        }
+        this.delegate = delegate;
+        this.key = new SecretKeySpec(key.clone(), ALGORITHM);
+        this.ttlMillis = ttlMillis;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        newMac();
+
+        long now = System.currentTimeMillis();
+        delegate.pruneRevokedTokens(now);
+        revoked.putAll(delegate.listRevokedTokens());
+        notBefore = delegate.tokensValidFrom();
+        nextPrune = now + PRUNE_INTERVAL_MILLIS;
+    }
+
+    /**
+     * Makes a signed token for a user; nothing is stored
+     */
+    public AuthData issue(String username) {
+        long now = Math.max(System.currentTimeMillis(), notBefore);
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = ByteBuffer.allocate(FIXED_PAYLOAD_BYTES + name.length)
+                .putLong(now)
+                .putLong(now + ttlMillis)
+                .putLong(random.nextLong())
+                .put(name)
+                .array();
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+        return new AuthData(token, username);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        if (!isSigned(authToken)) {
+            return delegate.getAuth(authToken);
+        }
+        Token token = verify(authToken);
+        return token == null ? null : new AuthData(authToken, token.username);
+    }
+
+    /**
+     * Revokes a signed token until it expires; other tokens are deleted from the store
+     */
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        if (!isSigned(authToken)) {
+            delegate.deleteAuth(authToken);
+            return;
+        }
+        Token token = verify(authToken);
+        if (token == null) {
+            return;
+        }
+        delegate.revokeToken(token.signature, token.username, token.expiresAt);
+        revoked.put(token.signature, token.expiresAt);
+        pruneIfDue();
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        try {
+            delegate.clear();
+        } finally {
+            // no earlier than the time the store keeps, so nothing good now is refused after a restart
+            notBefore = System.currentTimeMillis() + 1;
+            revoked.clear();
+        }
+    }
+
+    private void pruneIfDue() throws DataAccessException {
+        long now = System.currentTimeMillis();
+        if (now < nextPrune) {
+            return;
+        }
+        nextPrune = now + PRUNE_INTERVAL_MILLIS;
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        delegate.pruneRevokedTokens(now);
+    }
+
+    private record Token(String username, long expiresAt, String signature) {
+    }
+
+    /**
+     * @return the token if it's signed with our key, unexpired and not revoked, otherwise null
+     */
+    private Token verify(String authToken) {
+        int dot = authToken.indexOf('.');
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(authToken.substring(0, dot));
+            signature = DECODER.decode(authToken.substring(dot + 1));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        if (payload.length < FIXED_PAYLOAD_BYTES || !MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+
+        ByteBuffer fields = ByteBuffer.wrap(payload);
+        long issuedAt = fields.getLong();
+        long expiresAt = fields.getLong();
+        long now = System.currentTimeMillis();
+        if (issuedAt < notBefore || expiresAt <= now) {
+            return null;
+        }
+        // re-encoded, since a decoder ignores the spare bits of the last character and
+        // the same signature could otherwise be written a few ways past the revoked set
+        String encodedSignature = ENCODER.encodeToString(signature);
+        if (revoked.containsKey(encodedSignature)) {
+            return null;
+        }
+        String username = new String(payload, FIXED_PAYLOAD_BYTES, payload.length - FIXED_PAYLOAD_BYTES,
+                StandardCharsets.UTF_8);
+        return new Token(username, expiresAt, encodedSignature);
+    }
+
+    // a UUID has no dot, and a signed token has exactly one
+    private static boolean isSigned(String authToken) {
+        int dot = authToken == null ? -1 : authToken.indexOf('.');
+        return dot > 0 && authToken.indexOf('.', dot + 1) < 0;
+    }
+
+    private byte[] sign(byte[] payload) {
+        return Arrays.copyOf(macs.get().doFinal(payload), SIGNATURE_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            // every Java platform has HmacSHA256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        delegate.createAuth(auth);
+    }
+
+    @Override
+    public void revokeToken(String signature, String username, long expiresAt) throws DataAccessException {
+        delegate.revokeToken(signature, username, expiresAt);
+    }
+
+    @Override
+    public Map<String, Long> listRevokedTokens() throws DataAccessException {
+        return delegate.listRevokedTokens();
+    }
+
+    @Override
+    public long tokensValidFrom() throws DataAccessException {
+        return delegate.tokensValidFrom();
+    }
+
+    @Override
+    public void pruneRevokedTokens(long now) throws DataAccessException {
+        delegate.pruneRevokedTokens(now);
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        delegate.createUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public List<GameData> listGames() throws DataAccessException {
+        return delegate.listGames();
+    }
+
+    @Override
+    public void forEachGameSummary(GameQuery query, GameSummaryVisitor visitor)
+            throws DataAccessException, IOException {
+        delegate.forEachGameSummary(query, visitor);
+    }
+
+    @Override
+    public List<GameSummary> listGameSummaries(GameQuery query) throws DataAccessException {
+        return delegate.listGameSummaries(query);
+    }
+
+    @Override
+    public void forEachGame(String player, GameVisitor visitor) throws DataAccessException, IOException {
+        delegate.forEachGame(player, visitor);
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        return delegate.createGame(game);
+    }
+
+    @Override
+    public List<Integer> createGames(List<GameData> games) throws DataAccessException {
+        return delegate.createGames(games);
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        return delegate.getGame(gameID);
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        delegate.updateGame(game);
+    }
+
+    @Override
+    public long outsideGameWrites() throws DataAccessException {
+        return delegate.outsideGameWrites();
+    }
+
+    @Override
+    public void indexPosition(long positionHash, int gameID, int ply) throws DataAccessException {
+        delegate.indexPosition(positionHash, gameID, ply);
+    }
+
+    @Override
+    public List<PositionHit> findPositions(long positionHash, int limit) throws DataAccessException {
+        return delegate.findPositions(positionHash, limit);
+    }
+
+    @Override
+    public void addExplorerStats(List<ExplorerStat> stats) throws DataAccessException {
+        delegate.addExplorerStats(stats);
+    }
+
+    @Override
+    public List<ExplorerStat> getExplorerStats(long positionHash) throws DataAccessException {
+        return delegate.getExplorerStats(positionHash);
+    }
+
+    @Override
+    public void clearExplorerStats() throws DataAccessException {
+        delegate.clearExplorerStats();
+    }
+
+    @Override
+    public RatingData getRating(String username) throws DataAccessException {
+        return delegate.getRating(username);
+    }
+
+    @Override
+    public List<RatingData> listRatings() throws DataAccessException {
+        return delegate.listRatings();
+    }
+
+    @Override
+    public void saveRatings(List<RatingData> ratings) throws DataAccessException {
+        delegate.saveRatings(ratings);
+    }
+}
@@ -0,0 +1,295 @@
+package dataaccess;
+
+import model.UserData;
+import model.AuthData;
+import model.GameData;
+import model.GameSummary;
+import model.ExplorerStat;
+import model.PositionHit;
+import model.RatingData;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts changes to games as they're written, so a caller can tell whether a game or the
+ * lobby has changed since it last looked without reading either.
+ * <p>
+ * Every write takes the next number from one counter. A game's version is the number of its
+ * last write, and the lobby's is the number of the last write that changed what the lobby
+ * shows: a new game, a seat, a name, or a game finishing. A move in a game that goes on
+ * changes the game's version but not the lobby's. Versions only ever go up, and they're
+ * counted from when this object was made, so they're only comparable alongside
+ * {@link #epoch()}; a game not written since then has the version of the last
+ * {@link #clear()}, or 0.
+ * <p>
+ * A version is bumped after its write is done, so read it before reading the data it goes
+ * with: then the data is never older than the version, and at worst a caller reads the same
+ * data again under the next one.
+ * <p>
+ * Writes that don't come through here, from an import or another server on the same
+ * database, are counted by the store instead ({@link DataAccess#outsideGameWrites}). Reading
+ * a version checks that count at most once a second, and a change, or a failure to read it,
+ * bumps every version as a {@link #clear()} does. So versions can trail an outside write by
+ * about a second, but never for longer.
+ */
+public class VersionedDataAccess implements DataAccess {
+
+    private final DataAccess delegate;
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong lobby = new AtomicLong();
+    // every game is at least as new as the last clear
+    private volatile long cleared;
+    // what the lobby last saw of each game written since the epoch, to tell which writes change it
+    private final ConcurrentHashMap<Integer, Stamp> stamps = new ConcurrentHashMap<>();
+    private final long outsideCheckMillis;
+    private final AtomicLong nextOutsideCheck = new AtomicLong();
+    // -1 until the first check, so that one always bumps
+    private volatile long outsideWrites = -1;
+
+    private record Stamp(long version, GameSummary summary) {
+    }
+
+    public VersionedDataAccess(DataAccess delegate) {
+        this(delegate, 1000);
+    }
+
+    /**
+     * @param outsideCheckMillis least time between looks at the outside write count
+     */
+    VersionedDataAccess(DataAccess delegate, long outsideCheckMillis) {
+        this.delegate = delegate;
+        this.outsideCheckMillis = outsideCheckMillis;
+    }
+
+    /**
+     * @return when this object was made, in epoch milliseconds; versions from before then mean nothing now
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    public long lobbyVersion() {
+        checkOutsideWrites();
+        return lobby.get();
+    }
+
+    public long gameVersion(int gameID) {
+        checkOutsideWrites();
+        Stamp stamp = stamps.get(gameID);
+        return stamp == null ? cleared : Math.max(stamp.version(), cleared);
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        try {
+            delegate.clear();
+        } finally {
+            bumpAll();
+        }
+    }
+
+    private void checkOutsideWrites() {
+        long now = System.currentTimeMillis();
+        long due = nextOutsideCheck.get();
+        // one caller a period looks; the rest go on with the versions as they are
+        if (now < due || !nextOutsideCheck.compareAndSet(due, now + outsideCheckMillis)) {
+            return;
+        }
+        long writes;
+        try {
+            writes = delegate.outsideGameWrites();
+        } catch (DataAccessException ex) {
+            // can't tell what changed, so assume everything did
+            writes = -1;
+        }
+        if (writes < 0 || writes != outsideWrites) {
+            outsideWrites = writes;
+            bumpAll();
+        }
+    }
+
+    // every game and the lobby get a version newer than any handed out so far
+    private void bumpAll() {
+        long version = clock.incrementAndGet();
+        cleared = version;
+        stamps.clear();
+        lobby.accumulateAndGet(version, Math::max);
+    }
+
+    @Override
+    public int createGame(GameData game) throws DataAccessException {
+        int id = delegate.createGame(game);
+        written(id, game);
+        return id;
+    }
+
+    @Override
+    public List<Integer> createGames(List<GameData> games) throws DataAccessException {
+        List<Integer> ids = delegate.createGames(games);
+        for (int i = 0; i < ids.size(); i++) {
+            written(ids.get(i), games.get(i));
+        }
+        return ids;
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        try {
+            delegate.updateGame(game);
+        } finally {
+            // a failed write may still have changed a game held in memory, so count it anyway
+            if (game.gameID() != null) {
+                written(game.gameID(), game);
+            }
+        }
+    }
+
+    private void written(int gameID, GameData game) {
+        long version = clock.incrementAndGet();
+        boolean[] listed = {true};
+        stamps.compute(gameID, (id, old) -> {
+            if (old != null && old.version() > version) {
+                // a later write to the same game got here first
+                return old;
+            }
+            GameSummary summary = summarize(id, game, old);
+            listed[0] = old == null || !summary.equals(old.summary());
+            return new Stamp(version, summary);
+        });
+        if (listed[0]) {
+            lobby.accumulateAndGet(version, Math::max);
+        }
+    }
+
+    private static GameSummary summarize(int gameID, GameData game, Stamp old) {
+        String status;
+        if (game.encodedState() == null) {
+            status = GameSummary.statusOf(game.game());
+        } else {
+            // still encoded means the state wasn't touched, and decoding it just to find out is what we're avoiding
+            status = old == null ? null : old.summary().status();
+        }
+        return new GameSummary(gameID, game.whiteUsername(), game.blackUsername(), game.gameName(), status);
+    }
+
+    @Override
+    public long outsideGameWrites() throws DataAccessException {
+        return delegate.outsideGameWrites();
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        delegate.createUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return delegate.getUser(username);
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        delegate.createAuth(auth);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        return delegate.getAuth(authToken);
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        delegate.deleteAuth(authToken);
+    }
+
+    @Override
+    public void revokeToken(String signature, String username, long expiresAt) throws DataAccessException {
+        delegate.revokeToken(signature, username, expiresAt);
+    }
+
+    @Override
+    public Map<String, Long> listRevokedTokens() throws DataAccessException {
+        return delegate.listRevokedTokens();
+    }
+
+    @Override
+    public long tokensValidFrom() throws DataAccessException {
+        return delegate.tokensValidFrom();
+    }
+
+    @Override
+    public void pruneRevokedTokens(long now) throws DataAccessException {
+        delegate.pruneRevokedTokens(now);
+    }
+
+    @Override
+    public List<GameData> listGames() throws DataAccessException {
+        return delegate.listGames();
+    }
+
+    @Override
+    public void forEachGameSummary(GameQuery query, GameSummaryVisitor visitor)
+            throws DataAccessException, IOException {
+        delegate.forEachGameSummary(query, visitor);
+    }
+
+    @Override
+    public List<GameSummary> listGameSummaries(GameQuery query) throws DataAccessException {
+        return delegate.listGameSummaries(query);
+    }
+
+    @Override
+    public void forEachGame(String player, GameVisitor visitor) throws DataAccessException, IOException {
+        delegate.forEachGame(player, visitor);
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        return delegate.getGame(gameID);
+    }
+
+    @Override
+    public void indexPosition(long positionHash, int gameID, int ply) throws DataAccessException {
+        delegate.indexPosition(positionHash, gameID, ply);
+    }
+
+    @Override
+    public List<PositionHit> findPositions(long positionHash, int limit) throws DataAccessException {
+        return delegate.findPositions(positionHash, limit);
+    }
+
+    @Override
+    public void addExplorerStats(List<ExplorerStat> stats) throws DataAccessException {
+        delegate.addExplorerStats(stats);
+    }
+
+    @Override
+    public List<ExplorerStat> getExplorerStats(long positionHash) throws DataAccessException {
+        return delegate.getExplorerStats(positionHash);
+    }
+
+    @Override
+    public void clearExplorerStats() throws DataAccessException {
+        delegate.clearExplorerStats();
+    }
+
+    @Override
+    public RatingData getRating(String username) throws DataAccessException {
+        return delegate.getRating(username);
+    }
+
+    @Override
+    public List<RatingData> listRatings() throws DataAccessException {
+        return delegate.listRatings();
+    }
+
+    @Override
+    public void saveRatings(List<RatingData> ratings) throws DataAccessException {
+        delegate.saveRatings(ratings);
+    }
+}
@@ -0,0 +1,228 @@
+package server;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.Position;
+import chess.engine.Search;
+import chess.engine.SearchResult;
+import com.google.gson.Gson;
+import model.JsonCodec;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs one background analysis per game that observers are watching the evaluation of,
+ * and streams it to them as EVALUATION messages.
+ * <p>
+ * The whole server shares a fixed number of analysis threads (the CPU budget). Waiting
+ * analyses are handed out busiest game first, and every analysis stops after a time
+ * limit so no game can hold a thread for long. A new move cancels the game's analysis
+ * straight away: once {@link #cancel} returns, no evaluation of the old position is kept
+ * for new watchers or starts going out. Evaluations are sent without holding any lock, so
+ * one that was already being sent when the cancel came may still arrive just after it.
+ */
+public class AnalysisScheduler {
+
+    private static final int MAX_DEPTH = 8;
+    private static final long TIME_LIMIT_MILLIS = 5000;
+
+    private final ConnectionManager connections;
+    private final Supplier<Search> searches;
+    private final Gson gson = JsonCodec.GSON_WITH_NULLS;
+
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+    private final ConcurrentHashMap<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> latest = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * Runs up to half as many analyses at once as there are processors
+     */
+    public AnalysisScheduler(ConnectionManager connections, Supplier<Search> searches) {
+        this(connections, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), searches);
+    }
+
+    /**
+     * @param connections where evaluations are sent
+     * @param threads     how many analyses may run at once
+     * @param searches    makes the search for each analysis
+     */
+    public AnalysisScheduler(ConnectionManager connections, int threads, Supplier<Search> searches) {
+        this.connections = connections;
+        this.searches = searches;
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::work, "analysis-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Call after every move (or when a game ends): drops the old analysis and, if anyone is
+     * watching and the game isn't over, starts one for the new position
+     */
+    public void positionChanged(int gameID, ChessGame game) {
+        cancel(gameID);
+        if (game.getTeamTurn() != null && connections.evaluationWatcherCount(gameID) > 0) {
+            schedule(gameID, game);
+        }
+    }
+
+    /**
+     * Call when an observer asking for evaluations connects: starts an analysis if there is
+     * none yet
+     *
+     * @return the latest evaluation, for the caller to send them, or null if there's none yet
+     */
+    public String watcherJoined(int gameID, ChessGame game) {
+        String last = latest.get(gameID);
+        if (last == null && !jobs.containsKey(gameID) && game.getTeamTurn() != null) {
+            schedule(gameID, game);
+        } else {
+            watchersChanged(gameID);
+        }
+        return last;
+    }
+
+    /**
+     * Call when a watcher leaves: re-ranks the game's waiting analysis, or drops it if
+     * nobody is watching anymore
+     */
+    public void watchersChanged(int gameID) {
+        int watchers = connections.evaluationWatcherCount(gameID);
+        if (watchers == 0) {
+            cancel(gameID);
+            return;
+        }
+        Job job = jobs.get(gameID);
+        if (job != null && queue.remove(job)) {
+            job.watchers = watchers;
+            queue.add(job);
+        }
+    }
+
+    /**
+     * Stops a game's analysis, if any. No evaluation of the cancelled position is recorded
+     * or starts sending after this returns; one already being sent may still arrive.
+     */
+    public void cancel(int gameID) {
+        Job job = jobs.remove(gameID);
+        if (job != null) {
+            queue.remove(job);
+            synchronized (job) {
+                job.cancelled = true;
+            }
+            job.search.stop();
+        }
+        // only now: until the job was marked, a publish could still have put its evaluation back
+        latest.remove(gameID);
+    }
+
+    public void shutdown() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Integer gameID : jobs.keySet()) {
+            cancel(gameID);
+        }
+    }
+
+    private void schedule(int gameID, ChessGame game) {
+        Position position = game.snapshot();
+        Job job = new Job(gameID, position.toBoard(), position.toMove(),
+                connections.evaluationWatcherCount(gameID), sequence.getAndIncrement(), searches.get());
+        Job previous = jobs.put(gameID, job);
+        if (previous != null) {
+            queue.remove(previous);
+            synchronized (previous) {
+                previous.cancelled = true;
+            }
+            previous.search.stop();
+        }
+        queue.add(job);
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            try {
+                if (!job.cancelled) {
+                    job.search.search(job.board, job.toMove, MAX_DEPTH, TIME_LIMIT_MILLIS,
+                            result -> publish(job, result));
+                }
+            } catch (RuntimeException ex) {
+                System.out.println("analysis of game " + job.gameID + " failed: " + ex);
+            } finally {
+                jobs.remove(job.gameID, job);
+            }
+        }
+    }
+
+    private void publish(Job job, SearchResult result) {
+        ServerMessage message = new ServerMessage(ServerMessage.ServerMessageType.EVALUATION);
+        int sign = job.toMove == ChessGame.TeamColor.WHITE ? 1 : -1;
+        message.setEvaluation(sign * result.score());
+        message.setMateIn(result.isMate() ? sign * result.mateIn() : null);
+        message.setDepth(result.depth());
+        message.setBestMove(result.bestMove());
+        String json = gson.toJson(message);
+
+        synchronized (job) {
+            if (job.cancelled) {
+                return;
+            }
+            latest.put(job.gameID, json);
+        }
+        // sent outside the lock, so a cancel never waits on a slow observer; looked at again
+        // since a cancel may have come while the message was being stored
+        if (job.cancelled) {
+            return;
+        }
+        try {
+            connections.broadcastEvaluation(job.gameID, json);
+        } catch (IOException ignored) {
+            // a dropped observer shouldn't stop the others' updates
+        }
+    }
+
+    private static final class Job implements Comparable<Job> {
+        private final int gameID;
+        private final ChessBoard board;
+        private final ChessGame.TeamColor toMove;
+        private final long order;
+        private final Search search;
+        private volatile int watchers;
+        private volatile boolean cancelled;
+
+        Job(int gameID, ChessBoard board, ChessGame.TeamColor toMove, int watchers, long order, Search search) {
+            this.gameID = gameID;
+            this.board = board;
+            this.toMove = toMove;
+            this.watchers = watchers;
+            this.order = order;
+            this.search = search;
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (watchers != other.watchers) {
+                return Integer.compare(other.watchers, watchers);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
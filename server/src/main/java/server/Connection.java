@@ -10,15 +10,24 @@ public class Connection     {
 
     public Session session;
     public int gameID;
+    public boolean watchingEvaluation;
 
     public Connection(String visitorName, Session session, int gameID) {
+        this(visitorName, session, gameID, false);
+    }
+
+    public Connection(String visitorName, Session session, int gameID, boolean watchingEvaluation) {
         this.visitorName = visitorName;
 
         this.session = session;
         this.gameID = gameID;
+        this.watchingEvaluation = watchingEvaluation;
     }
 
     public void send(String msg) throws IOException {
-        session.getRemote().sendString(msg);
+        // analysis threads send here too, and jetty only allows one blocking send at a time
+        synchronized (session) {
+            session.getRemote().sendString(msg);
+        }
     }
 }
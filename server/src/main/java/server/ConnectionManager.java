@@ -4,13 +4,18 @@ import org.eclipse.jetty.websocket.api.Session;
 import java.io.IOException;
 
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class ConnectionManager {
     public final ConcurrentHashMap<Session, Connection> connections = new ConcurrentHashMap<>();
 
     public void add(String visitorName, Session session, int gameID) {
-        var connection = new Connection(visitorName, session, gameID);
+        add(visitorName, session, gameID, false);
+    }
+
+    public void add(String visitorName, Session session, int gameID, boolean watchingEvaluation) {
+        var connection = new Connection(visitorName, session, gameID, watchingEvaluation);
 
         connections.put(session, connection);
     }
@@ -45,4 +50,46 @@ public class ConnectionManager {
 
         broadcast(gameID, null, message);
     }
+
+    /**
+     * Sends each user their own message on every connection they have open, in one pass over
+     * the connections however many users there are
+     */
+    public void sendToUsers(Map<String, String> messages) {
+        for (var entry : connections.entrySet()) {
+            var c = entry.getValue();
+            String message = messages.get(c.visitorName);
+            if (message == null) {
+                continue;
+            }
+            if (!c.session.isOpen()) {
+                connections.remove(entry.getKey());
+                continue;
+            }
+            try {
+                c.send(message);
+            } catch (IOException e) {
+                // one dropped connection shouldn't stop everyone else hearing
+            }
+        }
+    }
+
+    // only observers can be watching the eval, so players can't use it to cheat
+    public void broadcastEvaluation(int gameID, String message) throws IOException {
+        for (var c : connections.values()) {
+            if (c.gameID == gameID && c.watchingEvaluation && c.session.isOpen()) {
+                c.send(message);
+            }
+        }
+    }
+
+    public int evaluationWatcherCount(int gameID) {
+        int count = 0;
+        for (var c : connections.values()) {
+            if (c.gameID == gameID && c.watchingEvaluation && c.session.isOpen()) {
+                count++;
+            }
+        }
+        return count;
+    }
 }
@@ -0,0 +1,29 @@
+package server;
+
+import dataaccess.DataAccessException;
+import dataaccess.MySqlDataAccess;
+import service.OpeningExplorer;
+
+/**
+ * Recounts the opening explorer from every stored game: {@code ExplorerMain [threads]}
+ */
+public class ExplorerMain {
+    public static void main(String[] args) {
+        if (args.length > 1) {
+            System.err.println("usage: ExplorerMain [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+
+        try {
+            long started = System.nanoTime();
+            long counted = new OpeningExplorer(new MySqlDataAccess()).rebuild(threads);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            System.out.printf("Counted %d finished games in %.1f s (%.0f games/sec on %d threads)%n",
+                    counted, seconds, seconds == 0 ? 0 : counted / seconds, threads);
+        } catch (DataAccessException ex) {
+            System.err.println("Rebuild failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package server;
+
+import chess.ChessClock;
+import chess.ChessGame;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntConsumer;
+
+/**
+ * Watches the clocks of every timed game in play and calls back when a flag may have fallen.
+ * <p>
+ * All games share one {@link TimingWheel}: a running clock has a single timeout in it, set
+ * for when the team on move runs out of time and replaced after every move, so tens of
+ * thousands of games cost one thread and no timer each. The callback should load the game
+ * and check the clock itself, since a move may have come in just as the timeout fired.
+ */
+public class GameClocks {
+
+    private static final long TICK_MILLIS = 100;
+    // about 100 seconds per turn of the wheel; longer clocks wait out whole turns
+    private static final int WHEEL_SIZE = 1024;
+    private static final int FLAG_THREADS = 2;
+
+    private final ExecutorService flagPool = Executors.newFixedThreadPool(FLAG_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "clock-flag");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TimingWheel wheel = new TimingWheel(TICK_MILLIS, WHEEL_SIZE, flagPool);
+    private final ConcurrentHashMap<Integer, TimingWheel.Timeout> timeouts = new ConcurrentHashMap<>();
+    private final IntConsumer onFlag;
+
+    /**
+     * @param onFlag called with a game's id once the team on move may be out of time
+     */
+    public GameClocks(IntConsumer onFlag) {
+        this.onFlag = onFlag;
+    }
+
+    /**
+     * Call whenever a game's clock may have changed: after a move, when a game ends, and
+     * when a game is loaded after a restart. Replaces the game's timeout, or drops it if
+     * the game is over or untimed.
+     */
+    public void update(int gameID, ChessGame game) {
+        ChessClock clock = game.getClock();
+        TimingWheel.Timeout next = null;
+        if (clock != null && clock.getRunning() != null && game.getTeamTurn() != null) {
+            next = wheel.schedule(clock.flagFallsAt() - System.currentTimeMillis(), () -> onFlag.accept(gameID));
+        }
+        TimingWheel.Timeout previous = next == null ? timeouts.remove(gameID) : timeouts.put(gameID, next);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * @return how many games have a clock being watched
+     */
+    public int watching() {
+        return timeouts.size();
+    }
+
+    public void shutdown() {
+        wheel.shutdown();
+        flagPool.shutdownNow();
+    }
+}
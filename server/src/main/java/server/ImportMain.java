@@ -0,0 +1,46 @@
+package server;
+
+import dataaccess.DataAccessException;
+import dataaccess.MySqlDataAccess;
+import service.ImportService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads a PGN file (optionally gzipped) into the database:
+ * {@code ImportMain games.pgn[.gz] [threads]}
+ * <p>
+ * Safe to run beside a server: the store counts these writes in the database, and the
+ * server's game and lobby versions move on within about a second of them.
+ */
+public class ImportMain {
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: ImportMain <file.pgn[.gz]> [threads]");
+            System.exit(2);
+        }
+        Path path = Path.of(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        try (InputStream file = Files.newInputStream(path);
+             InputStream raw = args[0].endsWith(".gz") ? new GZIPInputStream(file, 1 << 16) : file;
+             Reader in = new InputStreamReader(raw, StandardCharsets.UTF_8)) {
+
+            ImportService importer = new ImportService(new MySqlDataAccess(), threads, ImportService.DEFAULT_BATCH_SIZE);
+            ImportService.Report report = importer.importPgn(in);
+            System.out.printf("Read %d games: %d imported, %d rejected in %.1f s (%.0f games/sec on %d threads)%n",
+                    report.read(), report.imported(), report.rejected(), report.elapsedNanos() / 1e9,
+                    report.gamesPerSecond(), threads);
+        } catch (IOException | DataAccessException ex) {
+            System.err.println("Import failed: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+}
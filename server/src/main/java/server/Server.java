@@ -3,33 +3,94 @@ package server;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonWriter;
 import dataaccess.DataAccessException;
 import dataaccess.DataAccess;
+import dataaccess.GameQuery;
 import dataaccess.MemoryDataAccess;
 import dataaccess.MySqlDataAccess;
+import dataaccess.SignedTokenDataAccess;
+import dataaccess.VersionedDataAccess;
 import service.UserService;
 import service.GameService;
+import service.AnalysisService;
+import service.OpeningExplorer;
+import service.MatchmakingService;
+import service.RatingService;
+import service.TournamentService;
+import model.JsonCodec;
 import model.UserData;
 import model.AuthData;
 import model.LoginRequest;
-import model.ListGamesResult;
+import model.GameSummary;
 import model.GameData;
 import model.CreateGameRequest;
 import model.CreateGameResult;
 import model.JoinGameRequest;
+import model.AnalysisResult;
+import model.ExplorerResult;
+import model.QueueRequest;
+import model.QueueResult;
+import model.QueueStats;
+import model.LeaderboardEntry;
+import model.LeaderboardResult;
+import model.CreateTournamentRequest;
+import model.CreateTournamentResult;
+import model.TournamentData;
+import model.PositionHit;
+import model.PositionSearchResult;
+import chess.pgn.PgnWriter;
+import chess.engine.Search;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class Server {
 
+    private static final String JSON = "application/json";
+    private static final long TOKEN_TTL_MILLIS = TimeUnit.HOURS.toMillis(12);
+
+    private final Gson gson = JsonCodec.GSON;
     private final Javalin httpHandler;
     private final DataAccess dataAccess;
+    private final VersionedDataAccess versions;
     private final UserService userService;
     private final GameService gameService;
+    private final AnalysisService analysisService;
+    private final OpeningExplorer explorer;
+    private final RatingService ratingService;
+    private final MatchmakingService matchmaking;
+    private final TournamentService tournaments;
     private final WebSocketHandler webSocketHandler;
 
-    //fix the fallback hopefully and also catch the exception so it does the fallback and not crash the server
     public Server() {
+        this(null);
+    }
+
+    /**
+     * @param tokenKey signs stateless auth tokens, at least {@value SignedTokenDataAccess#MIN_KEY_BYTES}
+     *                 bytes; null keeps every token in the auth table
+     */
+    public Server(byte[] tokenKey) {
+        this(tokenKey, Search::new);
+    }
+
+    /**
+     * @param searches makes the engine behind analysis, one per search running at once
+     */
+    //fix the fallback hopefully and also catch the exception so it does the fallback and not crash the server
+    public Server(byte[] tokenKey, Supplier<Search> searches) {
         DataAccess built;
         try {
             built = new MySqlDataAccess();
@@ -37,11 +98,27 @@ public class Server {
             
             built = new MemoryDataAccess();
         }
-        dataAccess = built;
+        versions = new VersionedDataAccess(built);
+        SignedTokenDataAccess signedTokens = null;
+        if (tokenKey != null) {
+            try {
+                signedTokens = new SignedTokenDataAccess(versions, tokenKey, TOKEN_TTL_MILLIS);
+            } catch (DataAccessException ex) {
+                throw new IllegalStateException("couldn't load revoked tokens", ex);
+            }
+        }
+        dataAccess = signedTokens == null ? versions : signedTokens;
 
-        userService = new UserService(dataAccess);
+        userService = new UserService(dataAccess, signedTokens);
         gameService = new GameService(dataAccess);
-        webSocketHandler = new WebSocketHandler(dataAccess);
+        analysisService = new AnalysisService(dataAccess, searches);
+        explorer = new OpeningExplorer(dataAccess);
+        ratingService = new RatingService(dataAccess);
+        ratingService.recomputeEvery(6, TimeUnit.HOURS);
+        matchmaking = new MatchmakingService(dataAccess, gameService, ratingService::ratingOf,
+                MatchmakingService.DEFAULT_MAX_WAIT_MILLIS);
+        tournaments = new TournamentService(dataAccess, ratingService::ratingOf);
+        webSocketHandler = new WebSocketHandler(dataAccess, explorer, ratingService, tournaments, searches);
 
         httpHandler = Javalin.create(config -> {
             config.staticFiles.add("web");
@@ -62,53 +139,56 @@ public class Server {
         httpHandler.put("/game", this::handleJoinGame);
         httpHandler.delete("/session", this::handleLogout);
         httpHandler.get("/game", this::handleListGames);
+        httpHandler.get("/game/{id}", this::handleGetGame);
+        httpHandler.get("/game/{id}/analysis", this::handleAnalysis);
+        httpHandler.get("/games/export", this::handleExport);
+        httpHandler.get("/games/position", this::handlePositionSearch);
+        httpHandler.get("/explorer", this::handleExplorer);
+        httpHandler.post("/queue", this::handleQueue);
+        httpHandler.get("/queue", this::handleQueueStats);
+        httpHandler.get("/leaderboard", this::handleLeaderboard);
+        httpHandler.get("/leaderboard/{username}", this::handleStanding);
+        httpHandler.post("/tournament", this::handleCreateTournament);
+        httpHandler.get("/tournament/{id}", this::handleGetTournament);
+        httpHandler.put("/tournament/{id}", this::handleJoinTournament);
+        httpHandler.post("/tournament/{id}/round", this::handleStartRound);
         
         httpHandler.delete("/db", this::handleClear);
     }
 
 
     private void handleRegister(Context ctx) {
-        Gson gson = new Gson();
-        UserData req = gson.fromJson(ctx.body(), UserData.class);
+        UserData req = readBody(ctx, UserData.class);
 
         try {
             AuthData result = userService.register(req);
-            ctx.status(200);
-            ctx.result(gson.toJson(result));
+            respond(ctx, 200, result);
         }
         catch (DataAccessException e) {
             if (e.getMessage().equals("bad request")) {
-                ctx.status(400);
-                ctx.result(gson.toJson(Map.of("message", "Error: bad request")));
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
             } else if (e.getMessage().equals("already taken")) {
-                ctx.status(403);
-                ctx.result(gson.toJson(Map.of("message", "Error: already taken")));
+                respond(ctx, 403, Map.of("message", "Error: already taken"));
             }
             else {
-                ctx.status(500);
-                ctx.result(gson.toJson(Map.of("message", "Error: " + e.getMessage())));
+                respond(ctx, 500, Map.of("message", "Error: " + e.getMessage()));
             }
         }
     }
 
 
     private void handleLogin(Context ctx) {
-        Gson gson = new Gson();
-        LoginRequest req = gson.fromJson(ctx.body(), LoginRequest.class);
+        LoginRequest req = readBody(ctx, LoginRequest.class);
         try {
             AuthData result = userService.login(req);
-            ctx.status(200);
-            ctx.result(gson.toJson(result));
+            respond(ctx, 200, result);
         } catch (DataAccessException e) {
             if (e.getMessage().equals("bad request")) {
-                ctx.status(400);
-                ctx.result(gson.toJson(Map.of("message", "Error: bad request")));
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
             } else if (e.getMessage().equals("unauthorized")) {
-                ctx.status(401);
-                ctx.result(gson.toJson(Map.of("message", "Error: unauthorized")));
+                respond(ctx, 401, Map.of("message", "Error: unauthorized"));
             } else {
-                ctx.status(500);
-                ctx.result(gson.toJson(Map.of("message", "Error: " + e.getMessage())));
+                respond(ctx, 500, Map.of("message", "Error: " + e.getMessage()));
             }
         }
     }
@@ -117,70 +197,123 @@ public class Server {
     private void handleClear(Context ctx) {
         try {
             dataAccess.clear();
-            ctx.status(200);
-            ctx.result("{}");
+            respond(ctx, 200, Map.of());
         } catch (DataAccessException e) {
-            ctx.status(500);
-            Gson gson = new Gson();
-            ctx.result(gson.toJson(Map.of("message", "Error: " + e.getMessage())));
+            respond(ctx, 500, Map.of("message", "Error: " + e.getMessage()));
         }
     }
 
 
     private void handleLogout(Context ctx) {
-        Gson gson = new Gson();
         String authToken = ctx.header("authorization");
 
         try {
             userService.logout(authToken);
-            ctx.status(200);
-            ctx.result("{}");
+            respond(ctx, 200, Map.of());
         } catch (DataAccessException e) {
-            handleAuthError(ctx, gson, e);  
+            handleAuthError(ctx, e);  
         }
     }
 
 
     private void handleListGames(Context ctx) {
-        Gson gson = new Gson();
+        String authToken = ctx.header("authorization");
+
+        GameQuery query;
+        try {
+            Integer after = parseInteger(ctx.queryParam("after"));
+            Integer limit = parseInteger(ctx.queryParam("limit"));
+            boolean openSeats = Boolean.parseBoolean(ctx.queryParam("open"));
+            query = gameService.gameQuery(authToken, after, limit, ctx.queryParam("player"),
+                    openSeats, ctx.queryParam("status"));
+        } catch (NumberFormatException e) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+            return;
+        } catch (DataAccessException e) {
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
+            } else {
+                handleAuthError(ctx, e);
+            }
+            return;
+        }
+
+        // the lobby's version is read before the games, so they're never older than the tag
+        String tag = entityTag(versions.lobbyVersion());
+        if (notModified(ctx, tag)) {
+            return;
+        }
+
+        // written a game at a time as they come from the database, as {"games": [...], "next": cursor}
+        ctx.status(200);
+        ctx.contentType(JSON);
+        try {
+            JsonWriter out = gson.newJsonWriter(responseWriter(ctx));
+            out.beginObject();
+            out.name("games");
+            out.beginArray();
+            Integer next = gameService.listGames(query, game -> gson.toJson(game, GameSummary.class, out));
+            out.endArray();
+            out.name("next").value(next);
+            out.endObject();
+            out.flush();
+        } catch (DataAccessException e) {
+            // once games have gone out the status can't change, so the listing just ends short
+            if (!ctx.res().isCommitted()) {
+                ctx.res().resetBuffer();
+                handleAuthError(ctx, e);
+            }
+        } catch (IOException | JsonIOException e) {
+            // the client went away; nothing left to tell it
+        }
+    }
+
+
+    private void handleGetGame(Context ctx) {
         String authToken = ctx.header("authorization");
 
         try {
-            List<GameData> games = gameService.listGames(authToken);
-            ctx.status(200);
-            ctx.result(gson.toJson(new ListGamesResult(games.toArray(new GameData[0]))));
+            Integer gameID = parseInteger(ctx.pathParam("id"));
+            String tag = gameID == null ? null : entityTag(versions.gameVersion(gameID));
+            if (tag != null && matchesTag(ctx.header("If-None-Match"), tag)) {
+                gameService.authenticate(authToken);
+                notModified(ctx, tag);
+                return;
+            }
+            GameData game = gameService.getGame(authToken, gameID);
+            ctx.header("ETag", tag);
+            respond(ctx, 200, game);
+        } catch (NumberFormatException e) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
         } catch (DataAccessException e) {
-             handleAuthError(ctx, gson, e);
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
+            } else {
+                handleAuthError(ctx, e);
+            }
         }
     }
 
 
     private void handleCreateGame(Context ctx) {
-        Gson gson = new Gson();
         String authToken = ctx.header("authorization");
 
-        CreateGameRequest req = gson.fromJson(ctx.body(), CreateGameRequest.class);
+        CreateGameRequest req = readBody(ctx, CreateGameRequest.class);
 
 
         try {
-            int id = gameService.createGame(authToken, req.gameName());
-            ctx.status(200);
-
-            ctx.result(gson.toJson(new CreateGameResult(id)));
+            int id = gameService.createGame(authToken, req.gameName(), req.baseSeconds(), req.incrementSeconds());
+            respond(ctx, 200, new CreateGameResult(id));
         } catch (DataAccessException e) {
             if (e.getMessage().equals("unauthorized")) {
 
 
-                ctx.status(401);
-                ctx.result(gson.toJson(Map.of("message", "Error: unauthorized")));
+                respond(ctx, 401, Map.of("message", "Error: unauthorized"));
             } else if (e.getMessage().equals("bad request"))   {
 
-                ctx.status(400);
-                ctx.result(gson.toJson(Map.of("message", "Error: bad request")));
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
             } else {
-                ctx.status(500);
-
-                ctx.result(gson.toJson(Map.of("message", "Error: " + e.getMessage())));
+                respond(ctx, 500, Map.of("message", "Error: " + e.getMessage()));
 
             }
 
@@ -192,47 +325,360 @@ public class Server {
 
     //  I need to add better error handling for edge cases here later so I dont have more weird issues again
     private void handleJoinGame(Context ctx) {
-        Gson gson = new Gson();
         String authToken = ctx.header("authorization");
 
-        JoinGameRequest req = gson.fromJson(ctx.body(), JoinGameRequest.class);
+        JoinGameRequest req = readBody(ctx, JoinGameRequest.class);
 
         try {
             gameService.joinGame(authToken, req.playerColor(), req.gameID());
 
-            ctx.status(200);
-            ctx.result("{}");
+            respond(ctx, 200, Map.of());
             //then catch ye
         } catch (DataAccessException e) {
             if (e.getMessage().equals("bad request")) {
 
-                ctx.status(400);
-                ctx.result(gson.toJson(Map.of("message", "Error: bad request")));
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
             } else if (e.getMessage().equals("unauthorized"))       {
-                ctx.status(401);
+                respond(ctx, 401, Map.of("message", "Error: unauthorized"));
+            } else if (e.getMessage().equals("already taken")) {
+                respond(ctx, 403, Map.of("message", "Error: already taken"));
+            } else {
+                respond(ctx, 500, Map.of("message", "Error: " + e.getMessage()));
+            }
+        }
+    }
+
+
+    private void handleAnalysis(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            Integer gameID = parseInteger(ctx.pathParam("id"));
+            Integer depth = parseInteger(ctx.queryParam("depth"));
+            AnalysisResult result = analysisService.analyze(authToken, gameID, depth);
+            respond(ctx, 200, result);
+        } catch (NumberFormatException e) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+        } catch (DataAccessException e) {
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
+            } else {
+                handleAuthError(ctx, e);
+            }
+        }
+    }
+
+
+    private void handlePositionSearch(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            List<PositionHit> hits = gameService.findGamesWithPosition(authToken, ctx.queryParam("fen"));
+            respond(ctx, 200, new PositionSearchResult(hits.toArray(new PositionHit[0])));
+        } catch (DataAccessException e) {
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
+            } else {
+                handleAuthError(ctx, e);
+            }
+        }
+    }
+
+
+    private void handleExplorer(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            ExplorerResult result = explorer.explore(authToken, ctx.queryParam("fen"));
+            respond(ctx, 200, result);
+        } catch (DataAccessException e) {
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
+            } else {
+                handleAuthError(ctx, e);
+            }
+        }
+    }
+
 
-                ctx.result(gson.toJson(Map.of("message", "Error: unauthorized")));
+    //holds the request open until the player is paired or gives up waiting
+    private void handleQueue(Context ctx) {
+        String authToken = ctx.header("authorization");
+        QueueRequest body = readBody(ctx, QueueRequest.class);
+        QueueRequest req = body == null ? new QueueRequest(null, null) : body;
+
+        try {
+            CompletableFuture<QueueResult> pairing = matchmaking.enqueue(authToken, req.baseSeconds(), req.incrementSeconds());
+            // answered from whichever thread completes the pairing, and left to Javalin to write
+            ctx.future(() -> pairing.handle((result, ex) -> {
+                if (ex == null) {
+                    ctx.status(200);
+                    ctx.result(gson.toJson(result));
+                } else {
+                    Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                    ctx.status(500);
+                    ctx.result(gson.toJson(Map.of("message", "Error: " + cause.getMessage())));
+                }
+                return null;
+            }));
+        } catch (DataAccessException e) {
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
             } else if (e.getMessage().equals("already taken")) {
-                ctx.status(403);
+                respond(ctx, 403, Map.of("message", "Error: already taken"));
+            } else {
+                handleAuthError(ctx, e);
+            }
+        }
+    }
+
+
+    private void handleQueueStats(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            QueueStats stats = matchmaking.stats(authToken);
+            respond(ctx, 200, stats);
+        } catch (DataAccessException e) {
+            handleAuthError(ctx, e);
+        }
+    }
+
+
+    private void handleLeaderboard(Context ctx) {
+        String authToken = ctx.header("authorization");
 
-                ctx.result(gson.toJson(Map.of("message", "Error: already taken")));
+        try {
+            Integer offset = parseInteger(ctx.queryParam("offset"));
+            Integer limit = parseInteger(ctx.queryParam("limit"));
+            LeaderboardResult result = ratingService.leaderboard(authToken, offset, limit);
+            respond(ctx, 200, result);
+        } catch (NumberFormatException e) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+        } catch (DataAccessException e) {
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
             } else {
-                ctx.status(500);
+                handleAuthError(ctx, e);
+            }
+        }
+    }
+
+
+    private void handleStanding(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            LeaderboardEntry standing = ratingService.standing(authToken, ctx.pathParam("username"));
+            respond(ctx, 200, standing);
+        } catch (DataAccessException e) {
+            if (e.getMessage().equals("bad request")) {
+                respond(ctx, 400, Map.of("message", "Error: bad request"));
+            } else {
+                handleAuthError(ctx, e);
+            }
+        }
+    }
+
+
+    private void handleCreateTournament(Context ctx) {
+        String authToken = ctx.header("authorization");
+        CreateTournamentRequest req = readBody(ctx, CreateTournamentRequest.class);
+
+        try {
+            int id = tournaments.createTournament(authToken, req);
+            respond(ctx, 200, new CreateTournamentResult(id));
+        } catch (DataAccessException e) {
+            handleTournamentError(ctx, e);
+        }
+    }
+
+
+    private void handleGetTournament(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            TournamentData tournament = tournaments.getTournament(authToken, parseInteger(ctx.pathParam("id")));
+            respond(ctx, 200, tournament);
+        } catch (NumberFormatException e) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+        } catch (DataAccessException e) {
+            handleTournamentError(ctx, e);
+        }
+    }
+
+
+    private void handleJoinTournament(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            tournaments.join(authToken, parseInteger(ctx.pathParam("id")));
+            respond(ctx, 200, Map.of());
+        } catch (NumberFormatException e) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+        } catch (DataAccessException e) {
+            handleTournamentError(ctx, e);
+        }
+    }
+
+
+    //pairs the round, creates every game in one batch and tells the players over the websocket
+    private void handleStartRound(Context ctx) {
+        String authToken = ctx.header("authorization");
+
+        try {
+            TournamentData tournament = tournaments.startRound(authToken, parseInteger(ctx.pathParam("id")));
+            webSocketHandler.roundStarted(tournament);
+            respond(ctx, 200, tournament);
+        } catch (NumberFormatException e) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+        } catch (DataAccessException e) {
+            handleTournamentError(ctx, e);
+        }
+    }
+
+
+    private void handleTournamentError(Context ctx, DataAccessException e) {
+        if (e.getMessage().equals("bad request")) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+        } else if (e.getMessage().equals("already taken")) {
+            respond(ctx, 403, Map.of("message", "Error: already taken"));
+        } else {
+            handleAuthError(ctx, e);
+        }
+    }
+
+
+    //streams straight to the response so memory doesnt grow with the number of games
+    private void handleExport(Context ctx) {
+        String authToken = ctx.header("authorization");
+        String format = ctx.queryParam("format") == null ? "pgn" : ctx.queryParam("format");
+        if (!format.equals("pgn") && !format.equals("ndjson")) {
+            respond(ctx, 400, Map.of("message", "Error: bad request"));
+            return;
+        }
+
+        ctx.status(200);
+        ctx.contentType(format.equals("pgn") ? "application/x-chess-pgn" : "application/x-ndjson");
+        Writer out = responseWriter(ctx);
+        try {
+            gameService.exportGames(authToken, ctx.queryParam("player"), game -> {
+                if (format.equals("pgn")) {
+                    writePgn(out, game);
+                } else {
+                    gson.toJson(game, out);
+                    out.write('\n');
+                }
+            });
+            out.flush();
+        } catch (DataAccessException e) {
+            // once games have gone out the status can't change, so the export just ends short
+            if (!ctx.res().isCommitted()) {
+                ctx.res().resetBuffer();
+                handleAuthError(ctx, e);
+            }
+        } catch (IOException e) {
+            // the client went away; nothing left to tell it
+        }
+    }
+
+
+    private static void writePgn(Writer out, GameData game) throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", game.gameName() == null ? "?" : game.gameName());
+        tags.put("Site", "240 Chess");
+        tags.put("White", game.whiteUsername() == null ? "?" : game.whiteUsername());
+        tags.put("Black", game.blackUsername() == null ? "?" : game.blackUsername());
+        tags.put("GameId", String.valueOf(game.gameID()));
+        PgnWriter.write(out, tags, game.game(), PgnWriter.result(game.game()));
+    }
+
 
-                ctx.result(gson.toJson(Map.of("message", "Error: " + e.getMessage())));
+    /**
+     * Writes a JSON body straight to the response, so no response is ever held as one string
+     */
+    private void respond(Context ctx, int status, Object body) {
+        ctx.status(status);
+        ctx.contentType(JSON);
+        try {
+            Writer out = responseWriter(ctx);
+            gson.toJson(body, out);
+            out.flush();
+        } catch (IOException | JsonIOException e) {
+            // the client went away; nothing left to tell it
+        }
+    }
+
+
+    /**
+     * Parses the request body as it arrives rather than reading it into a string first
+     *
+     * @return the body, or null if it was empty
+     */
+    private <T> T readBody(Context ctx, Class<T> type) {
+        return gson.fromJson(new InputStreamReader(ctx.bodyInputStream(), StandardCharsets.UTF_8), type);
+    }
+
+
+    private static Writer responseWriter(Context ctx) {
+        return new BufferedWriter(new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * A strong tag for a version counted since this server started, so a tag from before a
+     * restart never matches
+     */
+    private String entityTag(long version) {
+        return "\"" + Long.toString(versions.epoch(), 36) + "." + version + "\"";
+    }
+
+
+    /**
+     * Answers 304 with no body if the client already has this tag, and otherwise just sets it
+     * for the full answer to go out with
+     *
+     * @return whether the answer has been given
+     */
+    private static boolean notModified(Context ctx, String tag) {
+        ctx.header("ETag", tag);
+        if (!matchesTag(ctx.header("If-None-Match"), tag)) {
+            return false;
+        }
+        ctx.status(304);
+        return true;
+    }
+
+
+    //If-None-Match is a comma separated list, and it compares weakly so a W/ prefix doesn't matter
+    private static boolean matchesTag(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals(tag)) {
+                return true;
             }
         }
+        return false;
+    }
+
+
+    private static Integer parseInteger(String value) {
+        return value == null || value.isEmpty() ? null : Integer.valueOf(value);
     }
 
 
-    private void handleAuthError(Context ctx, Gson gson, DataAccessException e) {
+    private void handleAuthError(Context ctx, DataAccessException e) {
         if (e.getMessage().equals("unauthorized")) {
-            ctx.status(401);
-            ctx.result(gson.toJson(Map.of("message", "Error: unauthorized")));
+            respond(ctx, 401, Map.of("message", "Error: unauthorized"));
         } else {
             
-            ctx.status(500);
-            ctx.result(gson.toJson(Map.of("message", "Error: " + e.getMessage())));
+            respond(ctx, 500, Map.of("message", "Error: " + e.getMessage()));
         }
     }
 
@@ -245,5 +691,8 @@ public class Server {
 
     public void stop() {
         httpHandler.stop();
+        webSocketHandler.shutdown();
+        matchmaking.shutdown();
+        ratingService.shutdown();
     }
 }
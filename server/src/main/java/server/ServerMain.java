@@ -1,13 +1,41 @@
 package server;
 
 import chess.*;
+import chess.engine.Evaluator;
+import chess.engine.MaterialEvaluator;
+import chess.engine.NnueEvaluator;
+import chess.engine.NnueNetwork;
+import chess.engine.Search;
+import chess.engine.Tablebases;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.function.Supplier;
 
 public class ServerMain {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         var piece = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
         System.out.println("♕ 240 Chess Server: " + piece);
 
-        Server server = new Server();
+        // a base64 key turns on signed auth tokens, checked without the database
+        String tokenKey = System.getenv("CHESS_TOKEN_KEY");
+        byte[] key = tokenKey == null || tokenKey.isEmpty() ? null : Base64.getDecoder().decode(tokenKey);
+
+        // a network file swaps the material count in analysis for the network's evaluation
+        String networkFile = System.getenv("CHESS_NNUE_NETWORK");
+        NnueNetwork network = networkFile == null || networkFile.isEmpty()
+                ? null
+                : NnueNetwork.load(Path.of(networkFile));
+        Supplier<Evaluator> evaluators = network == null ? MaterialEvaluator::new : () -> new NnueEvaluator(network);
+
+        // a directory of generated tables lets analysis play small endings perfectly
+        String tableDirectory = System.getenv("CHESS_TABLEBASES");
+        Tablebases tablebases = tableDirectory == null || tableDirectory.isEmpty()
+                ? null
+                : new Tablebases(Path.of(tableDirectory));
+
+        Server server = new Server(key, () -> new Search(evaluators.get(), tablebases));
         server.run(8080);
         //fix json string output
 
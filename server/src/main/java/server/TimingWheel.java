@@ -0,0 +1,160 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hashed timing wheel: one thread runs any number of timeouts at a fixed tick.
+ * <p>
+ * Timeouts hash into a ring of buckets by the tick they're due on; one further away than a
+ * full turn of the ring waits out the extra turns in its bucket. Each tick the thread looks
+ * at just the current bucket, so scheduling and cancelling are O(1) and a tick costs only
+ * what's due around then, however many timeouts are waiting. Timeouts fire up to one tick
+ * late, never early.
+ * <p>
+ * Other threads never touch the buckets: new timeouts go through a queue the wheel thread
+ * drains every tick, and a cancelled timeout is just marked and dropped when its bucket
+ * comes round.
+ */
+public class TimingWheel {
+
+    private static final int WAITING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final long tickNanos;
+    private final List<Timeout>[] buckets;
+    private final int mask;
+    private final Executor executor;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    // ticks done so far; wheel thread only
+    private long tick;
+
+    /**
+     * @param tickMillis how often the wheel turns, which is how late a timeout may fire
+     * @param size       buckets in the ring, rounded up to a power of two
+     * @param executor   runs the tasks of expired timeouts, so slow ones don't hold up the wheel
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int size, Executor executor) {
+        if (tickMillis < 1 || size < 1) {
+            throw new IllegalArgumentException("need a tick of at least a millisecond and at least one bucket");
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int buckets = 1;
+        while (buckets < size) {
+            buckets <<= 1;
+        }
+        this.buckets = new List[buckets];
+        for (int i = 0; i < buckets; i++) {
+            this.buckets[i] = new ArrayList<>();
+        }
+        this.mask = buckets - 1;
+        this.executor = executor;
+        this.worker = new Thread(this::run, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Runs a task after a delay
+     *
+     * @param delayMillis how long to wait; zero or less runs it on the next tick
+     * @return the timeout, which can be cancelled until it fires
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        long delay = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(System.nanoTime() - startNanos + delay, task);
+        added.add(timeout);
+        return timeout;
+    }
+
+    public void shutdown() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long wake = (tick + 1) * tickNanos;
+            long sleep = wake - (System.nanoTime() - startNanos);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+            placeAdded();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void placeAdded() {
+        for (Timeout timeout = added.poll(); timeout != null; timeout = added.poll()) {
+            if (timeout.state.get() == CANCELLED) {
+                continue;
+            }
+            // tick n is handled (n + 1) ticks in, so this is the first tick handled at or after
+            // the deadline, or the current one if that has gone by
+            long due = Math.max((timeout.deadlineNanos + tickNanos - 1) / tickNanos - 1, tick);
+            timeout.rounds = (due - tick) / buckets.length;
+            buckets[(int) (due & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.state.get() == CANCELLED) {
+                continue;
+            }
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            if (timeout.state.compareAndSet(WAITING, EXPIRED)) {
+                try {
+                    executor.execute(timeout.task);
+                } catch (RuntimeException ex) {
+                    System.out.println("timeout task couldn't run: " + ex);
+                }
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    /**
+     * A scheduled task
+     */
+    public static final class Timeout {
+        private final long deadlineNanos;
+        private final Runnable task;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        // full turns of the ring still to wait; wheel thread only
+        private long rounds;
+
+        private Timeout(long deadlineNanos, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.task = task;
+        }
+
+        /**
+         * Stops the task from running
+         *
+         * @return false if it already has, or was already cancelled
+         */
+        public boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+    }
+}
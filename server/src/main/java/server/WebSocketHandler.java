@@ -1,12 +1,19 @@
 package server;
 
+import chess.ChessClock;
 import chess.ChessGame;
+import chess.engine.Search;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
 import model.AuthData;
 import model.GameData;
+import model.JsonCodec;
+import model.TournamentData;
+import model.TournamentPairing;
+import service.OpeningExplorer;
+import service.RatingService;
+import service.TournamentService;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.*;
@@ -16,60 +23,162 @@ import websocket.commands.UserGameCommand;
 import websocket.messages.ServerMessage;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 @WebSocket
 public class WebSocketHandler {
 
     private final ConnectionManager connectionManager = new ConnectionManager();
+    private final AnalysisScheduler analysis;
+    private final GameClocks clocks = new GameClocks(this::handleFlag);
+    // commands and flag checks for the same game run one at a time, so none works from a stale game
+    private final ConcurrentHashMap<Integer, GameChannel> channels = new ConcurrentHashMap<>();
     private final DataAccess dataAccess;
+    private final OpeningExplorer explorer;
+    private final RatingService ratings;
+    private final TournamentService tournaments;
 
 
-    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final Gson gson = JsonCodec.GSON_WITH_NULLS;
 
     public WebSocketHandler(DataAccess dataAccess)    {
+        this(dataAccess, new OpeningExplorer(dataAccess), new RatingService(dataAccess), null, Search::new);
+    }
+
+    /**
+     * @param tournaments told when games end, or null if there are no tournaments
+     * @param searches    makes the search for each live evaluation
+     */
+    public WebSocketHandler(DataAccess dataAccess, OpeningExplorer explorer, RatingService ratings,
+                            TournamentService tournaments, Supplier<Search> searches) {
+        this.analysis = new AnalysisScheduler(connectionManager, searches);
         this.dataAccess = dataAccess;
+        this.explorer = explorer;
+        this.ratings = ratings;
+        this.tournaments = tournaments;
     }
 
     @OnWebSocketMessage
-    public void onMessage(Session session, String message) throws IOException {
+    public void onMessage(Session session, String message) {
 
         UserGameCommand command = gson.fromJson(message, UserGameCommand.class);
 
-        switch (command.getCommandType()) {
-            case CONNECT -> handleConnect(session, command);
-            case MAKE_MOVE -> {
-                MakeMoveCommand moveCmd = gson.fromJson(message, MakeMoveCommand.class);
-                handleMakeMove(session, moveCmd);
+        withGame(command.getGameID(), out -> {
+            switch (command.getCommandType()) {
+                case CONNECT -> handleConnect(out, session, command);
+                // the codec reads a MAKE_MOVE as a MakeMoveCommand already
+                case MAKE_MOVE -> handleMakeMove(out, session, (MakeMoveCommand) command);
+                case LEAVE -> handleLeave(out, session, command);
+                case RESIGN -> handleResign(out, session, command);
+                case CLAIM_DRAW -> handleClaimDraw(out, session, command);
             }
-            case LEAVE -> handleLeave(session, command);
-            case RESIGN -> handleResign(session, command);
+        });
+    }
+
+    /**
+     * Runs a command holding its game's lock, then sends what it queued after letting go, so
+     * the next command for the game never waits on a slow connection
+     */
+    private void withGame(Integer gameID, GameCommand command) {
+        // no game is numbered 0, so commands without one share it
+        int key = gameID == null ? 0 : gameID;
+        GameChannel channel = channels.compute(key, (id, held) -> {
+            GameChannel taken = held == null ? new GameChannel() : held;
+            taken.holders++;
+            return taken;
+        });
+        try {
+            synchronized (channel) {
+                command.run(channel);
+            }
+        } finally {
+            channel.deliver();
+            channels.computeIfPresent(key, (id, held) -> --held.holders == 0 ? null : held);
         }
     }
 
-    private void handleConnect(Session session, UserGameCommand command) throws IOException {
+    @FunctionalInterface
+    private interface GameCommand {
+        void run(GameChannel out);
+    }
+
+    @FunctionalInterface
+    private interface Delivery {
+        void send() throws IOException;
+    }
+
+    /**
+     * One game's lock, and the messages its commands have queued but not sent. The messages
+     * go out in the order they were queued, sent by whichever thread finds nobody else
+     * sending; the entry is dropped once no thread holds it.
+     */
+    private static final class GameChannel {
+        // guarded by the channels map
+        private int holders;
+        private final ArrayDeque<Delivery> outbox = new ArrayDeque<>();
+        private boolean sending;
+
+        void queue(Delivery delivery) {
+            synchronized (outbox) {
+                outbox.add(delivery);
+            }
+        }
+
+        void deliver() {
+            synchronized (outbox) {
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            while (true) {
+                Delivery next;
+                synchronized (outbox) {
+                    next = outbox.poll();
+                    if (next == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    next.send();
+                } catch (IOException | RuntimeException e) {
+                    // one dropped connection shouldn't hold up the rest of the game's messages
+                }
+            }
+        }
+    }
+
+    private void handleConnect(GameChannel out, Session session, UserGameCommand command) {
         try {
             AuthData auth = dataAccess.getAuth(command.getAuthToken());
             if (auth == null) {
 
-                sendError(session, "Error: unauthorized");
+                sendError(out, session, "Error: unauthorized");
                 return;
             }
 
             GameData gameData = dataAccess.getGame(command.getGameID());
             if (gameData == null) {
-                sendError(session, "Error: game not found");
+                sendError(out, session, "Error: game not found");
 
                 return;
             }
 
-            connectionManager.add(auth.username(), session, command.getGameID());
+            String username = auth.username();
+            boolean watchingEvaluation = command.wantsEvaluation()
+                    && !username.equals(gameData.whiteUsername())
+                    && !username.equals(gameData.blackUsername());
+            connectionManager.add(username, session, command.getGameID(), watchingEvaluation);
 
 
             ServerMessage loadGame = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME);
             loadGame.setGame(gameData.game());
-            session.getRemote().sendString(gson.toJson(loadGame));
-
-            String username = auth.username();
+            send(out, session, gson.toJson(loadGame));
 
             String notificationMsg;
             if (username.equals(gameData.whiteUsername())) {
@@ -83,24 +192,33 @@ public class WebSocketHandler {
             ServerMessage notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
             notification.setMessage(notificationMsg);
 
-            connectionManager.broadcast(command.getGameID(), session, gson.toJson(notification));
+            broadcast(out, command.getGameID(), session, gson.toJson(notification));
+
+            if (watchingEvaluation) {
+                String evaluation = analysis.watcherJoined(command.getGameID(), gameData.game());
+                if (evaluation != null) {
+                    send(out, session, evaluation);
+                }
+            }
+            // after a restart nothing is watching the clock until someone comes back to the game
+            clocks.update(gameData.gameID(), gameData.game());
 
         } catch (DataAccessException e) {
-            sendError(session, "Error: " + e.getMessage());
+            sendError(out, session, "Error: " + e.getMessage());
         }
     }
 
-    private void handleMakeMove(Session session, MakeMoveCommand command) throws IOException {
+    private void handleMakeMove(GameChannel out, Session session, MakeMoveCommand command) {
         try {
             AuthData auth = dataAccess.getAuth(command.getAuthToken());
             if (auth == null) {
-                sendError(session, "Error: unauthorized");
+                sendError(out, session, "Error: unauthorized");
                 return;
             }
 
             GameData gameData = dataAccess.getGame(command.getGameID());
             if (gameData == null) {
-                sendError(session, "Error: game not found");
+                sendError(out, session, "Error: game not found");
                 return;
             }
 
@@ -108,7 +226,7 @@ public class WebSocketHandler {
             String username = auth.username();
 
             if (game.getTeamTurn() == null) {
-                sendError(session, "Error: game is already over");
+                sendError(out, session, "Error: game is already over");
                 return;
             }
 
@@ -120,45 +238,60 @@ public class WebSocketHandler {
             }
 
             if (playerColor == null) {
-                sendError(session, "Error: you are an observer, you can't make moves");
+                sendError(out, session, "Error: you are an observer, you can't make moves");
                 return;
             }
 
             if (game.getTeamTurn() != playerColor) {
-                sendError(session, "Error: it is not your turn");
+                sendError(out, session, "Error: it is not your turn");
                 return;
             }
 
+            long now = System.currentTimeMillis();
+            ChessClock clock = game.getClock();
+            if (clock != null && clock.isFlagged(playerColor, now)) {
+                flagFell(out, gameData, game, playerColor);
+                return;
+            }
+
+            // makeMove checks just this move, and says why it's refused
             try {
                 game.makeMove(command.getMove());
             } catch (chess.InvalidMoveException e) {
-                sendError(session, "Error: invalid move - " + e.getMessage());
+                sendError(out, session, "Error: invalid move - " + e.getMessage());
                 return;
             }
+            analysis.cancel(command.getGameID());
+            if (clock != null) {
+                clock.punch(playerColor, now);
+            }
 
             dataAccess.updateGame(new GameData(gameData.gameID(), gameData.whiteUsername(),
                     gameData.blackUsername(), gameData.gameName(), game));
+            dataAccess.indexPosition(game.positionHash(), gameData.gameID(), game.getMoveCount());
 
             ServerMessage loadGame = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME);
             loadGame.setGame(game);
-            connectionManager.broadcastToAll(command.getGameID(), gson.toJson(loadGame));
+            broadcastToAll(out, command.getGameID(), gson.toJson(loadGame));
 
             var move = command.getMove();
             String moveDesc = posToString(move.getStartPosition()) + " to " + posToString(move.getEndPosition());
             ServerMessage moveNotification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
             moveNotification.setMessage(username + " moved " + moveDesc);
-            connectionManager.broadcast(command.getGameID(), session, gson.toJson(moveNotification));
+            broadcast(out, command.getGameID(), session, gson.toJson(moveNotification));
 
-            checkGameStatus(game, gameData, playerColor, username, command.getGameID());
+            checkGameStatus(out, game, gameData, playerColor, username, command.getGameID());
+            analysis.positionChanged(command.getGameID(), game);
+            clocks.update(gameData.gameID(), game);
 
         } catch (DataAccessException e) {
-            sendError(session, "Error: " + e.getMessage());
+            sendError(out, session, "Error: " + e.getMessage());
         }
     }
 
-    private void checkGameStatus(ChessGame game, GameData gameData,
+    private void checkGameStatus(GameChannel out, ChessGame game, GameData gameData,
                                   ChessGame.TeamColor playerColor, String username, int gameID)
-            throws IOException, DataAccessException {
+            throws DataAccessException {
         ChessGame.TeamColor opponent = (playerColor == ChessGame.TeamColor.WHITE)
                 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
         String opponentName = (opponent == ChessGame.TeamColor.WHITE)
@@ -167,32 +300,65 @@ public class WebSocketHandler {
         if (game.isInCheckmate(opponent)) {
             ServerMessage cm = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
             cm.setMessage(opponentName + " is in checkmate! " + username + " wins!");
-            connectionManager.broadcastToAll(gameID, gson.toJson(cm));
-            game.setTeamTurn(null);
-            dataAccess.updateGame(new GameData(gameData.gameID(), gameData.whiteUsername(),
-                    gameData.blackUsername(), gameData.gameName(), game));
+            broadcastToAll(out, gameID, gson.toJson(cm));
+            endGame(gameData, game, ChessGame.Result.winFor(playerColor));
         } else if (game.isInStalemate(opponent)) {
             ServerMessage sm = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
             sm.setMessage("Stalemate! The game is a draw.");
-            connectionManager.broadcastToAll(gameID, gson.toJson(sm));
-            game.setTeamTurn(null);
-            dataAccess.updateGame(new GameData(gameData.gameID(), gameData.whiteUsername(),
-                    gameData.blackUsername(), gameData.gameName(), game));
-        } else if (game.isInCheck(opponent)) {
-            ServerMessage chk = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
-            chk.setMessage(opponentName + " is in check!");
-            connectionManager.broadcastToAll(gameID, gson.toJson(chk));
+            broadcastToAll(out, gameID, gson.toJson(sm));
+            endGame(gameData, game, ChessGame.Result.DRAW);
+        } else if (game.isFivefoldRepetition()) {
+            ServerMessage rm = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
+            rm.setMessage("Fivefold repetition! The game is a draw.");
+            broadcastToAll(out, gameID, gson.toJson(rm));
+            endGame(gameData, game, ChessGame.Result.DRAW);
+        } else {
+            if (game.isInCheck(opponent)) {
+                ServerMessage chk = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
+                chk.setMessage(opponentName + " is in check!");
+                broadcastToAll(out, gameID, gson.toJson(chk));
+            }
+            // a draw by threefold repetition is only a draw if the player on move claims it
+            if (game.isThreefoldRepetition()) {
+                ServerMessage rm = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
+                rm.setMessage("Threefold repetition: " + opponentName + " may claim a draw.");
+                broadcastToAll(out, gameID, gson.toJson(rm));
+            }
         }
     }
 
-    private void handleLeave(Session session, UserGameCommand command) throws IOException      {
+    private void endGame(GameData gameData, ChessGame game, ChessGame.Result result) throws DataAccessException {
+        if (game.getClock() != null) {
+            game.getClock().stop(System.currentTimeMillis());
+        }
+        game.endGame(result);
+        GameData finished = new GameData(gameData.gameID(), gameData.whiteUsername(),
+                gameData.blackUsername(), gameData.gameName(), game);
+        dataAccess.updateGame(finished);
+        clocks.update(gameData.gameID(), game);
+        try {
+            explorer.gameFinished(game);
+        } catch (DataAccessException e) {
+            // the game is over and saved either way; a rebuild picks up what was missed
+        }
+        try {
+            ratings.gameFinished(finished);
+        } catch (DataAccessException e) {
+            // likewise the next rating recompute
+        }
+        if (tournaments != null) {
+            tournaments.gameFinished(finished);
+        }
+    }
+
+    private void handleLeave(GameChannel out, Session session, UserGameCommand command) {
 
         try {
 
             AuthData auth = dataAccess.getAuth(command.getAuthToken());
             if (auth == null) {
 
-                sendError(session, "Error: unauthorized");
+                sendError(out, session, "Error: unauthorized");
                 return;
             }
 
@@ -212,37 +378,37 @@ public class WebSocketHandler {
                 } else if (username.equals(black)) {
                     black = null;
                 }
-                GameData updated = new GameData(gameData.gameID(), white, black,
-                        gameData.gameName(), gameData.game());
+                GameData updated = gameData.withPlayers(white, black);
 
                 dataAccess.updateGame(updated);
             }
 
             ServerMessage notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
             notification.setMessage(username + " left the game");
-            connectionManager.broadcast(command.getGameID(), session, gson.toJson(notification));
+            broadcast(out, command.getGameID(), session, gson.toJson(notification));
 
             connectionManager.remove(session);
+            analysis.watchersChanged(command.getGameID());
 
         } catch (DataAccessException e) {
-            sendError(session, "Error: " + e.getMessage());
+            sendError(out, session, "Error: " + e.getMessage());
         }
     }
 
-    private void handleResign(Session session, UserGameCommand command) throws IOException {
+    private void handleResign(GameChannel out, Session session, UserGameCommand command) {
 
 
         try {
             AuthData auth = dataAccess.getAuth(command.getAuthToken());
 
             if (auth == null) {
-                sendError(session, "Error: unauthorized");
+                sendError(out, session, "Error: unauthorized");
                 return;
             }
 
             GameData gameData = dataAccess.getGame(command.getGameID());
             if (gameData == null)      {
-                sendError(session, "Error: game not found");
+                sendError(out, session, "Error: game not found");
                 return;
 
             }
@@ -252,32 +418,150 @@ public class WebSocketHandler {
 
 
             if (!username.equals(gameData.whiteUsername()) && !username.equals(gameData.blackUsername())) {
-                sendError(session, "Error: observers cannot resign");
+                sendError(out, session, "Error: observers cannot resign");
 
                 return;
             }
 
             if (game.getTeamTurn() == null) {
 
-                sendError(session, "Error: game is already over");
+                sendError(out, session, "Error: game is already over");
                 return;
             }
 
 
-            game.setTeamTurn(null);
+            forfeit(out, gameData, game, username.equals(gameData.whiteUsername())
+                    ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK, username + " resigned. Game over.");
 
-            GameData updated = new GameData(gameData.gameID(), gameData.whiteUsername(),
-                    gameData.blackUsername(), gameData.gameName(), game);
-            dataAccess.updateGame(updated);
+        } catch (DataAccessException e) {
+            sendError(out, session, "Error: " + e.getMessage());
+        }
+    }
 
-            ServerMessage notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
-            notification.setMessage(username + " resigned. Game over.");
+    private void handleClaimDraw(GameChannel out, Session session, UserGameCommand command) {
+        try {
+            AuthData auth = dataAccess.getAuth(command.getAuthToken());
+            if (auth == null) {
+                sendError(out, session, "Error: unauthorized");
+                return;
+            }
 
-            connectionManager.broadcastToAll(command.getGameID(), gson.toJson(notification));
+            GameData gameData = dataAccess.getGame(command.getGameID());
+            if (gameData == null) {
+                sendError(out, session, "Error: game not found");
+                return;
+            }
+
+            String username = auth.username();
+            ChessGame game = gameData.game();
+            if (!username.equals(gameData.whiteUsername()) && !username.equals(gameData.blackUsername())) {
+                sendError(out, session, "Error: observers cannot claim a draw");
+                return;
+            }
+            if (game.getTeamTurn() == null) {
+                sendError(out, session, "Error: game is already over");
+                return;
+            }
+
+            ChessGame.TeamColor playerColor = username.equals(gameData.whiteUsername())
+                    ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            if (game.getTeamTurn() != playerColor) {
+                sendError(out, session, "Error: only the player on move can claim a draw");
+                return;
+            }
+            if (!game.isThreefoldRepetition()) {
+                sendError(out, session, "Error: the position hasn't come up three times");
+                return;
+            }
+
+            endGame(gameData, game, ChessGame.Result.DRAW);
+            ServerMessage notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
+            notification.setMessage(username + " claimed a draw by threefold repetition. Game over.");
+            broadcastToAll(out, gameData.gameID(), gson.toJson(notification));
+            analysis.positionChanged(gameData.gameID(), game);
 
         } catch (DataAccessException e) {
-            sendError(session, "Error: " + e.getMessage());
+            sendError(out, session, "Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ends the game as a loss for one team and tells everyone why
+     */
+    private void forfeit(GameChannel out, GameData gameData, ChessGame game, ChessGame.TeamColor loser,
+                         String message) throws DataAccessException {
+        endGame(gameData, game, ChessGame.Result.winFor(loser == ChessGame.TeamColor.WHITE
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE));
+
+        ServerMessage notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
+        notification.setMessage(message);
+
+        broadcastToAll(out, gameData.gameID(), gson.toJson(notification));
+        analysis.positionChanged(gameData.gameID(), game);
+    }
+
+    private void flagFell(GameChannel out, GameData gameData, ChessGame game, ChessGame.TeamColor loser)
+            throws DataAccessException {
+        String name = loser == ChessGame.TeamColor.WHITE ? gameData.whiteUsername() : gameData.blackUsername();
+        if (name == null) {
+            name = loser == ChessGame.TeamColor.WHITE ? "White" : "Black";
         }
+        forfeit(out, gameData, game, loser, name + " ran out of time. Game over.");
+    }
+
+    /**
+     * Called by the clocks when the team on move may be out of time; the game is loaded
+     * again since a move may have come in first
+     */
+    private void handleFlag(int gameID) {
+        withGame(gameID, out -> {
+            try {
+                GameData gameData = dataAccess.getGame(gameID);
+                if (gameData == null || gameData.game().getTeamTurn() == null) {
+                    return;
+                }
+                ChessGame game = gameData.game();
+                ChessClock clock = game.getClock();
+                if (clock != null && clock.isFlagged(game.getTeamTurn(), System.currentTimeMillis())) {
+                    flagFell(out, gameData, game, game.getTeamTurn());
+                } else {
+                    clocks.update(gameID, game);
+                }
+            } catch (DataAccessException e) {
+                System.out.println("clock check for game " + gameID + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Tells every player in a tournament round who they play, on whatever connections they
+     * have open
+     */
+    public void roundStarted(TournamentData tournament) {
+        String prefix = "Round " + tournament.round() + " of " + tournament.name() + ": ";
+        Map<String, String> messages = new HashMap<>();
+        for (TournamentPairing pairing : tournament.pairings()) {
+            if (pairing.black() == null) {
+                messages.put(pairing.white(), notification(prefix + "you have a bye"));
+            } else {
+                messages.put(pairing.white(), notification(prefix + "you have white against "
+                        + pairing.black() + " in game " + pairing.gameID()));
+                messages.put(pairing.black(), notification(prefix + "you have black against "
+                        + pairing.white() + " in game " + pairing.gameID()));
+            }
+        }
+        connectionManager.sendToUsers(messages);
+    }
+
+    private String notification(String message) {
+        ServerMessage notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION);
+        notification.setMessage(message);
+        return gson.toJson(notification);
+    }
+
+    public void shutdown() {
+        analysis.shutdown();
+        clocks.shutdown();
     }
 
 
@@ -287,11 +571,32 @@ public class WebSocketHandler {
     }
 
 
-    private void sendError(Session session, String errorMsg) throws IOException {
+    private void sendError(GameChannel out, Session session, String errorMsg) {
         ServerMessage error = new ServerMessage(ServerMessage.ServerMessageType.ERROR);
 
         error.setErrorMessage(errorMsg);
 
-        session.getRemote().sendString(gson.toJson(error));
+        send(out, session, gson.toJson(error));
+    }
+
+    private void send(GameChannel out, Session session, String message) {
+        out.queue(() -> send(session, message));
+    }
+
+    private void send(Session session, String message) throws IOException {
+        synchronized (session) {
+            session.getRemote().sendString(message);
+        }
+    }
+
+    /**
+     * Queues a message for everyone in a game but one session
+     */
+    private void broadcast(GameChannel out, int gameID, Session excludeSession, String message) {
+        out.queue(() -> connectionManager.broadcast(gameID, excludeSession, message));
+    }
+
+    private void broadcastToAll(GameChannel out, int gameID, String message) {
+        out.queue(() -> connectionManager.broadcastToAll(gameID, message));
     }
 }
@@ -0,0 +1,155 @@
+package service;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.Position;
+import chess.engine.Search;
+import chess.engine.SearchResult;
+import chess.engine.Zobrist;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AnalysisResult;
+import model.AuthData;
+import model.GameData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Answers "what's the best move here?" for a game's current position.
+ * <p>
+ * Results are cached by position hash and depth, so any number of clients asking about the
+ * same position cost one search. Requests that arrive while that search is still running
+ * wait for it instead of starting their own.
+ */
+public class AnalysisService {
+
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int MAX_DEPTH = 6;
+
+    private static final long TIME_LIMIT_MILLIS = 10_000;
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final DataAccess dataAccess;
+    private final Supplier<Search> searches;
+
+    // least recently used first; holds running searches as well as finished ones
+    private final Map<Key, CompletableFuture<AnalysisResult>> cache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<AnalysisResult>> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    public AnalysisService(DataAccess dataAccess) {
+        this(dataAccess, Search::new);
+    }
+
+    /**
+     * @param searches makes the search for each position that isn't cached
+     */
+    public AnalysisService(DataAccess dataAccess, Supplier<Search> searches) {
+        this.dataAccess = dataAccess;
+        this.searches = searches;
+    }
+
+
+    public AnalysisResult analyze(String authToken, Integer gameID, Integer depth) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        int searchDepth = depth == null ? DEFAULT_DEPTH : depth;
+        if (gameID == null || searchDepth < 1 || searchDepth > MAX_DEPTH) {
+            throw new DataAccessException("bad request");
+        }
+
+        GameData data = dataAccess.getGame(gameID);
+        if (data == null || data.game() == null || data.game().getTeamTurn() == null) {
+            throw new DataAccessException("bad request");
+        }
+
+        // one copy for the key, the search and the score's sign; the stored game may be
+        // moved on by a player while this runs
+        Position position = data.game().snapshot();
+        ChessBoard board = position.toBoard();
+        ChessGame.TeamColor toMove = position.toMove();
+        Key key = new Key(Zobrist.hash(board, toMove), searchDepth);
+
+        CompletableFuture<AnalysisResult> future;
+        boolean owner = false;
+        synchronized (cache) {
+            future = cache.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                cache.put(key, future);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            run(key, board, toMove, future);
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof DataAccessException cause) {
+                throw cause;
+            }
+            throw new DataAccessException(ex.getCause().getMessage());
+        }
+    }
+
+    /**
+     * @return how many positions are cached or being searched
+     */
+    public int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private void run(Key key, ChessBoard board, ChessGame.TeamColor toMove,
+                     CompletableFuture<AnalysisResult> future) {
+        try {
+            SearchResult result = searches.get().search(board, toMove, key.depth(), TIME_LIMIT_MILLIS, null);
+            if (result == null) {
+                throw new DataAccessException("analysis timed out");
+            }
+            // a search cut short by the time limit still answers everyone waiting on it,
+            // but it isn't what was asked for, so the next request gets a fresh try
+            if (result.depth() < key.depth()) {
+                forget(key, future);
+            }
+            future.complete(toAnalysis(result, toMove));
+        } catch (DataAccessException | RuntimeException ex) {
+            forget(key, future);
+            future.completeExceptionally(ex);
+        }
+    }
+
+    private void forget(Key key, CompletableFuture<AnalysisResult> future) {
+        synchronized (cache) {
+            cache.remove(key, future);
+        }
+    }
+
+    private static AnalysisResult toAnalysis(SearchResult result, ChessGame.TeamColor toMove) {
+        int sign = toMove == ChessGame.TeamColor.WHITE ? 1 : -1;
+        Integer mateIn = result.isMate() ? sign * result.mateIn() : null;
+        return new AnalysisResult(result.bestMove(), sign * result.score(), mateIn, result.depth());
+    }
+
+    private record Key(long positionHash, int depth) {
+    }
+}
@@ -2,16 +2,29 @@ package service;
 
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.GameQuery;
+import dataaccess.GameSummaryVisitor;
+import dataaccess.GameVisitor;
 import model.AuthData;
 
 import model.GameData;
+import model.GameSummary;
+import model.PositionHit;
 
+import chess.ChessClock;
 import chess.ChessGame;
+import chess.pgn.Fen;
 
+import java.io.IOException;
 import java.util.List;
 
 public class GameService {
 
+    public static final int MAX_POSITION_HITS = 1000;
+    public static final int MAX_BASE_SECONDS = 3 * 60 * 60;
+    public static final int MAX_INCREMENT_SECONDS = 180;
+    public static final int MAX_PAGE_SIZE = 500;
+
     private final DataAccess dataAccess;
 
     public GameService(DataAccess dataAccess) {
@@ -36,7 +49,114 @@ public class GameService {
     }
 
 
+    /**
+     * Checks the caller is logged in and the listing parameters make sense, before
+     * anything is written; {@link #listGames(GameQuery, GameSummaryVisitor)} then lists
+     * games without their state, a page at a time
+     *
+     * @param after     the "next" cursor from the page before, or null for the first page
+     * @param limit     most games to list, up to {@value #MAX_PAGE_SIZE}, or null for every game at once
+     * @param player    only games this player has a seat in, or null
+     * @param openSeats only unfinished games with a seat free
+     * @param status    "active" or "finished" for only those games, or null for both
+     */
+    public GameQuery gameQuery(String authToken, Integer after, Integer limit, String player,
+                               boolean openSeats, String status) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        if (after != null && after < 0 || limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            throw new DataAccessException("bad request");
+        }
+        Boolean finished = null;
+        if (status != null) {
+            if (status.equalsIgnoreCase(GameSummary.FINISHED)) {
+                finished = true;
+            } else if (status.equalsIgnoreCase(GameSummary.ACTIVE)) {
+                finished = false;
+            } else {
+                throw new DataAccessException("bad request");
+            }
+        }
+
+        return new GameQuery(after == null ? 0 : after, limit == null ? Integer.MAX_VALUE : limit,
+                player, openSeats, finished);
+    }
+
+
+    /**
+     * Streams a page of games from {@link #gameQuery} to a visitor
+     *
+     * @return the cursor for the next page, or null if this was the last
+     */
+    public Integer listGames(GameQuery query, GameSummaryVisitor visitor) throws DataAccessException, IOException {
+        int[] count = {0};
+        GameSummary[] last = {null};
+        dataAccess.forEachGameSummary(query, game -> {
+            count[0]++;
+            last[0] = game;
+            visitor.visit(game);
+        });
+        return nextCursor(query, count[0], last[0]);
+    }
+
+
+    /**
+     * Gets one game with its state
+     *
+     * @throws DataAccessException "bad request" if there's no such game
+     */
+    public GameData getGame(String authToken, Integer gameID) throws DataAccessException {
+        authenticate(authToken);
+
+        GameData game = gameID == null ? null : dataAccess.getGame(gameID);
+        if (game == null) {
+            throw new DataAccessException("bad request");
+        }
+        return game;
+    }
+
+
+    /**
+     * Checks the caller is logged in, for answers that need nothing else from storage
+     */
+    public AuthData authenticate(String authToken) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+        return auth;
+    }
+
+
+    private static Integer nextCursor(GameQuery query, int count, GameSummary last) {
+        return count == query.limit() ? last.gameID() : null;
+    }
+
+
     public int createGame(String authToken, String gameName) throws DataAccessException {
+        return createGame(authToken, gameName, null, null);
+    }
+
+
+    /**
+     * Creates a game, with a clock if a base time is given
+     *
+     * @param baseSeconds      each player's time, up to {@value #MAX_BASE_SECONDS}, or null for an untimed game
+     * @param incrementSeconds added after each move, up to {@value #MAX_INCREMENT_SECONDS}; null means none
+     */
+    public int createGame(String authToken, String gameName, Integer baseSeconds, Integer incrementSeconds)
+            throws DataAccessException {
         if (authToken == null || authToken.isEmpty()) {
             throw new DataAccessException("unauthorized");
         }
@@ -46,16 +166,67 @@ public class GameService {
             throw new DataAccessException("unauthorized");
         }
 
-        if (gameName == null || gameName.isEmpty()) {
+        if (gameName == null || gameName.isEmpty() || gameName.length() > DataAccess.MAX_GAME_NAME_LENGTH) {
             throw new DataAccessException("bad request");
         }
 
-        ChessGame game = new ChessGame();
-        GameData data = new GameData(null, null, null, gameName, game);
+        checkTimeControl(baseSeconds, incrementSeconds);
+        GameData data = new GameData(null, null, null, gameName, newGame(baseSeconds, incrementSeconds));
         return dataAccess.createGame(data);
     }
 
 
+    /**
+     * Creates a game with both players already seated, for players the caller has already
+     * authenticated and paired
+     *
+     * @return the new game's id
+     */
+    public int createPairedGame(String whiteUsername, String blackUsername, Integer baseSeconds,
+                                Integer incrementSeconds) throws DataAccessException {
+        return dataAccess.createGame(pairedGame(whiteUsername, blackUsername, baseSeconds, incrementSeconds));
+    }
+
+
+    /**
+     * Builds, without storing, a new game with both players seated, for callers that create
+     * many at once through {@link DataAccess#createGames}
+     *
+     * @throws DataAccessException "bad request" unless the time control is one createGame accepts
+     */
+    public static GameData pairedGame(String whiteUsername, String blackUsername, Integer baseSeconds,
+                                      Integer incrementSeconds) throws DataAccessException {
+        checkTimeControl(baseSeconds, incrementSeconds);
+        return new GameData(null, whiteUsername, blackUsername, whiteUsername + " vs " + blackUsername,
+                newGame(baseSeconds, incrementSeconds));
+    }
+
+
+    /**
+     * @throws DataAccessException "bad request" unless the time control is one createGame accepts
+     */
+    public static void checkTimeControl(Integer baseSeconds, Integer incrementSeconds) throws DataAccessException {
+        if (baseSeconds == null && incrementSeconds != null) {
+            throw new DataAccessException("bad request");
+        }
+        if (baseSeconds != null && (baseSeconds < 1 || baseSeconds > MAX_BASE_SECONDS)) {
+            throw new DataAccessException("bad request");
+        }
+        if (incrementSeconds != null && (incrementSeconds < 0 || incrementSeconds > MAX_INCREMENT_SECONDS)) {
+            throw new DataAccessException("bad request");
+        }
+    }
+
+
+    private static ChessGame newGame(Integer baseSeconds, Integer incrementSeconds) {
+        ChessGame game = new ChessGame();
+        if (baseSeconds != null) {
+            game.setClock(new ChessClock(baseSeconds * 1000L, incrementSeconds == null ? 0 : incrementSeconds * 1000L));
+        }
+        return game;
+    }
+
+
     public void joinGame(String authToken, String color, Integer gameID) throws DataAccessException {
         if (authToken == null || authToken.isEmpty()) {
 
@@ -96,15 +267,63 @@ public class GameService {
 
                     throw new DataAccessException("already taken");
             }
-            GameData updated = new GameData(game.gameID(), username, game.blackUsername(), game.gameName(), game.game());
+            GameData updated = game.withPlayers(username, game.blackUsername());
             dataAccess.updateGame(updated);
         } else {
             if (game.blackUsername() != null) {
                 throw new DataAccessException("already taken");
 
             }
-            GameData updated = new GameData(game.gameID(), game.whiteUsername(), username, game.gameName(), game.game());
+            GameData updated = game.withPlayers(game.whiteUsername(), username);
             dataAccess.updateGame(updated);
         }
     }
+
+
+    /**
+     * Streams games to a visitor, oldest first, after checking the caller is logged in
+     *
+     * @param player only games this user plays in, or null for every game
+     */
+    public void exportGames(String authToken, String player, GameVisitor visitor) throws DataAccessException, IOException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        dataAccess.forEachGame(player == null || player.isEmpty() ? null : player, visitor);
+    }
+
+
+    /**
+     * Finds stored games that reached a position, by hash lookup in the position index
+     *
+     * @param fen the position; side to move counts, the move counters don't
+     * @return up to {@value #MAX_POSITION_HITS} games and the ply each reached it at, by game id
+     */
+    public List<PositionHit> findGamesWithPosition(String authToken, String fen) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        if (fen == null || fen.isEmpty()) {
+            throw new DataAccessException("bad request");
+        }
+        ChessGame position;
+        try {
+            position = Fen.parse(fen);
+        } catch (IllegalArgumentException ex) {
+            throw new DataAccessException("bad request");
+        }
+        return dataAccess.findPositions(position.positionHash(), MAX_POSITION_HITS);
+    }
 }
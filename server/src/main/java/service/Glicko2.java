@@ -0,0 +1,125 @@
+package service;
+
+import model.RatingData;
+
+import java.util.List;
+
+/**
+ * The Glicko-2 rating update, as set out in Glickman's "Example of the Glicko-2 system".
+ * <p>
+ * Ratings are kept on the familiar Glicko scale and moved onto the Glicko-2 scale only
+ * while being updated.
+ */
+final class Glicko2 {
+
+    static final double DEFAULT_RATING = 1500;
+    static final double DEFAULT_DEVIATION = 350;
+    static final double DEFAULT_VOLATILITY = 0.06;
+
+    private static final double SCALE = 173.7178;
+    // how far volatility may move in one period; Glickman suggests 0.3 to 1.2
+    private static final double TAU = 0.5;
+    private static final double EPSILON = 0.000001;
+
+    /**
+     * One game in a rating period
+     *
+     * @param opponent the opponent's rating going into the period
+     * @param score    1 for a win, 0.5 for a draw, 0 for a loss
+     */
+    record Outcome(RatingData opponent, double score) {
+    }
+
+    private Glicko2() {
+    }
+
+    static RatingData unrated(String username) {
+        return new RatingData(username, DEFAULT_RATING, DEFAULT_DEVIATION, DEFAULT_VOLATILITY, 0);
+    }
+
+    /**
+     * Rates a player on the games they played in one period
+     *
+     * @return the player's rating after the period; a period with no games only widens the deviation
+     */
+    static RatingData rate(RatingData player, List<Outcome> outcomes) {
+        double mu = (player.rating() - DEFAULT_RATING) / SCALE;
+        double phi = player.deviation() / SCALE;
+        double sigma = player.volatility();
+
+        if (outcomes.isEmpty()) {
+            double widened = Math.min(Math.sqrt(phi * phi + sigma * sigma), DEFAULT_DEVIATION / SCALE);
+            return new RatingData(player.username(), player.rating(), widened * SCALE, sigma, player.games());
+        }
+
+        // step 3 and 4: the estimated variance from the games alone, and the improvement they show
+        double inverseVariance = 0;
+        double improvement = 0;
+        for (Outcome outcome : outcomes) {
+            double muJ = (outcome.opponent().rating() - DEFAULT_RATING) / SCALE;
+            double g = g(outcome.opponent().deviation() / SCALE);
+            double expected = 1 / (1 + Math.exp(-g * (mu - muJ)));
+            inverseVariance += g * g * expected * (1 - expected);
+            improvement += g * (outcome.score() - expected);
+        }
+        double v = 1 / inverseVariance;
+        double delta = v * improvement;
+
+        // step 5 to 8
+        double newSigma = volatility(delta, phi, v, sigma);
+        double phiStar = Math.sqrt(phi * phi + newSigma * newSigma);
+        double newPhi = 1 / Math.sqrt(1 / (phiStar * phiStar) + 1 / v);
+        double newMu = mu + newPhi * newPhi * improvement;
+
+        return new RatingData(player.username(), newMu * SCALE + DEFAULT_RATING,
+                Math.min(newPhi * SCALE, DEFAULT_DEVIATION), newSigma, player.games() + outcomes.size());
+    }
+
+    private static double g(double phi) {
+        return 1 / Math.sqrt(1 + 3 * phi * phi / (Math.PI * Math.PI));
+    }
+
+    /**
+     * Finds the new volatility by the Illinois method on the paper's f(x), with a and b
+     * bracketing the root as they do there
+     */
+    private static double volatility(double delta, double phi, double v, double sigma) {
+        double logSigmaSq = Math.log(sigma * sigma);
+        double deltaSq = delta * delta;
+        double phiSq = phi * phi;
+
+        double a = logSigmaSq;
+        double b;
+        if (deltaSq > phiSq + v) {
+            b = Math.log(deltaSq - phiSq - v);
+        } else {
+            int k = 1;
+            while (f(logSigmaSq - k * TAU, deltaSq, phiSq, v, logSigmaSq) < 0) {
+                k++;
+            }
+            b = logSigmaSq - k * TAU;
+        }
+
+        double fA = f(a, deltaSq, phiSq, v, logSigmaSq);
+        double fB = f(b, deltaSq, phiSq, v, logSigmaSq);
+        while (Math.abs(b - a) > EPSILON) {
+            double c = a + (a - b) * fA / (fB - fA);
+            double fC = f(c, deltaSq, phiSq, v, logSigmaSq);
+            if (fC * fB <= 0) {
+                a = b;
+                fA = fB;
+            } else {
+                fA = fA / 2;
+            }
+            b = c;
+            fB = fC;
+        }
+        return Math.exp(a / 2);
+    }
+
+    private static double f(double x, double deltaSq, double phiSq, double v, double logSigmaSq) {
+        double ex = Math.exp(x);
+        double denominator = phiSq + v + ex;
+        return ex * (deltaSq - phiSq - v - ex) / (2 * denominator * denominator) - (x - logSigmaSq) / (TAU * TAU);
+    }
+}
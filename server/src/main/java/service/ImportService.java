@@ -0,0 +1,173 @@
+package service;
+
+import chess.ChessGame;
+import chess.InvalidMoveException;
+import chess.pgn.PgnGame;
+import chess.pgn.PgnReader;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.GameData;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk-loads finished games from PGN.
+ * <p>
+ * The calling thread reads games off the stream and hands them to a pool of workers
+ * through a {@link WorkerPipeline}, so memory stays flat however big the file is. Each worker
+ * replays its games through the rules, drops any with a move that can't be played, and
+ * inserts the rest in batches with {@link DataAccess#createGames}, adding the finished ones
+ * to the opening explorer's counts as it goes. Reading is cheap next to
+ * replaying, so throughput grows with the number of workers until the database is the
+ * bottleneck.
+ */
+public class ImportService {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final DataAccess dataAccess;
+    private final int threads;
+    private final int batchSize;
+
+    public ImportService(DataAccess dataAccess) {
+        this(dataAccess, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    public ImportService(DataAccess dataAccess, int threads, int batchSize) {
+        if (threads < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("need at least one thread and a batch of at least one");
+        }
+        this.dataAccess = dataAccess;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * What an import did
+     *
+     * @param read         games read from the stream
+     * @param imported     games stored
+     * @param rejected     games with a move that can't be played
+     * @param elapsedNanos wall time for the whole import
+     */
+    public record Report(long read, long imported, long rejected, long elapsedNanos) {
+
+        public double gamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : read * 1e9 / elapsedNanos;
+        }
+    }
+
+    /**
+     * Imports every game in a PGN stream. Games that were stored before a database error
+     * stay stored.
+     *
+     * @param in the PGN text; read to the end but not closed
+     * @throws IOException         if reading the stream fails
+     * @throws DataAccessException if storing a batch fails
+     */
+    public Report importPgn(Reader in) throws IOException, DataAccessException {
+        long started = System.nanoTime();
+        AtomicLong read = new AtomicLong();
+        AtomicLong imported = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+
+        new WorkerPipeline<PgnGame>("import", threads, threads * batchSize).run(
+                () -> new Importer(imported, rejected),
+                sink -> {
+                    PgnReader reader = new PgnReader(in);
+                    for (PgnGame game = reader.next(); game != null && sink.hand(game); game = reader.next()) {
+                        read.incrementAndGet();
+                    }
+                });
+        return new Report(read.get(), imported.get(), rejected.get(), System.nanoTime() - started);
+    }
+
+    /**
+     * Replays a game and turns it into a stored game: finished games are marked over, and
+     * the players' names go in the game name since they aren't users here
+     *
+     * @return the game, or null if one of its moves can't be played
+     */
+    static GameData toGameData(PgnGame pgn) {
+        ChessGame game;
+        try {
+            game = pgn.replay();
+        } catch (InvalidMoveException ex) {
+            return null;
+        }
+        if (pgn.isFinished()) {
+            game.endGame(pgn.outcome());
+        }
+
+        String name = orUnknown(pgn.tag("White")) + " vs " + orUnknown(pgn.tag("Black"));
+        String event = pgn.tag("Event");
+        if (event != null && !event.isBlank() && !event.equals("?")) {
+            name += ", " + event;
+        }
+        if (name.length() > DataAccess.MAX_GAME_NAME_LENGTH) {
+            name = name.substring(0, DataAccess.MAX_GAME_NAME_LENGTH);
+        }
+        return new GameData(null, null, null, name, game);
+    }
+
+    /**
+     * Replays its share of the games and stores them a batch at a time
+     */
+    private final class Importer implements WorkerPipeline.Worker<PgnGame> {
+
+        private final AtomicLong imported;
+        private final AtomicLong rejected;
+        private final List<GameData> batch = new ArrayList<>(batchSize);
+
+        Importer(AtomicLong imported, AtomicLong rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public void take(PgnGame pgn) throws DataAccessException {
+            GameData game = toGameData(pgn);
+            if (game == null) {
+                rejected.incrementAndGet();
+                return;
+            }
+            batch.add(game);
+            if (batch.size() == batchSize) {
+                imported.addAndGet(store(batch));
+                batch.clear();
+            }
+        }
+
+        @Override
+        public void finish() throws DataAccessException {
+            if (!batch.isEmpty()) {
+                imported.addAndGet(store(batch));
+            }
+        }
+    }
+
+    /**
+     * Stores a batch of games and adds the finished ones to the opening explorer's counts
+     *
+     * @return how many games were stored
+     */
+    private int store(List<GameData> batch) throws DataAccessException {
+        int stored = dataAccess.createGames(batch).size();
+        OpeningExplorer.Tally tally = new OpeningExplorer.Tally();
+        for (GameData game : batch) {
+            tally.add(game.game());
+        }
+        if (tally.size() > 0) {
+            dataAccess.addExplorerStats(tally.stats());
+        }
+        return stored;
+    }
+
+    private static String orUnknown(String player) {
+        return player == null || player.isBlank() ? "?" : player;
+    }
+}
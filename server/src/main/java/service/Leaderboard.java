@@ -0,0 +1,193 @@
+package service;
+
+import model.RatingData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Rated players in rating order, highest first, ties broken by username.
+ * <p>
+ * The players are kept in an order-statistic tree: a treap where every node also counts
+ * the nodes under it. With those counts a player's rank is found on the way down to them,
+ * and the player at any rank on the way down to it, so rank, lookup by rank, and moving a
+ * player whose rating changed are all O(log n); a page of k players costs O(log n + k).
+ */
+public class Leaderboard {
+
+    private final Map<String, Node> byName = new HashMap<>();
+    private Node root;
+
+    /**
+     * Adds a player, or moves them if their rating changed
+     */
+    public synchronized void put(RatingData rating) {
+        Node old = byName.get(rating.username());
+        if (old != null) {
+            root = remove(root, old.rating);
+        }
+        Node node = new Node(rating);
+        byName.put(rating.username(), node);
+        Node[] split = split(root, rating);
+        root = merge(merge(split[0], node), split[1]);
+    }
+
+    /**
+     * Replaces everyone on the board
+     */
+    public synchronized void replaceAll(Collection<RatingData> ratings) {
+        byName.clear();
+        root = null;
+        for (RatingData rating : ratings) {
+            put(rating);
+        }
+    }
+
+    public synchronized RatingData get(String username) {
+        Node node = byName.get(username);
+        return node == null ? null : node.rating;
+    }
+
+    /**
+     * @return the player's rank, 1 for the highest rated, or 0 if they aren't on the board
+     */
+    public synchronized int rank(String username) {
+        Node node = byName.get(username);
+        if (node == null) {
+            return 0;
+        }
+        int above = 0;
+        Node at = root;
+        while (at != null) {
+            int cmp = compare(node.rating, at.rating);
+            if (cmp < 0) {
+                at = at.left;
+            } else {
+                above += size(at.left);
+                if (cmp == 0) {
+                    return above + 1;
+                }
+                above++;
+                at = at.right;
+            }
+        }
+        throw new IllegalStateException(username + " is named but not in the tree");
+    }
+
+    /**
+     * @param offset players to skip from the top
+     * @param limit  most players to return
+     * @return the players from rank offset + 1 down
+     */
+    public synchronized List<RatingData> page(int offset, int limit) {
+        List<RatingData> page = new ArrayList<>(Math.max(0, Math.min(limit, size(root) - offset)));
+        collect(root, offset, offset + limit, page);
+        return page;
+    }
+
+    public synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Adds the players ranked from..to-1 within this subtree, in order, skipping any subtree
+     * that holds none of them
+     */
+    private static void collect(Node node, int from, int to, List<RatingData> out) {
+        if (node == null || from >= to || to <= 0 || from >= node.size) {
+            return;
+        }
+        int leftSize = size(node.left);
+        collect(node.left, from, to, out);
+        if (from <= leftSize && leftSize < to) {
+            out.add(node.rating);
+        }
+        collect(node.right, from - leftSize - 1, to - leftSize - 1, out);
+    }
+
+    /**
+     * Splits a subtree into the players ranked above the key and the rest
+     */
+    private static Node[] split(Node node, RatingData key) {
+        if (node == null) {
+            return new Node[] {null, null};
+        }
+        if (compare(node.rating, key) < 0) {
+            Node[] right = split(node.right, key);
+            node.right = right[0];
+            node.resize();
+            return new Node[] {node, right[1]};
+        }
+        Node[] left = split(node.left, key);
+        node.left = left[1];
+        node.resize();
+        return new Node[] {left[0], node};
+    }
+
+    /**
+     * Joins two subtrees where everyone in the first ranks above everyone in the second
+     */
+    private static Node merge(Node above, Node below) {
+        if (above == null) {
+            return below;
+        }
+        if (below == null) {
+            return above;
+        }
+        if (above.priority > below.priority) {
+            above.right = merge(above.right, below);
+            above.resize();
+            return above;
+        }
+        below.left = merge(above, below.left);
+        below.resize();
+        return below;
+    }
+
+    private static Node remove(Node node, RatingData key) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(key, node.rating);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0) {
+            node.left = remove(node.left, key);
+        } else {
+            node.right = remove(node.right, key);
+        }
+        node.resize();
+        return node;
+    }
+
+    private static int compare(RatingData a, RatingData b) {
+        int byRating = Double.compare(b.rating(), a.rating());
+        return byRating != 0 ? byRating : a.username().compareTo(b.username());
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+        private final RatingData rating;
+        // random heap order is what keeps the tree balanced, in expectation
+        private final int priority = ThreadLocalRandom.current().nextInt();
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(RatingData rating) {
+            this.rating = rating;
+        }
+
+        private void resize() {
+            size = 1 + Leaderboard.size(left) + Leaderboard.size(right);
+        }
+    }
+}
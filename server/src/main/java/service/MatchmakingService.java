@@ -0,0 +1,295 @@
+package service;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AuthData;
+import model.QueueResult;
+import model.QueueStats;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToIntFunction;
+
+/**
+ * Pairs players waiting for a game with someone of a similar rating who wants the same time
+ * control, and creates the game for them.
+ * <p>
+ * Waiting players sit in lock-free queues, one per time control and 100-point rating band,
+ * so a newcomer only looks at the few bands near its rating. A player is taken by flipping
+ * its ticket from waiting to claimed with a compare-and-set, so two players looking at once
+ * can never both take the same opponent, and nobody waits on a lock to join or leave. A
+ * newcomer pairs straight away with anyone within 100 points; a sweep a few times a second
+ * widens each waiting player's range the longer they wait, pairs anyone two newcomers
+ * missed by arriving together, and sends away those who waited too long.
+ */
+public class MatchmakingService {
+
+    public static final int DEFAULT_RATING = 1500;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 30_000;
+
+    private static final int BAND_WIDTH = 100;
+    // ratings this close pair straight away; the range grows by a step a second, up to the max
+    private static final int START_RANGE = 100;
+    private static final int RANGE_STEP = 50;
+    private static final long WIDEN_EVERY_MILLIS = 1000;
+    private static final int MAX_RANGE = 800;
+    private static final long SWEEP_MILLIS = 200;
+    // wait times kept for the percentiles
+    private static final int RECENT_WAITS = 10_000;
+
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int DONE = 2;
+
+    private final DataAccess dataAccess;
+    private final GameService gameService;
+    private final ToIntFunction<String> ratings;
+    private final long maxWaitMillis;
+
+    private final ConcurrentHashMap<Bucket, ConcurrentLinkedQueue<Ticket>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Ticket> waiting = new ConcurrentHashMap<>();
+    private final AtomicLong paired = new AtomicLong();
+    private final AtomicLongArray recentWaits = new AtomicLongArray(RECENT_WAITS);
+    private final AtomicLong waitsRecorded = new AtomicLong();
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "matchmaking");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MatchmakingService(DataAccess dataAccess, GameService gameService) {
+        this(dataAccess, gameService, username -> DEFAULT_RATING, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * @param ratings       each player's rating, looked up when they join the queue
+     * @param maxWaitMillis how long a player waits for a pairing before giving up
+     */
+    public MatchmakingService(DataAccess dataAccess, GameService gameService, ToIntFunction<String> ratings,
+                              long maxWaitMillis) {
+        this.dataAccess = dataAccess;
+        this.gameService = gameService;
+        this.ratings = ratings;
+        this.maxWaitMillis = maxWaitMillis;
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Joins the queue
+     *
+     * @param baseSeconds      the time control, as for {@link GameService#createGame}
+     * @param incrementSeconds time added after each move, or null for none
+     * @return completes once the player is paired, with the new game, or when the wait runs
+     * out, with no game
+     * @throws DataAccessException "already taken" if the player is already waiting
+     */
+    public CompletableFuture<QueueResult> enqueue(String authToken, Integer baseSeconds, Integer incrementSeconds)
+            throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        GameService.checkTimeControl(baseSeconds, incrementSeconds);
+        String username = auth.username();
+        Ticket ticket = new Ticket(username, ratings.applyAsInt(username), new TimeControl(baseSeconds, incrementSeconds));
+        if (waiting.putIfAbsent(username, ticket) != null) {
+            throw new DataAccessException("already taken");
+        }
+
+        // nobody can see the ticket yet, so it's ours to pair without claiming
+        Ticket opponent = findOpponent(ticket, START_RANGE, System.nanoTime());
+        if (opponent != null) {
+            pair(ticket, opponent);
+        } else {
+            ticket.state.set(WAITING);
+            queueFor(ticket).add(ticket);
+        }
+        return ticket.result;
+    }
+
+    /**
+     * @return how many are waiting and how long recent pairings waited
+     */
+    public QueueStats stats(String authToken) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        int count = (int) Math.min(waitsRecorded.get(), RECENT_WAITS);
+        long[] waits = new long[count];
+        for (int i = 0; i < count; i++) {
+            waits[i] = recentWaits.get(i);
+        }
+        Arrays.sort(waits);
+        return new QueueStats(waiting.size(), paired.get(),
+                percentile(waits, 0.50), percentile(waits, 0.90), percentile(waits, 0.99));
+    }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Looks for someone the ticket can play, nearest rating band first and longest waiting
+     * first within a band, and claims them
+     *
+     * @param range how far from the ticket's rating to look
+     * @return the claimed opponent, or null if there is nobody to play
+     */
+    private Ticket findOpponent(Ticket ticket, int range, long now) {
+        int band = ticket.rating / BAND_WIDTH;
+        int reach = (range + BAND_WIDTH - 1) / BAND_WIDTH;
+        for (int distance = 0; distance <= reach; distance++) {
+            Ticket found = claimIn(new Bucket(ticket.timeControl, band - distance), ticket, range, now);
+            if (found == null && distance > 0) {
+                found = claimIn(new Bucket(ticket.timeControl, band + distance), ticket, range, now);
+            }
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    private Ticket claimIn(Bucket bucket, Ticket ticket, int range, long now) {
+        ConcurrentLinkedQueue<Ticket> queue = buckets.get(bucket);
+        if (queue == null) {
+            return null;
+        }
+        for (Iterator<Ticket> it = queue.iterator(); it.hasNext(); ) {
+            Ticket other = it.next();
+            if (other.state.get() == DONE) {
+                it.remove();
+                continue;
+            }
+            if (other == ticket || Math.abs(other.rating - ticket.rating) > Math.max(range, rangeOf(other, now))) {
+                continue;
+            }
+            if (other.state.compareAndSet(WAITING, CLAIMED)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Seats two claimed players in a new game, white chosen at random
+     */
+    private void pair(Ticket a, Ticket b) {
+        a.state.set(DONE);
+        b.state.set(DONE);
+        waiting.remove(a.username, a);
+        waiting.remove(b.username, b);
+        Ticket white = ThreadLocalRandom.current().nextBoolean() ? a : b;
+        Ticket black = white == a ? b : a;
+        try {
+            int gameID = gameService.createPairedGame(white.username, black.username,
+                    a.timeControl.baseSeconds(), a.timeControl.incrementSeconds());
+            paired.addAndGet(2);
+            white.result.complete(new QueueResult(gameID, "WHITE", black.username, recordWait(white)));
+            black.result.complete(new QueueResult(gameID, "BLACK", white.username, recordWait(black)));
+        } catch (DataAccessException ex) {
+            a.result.completeExceptionally(ex);
+            b.result.completeExceptionally(ex);
+        }
+    }
+
+    private void sweep() {
+        try {
+            long now = System.nanoTime();
+            for (ConcurrentLinkedQueue<Ticket> queue : buckets.values()) {
+                for (Iterator<Ticket> it = queue.iterator(); it.hasNext(); ) {
+                    Ticket ticket = it.next();
+                    if (ticket.state.get() == DONE) {
+                        it.remove();
+                    } else if (now - ticket.joinedNanos >= TimeUnit.MILLISECONDS.toNanos(maxWaitMillis)) {
+                        if (ticket.state.compareAndSet(WAITING, DONE)) {
+                            it.remove();
+                            waiting.remove(ticket.username, ticket);
+                            ticket.result.complete(new QueueResult(null, null, null, ticket.waitedMillis()));
+                        }
+                    } else if (ticket.state.compareAndSet(WAITING, CLAIMED)) {
+                        Ticket opponent = findOpponent(ticket, rangeOf(ticket, now), now);
+                        if (opponent != null) {
+                            pair(ticket, opponent);
+                        } else {
+                            ticket.state.set(WAITING);
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            // keep sweeping; a scheduled task that throws is never run again
+            System.out.println("matchmaking sweep failed: " + ex);
+        }
+    }
+
+    private ConcurrentLinkedQueue<Ticket> queueFor(Ticket ticket) {
+        return buckets.computeIfAbsent(new Bucket(ticket.timeControl, ticket.rating / BAND_WIDTH),
+                bucket -> new ConcurrentLinkedQueue<>());
+    }
+
+    private static int rangeOf(Ticket ticket, long now) {
+        long waited = TimeUnit.NANOSECONDS.toMillis(now - ticket.joinedNanos);
+        return (int) Math.min(MAX_RANGE, START_RANGE + RANGE_STEP * (waited / WIDEN_EVERY_MILLIS));
+    }
+
+    private long recordWait(Ticket ticket) {
+        long waited = ticket.waitedMillis();
+        recentWaits.set((int) (waitsRecorded.getAndIncrement() % RECENT_WAITS), waited);
+        return waited;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    private record TimeControl(Integer baseSeconds, Integer incrementSeconds) {
+    }
+
+    private record Bucket(TimeControl timeControl, int band) {
+    }
+
+    private static final class Ticket {
+        private final String username;
+        private final int rating;
+        private final TimeControl timeControl;
+        private final long joinedNanos = System.nanoTime();
+        // starts claimed: a newcomer's ticket is its own until it goes in a queue
+        private final AtomicInteger state = new AtomicInteger(CLAIMED);
+        private final CompletableFuture<QueueResult> result = new CompletableFuture<>();
+
+        private Ticket(String username, int rating, TimeControl timeControl) {
+            this.username = username;
+            this.rating = rating;
+            this.timeControl = timeControl;
+        }
+
+        private long waitedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - joinedNanos);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.pgn.Fen;
+import chess.pgn.San;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AuthData;
+import model.ExplorerMove;
+import model.ExplorerResult;
+import model.ExplorerStat;
+import model.GameData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opening explorer: for a position, the moves finished games played from it and how those
+ * games came out.
+ * <p>
+ * The counts are stored by position hash and move, and kept up to date a game at a time:
+ * when a game ends, its first {@value #MAX_PLIES} moves are added to them. Answers are
+ * cached by position hash, least recently used out first, and a position's entry is
+ * dropped whenever a newly finished game passes through it. {@link #rebuild} recounts
+ * everything from the stored games.
+ */
+public class OpeningExplorer {
+
+    // past the opening almost every position is unique, so counting further only grows the table
+    public static final int MAX_PLIES = 30;
+
+    private static final int MAX_ENTRIES = 10_000;
+    // a rebuild worker writes its counts out once it holds this many position/move pairs
+    private static final int FLUSH_AT = 50_000;
+    private static final int QUEUE_PER_THREAD = 256;
+
+    private final DataAccess dataAccess;
+
+    // least recently used first
+    private final Map<Long, ExplorerResult> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ExplorerResult> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // bumped whenever entries are dropped, so a lookup that read the counts before an update
+    // doesn't cache what it read after the update; guarded by cache
+    private long generation;
+
+    public OpeningExplorer(DataAccess dataAccess) {
+        this.dataAccess = dataAccess;
+    }
+
+    /**
+     * Gets the moves played from a position, most played first
+     *
+     * @param fen the position, or null for the usual starting position
+     */
+    public ExplorerResult explore(String authToken, String fen) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        ChessGame position;
+        try {
+            position = fen == null || fen.isEmpty() ? new ChessGame() : Fen.parse(fen);
+        } catch (IllegalArgumentException ex) {
+            throw new DataAccessException("bad request");
+        }
+        long hash = position.positionHash();
+
+        long seen;
+        synchronized (cache) {
+            ExplorerResult cached = cache.get(hash);
+            if (cached != null) {
+                return cached;
+            }
+            seen = generation;
+        }
+        ExplorerResult result = toResult(position, dataAccess.getExplorerStats(hash));
+        synchronized (cache) {
+            if (generation == seen) {
+                cache.put(hash, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a game that just ended to the counts. Games without a recorded result aren't
+     * counted.
+     */
+    public void gameFinished(ChessGame game) throws DataAccessException {
+        Tally tally = new Tally();
+        if (!tally.add(game)) {
+            return;
+        }
+        List<ExplorerStat> stats = tally.stats();
+        dataAccess.addExplorerStats(stats);
+        synchronized (cache) {
+            generation++;
+            for (ExplorerStat stat : stats) {
+                cache.remove(stat.positionHash());
+            }
+        }
+    }
+
+    /**
+     * Throws the counts away and recounts them from every stored game. One thread streams
+     * the games out of the database and hands them to workers through a bounded queue; each
+     * worker counts into its own table and adds it to the stored counts whenever it grows
+     * big, so the workers never wait on each other. Games that end while this runs may be
+     * counted twice or not at all, so run it while the server is quiet.
+     *
+     * @param threads how many workers count games
+     * @return how many finished games were counted
+     */
+    public long rebuild(int threads) throws DataAccessException {
+        WorkerPipeline<GameData> pipeline = new WorkerPipeline<>("rebuild", threads, threads * QUEUE_PER_THREAD);
+        dataAccess.clearExplorerStats();
+        AtomicLong counted = new AtomicLong();
+        try {
+            pipeline.run(() -> new Counter(counted), sink -> dataAccess.forEachGame(null, game -> {
+                if (!sink.hand(game)) {
+                    throw new IOException("a worker failed");
+                }
+            }));
+        } catch (IOException ex) {
+            throw new DataAccessException("rebuild failed", ex);
+        } finally {
+            synchronized (cache) {
+                generation++;
+                cache.clear();
+            }
+        }
+        return counted.get();
+    }
+
+    /**
+     * @return how many positions are cached
+     */
+    public int cacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Counts its share of a rebuild into its own table, writing it out whenever it grows big
+     */
+    private final class Counter implements WorkerPipeline.Worker<GameData> {
+
+        private final AtomicLong counted;
+        private Tally tally = new Tally();
+
+        Counter(AtomicLong counted) {
+            this.counted = counted;
+        }
+
+        @Override
+        public void take(GameData game) throws DataAccessException {
+            if (game.game() != null && tally.add(game.game())) {
+                counted.incrementAndGet();
+            }
+            if (tally.size() >= FLUSH_AT) {
+                dataAccess.addExplorerStats(tally.stats());
+                tally = new Tally();
+            }
+        }
+
+        @Override
+        public void finish() throws DataAccessException {
+            if (tally.size() > 0) {
+                dataAccess.addExplorerStats(tally.stats());
+            }
+        }
+    }
+
+    private static ExplorerResult toResult(ChessGame position, List<ExplorerStat> stats) {
+        List<ExplorerStat> sorted = new ArrayList<>(stats);
+        sorted.sort(Comparator.comparingInt(ExplorerStat::games).reversed().thenComparing(ExplorerStat::move));
+        List<ExplorerMove> moves = new ArrayList<>(sorted.size());
+        for (ExplorerStat stat : sorted) {
+            ChessMove move = fromUci(stat.move());
+            if (move == null) {
+                continue;
+            }
+            try {
+                moves.add(new ExplorerMove(move, San.format(position, move), stat.games(),
+                        stat.whiteWins(), stat.draws(), stat.blackWins()));
+            } catch (InvalidMoveException ex) {
+                // a different position with the same hash; its moves don't belong here
+            }
+        }
+        return new ExplorerResult(moves.toArray(new ExplorerMove[0]));
+    }
+
+    /**
+     * @return the move in UCI form, like "e2e4" or "e7e8q"
+     */
+    static String uci(ChessMove move) {
+        StringBuilder text = new StringBuilder(5);
+        appendSquare(text, move.getStartPosition());
+        appendSquare(text, move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            text.append(switch (move.getPromotionPiece()) {
+                case QUEEN -> 'q';
+                case ROOK -> 'r';
+                case BISHOP -> 'b';
+                case KNIGHT -> 'n';
+                default -> '?';
+            });
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the move a UCI string describes, or null if it isn't one
+     */
+    static ChessMove fromUci(String text) {
+        if (text == null || (text.length() != 4 && text.length() != 5)) {
+            return null;
+        }
+        ChessPosition start = square(text.charAt(0), text.charAt(1));
+        ChessPosition end = square(text.charAt(2), text.charAt(3));
+        if (start == null || end == null) {
+            return null;
+        }
+        ChessPiece.PieceType promotion = null;
+        if (text.length() == 5) {
+            promotion = switch (text.charAt(4)) {
+                case 'q' -> ChessPiece.PieceType.QUEEN;
+                case 'r' -> ChessPiece.PieceType.ROOK;
+                case 'b' -> ChessPiece.PieceType.BISHOP;
+                case 'n' -> ChessPiece.PieceType.KNIGHT;
+                default -> null;
+            };
+            if (promotion == null) {
+                return null;
+            }
+        }
+        return ChessMove.of(start, end, promotion);
+    }
+
+    private static void appendSquare(StringBuilder text, ChessPosition position) {
+        text.append((char) ('a' + position.getColumn() - 1)).append(position.getRow());
+    }
+
+    private static ChessPosition square(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return null;
+        }
+        return ChessPosition.of(rank - '0', file - 'a' + 1);
+    }
+
+    /**
+     * Counts for a set of games, merged by position and move before they're stored, since
+     * most games share their first few moves
+     */
+    static final class Tally {
+
+        private final Map<Key, int[]> counts = new HashMap<>();
+
+        /**
+         * Counts a game's opening moves. A position and move that come up more than once in
+         * the same game count once.
+         *
+         * @return false if the game has no result, so nothing was counted
+         */
+        boolean add(ChessGame game) {
+            ChessGame.Result result = game.getResult();
+            if (result == null) {
+                return false;
+            }
+            List<ChessMove> moves = game.getMoveHistory();
+            long[] hashes = game.positionHashes();
+            int plies = Math.min(moves.size(), MAX_PLIES);
+            Set<Key> seen = new HashSet<>();
+            for (int ply = 0; ply < plies; ply++) {
+                Key key = new Key(hashes[ply], uci(moves.get(ply)));
+                if (!seen.add(key)) {
+                    continue;
+                }
+                int[] count = counts.computeIfAbsent(key, k -> new int[4]);
+                count[0]++;
+                count[switch (result) {
+                    case WHITE_WINS -> 1;
+                    case DRAW -> 2;
+                    case BLACK_WINS -> 3;
+                }]++;
+            }
+            return true;
+        }
+
+        int size() {
+            return counts.size();
+        }
+
+        List<ExplorerStat> stats() {
+            List<ExplorerStat> stats = new ArrayList<>(counts.size());
+            for (Map.Entry<Key, int[]> entry : counts.entrySet()) {
+                int[] count = entry.getValue();
+                stats.add(new ExplorerStat(entry.getKey().positionHash(), entry.getKey().move(),
+                        count[0], count[1], count[2], count[3]));
+            }
+            return stats;
+        }
+    }
+
+    private record Key(long positionHash, String move) {
+    }
+}
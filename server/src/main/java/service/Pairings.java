@@ -0,0 +1,201 @@
+package service;
+
+import chess.ChessGame;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out who plays whom in a tournament round. Neither pairing changes the players; the
+ * caller records the round once its games exist.
+ */
+final class Pairings {
+
+    /**
+     * Highest score first, then highest seed
+     */
+    static final Comparator<Player> BY_SCORE = Comparator.comparingInt((Player player) -> player.halfPoints)
+            .reversed()
+            .thenComparing(Comparator.comparingInt((Player player) -> player.seed).reversed())
+            .thenComparing(player -> player.username);
+
+    private Pairings() {
+    }
+
+    /**
+     * A player's record so far in one tournament
+     */
+    static final class Player {
+        final String username;
+        // rating when the tournament started
+        final int seed;
+        final Set<String> opponents = new HashSet<>();
+        int halfPoints;
+        int whites;
+        int blacks;
+        ChessGame.TeamColor lastColor;
+        boolean hadBye;
+        int played;
+
+        Player(String username, int seed) {
+            this.username = username;
+            this.seed = seed;
+        }
+    }
+
+    /**
+     * One board of a round; a bye has no black
+     */
+    static final class Board {
+        final Player white;
+        final Player black;
+        Integer gameID;
+        ChessGame.Result result;
+
+        Board(Player white, Player black) {
+            this.white = white;
+            this.black = black;
+        }
+    }
+
+    /**
+     * @return how many rounds a round robin between this many players takes
+     */
+    static int roundRobinRounds(int players) {
+        return players % 2 == 0 ? players - 1 : players;
+    }
+
+    /**
+     * Pairs a round of a round robin by the circle method: the first player stays put and
+     * the rest turn one place round the circle each round, so over all the rounds everyone
+     * meets everyone exactly once. With an odd number of players, whoever is opposite the
+     * empty seat has a bye. Colours alternate from board to board, and as players move
+     * round the circle they mostly alternate from round to round too.
+     *
+     * @param players in seed order; the order must be the same every round
+     * @param round   counting from 0
+     */
+    static List<Board> roundRobin(List<Player> players, int round) {
+        int seats = players.size() + players.size() % 2;
+        Player[] at = new Player[seats];
+        at[0] = players.get(0);
+        for (int seat = 1; seat < seats; seat++) {
+            int index = 1 + (seat - 1 + round) % (seats - 1);
+            at[seat] = index < players.size() ? players.get(index) : null;
+        }
+
+        List<Board> boards = new ArrayList<>(seats / 2);
+        for (int board = 0; board < seats / 2; board++) {
+            Player top = at[board];
+            Player bottom = at[seats - 1 - board];
+            if (top == null || bottom == null) {
+                boards.add(new Board(top == null ? bottom : top, null));
+            } else if (board == 0 ? round % 2 == 0 : board % 2 == 0) {
+                boards.add(new Board(top, bottom));
+            } else {
+                boards.add(new Board(bottom, top));
+            }
+        }
+        return boards;
+    }
+
+    /**
+     * Pairs a Swiss round. Players are ranked by score, and within each score group the top
+     * half plays the bottom half in order (the Dutch system), skipping anyone they've already
+     * played. Whoever can't be paired in their group drops to the next one down, and only the
+     * last few left at the bottom may be given a rematch. With an odd number of players the
+     * lowest ranked who hasn't had a bye gets one.
+     * <p>
+     * Ranking is a sort, and a player only looks past the next free opponent in their group
+     * for the rare ones they've already played, so a round costs about O(n log n).
+     */
+    static List<Board> swiss(List<Player> players) {
+        List<Player> ranked = new ArrayList<>(players);
+        ranked.sort(BY_SCORE);
+
+        List<Board> boards = new ArrayList<>(ranked.size() / 2 + 1);
+        if (ranked.size() % 2 == 1) {
+            int bye = ranked.size() - 1;
+            while (bye > 0 && ranked.get(bye).hadBye) {
+                bye--;
+            }
+            boards.add(new Board(ranked.remove(bye), null));
+        }
+
+        List<Player> carried = new ArrayList<>();
+        int next = 0;
+        while (next < ranked.size()) {
+            int score = ranked.get(next).halfPoints;
+            List<Player> group = new ArrayList<>(carried);
+            while (next < ranked.size() && ranked.get(next).halfPoints == score) {
+                group.add(ranked.get(next++));
+            }
+            carried = pairGroup(group, false, boards);
+        }
+        // the bottom of the table has run out of fresh opponents; pair them anyway
+        pairGroup(pairGroup(carried, false, boards), true, boards);
+
+        // byes first was only for choosing them; boards read best in rank order
+        if (!boards.isEmpty() && boards.get(0).black == null) {
+            boards.add(boards.remove(0));
+        }
+        return boards;
+    }
+
+    /**
+     * Pairs the top half of a group against the bottom half
+     *
+     * @return the players left unpaired, in rank order
+     */
+    private static List<Player> pairGroup(List<Player> group, boolean allowRematch, List<Board> boards) {
+        int half = group.size() / 2;
+        boolean[] taken = new boolean[group.size()];
+        // the first bottom half player who might still be free
+        int firstFree = half;
+        List<Player> unpaired = new ArrayList<>();
+        for (int top = 0; top < half; top++) {
+            Player player = group.get(top);
+            while (firstFree < group.size() && taken[firstFree]) {
+                firstFree++;
+            }
+            int partner = -1;
+            for (int bottom = firstFree; bottom < group.size(); bottom++) {
+                if (!taken[bottom] && (allowRematch || !player.opponents.contains(group.get(bottom).username))) {
+                    partner = bottom;
+                    break;
+                }
+            }
+            if (partner < 0) {
+                unpaired.add(player);
+            } else {
+                taken[partner] = true;
+                boards.add(colored(player, group.get(partner)));
+            }
+        }
+        for (int bottom = half; bottom < group.size(); bottom++) {
+            if (!taken[bottom]) {
+                unpaired.add(group.get(bottom));
+            }
+        }
+        return unpaired;
+    }
+
+    /**
+     * White goes to whoever has had it less, then to whoever had black last time, then to
+     * the higher ranked
+     */
+    private static Board colored(Player higher, Player lower) {
+        int balance = Integer.compare(higher.whites - higher.blacks, lower.whites - lower.blacks);
+        if (balance > 0) {
+            return new Board(lower, higher);
+        }
+        if (balance == 0 && higher.lastColor == ChessGame.TeamColor.WHITE
+                && lower.lastColor != ChessGame.TeamColor.WHITE) {
+            return new Board(lower, higher);
+        }
+        return new Board(higher, lower);
+    }
+}
@@ -0,0 +1,259 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AuthData;
+import model.GameData;
+import model.LeaderboardEntry;
+import model.LeaderboardResult;
+import model.RatingData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Glicko-2 ratings for registered players, and the leaderboard they make.
+ * <p>
+ * Ratings change a game at a time: when a game between two players ends, each is rated on
+ * it as a rating period of its own, and the new ratings are saved and moved on the
+ * leaderboard. The leaderboard lives in memory, loaded from the saved ratings when the
+ * service starts. {@link #recompute} works every rating out again from the stored games,
+ * which puts right any update that was lost on the way to the database; it replays games
+ * in id order, so a player with two games running at once may come out a point or two
+ * different from the live updates, which applied them in the order they finished.
+ */
+public class RatingService {
+
+    public static final int DEFAULT_LIMIT = 25;
+    public static final int MAX_LIMIT = 100;
+
+    private final DataAccess dataAccess;
+    private final Leaderboard leaderboard = new Leaderboard();
+    // rating updates, and swapping in a recompute's results, happen one at a time
+    private final Object lock = new Object();
+    // one recompute at a time
+    private final Object recomputing = new Object();
+    // games finished while a recompute is reading the stored games, for it to add on at the end;
+    // null when no recompute is running; guarded by lock
+    private List<GameData> finishedDuringRecompute;
+    private ScheduledExecutorService recomputer;
+
+    public RatingService(DataAccess dataAccess) {
+        this.dataAccess = dataAccess;
+        try {
+            leaderboard.replaceAll(dataAccess.listRatings());
+        } catch (DataAccessException ex) {
+            // everyone starts unrated, and the first recompute fills the board in
+            System.out.println("couldn't load ratings: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * @return the player's rating rounded to a whole number, or the starting rating if they have none
+     */
+    public int ratingOf(String username) {
+        RatingData rating = leaderboard.get(username);
+        return (int) Math.round(rating == null ? Glicko2.DEFAULT_RATING : rating.rating());
+    }
+
+    /**
+     * Rates both players on a game that just ended. Games without a recorded result, or
+     * without two different players in the seats, aren't rated.
+     */
+    public void gameFinished(GameData game) throws DataAccessException {
+        if (!isRated(game)) {
+            return;
+        }
+        synchronized (lock) {
+            Map<String, RatingData> ratings = new HashMap<>();
+            ratings.put(game.whiteUsername(), current(game.whiteUsername()));
+            ratings.put(game.blackUsername(), current(game.blackUsername()));
+            rate(ratings, game);
+
+            dataAccess.saveRatings(new ArrayList<>(ratings.values()));
+            for (RatingData rating : ratings.values()) {
+                leaderboard.put(rating);
+            }
+            if (finishedDuringRecompute != null) {
+                finishedDuringRecompute.add(game);
+            }
+        }
+    }
+
+    /**
+     * Gets a stretch of the leaderboard
+     *
+     * @param offset players to skip from the top, or null for none
+     * @param limit  most players to return, or null for {@value #DEFAULT_LIMIT}; at most {@value #MAX_LIMIT}
+     */
+    public LeaderboardResult leaderboard(String authToken, Integer offset, Integer limit) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        int skip = offset == null ? 0 : offset;
+        int take = limit == null ? DEFAULT_LIMIT : limit;
+        if (skip < 0 || take < 1 || take > MAX_LIMIT) {
+            throw new DataAccessException("bad request");
+        }
+
+        List<RatingData> page;
+        int total;
+        synchronized (leaderboard) {
+            page = leaderboard.page(skip, take);
+            total = leaderboard.size();
+        }
+        LeaderboardEntry[] players = new LeaderboardEntry[page.size()];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = toEntry(skip + i + 1, page.get(i));
+        }
+        return new LeaderboardResult(players, total);
+    }
+
+    /**
+     * Gets one player's rating and rank
+     *
+     * @throws DataAccessException "bad request" if the player isn't rated
+     */
+    public LeaderboardEntry standing(String authToken, String username) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        synchronized (leaderboard) {
+            RatingData rating = leaderboard.get(username);
+            if (rating == null) {
+                throw new DataAccessException("bad request");
+            }
+            return toEntry(leaderboard.rank(username), rating);
+        }
+    }
+
+    /**
+     * Works every rating out again from the stored games and replaces the saved ratings and
+     * the leaderboard with the results. Games may end while this runs; they're rated on
+     * top of the results once the stored games have all been read.
+     *
+     * @return how many games were rated
+     */
+    public int recompute() throws DataAccessException {
+        synchronized (recomputing) {
+            return recomputeAll();
+        }
+    }
+
+    private int recomputeAll() throws DataAccessException {
+        synchronized (lock) {
+            finishedDuringRecompute = new ArrayList<>();
+        }
+        try {
+            Map<String, RatingData> ratings = new HashMap<>();
+            Set<Integer> rated = new HashSet<>();
+            try {
+                dataAccess.forEachGame(null, game -> {
+                    if (isRated(game)) {
+                        rate(ratings, game);
+                        rated.add(game.gameID());
+                    }
+                });
+            } catch (IOException ex) {
+                throw new DataAccessException("failed to read games", ex);
+            }
+
+            synchronized (lock) {
+                for (GameData game : finishedDuringRecompute) {
+                    if (rated.add(game.gameID())) {
+                        rate(ratings, game);
+                    }
+                }
+                dataAccess.saveRatings(new ArrayList<>(ratings.values()));
+                leaderboard.replaceAll(ratings.values());
+            }
+            return rated.size();
+        } finally {
+            synchronized (lock) {
+                finishedDuringRecompute = null;
+            }
+        }
+    }
+
+    /**
+     * Runs {@link #recompute} in the background every so often, the first time one period from now
+     */
+    public synchronized void recomputeEvery(long period, TimeUnit unit) {
+        if (recomputer != null) {
+            recomputer.shutdownNow();
+        }
+        recomputer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rating-recompute");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recomputer.scheduleWithFixedDelay(() -> {
+            try {
+                recompute();
+            } catch (DataAccessException | RuntimeException ex) {
+                // try again next time; a scheduled task that throws is never run again
+                System.out.println("rating recompute failed: " + ex);
+            }
+        }, period, period, unit);
+    }
+
+    public synchronized void shutdown() {
+        if (recomputer != null) {
+            recomputer.shutdownNow();
+        }
+    }
+
+    private RatingData current(String username) {
+        RatingData rating = leaderboard.get(username);
+        return rating == null ? Glicko2.unrated(username) : rating;
+    }
+
+    /**
+     * Rates both players on one game, replacing their entries in the map; a player not in
+     * it yet starts unrated
+     */
+    private static void rate(Map<String, RatingData> ratings, GameData game) {
+        double whiteScore = switch (game.game().getResult()) {
+            case WHITE_WINS -> 1;
+            case DRAW -> 0.5;
+            case BLACK_WINS -> 0;
+        };
+        RatingData white = ratings.computeIfAbsent(game.whiteUsername(), Glicko2::unrated);
+        RatingData black = ratings.computeIfAbsent(game.blackUsername(), Glicko2::unrated);
+        ratings.put(white.username(), Glicko2.rate(white, List.of(new Glicko2.Outcome(black, whiteScore))));
+        ratings.put(black.username(), Glicko2.rate(black, List.of(new Glicko2.Outcome(white, 1 - whiteScore))));
+    }
+
+    private static boolean isRated(GameData game) {
+        ChessGame chess = game.game();
+        return chess != null && chess.getResult() != null
+                && game.whiteUsername() != null && game.blackUsername() != null
+                && !game.whiteUsername().equals(game.blackUsername());
+    }
+
+    private static LeaderboardEntry toEntry(int rank, RatingData rating) {
+        return new LeaderboardEntry(rank, rating.username(), (int) Math.round(rating.rating()),
+                (int) Math.round(rating.deviation()), rating.games());
+    }
+}
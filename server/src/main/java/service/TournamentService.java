@@ -0,0 +1,327 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AuthData;
+import model.CreateTournamentRequest;
+import model.GameData;
+import model.TournamentData;
+import model.TournamentPairing;
+import model.TournamentStanding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Round robin and Swiss tournaments.
+ * <p>
+ * Players join until the organizer starts the first round; after that the organizer starts
+ * each round once every game of the last one has a result. Starting a round pairs it (see
+ * {@link Pairings}) and creates all its games in one {@link DataAccess#createGames} batch.
+ * Results come in as games end, through {@link #gameFinished}, so starting the next round
+ * needs nothing from the database but the new games.
+ * <p>
+ * Tournaments are kept in memory, like the matchmaking queue; their games are stored as
+ * usual and outlive a restart.
+ */
+public class TournamentService {
+
+    public enum Format {
+        ROUND_ROBIN,
+        SWISS
+    }
+
+    public static final int MAX_SWISS_ROUNDS = 30;
+
+    private final DataAccess dataAccess;
+    private final ToIntFunction<String> ratings;
+    private final ConcurrentHashMap<Integer, Tournament> tournaments = new ConcurrentHashMap<>();
+    // every unfinished tournament game, so a game that ends finds its tournament straight away
+    private final ConcurrentHashMap<Integer, Tournament> byGame = new ConcurrentHashMap<>();
+    private final AtomicInteger nextID = new AtomicInteger(1);
+
+    /**
+     * @param ratings each player's rating, for seeding
+     */
+    public TournamentService(DataAccess dataAccess, ToIntFunction<String> ratings) {
+        this.dataAccess = dataAccess;
+        this.ratings = ratings;
+    }
+
+    /**
+     * Creates a tournament run by the caller
+     *
+     * @return the new tournament's id
+     */
+    public int createTournament(String authToken, CreateTournamentRequest request) throws DataAccessException {
+        AuthData auth = authenticate(authToken);
+
+        if (request == null || request.name() == null || request.name().isEmpty() || request.format() == null) {
+            throw new DataAccessException("bad request");
+        }
+        Format format;
+        try {
+            format = Format.valueOf(request.format());
+        } catch (IllegalArgumentException ex) {
+            throw new DataAccessException("bad request");
+        }
+        int rounds = 0;
+        if (format == Format.SWISS) {
+            if (request.rounds() == null || request.rounds() < 1 || request.rounds() > MAX_SWISS_ROUNDS) {
+                throw new DataAccessException("bad request");
+            }
+            rounds = request.rounds();
+        }
+        GameService.checkTimeControl(request.baseSeconds(), request.incrementSeconds());
+
+        int id = nextID.getAndIncrement();
+        tournaments.put(id, new Tournament(id, request.name(), format, auth.username(), rounds,
+                request.baseSeconds(), request.incrementSeconds()));
+        return id;
+    }
+
+    /**
+     * Enters the caller in a tournament that hasn't started
+     *
+     * @throws DataAccessException "already taken" if they're already in it
+     */
+    public void join(String authToken, Integer tournamentID) throws DataAccessException {
+        AuthData auth = authenticate(authToken);
+        Tournament tournament = find(tournamentID);
+
+        synchronized (tournament) {
+            if (tournament.round > 0) {
+                throw new DataAccessException("bad request");
+            }
+            if (tournament.players.containsKey(auth.username())) {
+                throw new DataAccessException("already taken");
+            }
+            tournament.players.put(auth.username(), new Pairings.Player(auth.username(),
+                    ratings.applyAsInt(auth.username())));
+        }
+    }
+
+    /**
+     * Pairs the next round and creates its games. Only the organizer can start a round.
+     *
+     * @return the tournament with the new round's pairings
+     * @throws DataAccessException "bad request" if the last round is still being played,
+     *                             the tournament is over, or fewer than two players joined
+     */
+    public TournamentData startRound(String authToken, Integer tournamentID) throws DataAccessException {
+        AuthData auth = authenticate(authToken);
+        Tournament tournament = find(tournamentID);
+        if (!tournament.organizer.equals(auth.username())) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        synchronized (tournament) {
+            collectResults(tournament);
+            if (tournament.players.size() < 2 || tournament.round >= tournament.rounds()) {
+                throw new DataAccessException("bad request");
+            }
+            if (tournament.round == 0) {
+                tournament.seeded = new ArrayList<>(tournament.players.values());
+                tournament.seeded.sort(Pairings.BY_SCORE);
+            }
+
+            List<Pairings.Board> boards = tournament.format == Format.ROUND_ROBIN
+                    ? Pairings.roundRobin(tournament.seeded, tournament.round)
+                    : Pairings.swiss(tournament.seeded);
+
+            List<GameData> games = new ArrayList<>(boards.size());
+            for (Pairings.Board board : boards) {
+                if (board.black != null) {
+                    games.add(GameService.pairedGame(board.white.username, board.black.username,
+                            tournament.baseSeconds, tournament.incrementSeconds));
+                }
+            }
+            List<Integer> ids = dataAccess.createGames(games);
+
+            // the games exist, so the round is on
+            int next = 0;
+            tournament.boards = new LinkedHashMap<>();
+            tournament.byes = new ArrayList<>();
+            for (Pairings.Board board : boards) {
+                if (board.black == null) {
+                    board.white.played++;
+                    if (tournament.format == Format.SWISS) {
+                        board.white.hadBye = true;
+                        board.white.halfPoints += 2;
+                    }
+                    tournament.byes.add(board);
+                    continue;
+                }
+                board.gameID = ids.get(next++);
+                tournament.boards.put(board.gameID, board);
+                byGame.put(board.gameID, tournament);
+                board.white.opponents.add(board.black.username);
+                board.black.opponents.add(board.white.username);
+                board.white.whites++;
+                board.black.blacks++;
+                board.white.lastColor = ChessGame.TeamColor.WHITE;
+                board.black.lastColor = ChessGame.TeamColor.BLACK;
+            }
+            tournament.round++;
+            return toData(tournament);
+        }
+    }
+
+    public TournamentData getTournament(String authToken, Integer tournamentID) throws DataAccessException {
+        authenticate(authToken);
+        Tournament tournament = find(tournamentID);
+        synchronized (tournament) {
+            return toData(tournament);
+        }
+    }
+
+    /**
+     * Scores a game that just ended, if it was a tournament game
+     */
+    public void gameFinished(GameData game) {
+        Tournament tournament = byGame.get(game.gameID());
+        if (tournament == null || game.game() == null || game.game().getResult() == null) {
+            return;
+        }
+        synchronized (tournament) {
+            Pairings.Board board = tournament.boards.get(game.gameID());
+            if (board != null) {
+                score(board, game.game().getResult());
+            }
+        }
+    }
+
+    /**
+     * Makes sure every game of the current round has a result, looking up any that ended
+     * without {@link #gameFinished} hearing of it
+     *
+     * @throws DataAccessException "bad request" if a game is still being played
+     */
+    private void collectResults(Tournament tournament) throws DataAccessException {
+        for (Pairings.Board board : tournament.boards.values()) {
+            if (board.result != null) {
+                continue;
+            }
+            GameData game = dataAccess.getGame(board.gameID);
+            if (game == null || game.game() == null || game.game().getResult() == null) {
+                throw new DataAccessException("bad request");
+            }
+            score(board, game.game().getResult());
+        }
+    }
+
+    private void score(Pairings.Board board, ChessGame.Result result) {
+        if (board.result != null) {
+            return;
+        }
+        board.result = result;
+        board.white.played++;
+        board.black.played++;
+        switch (result) {
+            case WHITE_WINS -> board.white.halfPoints += 2;
+            case BLACK_WINS -> board.black.halfPoints += 2;
+            case DRAW -> {
+                board.white.halfPoints++;
+                board.black.halfPoints++;
+            }
+        }
+        byGame.remove(board.gameID);
+    }
+
+    private TournamentData toData(Tournament tournament) {
+        List<Pairings.Player> ranked = new ArrayList<>(tournament.players.values());
+        Map<String, Integer> buchholz = new HashMap<>();
+        for (Pairings.Player player : ranked) {
+            int sum = 0;
+            for (String opponent : player.opponents) {
+                sum += tournament.players.get(opponent).halfPoints;
+            }
+            buchholz.put(player.username, sum);
+        }
+        ranked.sort((a, b) -> {
+            int byScore = Integer.compare(b.halfPoints, a.halfPoints);
+            if (byScore != 0) {
+                return byScore;
+            }
+            int byBuchholz = Integer.compare(buchholz.get(b.username), buchholz.get(a.username));
+            return byBuchholz != 0 ? byBuchholz : a.username.compareTo(b.username);
+        });
+
+        TournamentStanding[] standings = new TournamentStanding[ranked.size()];
+        for (int i = 0; i < standings.length; i++) {
+            Pairings.Player player = ranked.get(i);
+            standings[i] = new TournamentStanding(i + 1, player.username, player.halfPoints / 2.0,
+                    buchholz.get(player.username) / 2.0, player.played);
+        }
+
+        List<TournamentPairing> pairings = new ArrayList<>();
+        for (Pairings.Board board : tournament.boards.values()) {
+            pairings.add(new TournamentPairing(board.gameID, board.white.username, board.black.username));
+        }
+        for (Pairings.Board bye : tournament.byes) {
+            pairings.add(new TournamentPairing(null, bye.white.username, null));
+        }
+        return new TournamentData(tournament.id, tournament.name, tournament.format.name(), tournament.round,
+                tournament.rounds(), standings, pairings.toArray(new TournamentPairing[0]));
+    }
+
+    private AuthData authenticate(String authToken) throws DataAccessException {
+        if (authToken == null || authToken.isEmpty()) {
+            throw new DataAccessException("unauthorized");
+        }
+
+        AuthData auth = dataAccess.getAuth(authToken);
+        if (auth == null) {
+            throw new DataAccessException("unauthorized");
+        }
+        return auth;
+    }
+
+    private Tournament find(Integer tournamentID) throws DataAccessException {
+        Tournament tournament = tournamentID == null ? null : tournaments.get(tournamentID);
+        if (tournament == null) {
+            throw new DataAccessException("bad request");
+        }
+        return tournament;
+    }
+
+    private static final class Tournament {
+        private final int id;
+        private final String name;
+        private final Format format;
+        private final String organizer;
+        private final int swissRounds;
+        private final Integer baseSeconds;
+        private final Integer incrementSeconds;
+        // in the order they joined
+        private final Map<String, Pairings.Player> players = new LinkedHashMap<>();
+        // fixed when the first round starts; a round robin's circle depends on it never changing
+        private List<Pairings.Player> seeded;
+        private int round;
+        // the current round's games by id, and its byes
+        private Map<Integer, Pairings.Board> boards = new LinkedHashMap<>();
+        private List<Pairings.Board> byes = new ArrayList<>();
+
+        private Tournament(int id, String name, Format format, String organizer, int swissRounds,
+                           Integer baseSeconds, Integer incrementSeconds) {
+            this.id = id;
+            this.name = name;
+            this.format = format;
+            this.organizer = organizer;
+            this.swissRounds = swissRounds;
+            this.baseSeconds = baseSeconds;
+            this.incrementSeconds = incrementSeconds;
+        }
+
+        private int rounds() {
+            return format == Format.ROUND_ROBIN ? Pairings.roundRobinRounds(players.size()) : swissRounds;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package service;
 
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.SignedTokenDataAccess;
 
 
 import model.UserData;
@@ -16,12 +17,22 @@ import java.util.UUID;
 public class UserService {
 
     private final DataAccess dataAccess;    
+    private final SignedTokenDataAccess signedTokens;
     
     public UserService(DataAccess dataAccess) { 
-        this.dataAccess = dataAccess; 
+        this(dataAccess, null);
          
     }
 
+    /**
+     * @param signedTokens issues signed tokens that are checked without the database, or null
+     *                     to keep every token in the auth table
+     */
+    public UserService(DataAccess dataAccess, SignedTokenDataAccess signedTokens) {
+        this.dataAccess = dataAccess;
+        this.signedTokens = signedTokens;
+    }
+
 
     public AuthData register(UserData req) throws DataAccessException { 
 
@@ -47,13 +58,8 @@ public class UserService {
         String hashedPassword = BCrypt.hashpw(req.password(), BCrypt.gensalt());
         dataAccess.createUser(new UserData(req.username(), hashedPassword, req.email()));
     
-        String token = UUID.randomUUID().toString();  
-        AuthData authData = new AuthData(token, req.username());  
         //then make the authdta
-
-        dataAccess.createAuth(authData);  
-
-        return authData;  
+        return newAuth(req.username());
 
 
     }
@@ -81,9 +87,18 @@ public class UserService {
             throw new DataAccessException("unauthorized");
 
         }
+        return newAuth(req.username());
+    }
+
+
+    private AuthData newAuth(String username) throws DataAccessException {
+        if (signedTokens != null) {
+            return signedTokens.issue(username);
+        }
+
         String token = UUID.randomUUID().toString();
 
-        AuthData authData = new AuthData(token, req.username());
+        AuthData authData = new AuthData(token, username);
 
         dataAccess.createAuth(authData);
         return authData;
@@ -0,0 +1,174 @@
+package service;
+
+import dataaccess.DataAccessException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Hands items from the calling thread to a pool of workers through a bounded queue, so
+ * memory stays flat however many items there are. Used by the PGN import and the opening
+ * explorer's rebuild.
+ * <p>
+ * Each worker keeps its own state and is told when the items run out. The first worker to
+ * fail stops the others and the producer, and its error is the one {@link #run} throws.
+ */
+final class WorkerPipeline<T> {
+
+    /**
+     * What one worker does with its share of the items; each worker gets its own
+     */
+    interface Worker<T> {
+        void take(T item) throws DataAccessException;
+
+        /**
+         * Called once there are no more items, to store whatever is still held
+         */
+        void finish() throws DataAccessException;
+    }
+
+    interface Sink<T> {
+        /**
+         * Queues an item, waiting for room
+         *
+         * @return false if a worker has failed, and the producer should stop
+         */
+        boolean hand(T item) throws InterruptedIOException;
+    }
+
+    interface Producer<T> {
+        void produce(Sink<T> sink) throws IOException, DataAccessException;
+    }
+
+    // tells a worker there is nothing more to take
+    private static final Object END = new Object();
+
+    private final String task;
+    private final int threads;
+    private final int capacity;
+
+    /**
+     * @param task     what the work is called in thread names and errors, like "import"
+     * @param threads  how many workers
+     * @param capacity how many items may wait for a worker
+     */
+    WorkerPipeline(String task, int threads, int capacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        this.task = task;
+        this.threads = threads;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Runs the producer on this thread, then waits for the workers to finish. Whatever the
+     * workers stored before a failure stays stored.
+     *
+     * @param workers makes each worker
+     * @throws IOException         if the producer fails while every worker is fine
+     * @throws DataAccessException if a worker or the producer fails storing, or this thread is interrupted
+     */
+    void run(Supplier<Worker<T>> workers, Producer<T> producer) throws IOException, DataAccessException {
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>(capacity);
+        AtomicReference<DataAccessException> failure = new AtomicReference<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, task + "-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> running = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker<T> worker = workers.get();
+            running.add(pool.submit(() -> {
+                work(worker, queue, failure);
+                return null;
+            }));
+        }
+
+        try {
+            producer.produce(item -> {
+                try {
+                    return hand(queue, item, failure);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(task + " interrupted");
+                }
+            });
+            for (int i = 0; i < threads; i++) {
+                hand(queue, END, failure);
+            }
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } catch (InterruptedException | InterruptedIOException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException(task + " interrupted", ex);
+        } catch (IOException ex) {
+            // a producer may throw to get out once a worker fails; that worker's error is the one to report
+            if (failure.get() == null) {
+                throw ex;
+            }
+        } catch (ExecutionException ex) {
+            throw new DataAccessException(task + " failed", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void work(Worker<T> worker, BlockingQueue<Object> queue,
+                      AtomicReference<DataAccessException> failure) throws InterruptedException {
+        try {
+            while (true) {
+                Object item = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    if (failure.get() != null) {
+                        // another worker failed, so the producer has stopped
+                        return;
+                    }
+                    continue;
+                }
+                if (item == END) {
+                    break;
+                }
+                worker.take((T) item);
+            }
+            worker.finish();
+        } catch (DataAccessException ex) {
+            failure.compareAndSet(null, ex);
+        } catch (RuntimeException ex) {
+            // recorded like a database error, or the producer would wait forever on a full queue
+            failure.compareAndSet(null, new DataAccessException(task + " failed", ex));
+        }
+    }
+
+    /**
+     * Queues an item, giving up if a worker has failed, since then nothing may be taking
+     */
+    private static boolean hand(BlockingQueue<Object> queue, Object item,
+                                AtomicReference<DataAccessException> failure) throws InterruptedException {
+        while (failure.get() == null) {
+            if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,13 +1,22 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
 import model.AuthData;
+import model.ExplorerStat;
 import model.GameData;
+import model.GameSummary;
+import model.PositionHit;
+import model.RatingData;
 import model.UserData;
 
 import org.junit.jupiter.api.*;
 
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class MySqlDataAccessTests {
@@ -102,6 +111,48 @@ public class MySqlDataAccessTests {
         Assertions.assertNull(dao.getAuth("missingToken"));
     }
 
+    @Test
+    public void revokeTokenPositive() throws DataAccessException {
+        dao.createUser(new UserData("a", "pw", "a@mail.com"));
+        dao.revokeToken("sig1", "a", 2000);
+        dao.revokeToken("sig2", "a", 1000);
+
+        Assertions.assertEquals(2, dao.listRevokedTokens().size());
+        dao.pruneRevokedTokens(1500);
+        Assertions.assertEquals(java.util.Map.of("sig1", 2000L), dao.listRevokedTokens());
+    }
+
+    @Test
+    public void tokensValidFromPositive() throws DataAccessException {
+        long before = dao.tokensValidFrom();
+        dao.clear();
+
+        Assertions.assertTrue(dao.tokensValidFrom() > before);
+        // kept in the database, so a new store sees it too
+        Assertions.assertEquals(dao.tokensValidFrom(), new MySqlDataAccess().tokensValidFrom());
+    }
+
+    @Test
+    public void tokensValidFromNegative() throws DataAccessException {
+        long cleared = dao.tokensValidFrom();
+        dao.createUser(new UserData("a", "pw", "a@mail.com"));
+        dao.revokeToken("sig1", "a", 2000);
+        dao.pruneRevokedTokens(3000);
+
+        Assertions.assertEquals(cleared, dao.tokensValidFrom());
+    }
+
+    @Test
+    public void revokeTokenNegative() throws DataAccessException {
+        dao.createUser(new UserData("a", "pw", "a@mail.com"));
+        dao.revokeToken("sig1", "a", Long.MAX_VALUE);
+
+        // a revoked token is never a session, and logging it out again doesn't bring it back
+        Assertions.assertNull(dao.getAuth("sig1"));
+        dao.deleteAuth("sig1");
+        Assertions.assertEquals(1, dao.listRevokedTokens().size());
+    }
+
 
 
     @Test
@@ -173,5 +224,168 @@ public class MySqlDataAccessTests {
                 () -> dao.updateGame(missingGame));
 
     }
-}
 
+    @Test
+    public void createGamesPositive() throws DataAccessException {
+        List<Integer> ids = dao.createGames(List.of(
+                new GameData(null, null, null, "batch1", new ChessGame()),
+                new GameData(null, null, null, "batch2", new ChessGame()),
+                new GameData(null, null, null, "batch3", new ChessGame())));
+
+        Assertions.assertEquals(3, ids.size());
+        Assertions.assertEquals("batch1", dao.getGame(ids.get(0)).gameName());
+        Assertions.assertEquals("batch3", dao.getGame(ids.get(2)).gameName());
+    }
+
+    @Test
+    public void createGamesNegative() throws DataAccessException {
+        Assertions.assertThrows(DataAccessException.class, () -> dao.createGames(List.of(
+                new GameData(null, null, null, "fine", new ChessGame()),
+                new GameData(null, null, null, null, new ChessGame()))));
+
+        Assertions.assertEquals(0, dao.listGames().size());
+    }
+
+    @Test
+    public void forEachGamePositive() throws DataAccessException, IOException {
+        dao.createGame(new GameData(null, "w", null, "one", new ChessGame()));
+        dao.createGame(new GameData(null, null, "w", "two", new ChessGame()));
+        dao.createGame(new GameData(null, null, null, "three", new ChessGame()));
+
+        List<String> names = new ArrayList<>();
+        dao.forEachGame("w", game -> names.add(game.gameName()));
+
+        Assertions.assertEquals(List.of("one", "two"), names);
+    }
+
+    @Test
+    public void forEachGameNegative() throws DataAccessException, IOException {
+        dao.createGame(new GameData(null, "w", null, "one", new ChessGame()));
+
+        dao.forEachGame("nobody", game -> Assertions.fail("not their game"));
+    }
+
+    @Test
+    public void findPositionsPositive() throws DataAccessException, InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        List<Integer> ids = dao.createGames(List.of(new GameData(null, null, null, "indexed", game)));
+        dao.indexPosition(game.positionHash(), 99, 7);
+        dao.indexPosition(game.positionHash(), 99, 7);
+
+        Assertions.assertEquals(List.of(new PositionHit(ids.get(0), 1), new PositionHit(99, 7)),
+                dao.findPositions(game.positionHash(), 10));
+        Assertions.assertEquals(1, dao.findPositions(game.positionHash(), 1).size());
+    }
+
+    @Test
+    public void findPositionsNegative() throws DataAccessException {
+        dao.indexPosition(42L, 1, 1);
+
+        Assertions.assertTrue(dao.findPositions(43L, 10).isEmpty());
+    }
+
+    @Test
+    public void addExplorerStatsPositive() throws DataAccessException {
+        dao.addExplorerStats(List.of(new ExplorerStat(5L, "e2e4", 2, 1, 1, 0)));
+        dao.addExplorerStats(List.of(new ExplorerStat(5L, "e2e4", 1, 0, 0, 1), new ExplorerStat(5L, "d2d4", 1, 1, 0, 0)));
+
+        List<ExplorerStat> stats = dao.getExplorerStats(5L);
+        Assertions.assertEquals(2, stats.size());
+        Assertions.assertTrue(stats.contains(new ExplorerStat(5L, "e2e4", 3, 1, 1, 1)));
+
+        dao.clearExplorerStats();
+        Assertions.assertTrue(dao.getExplorerStats(5L).isEmpty());
+    }
+
+    @Test
+    public void addExplorerStatsNegative() throws DataAccessException {
+        Assertions.assertThrows(DataAccessException.class, () ->
+                dao.addExplorerStats(List.of(new ExplorerStat(5L, null, 1, 1, 0, 0))));
+
+        Assertions.assertTrue(dao.getExplorerStats(5L).isEmpty());
+    }
+
+    @Test
+    public void saveRatingsPositive() throws DataAccessException {
+        dao.createUser(new UserData("a", "pass", "a@mail.com"));
+        dao.saveRatings(List.of(new RatingData("a", 1500, 350, 0.06, 0)));
+        dao.saveRatings(List.of(new RatingData("a", 1662.3, 290.2, 0.06, 1)));
+
+        Assertions.assertEquals(new RatingData("a", 1662.3, 290.2, 0.06, 1), dao.getRating("a"));
+        Assertions.assertEquals(1, dao.listRatings().size());
+    }
+
+    @Test
+    public void saveRatingsNegative() throws DataAccessException {
+        Assertions.assertThrows(DataAccessException.class, () ->
+                dao.saveRatings(List.of(new RatingData("nobody", 1500, 350, 0.06, 0))));
+
+        Assertions.assertNull(dao.getRating("nobody"));
+    }
+
+    @Test
+    public void listGameSummariesPositive() throws DataAccessException {
+        dao.createUser(new UserData("a", "pass", "a@mail.com"));
+        ChessGame over = new ChessGame();
+        over.endGame(ChessGame.Result.WHITE_WINS);
+        int first = dao.createGame(new GameData(null, "a", "a", "mirror", over));
+        int second = dao.createGame(new GameData(null, null, "a", "waiting", new ChessGame()));
+        dao.createGame(new GameData(null, null, null, "empty", new ChessGame()));
+
+        Assertions.assertEquals(List.of(new GameSummary(first, "a", "a", "mirror", GameSummary.FINISHED)),
+                dao.listGameSummaries(new GameQuery(0, 10, "a", false, true)));
+        Assertions.assertEquals(List.of(first, second), dao.listGameSummaries(new GameQuery(0, 10, "a", false, null))
+                .stream().map(GameSummary::gameID).toList());
+        Assertions.assertEquals(2, dao.listGameSummaries(new GameQuery(0, 10, null, true, null)).size());
+        Assertions.assertEquals(1, dao.listGameSummaries(new GameQuery(second, 10, null, false, null)).size());
+    }
+
+    @Test
+    public void listPlayerOpenSeatsPositive() throws DataAccessException {
+        dao.createUser(new UserData("a", "pass", "a@mail.com"));
+        ChessGame over = new ChessGame();
+        over.endGame(ChessGame.Result.DRAW);
+        dao.createGame(new GameData(null, "a", null, "abandoned", over));
+        int waiting = dao.createGame(new GameData(null, null, "a", "waiting", new ChessGame()));
+        dao.createGame(new GameData(null, "a", "a", "full", new ChessGame()));
+
+        Assertions.assertEquals(List.of(new GameSummary(waiting, null, "a", "waiting", GameSummary.ACTIVE)),
+                dao.listGameSummaries(new GameQuery(0, 10, "a", true, null)));
+        Assertions.assertTrue(dao.listGameSummaries(new GameQuery(0, 10, "a", true, true)).isEmpty());
+    }
+
+    @Test
+    public void outsideGameWritesPositive() throws DataAccessException {
+        MySqlDataAccess elsewhere = new MySqlDataAccess();
+        long before = dao.outsideGameWrites();
+
+        int id = elsewhere.createGame(new GameData(null, null, null, "g", new ChessGame()));
+        elsewhere.updateGame(new GameData(id, "a", null, "g", new ChessGame()));
+        elsewhere.createGames(List.of(new GameData(null, null, null, "h", new ChessGame()),
+                new GameData(null, null, null, "i", new ChessGame())));
+
+        Assertions.assertEquals(before + 4, dao.outsideGameWrites());
+    }
+
+    @Test
+    public void outsideGameWritesNegative() throws DataAccessException {
+        long before = dao.outsideGameWrites();
+
+        // its own writes aren't outside, and a write that fails isn't counted
+        dao.createGame(new GameData(null, null, null, "g", new ChessGame()));
+        MySqlDataAccess elsewhere = new MySqlDataAccess();
+        Assertions.assertThrows(DataAccessException.class, () ->
+                elsewhere.updateGame(new GameData(9999, null, null, "g", new ChessGame())));
+
+        Assertions.assertEquals(before, dao.outsideGameWrites());
+    }
+
+    @Test
+    public void listGameSummariesNegative() throws DataAccessException {
+        dao.createGame(new GameData(null, null, null, "a", new ChessGame()));
+
+        Assertions.assertTrue(dao.listGameSummaries(new GameQuery(0, 10, "nobody", false, null)).isEmpty());
+        Assertions.assertTrue(dao.listGameSummaries(new GameQuery(0, 10, null, false, true)).isEmpty());
+    }
+}
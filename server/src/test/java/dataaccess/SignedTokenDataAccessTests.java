@@ -0,0 +1,92 @@
+package dataaccess;
+
+import model.AuthData;
+import model.UserData;
+
+import org.junit.jupiter.api.*;
+
+public class SignedTokenDataAccessTests {
+
+    private MemoryDataAccess store;
+    private SignedTokenDataAccess dao;
+
+    @BeforeEach
+    public void setup() throws DataAccessException {
+        store = new MemoryDataAccess();
+        dao = new SignedTokenDataAccess(store, new byte[SignedTokenDataAccess.MIN_KEY_BYTES], 60_000);
+    }
+
+    @Test
+    public void getAuthPositive() throws DataAccessException {
+        AuthData issued = dao.issue("a");
+        Assertions.assertEquals(issued, dao.getAuth(issued.authToken()));
+
+        // tokens kept in the store still work beside signed ones
+        store.createUser(new UserData("b", "pw", "b@mail.com"));
+        store.createAuth(new AuthData("plain-token", "b"));
+        Assertions.assertEquals("b", dao.getAuth("plain-token").username());
+    }
+
+    @Test
+    public void getAuthNegative() throws DataAccessException, InterruptedException {
+        Assertions.assertNull(dao.getAuth("not.base64!"));
+        Assertions.assertNull(dao.getAuth("a.b"));
+
+        SignedTokenDataAccess shortLived = new SignedTokenDataAccess(store,
+                new byte[SignedTokenDataAccess.MIN_KEY_BYTES], 1);
+        AuthData issued = shortLived.issue("a");
+        Thread.sleep(5);
+        Assertions.assertNull(shortLived.getAuth(issued.authToken()));
+
+        // a clear drops every session, signed ones too
+        AuthData beforeClear = dao.issue("a");
+        dao.clear();
+        Assertions.assertNull(dao.getAuth(beforeClear.authToken()));
+        Assertions.assertNotNull(dao.getAuth(dao.issue("a").authToken()));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+            new SignedTokenDataAccess(store, new byte[16], 60_000));
+    }
+
+    @Test
+    public void clearOutlastsRestartPositive() throws DataAccessException {
+        AuthData beforeClear = dao.issue("a");
+        dao.clear();
+        AuthData afterClear = dao.issue("a");
+
+        // the same key after a restart still refuses what the clear dropped
+        SignedTokenDataAccess restarted = new SignedTokenDataAccess(store,
+                new byte[SignedTokenDataAccess.MIN_KEY_BYTES], 60_000);
+        Assertions.assertNull(restarted.getAuth(beforeClear.authToken()));
+        Assertions.assertEquals(afterClear, restarted.getAuth(afterClear.authToken()));
+    }
+
+    @Test
+    public void deleteAuthPositive() throws DataAccessException {
+        AuthData kept = dao.issue("a");
+        AuthData revoked = dao.issue("a");
+
+        dao.deleteAuth(revoked.authToken());
+
+        Assertions.assertNull(dao.getAuth(revoked.authToken()));
+        Assertions.assertNotNull(dao.getAuth(kept.authToken()));
+        Assertions.assertEquals(1, store.listRevokedTokens().size());
+    }
+
+    @Test
+    public void deleteAuthNegative() throws DataAccessException {
+        // nothing to revoke for a token that was never good
+        dao.deleteAuth("a.b");
+        Assertions.assertTrue(store.listRevokedTokens().isEmpty());
+
+        // the signature's spare bits can't be used to slip past the revoked set
+        AuthData issued = dao.issue("a");
+        dao.deleteAuth(issued.authToken());
+        String token = issued.authToken();
+        char last = token.charAt(token.length() - 1);
+        String respelled = token.substring(0, token.length() - 1)
+                + "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".charAt(
+                "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".indexOf(last) ^ 1);
+        Assertions.assertNull(dao.getAuth(respelled));
+    }
+}
@@ -0,0 +1,116 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import model.GameData;
+
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class VersionedDataAccessTests {
+
+    private VersionedDataAccess dao;
+
+    @BeforeEach
+    public void setup() {
+        dao = new VersionedDataAccess(new MemoryDataAccess());
+    }
+
+    @Test
+    public void versionsPositive() throws DataAccessException, InvalidMoveException {
+        long emptyLobby = dao.lobbyVersion();
+        int id = dao.createGame(new GameData(null, null, null, "g", new ChessGame()));
+        long created = dao.gameVersion(id);
+        Assertions.assertTrue(dao.lobbyVersion() > emptyLobby);
+
+        // a move changes the game but not what the lobby shows
+        long lobby = dao.lobbyVersion();
+        GameData game = dao.getGame(id);
+        game.game().makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        dao.updateGame(game);
+        Assertions.assertTrue(dao.gameVersion(id) > created);
+        Assertions.assertEquals(lobby, dao.lobbyVersion());
+
+        // a seat does both
+        long moved = dao.gameVersion(id);
+        dao.updateGame(game.withPlayers("white", null));
+        Assertions.assertTrue(dao.gameVersion(id) > moved);
+        Assertions.assertTrue(dao.lobbyVersion() > lobby);
+
+        List<Integer> ids = dao.createGames(List.of(new GameData(null, "a", "b", "t", new ChessGame())));
+        Assertions.assertEquals(dao.lobbyVersion(), dao.gameVersion(ids.get(0)));
+    }
+
+    @Test
+    public void versionsNegative() throws DataAccessException {
+        int id = dao.createGame(new GameData(null, null, null, "g", new ChessGame()));
+        long before = dao.gameVersion(id);
+        long lobby = dao.lobbyVersion();
+
+        // reading changes nothing
+        dao.getGame(id);
+        dao.listGames();
+        Assertions.assertEquals(before, dao.gameVersion(id));
+        Assertions.assertEquals(lobby, dao.lobbyVersion());
+
+        // a game that's gone never keeps the version it had
+        dao.clear();
+        Assertions.assertTrue(dao.gameVersion(id) > before);
+        Assertions.assertTrue(dao.lobbyVersion() > lobby);
+    }
+
+    @Test
+    public void outsideWritesPositive() throws DataAccessException {
+        AtomicLong outside = new AtomicLong();
+        VersionedDataAccess checked = new VersionedDataAccess(new MemoryDataAccess() {
+            @Override
+            public long outsideGameWrites() {
+                return outside.get();
+            }
+        }, 0);
+        int id = checked.createGame(new GameData(null, null, null, "g", new ChessGame()));
+        long before = checked.gameVersion(id);
+        long lobby = checked.lobbyVersion();
+
+        // an import elsewhere may have changed any game
+        outside.addAndGet(500);
+        Assertions.assertTrue(checked.lobbyVersion() > lobby);
+        Assertions.assertTrue(checked.gameVersion(id) > before);
+    }
+
+    @Test
+    public void outsideWritesNegative() throws DataAccessException {
+        boolean[] failing = {false};
+        VersionedDataAccess checked = new VersionedDataAccess(new MemoryDataAccess() {
+            @Override
+            public long outsideGameWrites() throws DataAccessException {
+                if (failing[0]) {
+                    throw new DataAccessException("failed to count game writes");
+                }
+                return 7;
+            }
+        }, 0);
+        long lobby = checked.lobbyVersion();
+
+        // the same count changes nothing, and a count that can't be read changes everything
+        Assertions.assertEquals(lobby, checked.lobbyVersion());
+        failing[0] = true;
+        Assertions.assertTrue(checked.lobbyVersion() > lobby);
+
+        // and between checks the count isn't read at all
+        AtomicLong reads = new AtomicLong();
+        VersionedDataAccess rarely = new VersionedDataAccess(new MemoryDataAccess() {
+            @Override
+            public long outsideGameWrites() {
+                return reads.incrementAndGet();
+            }
+        }, 60_000);
+        long first = rarely.lobbyVersion();
+        Assertions.assertEquals(first, rarely.lobbyVersion());
+        Assertions.assertEquals(1, reads.get());
+    }
+}
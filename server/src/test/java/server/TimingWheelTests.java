@@ -0,0 +1,65 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTests {
+
+    // a small ring, so most of these timeouts have to wait out whole turns
+    private final TimingWheel wheel = new TimingWheel(5, 8, Runnable::run);
+
+    @AfterEach
+    void stop() {
+        wheel.shutdown();
+    }
+
+    @Test
+    void firesNoEarlierThanAsked() throws InterruptedException {
+        int count = 200;
+        CountDownLatch done = new CountDownLatch(count);
+        ConcurrentHashMap<Integer, Long> early = new ConcurrentHashMap<>();
+        for (int i = 0; i < count; i++) {
+            int delay = i * 2;
+            long asked = System.nanoTime();
+            int id = i;
+            wheel.schedule(delay, () -> {
+                long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - asked);
+                if (waited < delay) {
+                    early.put(id, waited);
+                }
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(early.isEmpty(), early.toString());
+    }
+
+    @Test
+    void cancelledTimeoutsDontFire() throws InterruptedException {
+        CountDownLatch kept = new CountDownLatch(1);
+        List<TimingWheel.Timeout> cancelled = new ArrayList<>();
+        ConcurrentHashMap<Integer, Boolean> fired = new ConcurrentHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            int id = i;
+            cancelled.add(wheel.schedule(20 + i, () -> fired.put(id, true)));
+        }
+        for (TimingWheel.Timeout timeout : cancelled) {
+            assertTrue(timeout.cancel());
+        }
+        TimingWheel.Timeout last = wheel.schedule(150, kept::countDown);
+
+        assertTrue(kept.await(5, TimeUnit.SECONDS));
+        assertTrue(fired.isEmpty());
+        assertFalse(last.cancel());
+        assertFalse(cancelled.get(0).cancel());
+    }
+}
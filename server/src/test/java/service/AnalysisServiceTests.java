@@ -0,0 +1,153 @@
+package service;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.engine.Search;
+import chess.engine.SearchResult;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.AnalysisResult;
+import model.AuthData;
+import model.UserData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalysisServiceTests {
+
+    private DataAccess dataAccess;
+    private UserService userService;
+    private GameService gameService;
+    private AtomicInteger searchCount;
+    private CountDownLatch release;
+    private AnalysisService analysisService;
+
+
+    @BeforeEach
+    void setup() throws DataAccessException {
+        dataAccess = new MemoryDataAccess();
+        userService = new UserService(dataAccess);
+        gameService = new GameService(dataAccess);
+        searchCount = new AtomicInteger();
+        release = new CountDownLatch(0);
+        analysisService = new AnalysisService(dataAccess, () -> {
+            searchCount.incrementAndGet();
+            return new Search() {
+                @Override
+                public SearchResult search(ChessBoard position, ChessGame.TeamColor toMove, int maxDepth,
+                                           long timeLimit, Consumer<SearchResult> onIteration) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.search(position, toMove, maxDepth, timeLimit, onIteration);
+                }
+            };
+        });
+    }
+
+
+    @Test
+    void analyzePositiveCachedByPosition() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("analyst", "pw", "a@a.com"));
+        int first = gameService.createGame(reg.authToken(), "one");
+        int second = gameService.createGame(reg.authToken(), "two");
+
+        AnalysisResult result = analysisService.analyze(reg.authToken(), first, 2);
+        assertNotNull(result.bestMove());
+        assertEquals(2, result.depth());
+
+        // another game in the same position is the same search
+        AnalysisResult again = analysisService.analyze(reg.authToken(), second, 2);
+        assertEquals(result, again);
+        assertEquals(1, searchCount.get());
+
+        analysisService.analyze(reg.authToken(), first, 1);
+        assertEquals(2, searchCount.get());
+    }
+
+
+    @Test
+    void analyzePositiveFindsMateFromWhitesView() throws Exception {
+        AuthData reg = userService.register(new UserData("mater", "pw", "m@m.com"));
+        int id = gameService.createGame(reg.authToken(), "fools mate");
+        var data = dataAccess.getGame(id);
+        ChessGame game = data.game();
+        game.makeMove(new ChessMove(new ChessPosition(2, 6), new ChessPosition(3, 6), null));
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        game.makeMove(new ChessMove(new ChessPosition(2, 7), new ChessPosition(4, 7), null));
+        dataAccess.updateGame(data);
+
+        AnalysisResult result = analysisService.analyze(reg.authToken(), id, 2);
+        assertEquals(new ChessMove(new ChessPosition(8, 4), new ChessPosition(4, 8), null), result.bestMove());
+        assertEquals(-1, result.mateIn());
+        assertTrue(result.evaluation() < 0);
+    }
+
+
+    @Test
+    void analyzePositiveConcurrentRequestsShareOneSearch() throws Exception {
+        AuthData reg = userService.register(new UserData("crowd", "pw", "c@c.com"));
+        int id = gameService.createGame(reg.authToken(), "popular");
+        release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<AnalysisResult>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> analysisService.analyze(reg.authToken(), id, 2)));
+        }
+        // give every request time to find the running search before letting it finish
+        Thread.sleep(200);
+        release.countDown();
+
+        AnalysisResult first = results.get(0).get(30, TimeUnit.SECONDS);
+        for (Future<AnalysisResult> result : results) {
+            assertEquals(first, result.get(30, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        assertEquals(1, searchCount.get());
+        assertEquals(1, analysisService.cacheSize());
+    }
+
+
+    @Test
+    void analyzeNegativeUnauthorized() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("sneaky", "pw", "s@s.com"));
+        int id = gameService.createGame(reg.authToken(), "private");
+
+        DataAccessException ex = assertThrows(DataAccessException.class, () ->
+                analysisService.analyze("badTokenThing", id, 2));
+        assertEquals("unauthorized", ex.getMessage());
+        assertEquals(0, searchCount.get());
+    }
+
+
+    @Test
+    void analyzeNegativeBadDepthOrGame() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("greedy", "pw", "g@g.com"));
+        int id = gameService.createGame(reg.authToken(), "deep");
+
+        assertThrows(DataAccessException.class, () ->
+                analysisService.analyze(reg.authToken(), id, AnalysisService.MAX_DEPTH + 1));
+        assertThrows(DataAccessException.class, () ->
+                analysisService.analyze(reg.authToken(), id, 0));
+        assertThrows(DataAccessException.class, () ->
+                analysisService.analyze(reg.authToken(), 9999, 2));
+        assertEquals(0, searchCount.get());
+    }
+}
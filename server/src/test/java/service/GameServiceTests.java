@@ -1,5 +1,7 @@
 package service;
 
+import chess.ChessClock;
+import chess.ChessGame;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
 
@@ -7,9 +9,17 @@ import dataaccess.DataAccessException;
 import dataaccess.MemoryDataAccess;
 import model.UserData;
 import model.AuthData;
+import model.GameData;
+import model.GameSummary;
+import model.PositionHit;
 
 import org.junit.jupiter.api.BeforeEach;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,6 +56,127 @@ public class GameServiceTests {
     }
 
 
+    @Test
+    void listGamesPagesPositive() throws DataAccessException, IOException {
+        dataAccess.createUser(new UserData("pager", "pw", "p@p.com"));
+        dataAccess.createAuth(new AuthData("pagerToken", "pager"));
+        for (int i = 0; i < 12; i++) {
+            ChessGame game = new ChessGame();
+            if (i % 3 == 0) {
+                game.endGame(ChessGame.Result.DRAW);
+            }
+            dataAccess.createGame(new GameData(null, i % 2 == 0 ? "pager" : null, i % 4 == 0 ? "other" : null,
+                    "game " + i, game));
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        Page page = page(null, 5, null, false, null);
+        while (true) {
+            ids.addAll(gameIDs(page));
+            if (page.next() == null) {
+                break;
+            }
+            page = page(page.next(), 5, null, false, null);
+        }
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12), ids);
+
+        // games 1, 5 and 9 have both seats taken and 1, 4, 7 and 10 are over
+        Page open = page(null, null, null, true, null);
+        assertEquals(List.of(2, 3, 6, 8, 11, 12), gameIDs(open));
+        assertNull(open.next());
+
+        Page mineFinished = page(null, 100, "pager", false, "finished");
+        assertEquals(List.of(1, 7), gameIDs(mineFinished));
+        assertEquals(GameSummary.FINISHED, mineFinished.games().get(0).status());
+        assertEquals(List.of(3, 5, 9, 11), gameIDs(page(null, 100, "pager", false, "ACTIVE")));
+    }
+
+
+    @Test
+    void listGamesPagesNegative() throws DataAccessException {
+        dataAccess.createUser(new UserData("pager", "pw", "p@p.com"));
+        dataAccess.createAuth(new AuthData("pagerToken", "pager"));
+
+        for (Integer limit : new Integer[] {0, GameService.MAX_PAGE_SIZE + 1}) {
+            var ex = assertThrows(DataAccessException.class, () ->
+                gameService.gameQuery("pagerToken", null, limit, null, false, null));
+            assertEquals("bad request", ex.getMessage());
+        }
+        assertThrows(DataAccessException.class, () ->
+            gameService.gameQuery("pagerToken", -1, 10, null, false, null));
+        assertThrows(DataAccessException.class, () ->
+            gameService.gameQuery("pagerToken", null, 10, null, false, "paused"));
+        var ex = assertThrows(DataAccessException.class, () ->
+            gameService.gameQuery("nope", null, 10, null, false, null));
+        assertEquals("unauthorized", ex.getMessage());
+    }
+
+
+    @Test
+    void listGamesStreamsPositive() throws DataAccessException, IOException {
+        dataAccess.createUser(new UserData("pager", "pw", "p@p.com"));
+        dataAccess.createAuth(new AuthData("pagerToken", "pager"));
+        for (int i = 0; i < 7; i++) {
+            dataAccess.createGame(new GameData(null, null, null, "game " + i, new ChessGame()));
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        var query = gameService.gameQuery("pagerToken", 2, 3, null, false, null);
+        assertEquals(5, gameService.listGames(query, game -> ids.add(game.gameID())));
+        assertEquals(List.of(3, 4, 5), ids);
+
+        ids.clear();
+        assertNull(gameService.listGames(gameService.gameQuery("pagerToken", 5, 3, null, false, null),
+                game -> ids.add(game.gameID())));
+        assertEquals(List.of(6, 7), ids);
+        assertThrows(DataAccessException.class, () ->
+            gameService.gameQuery("nope", null, null, null, false, null));
+    }
+
+
+    private record Page(List<GameSummary> games, Integer next) {
+    }
+
+    private Page page(Integer after, Integer limit, String player, boolean openSeats, String status)
+            throws DataAccessException, IOException {
+        List<GameSummary> games = new ArrayList<>();
+        Integer next = gameService.listGames(
+                gameService.gameQuery("pagerToken", after, limit, player, openSeats, status), games::add);
+        return new Page(games, next);
+    }
+
+    private static List<Integer> gameIDs(Page page) {
+        List<Integer> ids = new ArrayList<>();
+        for (GameSummary game : page.games()) {
+            ids.add(game.gameID());
+        }
+        return ids;
+    }
+
+
+    @Test
+    void getGamePositive() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("viewer", "pw", "v@v.com"));
+        int id = gameService.createGame(reg.authToken(), "watched");
+
+        GameData game = gameService.getGame(reg.authToken(), id);
+        assertEquals("watched", game.gameName());
+        assertNotNull(game.game());
+    }
+
+
+    @Test
+    void getGameNegative() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("viewer2", "pw", "v2@v.com"));
+        int id = gameService.createGame(reg.authToken(), "watched");
+
+        assertThrows(DataAccessException.class, () -> gameService.getGame("nope", id));
+        DataAccessException ex = assertThrows(DataAccessException.class, () ->
+            gameService.getGame(reg.authToken(), id + 1));
+        assertEquals("bad request", ex.getMessage());
+    }
+
+
     @Test
     void createGamePositive() throws DataAccessException {
         AuthData reg = userService.register(new UserData("maker", "pw", "m@m.com"));
@@ -65,6 +196,30 @@ public class GameServiceTests {
     }
 
 
+    @Test
+    void createGamePositiveTimed() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("blitzer", "pw", "b@b.com"));
+
+        int id = gameService.createGame(reg.authToken(), "blitz", 180, 2);
+
+        ChessClock clock = dataAccess.getGame(id).game().getClock();
+        assertEquals(180_000, clock.getBaseMillis());
+        assertEquals(2_000, clock.getIncrementMillis());
+        assertNull(clock.getRunning());
+        assertNull(dataAccess.getGame(gameService.createGame(reg.authToken(), "casual")).game().getClock());
+    }
+
+
+    @Test
+    void createGameNegativeBadClock() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("blitzer2", "pw", "b2@b.com"));
+
+        assertThrows(DataAccessException.class, () -> gameService.createGame(reg.authToken(), "g", 0, 2));
+        assertThrows(DataAccessException.class, () -> gameService.createGame(reg.authToken(), "g", 60, -1));
+        assertThrows(DataAccessException.class, () -> gameService.createGame(reg.authToken(), "g", null, 5));
+    }
+
+
     @Test
     void joinGamePositive() throws DataAccessException {
         AuthData reg = userService.register(new UserData("joiner", "pw", "j@j.com"));
@@ -140,5 +295,63 @@ public class GameServiceTests {
             gameService.joinGame("", "WHITE", id));  
 
     }
-}
 
+
+    @Test
+    void exportGamesPositive() throws DataAccessException, IOException {
+        AuthData reg = userService.register(new UserData("exporter", "pw", "x@x.com"));
+        int first = gameService.createGame(reg.authToken(), "first");
+        int second = gameService.createGame(reg.authToken(), "second");
+        gameService.joinGame(reg.authToken(), "BLACK", second);
+
+        List<Integer> all = new ArrayList<>();
+        gameService.exportGames(reg.authToken(), null, game -> all.add(game.gameID()));
+        assertEquals(List.of(first, second), all);
+
+        List<Integer> mine = new ArrayList<>();
+        gameService.exportGames(reg.authToken(), "exporter", game -> mine.add(game.gameID()));
+        assertEquals(List.of(second), mine);
+    }
+
+
+    @Test
+    void exportGamesNegativeUnauthorized() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("exporter2", "pw", "x2@x.com"));
+        gameService.createGame(reg.authToken(), "hidden");
+
+        assertThrows(DataAccessException.class, () ->
+            gameService.exportGames("nope", null, game -> fail("sent a game without auth")));
+    }
+
+
+    @Test
+    void findGamesWithPositionPositive() throws DataAccessException, IOException {
+        AuthData reg = userService.register(new UserData("searcher", "pw", "s@s.com"));
+        new ImportService(dataAccess).importPgn(new StringReader("""
+                1. e4 e5 2. Nf3 Nc6 *
+
+                1. Nf3 Nc6 2. e4 e5 3. Bc4 *
+
+                1. d4 d5 *
+                """));
+
+        List<PositionHit> hits = gameService.findGamesWithPosition(reg.authToken(),
+                "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3");
+
+        assertEquals(List.of(new PositionHit(1, 4), new PositionHit(2, 4)), hits);
+        assertTrue(gameService.findGamesWithPosition(reg.authToken(),
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1").isEmpty());
+    }
+
+
+    @Test
+    void findGamesWithPositionNegativeBadFen() throws DataAccessException {
+        AuthData reg = userService.register(new UserData("searcher2", "pw", "s2@s.com"));
+
+        DataAccessException ex = assertThrows(DataAccessException.class, () ->
+            gameService.findGamesWithPosition(reg.authToken(), "not/a/fen"));
+        assertEquals("bad request", ex.getMessage());
+        assertThrows(DataAccessException.class, () ->
+            gameService.findGamesWithPosition("nope", "8/8/8/8/8/8/8/8 w - - 0 1"));
+    }
+}
@@ -0,0 +1,113 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.GameData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImportServiceTests {
+
+    private static final String GOOD = """
+            [Event "Club"]
+            [White "Ann"]
+            [Black "Bob"]
+
+            1. f3 e5 2. g4 Qh4# 0-1
+
+            """;
+    private static final String ILLEGAL = """
+            [White "Cy"]
+            [Black "Di"]
+
+            1. e4 e5 2. Ke3 1/2-1/2
+
+            """;
+    private static final String UNFINISHED = """
+            1. d4 {a comment} d5 (1... Nf6) 2. c4 *
+
+            """;
+
+    private DataAccess dataAccess;
+
+    @BeforeEach
+    void setup() {
+        dataAccess = new MemoryDataAccess();
+    }
+
+    @Test
+    void importsLegalGamesAndRejectsTheRest() throws IOException, DataAccessException {
+        String pgn = (GOOD + ILLEGAL + UNFINISHED).repeat(100);
+        ImportService importer = new ImportService(dataAccess, 4, 7);
+
+        ImportService.Report report = importer.importPgn(new StringReader(pgn));
+
+        assertEquals(300, report.read());
+        assertEquals(200, report.imported());
+        assertEquals(100, report.rejected());
+        assertTrue(report.gamesPerSecond() > 0);
+
+        List<GameData> games = dataAccess.listGames();
+        assertEquals(200, games.size());
+        assertEquals(100, games.stream().filter(g -> g.gameName().equals("Ann vs Bob, Club")).count());
+        GameData mated = games.stream().filter(g -> g.gameName().startsWith("Ann")).findFirst().orElseThrow();
+        assertNull(mated.game().getTeamTurn());
+        assertEquals(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN),
+                mated.game().getBoard().getPiece(ChessPosition.of(4, 8)));
+        assertNull(mated.whiteUsername());
+
+        GameData open = games.stream().filter(g -> g.gameName().equals("? vs ?")).findFirst().orElseThrow();
+        assertEquals(ChessGame.TeamColor.BLACK, open.game().getTeamTurn());
+        assertEquals(3, open.game().getMoveHistory().size());
+    }
+
+    @Test
+    void emptyStreamImportsNothing() throws IOException, DataAccessException {
+        ImportService.Report report = new ImportService(dataAccess).importPgn(new StringReader("  \n"));
+
+        assertEquals(0, report.read());
+        assertEquals(0, dataAccess.listGames().size());
+    }
+
+    @Test
+    void databaseFailureStopsTheImport() {
+        DataAccess failing = new MemoryDataAccess() {
+            @Override
+            public synchronized List<Integer> createGames(List<GameData> batch) throws DataAccessException {
+                throw new DataAccessException("failed to create games");
+            }
+        };
+        ImportService importer = new ImportService(failing, 2, 3);
+
+        DataAccessException ex = assertThrows(DataAccessException.class,
+                () -> importer.importPgn(new StringReader(GOOD.repeat(10_000))));
+        assertEquals("failed to create games", ex.getMessage());
+    }
+
+    @Test
+    void unexpectedWorkerErrorStopsTheImport() {
+        DataAccess failing = new MemoryDataAccess() {
+            @Override
+            public synchronized List<Integer> createGames(List<GameData> batch) {
+                throw new IllegalStateException("broken store");
+            }
+        };
+        ImportService importer = new ImportService(failing, 2, 3);
+
+        DataAccessException ex = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(DataAccessException.class,
+                        () -> importer.importPgn(new StringReader(GOOD.repeat(10_000)))));
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
+}
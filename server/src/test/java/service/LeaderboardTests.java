@@ -0,0 +1,67 @@
+package service;
+
+import model.RatingData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LeaderboardTests {
+
+    @Test
+    void ranksHighestRatedFirst() {
+        Leaderboard board = new Leaderboard();
+        board.put(rating("ann", 1500));
+        board.put(rating("bob", 1700));
+        board.put(rating("cy", 1500));
+
+        assertEquals(1, board.rank("bob"));
+        // equal ratings go by name
+        assertEquals(2, board.rank("ann"));
+        assertEquals(3, board.rank("cy"));
+        assertEquals(0, board.rank("nobody"));
+
+        board.put(rating("cy", 1800));
+        assertEquals(1, board.rank("cy"));
+        assertEquals(3, board.size());
+        assertEquals(List.of("bob", "ann"), names(board.page(1, 5)));
+        assertTrue(board.page(3, 5).isEmpty());
+    }
+
+
+    @Test
+    void matchesASortedListThroughManyUpdates() {
+        Leaderboard board = new Leaderboard();
+        Map<String, RatingData> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            RatingData rating = rating("p" + random.nextInt(500), 1000 + random.nextInt(1000));
+            board.put(rating);
+            expected.put(rating.username(), rating);
+        }
+
+        List<RatingData> sorted = new ArrayList<>(expected.values());
+        sorted.sort(Comparator.comparingDouble(RatingData::rating).reversed().thenComparing(RatingData::username));
+        assertEquals(sorted.size(), board.size());
+        assertEquals(sorted, board.page(0, sorted.size()));
+        assertEquals(sorted.subList(100, 150), board.page(100, 50));
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(i + 1, board.rank(sorted.get(i).username()));
+        }
+    }
+
+
+    private static RatingData rating(String username, double rating) {
+        return new RatingData(username, rating, 100, 0.06, 1);
+    }
+
+    private static List<String> names(List<RatingData> ratings) {
+        return ratings.stream().map(RatingData::username).toList();
+    }
+}
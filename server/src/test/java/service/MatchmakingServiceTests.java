@@ -0,0 +1,163 @@
+package service;
+
+import chess.ChessClock;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameData;
+import model.QueueResult;
+import model.QueueStats;
+import model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchmakingServiceTests {
+
+    private DataAccess dataAccess;
+    private UserService userService;
+    private Map<String, Integer> ratings;
+    private MatchmakingService matchmaking;
+
+
+    @BeforeEach
+    void setup() {
+        dataAccess = new MemoryDataAccess();
+        userService = new UserService(dataAccess);
+        ratings = new HashMap<>();
+        matchmaking = new MatchmakingService(dataAccess, new GameService(dataAccess),
+                username -> ratings.getOrDefault(username, MatchmakingService.DEFAULT_RATING), 1500);
+    }
+
+    @AfterEach
+    void stop() {
+        matchmaking.shutdown();
+    }
+
+
+    @Test
+    void pairsPlayersWantingTheSameTimeControl() throws Exception {
+        String ann = register("ann");
+        String bob = register("bob");
+        String cy = register("cy");
+
+        CompletableFuture<QueueResult> first = matchmaking.enqueue(ann, 180, 2);
+        CompletableFuture<QueueResult> other = matchmaking.enqueue(cy, 60, null);
+        CompletableFuture<QueueResult> second = matchmaking.enqueue(bob, 180, 2);
+
+        QueueResult annResult = first.get(5, TimeUnit.SECONDS);
+        QueueResult bobResult = second.get(5, TimeUnit.SECONDS);
+        assertEquals(annResult.gameID(), bobResult.gameID());
+        assertEquals("bob", annResult.opponent());
+        assertNotEquals(annResult.playerColor(), bobResult.playerColor());
+
+        GameData game = dataAccess.getGame(annResult.gameID());
+        String white = annResult.playerColor().equals("WHITE") ? "ann" : "bob";
+        assertEquals(white, game.whiteUsername());
+        ChessClock clock = game.game().getClock();
+        assertEquals(180_000, clock.getBaseMillis());
+        assertEquals(2_000, clock.getIncrementMillis());
+
+        // nobody else wants a one minute game, so cy gives up
+        assertNull(other.get(5, TimeUnit.SECONDS).gameID());
+    }
+
+
+    @Test
+    void ratingRangeWidensWhilePlayersWait() throws Exception {
+        ratings.put("strong", 1650);
+        String weak = register("weak");
+        String strong = register("strong");
+
+        long started = System.nanoTime();
+        CompletableFuture<QueueResult> first = matchmaking.enqueue(weak, null, null);
+        CompletableFuture<QueueResult> second = matchmaking.enqueue(strong, null, null);
+        assertFalse(second.isDone());
+
+        QueueResult result = first.get(5, TimeUnit.SECONDS);
+        assertNotNull(result.gameID());
+        assertEquals(result.gameID(), second.get(5, TimeUnit.SECONDS).gameID());
+        // 150 points apart pair once the range has grown a step, a second in
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= 1000);
+    }
+
+
+    @Test
+    void enqueueNegative() throws DataAccessException {
+        String ann = register("ann");
+        matchmaking.enqueue(ann, null, null);
+
+        DataAccessException ex = assertThrows(DataAccessException.class, () -> matchmaking.enqueue(ann, null, null));
+        assertEquals("already taken", ex.getMessage());
+        ex = assertThrows(DataAccessException.class, () -> matchmaking.enqueue("nope", null, null));
+        assertEquals("unauthorized", ex.getMessage());
+        String bob = register("bob");
+        ex = assertThrows(DataAccessException.class, () -> matchmaking.enqueue(bob, -5, null));
+        assertEquals("bad request", ex.getMessage());
+    }
+
+
+    @Test
+    void manyPlayersAllGetExactlyOneGame() throws Exception {
+        // nobody may give up waiting, and every rating is in one band and within range of every
+        // other, so each player pairs on joining or at the next sweep whatever the timing
+        matchmaking.shutdown();
+        matchmaking = new MatchmakingService(dataAccess, new GameService(dataAccess),
+                username -> ratings.getOrDefault(username, MatchmakingService.DEFAULT_RATING), 60_000);
+        int players = 2000;
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            ratings.put("p" + i, 1000 + (i * 37) % 100);
+            // straight to the auth table; hashing 2000 passwords would be most of the test
+            dataAccess.createAuth(new AuthData("token" + i, "p" + i));
+            tokens.add("token" + i);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<CompletableFuture<QueueResult>>> joins = new ArrayList<>();
+        for (String token : tokens) {
+            joins.add(pool.submit(() -> matchmaking.enqueue(token, 300, 0)));
+        }
+        Map<Integer, Integer> seats = new HashMap<>();
+        Set<String> opponents = new HashSet<>();
+        for (Future<CompletableFuture<QueueResult>> join : joins) {
+            QueueResult result = join.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+            if (result.gameID() != null) {
+                seats.merge(result.gameID(), 1, Integer::sum);
+                opponents.add(result.opponent());
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(players / 2, seats.size());
+        assertTrue(seats.values().stream().allMatch(count -> count == 2));
+        assertEquals(seats.size() * 2, opponents.size());
+        assertEquals(seats.size(), dataAccess.listGames().size());
+
+        QueueStats stats = matchmaking.stats(tokens.get(0));
+        assertEquals(0, stats.waiting());
+        assertEquals(seats.size() * 2L, stats.paired());
+        assertTrue(stats.p50Millis() <= stats.p99Millis());
+    }
+
+
+    private String register(String username) throws DataAccessException {
+        AuthData auth = userService.register(new UserData(username, "pw", username + "@mail.com"));
+        return auth.authToken();
+    }
+}
@@ -0,0 +1,129 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.ExplorerMove;
+import model.ExplorerResult;
+import model.UserData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningExplorerTests {
+
+    private static final String GAMES = """
+            1. e4 e5 2. Nf3 Nc6 1-0
+
+            1. e4 c5 0-1
+
+            1. e4 e5 2. Nf3 Nf6 1/2-1/2
+
+            1. d4 d5 1-0
+
+            1. e4 e5 *
+
+            """;
+
+    private DataAccess dataAccess;
+    private OpeningExplorer explorer;
+    private String token;
+
+
+    @BeforeEach
+    void setup() throws DataAccessException, IOException {
+        dataAccess = new MemoryDataAccess();
+        AuthData reg = new UserService(dataAccess).register(new UserData("explorer", "pw", "e@e.com"));
+        token = reg.authToken();
+        explorer = new OpeningExplorer(dataAccess);
+        new ImportService(dataAccess, 2, 2).importPgn(new StringReader(GAMES));
+    }
+
+
+    @Test
+    void explorePositive() throws DataAccessException {
+        ExplorerResult start = explorer.explore(token, null);
+
+        assertEquals(2, start.moves().length);
+        assertMove(start.moves()[0], "e4", 3, 1, 1, 1);
+        assertMove(start.moves()[1], "d4", 1, 1, 0, 0);
+        assertEquals(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null), start.moves()[0].move());
+
+        ExplorerResult afterE4E5 = explorer.explore(token,
+                "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2");
+        assertEquals(1, afterE4E5.moves().length);
+        assertMove(afterE4E5.moves()[0], "Nf3", 2, 1, 1, 0);
+    }
+
+
+    @Test
+    void exploreNegative() {
+        DataAccessException ex = assertThrows(DataAccessException.class, () -> explorer.explore(token, "nonsense"));
+        assertEquals("bad request", ex.getMessage());
+        ex = assertThrows(DataAccessException.class, () -> explorer.explore("nope", null));
+        assertEquals("unauthorized", ex.getMessage());
+    }
+
+
+    @Test
+    void finishedGamesReplaceCachedAnswers() throws DataAccessException, InvalidMoveException {
+        explorer.explore(token, null);
+        assertEquals(1, explorer.cacheSize());
+
+        ChessGame game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 4), ChessPosition.of(4, 4), null));
+        game.endGame(ChessGame.Result.BLACK_WINS);
+        explorer.gameFinished(game);
+
+        assertEquals(0, explorer.cacheSize());
+        assertMove(explorer.explore(token, null).moves()[1], "d4", 2, 1, 0, 1);
+
+        ChessGame unfinished = new ChessGame();
+        unfinished.makeMove(ChessMove.of(ChessPosition.of(2, 4), ChessPosition.of(4, 4), null));
+        explorer.gameFinished(unfinished);
+        assertEquals(1, explorer.cacheSize());
+    }
+
+
+    @Test
+    void rebuildCountsTheSameAsImporting() throws DataAccessException {
+        ExplorerResult before = explorer.explore(token, null);
+
+        long counted = explorer.rebuild(3);
+
+        assertEquals(4, counted);
+        assertEquals(0, explorer.cacheSize());
+        ExplorerResult after = explorer.explore(token, null);
+        assertArrayEquals(before.moves(), after.moves());
+    }
+
+
+    @Test
+    void uciRoundTrips() {
+        ChessMove promotion = ChessMove.of(ChessPosition.of(7, 5), ChessPosition.of(8, 5), ChessPiece.PieceType.KNIGHT);
+
+        assertEquals("e7e8n", OpeningExplorer.uci(promotion));
+        assertEquals(promotion, OpeningExplorer.fromUci("e7e8n"));
+        assertNull(OpeningExplorer.fromUci("e7e9"));
+        assertNull(OpeningExplorer.fromUci("e7e8k"));
+    }
+
+
+    private static void assertMove(ExplorerMove move, String san, int games, int whiteWins, int draws, int blackWins) {
+        assertEquals(san, move.san());
+        assertEquals(games, move.games());
+        assertEquals(whiteWins, move.whiteWins());
+        assertEquals(draws, move.draws());
+        assertEquals(blackWins, move.blackWins());
+    }
+}
@@ -0,0 +1,128 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.GameData;
+import model.LeaderboardEntry;
+import model.LeaderboardResult;
+import model.RatingData;
+import model.UserData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingServiceTests {
+
+    private DataAccess dataAccess;
+    private RatingService ratings;
+    private String token;
+
+
+    @BeforeEach
+    void setup() throws DataAccessException {
+        dataAccess = new MemoryDataAccess();
+        UserService users = new UserService(dataAccess);
+        AuthData auth = users.register(new UserData("ann", "pw", "ann@mail.com"));
+        token = auth.authToken();
+        users.register(new UserData("bob", "pw", "bob@mail.com"));
+        users.register(new UserData("cy", "pw", "cy@mail.com"));
+        ratings = new RatingService(dataAccess);
+    }
+
+
+    @Test
+    void glicko2MatchesGlickmansExample() {
+        RatingData player = new RatingData("player", 1500, 200, 0.06, 0);
+        RatingData rated = Glicko2.rate(player, List.of(
+                new Glicko2.Outcome(new RatingData("a", 1400, 30, 0.06, 0), 1),
+                new Glicko2.Outcome(new RatingData("b", 1550, 100, 0.06, 0), 0),
+                new Glicko2.Outcome(new RatingData("c", 1700, 300, 0.06, 0), 0)));
+
+        assertEquals(1464.06, rated.rating(), 0.01);
+        assertEquals(151.52, rated.deviation(), 0.01);
+        assertEquals(0.05999, rated.volatility(), 0.00001);
+        assertEquals(3, rated.games());
+    }
+
+
+    @Test
+    void gameFinishedPositive() throws DataAccessException {
+        ratings.gameFinished(finished(1, "ann", "bob", ChessGame.Result.WHITE_WINS));
+
+        RatingData ann = dataAccess.getRating("ann");
+        RatingData bob = dataAccess.getRating("bob");
+        assertTrue(ann.rating() > 1500);
+        assertEquals(3000, ann.rating() + bob.rating(), 0.001);
+        assertTrue(ann.deviation() < 350);
+        assertEquals(1, bob.games());
+        assertEquals((int) Math.round(ann.rating()), ratings.ratingOf("ann"));
+        assertEquals(1500, ratings.ratingOf("cy"));
+
+        LeaderboardEntry bobStanding = ratings.standing(token, "bob");
+        assertEquals(2, bobStanding.rank());
+        LeaderboardResult board = ratings.leaderboard(token, null, null);
+        assertEquals(2, board.total());
+        assertEquals("ann", board.players()[0].username());
+    }
+
+
+    @Test
+    void gameFinishedNegative() throws DataAccessException {
+        ratings.gameFinished(finished(1, "ann", "bob", null));
+        ratings.gameFinished(finished(2, "ann", "ann", ChessGame.Result.DRAW));
+        ratings.gameFinished(finished(3, "ann", null, ChessGame.Result.WHITE_WINS));
+
+        assertNull(dataAccess.getRating("ann"));
+        assertEquals(0, ratings.leaderboard(token, null, null).total());
+    }
+
+
+    @Test
+    void leaderboardNegative() {
+        DataAccessException ex = assertThrows(DataAccessException.class, () -> ratings.leaderboard("nope", null, null));
+        assertEquals("unauthorized", ex.getMessage());
+        ex = assertThrows(DataAccessException.class,
+                () -> ratings.leaderboard(token, 0, RatingService.MAX_LIMIT + 1));
+        assertEquals("bad request", ex.getMessage());
+        ex = assertThrows(DataAccessException.class, () -> ratings.leaderboard(token, -1, null));
+        assertEquals("bad request", ex.getMessage());
+        ex = assertThrows(DataAccessException.class, () -> ratings.standing(token, "cy"));
+        assertEquals("bad request", ex.getMessage());
+    }
+
+
+    @Test
+    void recomputeMatchesLiveUpdates() throws DataAccessException {
+        String[][] games = {{"ann", "bob"}, {"bob", "cy"}, {"cy", "ann"}, {"ann", "bob"}};
+        ChessGame.Result[] results = {ChessGame.Result.WHITE_WINS, ChessGame.Result.DRAW,
+                ChessGame.Result.BLACK_WINS, ChessGame.Result.BLACK_WINS};
+        for (int i = 0; i < games.length; i++) {
+            GameData game = finished(null, games[i][0], games[i][1], results[i]);
+            int id = dataAccess.createGame(game);
+            ratings.gameFinished(finished(id, games[i][0], games[i][1], results[i]));
+        }
+        LeaderboardEntry[] live = ratings.leaderboard(token, null, null).players();
+
+        // a fresh service has only what was saved, and a recompute gets the same from the games
+        RatingService restarted = new RatingService(dataAccess);
+        assertArrayEquals(live, restarted.leaderboard(token, null, null).players());
+        assertEquals(4, restarted.recompute());
+        assertArrayEquals(live, restarted.leaderboard(token, null, null).players());
+        assertEquals(3, dataAccess.getRating("ann").games());
+    }
+
+
+    private static GameData finished(Integer gameID, String white, String black, ChessGame.Result result) {
+        ChessGame game = new ChessGame();
+        if (result != null) {
+            game.endGame(result);
+        }
+        return new GameData(gameID, white, black, white + " vs " + black, game);
+    }
+}
@@ -0,0 +1,205 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import model.AuthData;
+import model.CreateTournamentRequest;
+import model.GameData;
+import model.TournamentData;
+import model.TournamentPairing;
+import model.TournamentStanding;
+import model.UserData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TournamentServiceTests {
+
+    private DataAccess dataAccess;
+    private TournamentService tournaments;
+    private String organizer;
+    private final Random random = new Random(3);
+
+
+    @BeforeEach
+    void setup() throws DataAccessException {
+        dataAccess = new MemoryDataAccess();
+        tournaments = new TournamentService(dataAccess, username -> 1000 + username.hashCode() % 500);
+        organizer = player("organizer");
+    }
+
+
+    @Test
+    void roundRobinPairsEveryoneWithEveryoneOnce() throws DataAccessException {
+        int id = tournaments.createTournament(organizer, new CreateTournamentRequest("club", "ROUND_ROBIN", null, 600, 5));
+        List<String> names = enter(id, 7);
+
+        Set<String> met = new HashSet<>();
+        Map<String, Integer> byes = new HashMap<>();
+        Map<String, Integer> whites = new HashMap<>();
+        for (int round = 1; round <= 7; round++) {
+            TournamentData data = tournaments.startRound(organizer, id);
+            assertEquals(round, data.round());
+            assertEquals(7, data.rounds());
+            for (TournamentPairing pairing : data.pairings()) {
+                if (pairing.black() == null) {
+                    byes.merge(pairing.white(), 1, Integer::sum);
+                } else {
+                    assertTrue(met.add(pair(pairing.white(), pairing.black())), "rematch in round " + round);
+                    whites.merge(pairing.white(), 1, Integer::sum);
+                }
+            }
+            finishRound(data);
+        }
+
+        assertEquals(7 * 6 / 2, met.size());
+        assertEquals(7, byes.size());
+        assertTrue(byes.values().stream().allMatch(count -> count == 1));
+        // six games each, so three whites each, give or take one
+        for (String name : names) {
+            assertTrue(Math.abs(whites.getOrDefault(name, 0) - 3) <= 1, name + " had " + whites.get(name) + " whites");
+        }
+        assertThrows(DataAccessException.class, () -> tournaments.startRound(organizer, id));
+    }
+
+
+    @Test
+    void swissAvoidsRematchesAndGivesEachByeOnce() throws DataAccessException {
+        int id = tournaments.createTournament(organizer, new CreateTournamentRequest("open", "SWISS", 5, null, null));
+        enter(id, 11);
+
+        Set<String> met = new HashSet<>();
+        Set<String> byes = new HashSet<>();
+        TournamentData data = null;
+        for (int round = 1; round <= 5; round++) {
+            data = tournaments.startRound(organizer, id);
+            assertEquals(6, data.pairings().length);
+            for (TournamentPairing pairing : data.pairings()) {
+                if (pairing.black() == null) {
+                    assertTrue(byes.add(pairing.white()));
+                } else {
+                    assertTrue(met.add(pair(pairing.white(), pairing.black())), "rematch in round " + round);
+                }
+            }
+            finishRound(data);
+        }
+
+        data = tournaments.getTournament(organizer, id);
+        double points = 0;
+        for (TournamentStanding standing : data.standings()) {
+            assertEquals(5, standing.played());
+            points += standing.score();
+        }
+        // a point a game and a point a bye
+        assertEquals(5 * 5 + 5, points, 0.001);
+        for (int i = 1; i < data.standings().length; i++) {
+            assertTrue(data.standings()[i - 1].score() >= data.standings()[i].score());
+        }
+    }
+
+
+    @Test
+    void startRoundNegative() throws DataAccessException {
+        int id = tournaments.createTournament(organizer, new CreateTournamentRequest("open", "SWISS", 3, null, null));
+        String ann = player("ann");
+        tournaments.join(ann, id);
+
+        DataAccessException ex = assertThrows(DataAccessException.class, () -> tournaments.startRound(organizer, id));
+        assertEquals("bad request", ex.getMessage());
+        ex = assertThrows(DataAccessException.class, () -> tournaments.join(ann, id));
+        assertEquals("already taken", ex.getMessage());
+
+        tournaments.join(player("bob"), id);
+        ex = assertThrows(DataAccessException.class, () -> tournaments.startRound(ann, id));
+        assertEquals("unauthorized", ex.getMessage());
+
+        tournaments.startRound(organizer, id);
+        // the game hasn't been played yet
+        ex = assertThrows(DataAccessException.class, () -> tournaments.startRound(organizer, id));
+        assertEquals("bad request", ex.getMessage());
+        ex = assertThrows(DataAccessException.class, () -> tournaments.join(player("cy"), id));
+        assertEquals("bad request", ex.getMessage());
+    }
+
+
+    @Test
+    void createTournamentNegative() throws DataAccessException {
+        assertThrows(DataAccessException.class, () -> tournaments.createTournament(organizer,
+                new CreateTournamentRequest("x", "KNOCKOUT", null, null, null)));
+        assertThrows(DataAccessException.class, () -> tournaments.createTournament(organizer,
+                new CreateTournamentRequest("x", "SWISS", null, null, null)));
+        assertThrows(DataAccessException.class, () -> tournaments.createTournament(organizer,
+                new CreateTournamentRequest("x", "ROUND_ROBIN", null, -1, null)));
+        DataAccessException ex = assertThrows(DataAccessException.class, () -> tournaments.createTournament("nope",
+                new CreateTournamentRequest("x", "ROUND_ROBIN", null, null, null)));
+        assertEquals("unauthorized", ex.getMessage());
+    }
+
+
+    @Test
+    void largeSwissCreatesEveryGameInOneRound() throws DataAccessException {
+        int id = tournaments.createTournament(organizer, new CreateTournamentRequest("big", "SWISS", 3, 180, 2));
+        for (int i = 0; i < 5000; i++) {
+            // straight to the tables; hashing 5000 passwords would be most of the test
+            dataAccess.createUser(new UserData("p" + i, "pw", "p" + i + "@mail.com"));
+            dataAccess.createAuth(new AuthData("token" + i, "p" + i));
+            tournaments.join("token" + i, id);
+        }
+
+        Set<String> met = new HashSet<>();
+        for (int round = 1; round <= 3; round++) {
+            TournamentData data = tournaments.startRound(organizer, id);
+            assertEquals(2500, data.pairings().length);
+            for (TournamentPairing pairing : data.pairings()) {
+                assertNotNull(pairing.gameID());
+                assertTrue(met.add(pair(pairing.white(), pairing.black())));
+            }
+            finishRound(data);
+        }
+        assertEquals(7500, dataAccess.listGames().size());
+    }
+
+
+    private List<String> enter(int tournamentID, int players) throws DataAccessException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            tournaments.join(player("p" + i), tournamentID);
+            names.add("p" + i);
+        }
+        return names;
+    }
+
+    private void finishRound(TournamentData data) throws DataAccessException {
+        ChessGame.Result[] results = ChessGame.Result.values();
+        for (TournamentPairing pairing : data.pairings()) {
+            if (pairing.gameID() == null) {
+                continue;
+            }
+            GameData game = dataAccess.getGame(pairing.gameID());
+            assertEquals(pairing.white(), game.whiteUsername());
+            game.game().endGame(results[random.nextInt(results.length)]);
+            dataAccess.updateGame(game);
+            tournaments.gameFinished(game);
+        }
+    }
+
+    private String player(String username) throws DataAccessException {
+        AuthData auth = new UserService(dataAccess).register(new UserData(username, "pw", username + "@mail.com"));
+        return auth.authToken();
+    }
+
+    private static String pair(String a, String b) {
+        return a.compareTo(b) < 0 ? a + "/" + b : b + "/" + a;
+    }
+}
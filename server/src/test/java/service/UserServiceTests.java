@@ -3,6 +3,7 @@ package service;
 import dataaccess.DataAccessException;
 import dataaccess.MemoryDataAccess;   
 import dataaccess.DataAccess; 
+import dataaccess.SignedTokenDataAccess;
 import model.UserData;
 
 import model.AuthData;
@@ -128,6 +129,49 @@ public class UserServiceTests {
     }
 
 
+    @Test
+    void signedTokensPositive() throws DataAccessException {
+        SignedTokenDataAccess signed = new SignedTokenDataAccess(dataAccess, new byte[32], 60_000);
+        userService = new UserService(signed, signed);
+        AuthData login = userService.register(new UserData("signer", "pw", "s@mail.com"));
+
+        // nothing stored, and still good
+        assertNull(dataAccess.getAuth(login.authToken()));
+        assertEquals("signer", signed.getAuth(login.authToken()).username());
+
+        userService.logout(login.authToken());
+        assertNull(signed.getAuth(login.authToken()));
+        assertEquals(1, dataAccess.listRevokedTokens().size());
+    }
+
+
+    @Test
+    void signedTokensNegative() throws DataAccessException {
+        SignedTokenDataAccess signed = new SignedTokenDataAccess(dataAccess, new byte[32], 60_000);
+        userService = new UserService(signed, signed);
+        String token = userService.register(new UserData("signer", "pw", "s@mail.com")).authToken();
+
+        SignedTokenDataAccess otherKey = new SignedTokenDataAccess(dataAccess, new byte[] {
+            1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+            17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32}, 60_000);
+        assertNull(otherKey.getAuth(token));
+
+        // a different user's name under the same signature
+        int dot = token.indexOf('.');
+        byte[] payload = java.util.Base64.getUrlDecoder().decode(token.substring(0, dot));
+        payload[payload.length - 1] ^= 1;
+        String forged = java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(payload)
+                + token.substring(dot);
+        assertNull(signed.getAuth(forged));
+
+        // revoked stays revoked after a restart
+        userService.logout(token);
+        SignedTokenDataAccess restarted = new SignedTokenDataAccess(dataAccess, new byte[32], 60_000);
+        assertNull(restarted.getAuth(token));
+        assertThrows(DataAccessException.class, () -> userService.logout(token));
+    }
+
+
     @Test
     void logoutNegativeUnauthorized() {
         assertThrows(DataAccessException.class, () ->
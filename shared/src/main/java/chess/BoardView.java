@@ -0,0 +1,21 @@
+package chess;
+
+/**
+ * Read access to the pieces on a board, shared by the mutable {@link ChessBoard} and the
+ * immutable {@link Position}
+ */
+public interface BoardView {
+
+    /**
+     * @return the piece at the position, or null if the square is empty
+     */
+    ChessPiece getPiece(ChessPosition position);
+
+    /**
+     * @param square 0-63, a1 = 0
+     * @return the piece on the square, or null if it is empty
+     */
+    default ChessPiece pieceAt(int square) {
+        return getPiece(ChessPosition.ofSquare(square));
+    }
+}
@@ -0,0 +1,144 @@
+package chess;
+
+import com.google.gson.annotations.JsonAdapter;
+
+/**
+ * A game's chess clock: each team starts with the same time and gets an increment after
+ * every move they make (Fischer timing).
+ * <p>
+ * Only one team's clock runs at a time. The clock doesn't read the time itself: every
+ * method that depends on it is passed "now" in epoch milliseconds, so whoever owns the
+ * game decides what time it is. Remaining times are stored as of the last punch, and the
+ * running team's time is worked out from when its clock started.
+ */
+@JsonAdapter(ChessJsonAdapters.ClockAdapter.class)
+public class ChessClock {
+
+    private final long baseMillis;
+    private final long incrementMillis;
+    private long whiteMillis;
+    private long blackMillis;
+    // the team whose clock is running, or null before the first move and once stopped
+    private ChessGame.TeamColor running;
+    private long runningSince;
+
+    /**
+     * @param baseMillis      each team's starting time
+     * @param incrementMillis time added after each move
+     */
+    public ChessClock(long baseMillis, long incrementMillis) {
+        if (baseMillis <= 0 || incrementMillis < 0) {
+            throw new IllegalArgumentException("a clock needs some starting time and no negative increment");
+        }
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.whiteMillis = baseMillis;
+        this.blackMillis = baseMillis;
+    }
+
+    public ChessClock(ChessClock other) {
+        baseMillis = other.baseMillis;
+        incrementMillis = other.incrementMillis;
+        whiteMillis = other.whiteMillis;
+        blackMillis = other.blackMillis;
+        running = other.running;
+        runningSince = other.runningSince;
+    }
+
+    /**
+     * Restores a clock as it was stored, for {@link ChessJsonAdapters.ClockAdapter}
+     */
+    ChessClock(long baseMillis, long incrementMillis, long whiteMillis, long blackMillis,
+               ChessGame.TeamColor running, long runningSince) {
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.whiteMillis = whiteMillis;
+        this.blackMillis = blackMillis;
+        this.running = running;
+        this.runningSince = runningSince;
+    }
+
+    public long getBaseMillis() {
+        return baseMillis;
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    /**
+     * @return the team whose clock is running, or null if neither is
+     */
+    public ChessGame.TeamColor getRunning() {
+        return running;
+    }
+
+    /**
+     * @return the team's time left at {@code now}; below zero once its flag has fallen
+     */
+    public long remaining(ChessGame.TeamColor team, long now) {
+        long stored = team == ChessGame.TeamColor.WHITE ? whiteMillis : blackMillis;
+        return team == running ? stored - Math.max(0, now - runningSince) : stored;
+    }
+
+    /**
+     * @return the team's time as of the last punch, not counting a clock running since
+     */
+    long storedMillis(ChessGame.TeamColor team) {
+        return team == ChessGame.TeamColor.WHITE ? whiteMillis : blackMillis;
+    }
+
+    long runningSince() {
+        return runningSince;
+    }
+
+    /**
+     * @return True if the team has run out of time
+     */
+    public boolean isFlagged(ChessGame.TeamColor team, long now) {
+        return remaining(team, now) <= 0;
+    }
+
+    /**
+     * @return when the running team's flag falls, or Long.MAX_VALUE if no clock is running
+     */
+    public long flagFallsAt() {
+        if (running == null) {
+            return Long.MAX_VALUE;
+        }
+        return runningSince + (running == ChessGame.TeamColor.WHITE ? whiteMillis : blackMillis);
+    }
+
+    /**
+     * Records a move: the mover's running time is charged, they get the increment, and the
+     * other team's clock starts. The first move starts the clocks without charging anyone.
+     *
+     * @param mover the team that just moved
+     */
+    public void punch(ChessGame.TeamColor mover, long now) {
+        long left = remaining(mover, now) + incrementMillis;
+        if (mover == ChessGame.TeamColor.WHITE) {
+            whiteMillis = left;
+        } else {
+            blackMillis = left;
+        }
+        running = mover == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        runningSince = now;
+    }
+
+    /**
+     * Stops the running clock, charging its team for the time used
+     */
+    public void stop(long now) {
+        if (running == null) {
+            return;
+        }
+        long left = remaining(running, now);
+        if (running == ChessGame.TeamColor.WHITE) {
+            whiteMillis = left;
+        } else {
+            blackMillis = left;
+        }
+        running = null;
+    }
+}
@@ -1,7 +1,11 @@
 package chess;
 
+import chess.engine.Zobrist;
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -10,12 +14,52 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJsonAdapters.GameAdapter.class)
 public class ChessGame {
     private ChessBoard board = new ChessBoard();
     private TeamColor teamTurn = TeamColor.WHITE;
+    // the moves that led here, for undo and repetition; cleared when the position is set up directly
+    private MoveHistory history = new MoveHistory();
+    // how the game ended, or null while it's being played or if it ended before results were kept
+    private Result result;
+    // null for an untimed game
+    private ChessClock clock;
+    // the latest immutable snapshot, see snapshot(); not part of the game's state
+    private transient volatile Snapshot snapshot;
 
     public ChessGame() {
         board.resetBoard();
+        publish();
+    }
+
+    /**
+     * Creates a game in the same position as another, with the same move history, that
+     * can be played on without changing the original
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        other.snapshot(); // drops the other's history if its board was edited directly
+        board = new ChessBoard(other.board);
+        teamTurn = other.teamTurn;
+        history = other.history == null ? new MoveHistory() : other.history.copy();
+        result = other.result;
+        clock = other.clock == null ? null : new ChessClock(other.clock);
+        publish();
+    }
+
+    /**
+     * Restores a game as it was stored, for {@link ChessJsonAdapters.GameAdapter}
+     *
+     * @param history the moves that led here, or null if none were kept
+     */
+    ChessGame(ChessBoard board, TeamColor teamTurn, MoveHistory history, Result result, ChessClock clock) {
+        this.board = board;
+        this.teamTurn = teamTurn;
+        this.history = history;
+        this.result = result;
+        this.clock = clock;
+        publish();
     }
 
     /**
@@ -31,7 +75,76 @@ public class ChessGame {
      * @param team the team whose turn it is
      */
     public void setTeamTurn(TeamColor team) {
+        if (team != null && team != teamTurn) {
+            // not where the moves led; ending the game (null) keeps them
+            clearHistory();
+        }
+        if (team != null) {
+            result = null;
+        }
         this.teamTurn = team;
+        publish();
+    }
+
+    /**
+     * Ends the game, keeping the moves that led here
+     *
+     * @param result who won, or a draw
+     */
+    public void endGame(Result result) {
+        setTeamTurn(null);
+        this.result = result;
+    }
+
+    /**
+     * @return how the game ended, or null if it hasn't, or ended without a recorded result
+     */
+    public Result getResult() {
+        return result;
+    }
+
+    /**
+     * @return the game's clock, or null if it isn't timed
+     */
+    public ChessClock getClock() {
+        return clock;
+    }
+
+    /**
+     * @param clock the clock to play with, or null for no time control
+     */
+    public void setClock(ChessClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Gets an immutable snapshot of the current position that any thread can read, generate
+     * moves from and serialize without locking.
+     * <p>
+     * makeMove publishes a new snapshot once a move is complete, so readers never see half a
+     * move. If the board was changed directly instead (addPiece, resetBoard, or a board read
+     * by Gson), the snapshot is rebuilt here; only the thread making moves should change the
+     * board that way.
+     *
+     * @return the current position
+     */
+    public Position snapshot() {
+        return published().position();
+    }
+
+    /**
+     * @return the latest snapshot with the moves that led to it, for writing out; see {@link #snapshot}
+     */
+    Snapshot published() {
+        Snapshot current = snapshot;
+        if (current == null || current.board() != board || current.modCount() != board.modCount()) {
+            if (current != null && current.board() == board) {
+                // the board was edited rather than played on, so the moves no longer lead here
+                clearHistory();
+            }
+            current = publish();
+        }
+        return current;
     }
 
 
@@ -43,6 +156,22 @@ public class ChessGame {
         BLACK
     }
 
+/**
+ * How a finished game came out
+ */
+    public enum Result {
+        WHITE_WINS,
+        BLACK_WINS,
+        DRAW;
+
+        /**
+         * @return a win for the given team
+         */
+        public static Result winFor(TeamColor team) {
+            return team == TeamColor.WHITE ? WHITE_WINS : BLACK_WINS;
+        }
+    }
+
 /**
  * Gets a valid moves for a piece at the given location
  *
@@ -51,21 +180,17 @@ public class ChessGame {
  * startPosition
  */
 public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-    ChessPiece piece = board.getPiece(startPosition);
-    if(piece == null) {
-        return null;
-    }
-
-    Collection<ChessMove> possibleMoves = piece.pieceMoves(board, startPosition);
-    Collection<ChessMove> validMovesList = new ArrayList<>();
-
-    for(ChessMove move : possibleMoves) {
-        if(!wouldLeaveKingInCheck(move, piece.getTeamColor())) {
-            validMovesList.add(move);
-        }
-    }
+    return snapshot().validMoves(startPosition);
+}
 
-    return validMovesList;
+/**
+ * Checks a single move without listing every valid move for the piece
+ *
+ * @param move the move to check
+ * @return True if the team on move can make this move now
+ */
+public boolean isLegal(ChessMove move) {
+    return snapshot().isLegal(move);
 }
 
 /**
@@ -75,10 +200,17 @@ public Collection<ChessMove> validMoves(ChessPosition startPosition) {
  * @throws InvalidMoveException if move is invalid
  */
 public void makeMove(ChessMove move) throws InvalidMoveException {
+    if(move == null) {
+        throw new InvalidMoveException("No move given");
+    }
+    if(MoveList.encode(move) < 0) {
+        throw new InvalidMoveException("Invalid move");
+    }
     ChessPosition start = move.getStartPosition();
     ChessPosition end = move.getEndPosition();
 
-    ChessPiece piece = board.getPiece(start);
+    Position position = snapshot();
+    ChessPiece piece = position.getPiece(start);
 
 
 
@@ -91,63 +223,118 @@ public void makeMove(ChessMove move) throws InvalidMoveException {
     }
 
     // Check if the move is valid
-    Collection<ChessMove> valid = validMoves(start);
-    if(valid == null || !valid.contains(move)) {
+    if(!position.isLegal(move)) {
         throw new InvalidMoveException("Invalid move");
     }
 
 
-    board.addPiece(start, null); // Remove piece from start
+    ChessPiece captured = position.getPiece(end);
+    if (history == null) {
+        // a game stored without its moves starts keeping them from here
+        history = new MoveHistory();
+        history.sync(board, teamTurn);
+    }
+    history.push(MoveList.encode(move), piece, captured);
+
+    board.place(start, null); // Remove piece from start
 
     if(move.getPromotionPiece() != null) {
-        board.addPiece(end, new ChessPiece(piece.getTeamColor(), move.getPromotionPiece()));
+        board.place(end, ChessPiece.of(piece.getTeamColor(), move.getPromotionPiece()));
     }   else {
-        board.addPiece(end, piece);
+        board.place(end, piece);
     }
 
 
     teamTurn = (teamTurn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE; // should be switching the teams
+    snapshot = new Snapshot(position.after(move), board, board.modCount(), history.freeze());
 }
 
 /**
- * Determines if the given team is in check
+ * Takes back the last move played, restoring any captured piece and the turn
  *
- * @param teamColor which team to check for check
- * @return True if the specified team is in check
+ * @return the move taken back, or null if there were no moves to take back
  */
-public boolean isInCheck(TeamColor teamColor) {
-
-    ChessPosition kingPosition = findKing(teamColor);
-    if (kingPosition == null) {
-        return false;
+public ChessMove undoMove() {
+    MoveHistory moves = history();
+    if (moves == null || moves.isEmpty()) {
+        return null;
     }
+    ChessMove last = moves.lastMove();
+    teamTurn = moves.pop(board);
+    publish();
+    return last;
+}
 
-    TeamColor opponentColor =
-            (teamColor == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
-
-    for (int row = 1; row <= 8; row++) {
-        for (int col = 1; col <= 8; col++) {
+/**
+ * Gets the moves played to reach this position. Setting the board or turn directly, or
+ * editing the board, starts a new history.
+ *
+ * @return the moves, oldest first
+ */
+public List<ChessMove> getMoveHistory() {
+    MoveHistory moves = history();
+    return moves == null ? new ArrayList<>() : moves.moves();
+}
 
-            ChessPosition position = new ChessPosition(row, col);
+/**
+ * Determines if the current position, with the same team on move, has come up at least
+ * three times since the last pawn move or capture
+ *
+ * @return True if the team on move can claim a draw by repetition
+ */
+public boolean isThreefoldRepetition() {
+    MoveHistory moves = history();
+    return moves != null && moves.repetitions() >= 3;
+}
 
-            ChessPiece piece = board.getPiece(position);
+/**
+ * Determines if the current position, with the same team on move, has come up at least
+ * five times since the last pawn move or capture
+ *
+ * @return True if the game is drawn by repetition without anyone claiming it
+ */
+public boolean isFivefoldRepetition() {
+    MoveHistory moves = history();
+    return moves != null && moves.repetitions() >= 5;
+}
 
-            if (piece == null || piece.getTeamColor() != opponentColor) {
-                continue;
-            }
+/**
+ * @return how many moves are in the history, which is the current position's ply
+ */
+public int getMoveCount() {
+    MoveHistory moves = history();
+    return moves == null ? 0 : moves.size();
+}
 
+/**
+ * Gets a 64-bit hash of the current position (pieces and team on move), the same one the
+ * repetition check uses. Equal positions always hash the same, in any game and any run.
+ *
+ * @return the position's hash
+ */
+public long positionHash() {
+    MoveHistory moves = history();
+    return moves == null ? Zobrist.hash(board, teamTurn) : moves.currentHash();
+}
 
-            Collection<ChessMove> moves =
-                    piece.pieceMoves(board, position);
+/**
+ * Hashes every position reached in the move history, without replaying it
+ *
+ * @return the hash at each ply: [0] is where the history starts, [i] is after the i-th move
+ */
+public long[] positionHashes() {
+    MoveHistory moves = history();
+    return moves == null ? new long[] {positionHash()} : moves.allHashes(board);
+}
 
-            for (ChessMove move : moves) {
-                if (move.getEndPosition().equals(kingPosition)) {
-                    return true;
-                }
-            }
-        }
-    }
-    return false;
+/**
+ * Determines if the given team is in check
+ *
+ * @param teamColor which team to check for check
+ * @return True if the specified team is in check
+ */
+public boolean isInCheck(TeamColor teamColor) {
+    return snapshot().isInCheck(teamColor);
 }
 
 /**
@@ -157,13 +344,7 @@ public boolean isInCheck(TeamColor teamColor) {
  * @return True if the specified team is in checkmate
  */
 public boolean isInCheckmate(TeamColor teamColor) {
-    // T check for the check because checkmate requires check at least
-    if(!isInCheck(teamColor)) {
-        return false;
-    }
-
-
-    return !hasAnyValidMoves(teamColor);
+    return snapshot().isInCheckmate(teamColor);
 }
 
 /**
@@ -174,12 +355,7 @@ public boolean isInCheckmate(TeamColor teamColor) {
  * @return True if the specified team is in stalemate, otherwise false
  */
 public boolean isInStalemate(TeamColor teamColor) {
-    if(isInCheck(teamColor)) {
-        return false;
-    }
-
-
-    return !hasAnyValidMoves(teamColor);
+    return snapshot().isInStalemate(teamColor);
 }
 
 /**
@@ -189,26 +365,10 @@ public boolean isInStalemate(TeamColor teamColor) {
  */
 public void setBoard(ChessBoard board) {
     this.board = board;
+    clearHistory();
+    publish();
 }
 
-    private ChessBoard copyBoard(ChessBoard original) {
-        ChessBoard copy = new ChessBoard();
-
-        for(int row = 1; row <= 8; row++) {
-            for(int col = 1; col <= 8; col++) {
-                ChessPosition position = new ChessPosition(row, col);
-                ChessPiece piece = original.getPiece(position);
-
-                if(piece != null) {
-                    ChessPiece pieceCopy = new ChessPiece(piece.getTeamColor(), piece.getPieceType());
-                    copy.addPiece(position, pieceCopy);
-                }
-            }
-        }
-
-        return copy;
-    }
-
 /**
  * Gets the current chessboard
  *
@@ -218,67 +378,43 @@ public ChessBoard getBoard() {
     return board;
 }
 
-    private boolean wouldLeaveKingInCheck(ChessMove move, TeamColor teamColor) {
-        ChessPosition start = move.getStartPosition();
-        ChessPosition end = move.getEndPosition();
-
-        ChessPiece movingPiece = board.getPiece(start);
-
-
-        ChessBoard boardCopy = copyBoard(board);
-
-        ChessBoard originalBoard = this.board;
-        this.board = boardCopy;
+    /**
+     * @return the history, or null if none was kept. Its hashes are brought up to date by
+     * whatever changes the game, so reading it changes nothing.
+     */
+    private MoveHistory history() {
+        snapshot(); // notices a board edited directly, which only the thread making moves may do
+        return history;
+    }
 
-        board.addPiece(start, null);
-        if(move.getPromotionPiece() != null) {
-            board.addPiece(end, new ChessPiece(teamColor, move.getPromotionPiece()));
-        } else {
-            board.addPiece(end, movingPiece);
+    private void clearHistory() {
+        if (history != null) {
+            history.clear();
         }
-
-        boolean inCheck = isInCheck(teamColor);
-
-
-        this.board = originalBoard;
-
-        return inCheck;
     }
 
-
-    private ChessPosition findKing(TeamColor teamColor) {
-        for(int row = 1; row <= 8; row++) {
-            for(int col = 1; col <= 8; col++) {
-                ChessPosition position = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(position);
-
-                if(piece != null &&
-                        piece.getTeamColor() == teamColor &&
-                        piece.getPieceType() == ChessPiece.PieceType.KING) {
-                    return position;
-                }
-            }
+    private Snapshot publish() {
+        if (history != null) {
+            history.sync(board, teamTurn);
         }
-        return null;
+        Snapshot current = new Snapshot(Position.of(board, teamTurn), board, board.modCount(),
+                history == null ? null : history.freeze());
+        snapshot = current;
+        return current;
     }
 
-    private boolean hasAnyValidMoves(TeamColor teamColor) {
-        for(int row = 1; row <= 8; row++) {
-            for(int col = 1; col <= 8; col++) {
-                ChessPosition position = new ChessPosition(row, col);
-                ChessPiece piece = board.getPiece(position);
-
-                if(piece != null && piece.getTeamColor() == teamColor) {
-                    Collection<ChessMove> moves = validMoves(position);
-                    if(moves != null && !moves.isEmpty()) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+    /**
+     * A published position, with the board and change count it was taken from
+     *
+     * @param history the moves that led to the position, or null if none were kept
+     */
+    record Snapshot(Position position, ChessBoard board, int modCount, MoveHistory.Frozen history) {
     }
 
+    /**
+     * Games are equal when their positions are: the same pieces and the same team on move,
+     * however they got there
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) {
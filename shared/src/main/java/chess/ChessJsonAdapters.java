@@ -0,0 +1,355 @@
+package chess;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Gson adapters for the chess value types. They read and write the same JSON as Gson's
+ * default field by field format, but deserialize into the shared instances from
+ * {@link ChessPiece#of}, {@link ChessPosition#of} and {@link ChessMove#of} instead of
+ * allocating a new object per square and move, and keep {@link ChessBoard}'s byte-per-square
+ * storage out of the wire format. Games and clocks are read and written field by field
+ * without reflection, since every stored game and every LOAD_GAME goes through them.
+ * <p>
+ * The classes pick them up through {@code @JsonAdapter}, so every Gson instance uses them.
+ */
+public final class ChessJsonAdapters {
+
+    private ChessJsonAdapters() {
+    }
+
+    public static final class PieceAdapter extends TypeAdapter<ChessPiece> {
+
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            out.beginObject();
+            out.name("pieceColor");
+            writeEnum(out, piece.getTeamColor());
+            out.name("type");
+            writeEnum(out, piece.getPieceType());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            ChessGame.TeamColor color = null;
+            ChessPiece.PieceType type = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "pieceColor" -> color = readEnum(in, ChessGame.TeamColor.class);
+                    case "type" -> type = readEnum(in, ChessPiece.PieceType.class);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return ChessPiece.of(color, type);
+        }
+    }
+
+    public static final class PositionAdapter extends TypeAdapter<ChessPosition> {
+
+        @Override
+        public void write(JsonWriter out, ChessPosition position) throws IOException {
+            out.beginObject();
+            out.name("row").value(position.getRow());
+            out.name("col").value(position.getColumn());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPosition read(JsonReader in) throws IOException {
+            int row = 0;
+            int col = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "row" -> row = in.nextInt();
+                    case "col" -> col = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return ChessPosition.of(row, col);
+        }
+    }
+
+    public static final class MoveAdapter extends TypeAdapter<ChessMove> {
+
+        private final PositionAdapter positions = new PositionAdapter();
+
+        @Override
+        public void write(JsonWriter out, ChessMove move) throws IOException {
+            out.beginObject();
+            out.name("startPosition");
+            writePosition(out, move.getStartPosition());
+            out.name("endPosition");
+            writePosition(out, move.getEndPosition());
+            out.name("promotionPiece");
+            writeEnum(out, move.getPromotionPiece());
+            out.endObject();
+        }
+
+        @Override
+        public ChessMove read(JsonReader in) throws IOException {
+            ChessPosition start = null;
+            ChessPosition end = null;
+            ChessPiece.PieceType promotion = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "startPosition" -> start = readPosition(in);
+                    case "endPosition" -> end = readPosition(in);
+                    case "promotionPiece" -> promotion = readEnum(in, ChessPiece.PieceType.class);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return ChessMove.of(start, end, promotion);
+        }
+
+        private void writePosition(JsonWriter out, ChessPosition position) throws IOException {
+            if (position == null) {
+                out.nullValue();
+            } else {
+                positions.write(out, position);
+            }
+        }
+
+        private ChessPosition readPosition(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return positions.read(in);
+        }
+    }
+
+    /**
+     * Writes a board as {@code {"squares": [[piece or null, ...8], ...8]}}, row 1 first, which
+     * is what the board looked like on the wire when it held an 8x8 array of pieces
+     */
+    public static final class BoardAdapter extends TypeAdapter<ChessBoard> {
+
+        private final PieceAdapter pieces = new PieceAdapter();
+
+        @Override
+        public void write(JsonWriter out, ChessBoard board) throws IOException {
+            out.beginObject();
+            out.name("squares");
+            out.beginArray();
+            for (int row = 0; row < 8; row++) {
+                out.beginArray();
+                for (int col = 0; col < 8; col++) {
+                    ChessPiece piece = board.pieceAt(row * 8 + col);
+                    if (piece == null) {
+                        out.nullValue();
+                    } else {
+                        pieces.write(out, piece);
+                    }
+                }
+                out.endArray();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public ChessBoard read(JsonReader in) throws IOException {
+            ChessBoard board = new ChessBoard();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("squares") && in.peek() != JsonToken.NULL) {
+                    readSquares(in, board);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return board;
+        }
+
+        private void readSquares(JsonReader in, ChessBoard board) throws IOException {
+            in.beginArray();
+            for (int row = 0; in.hasNext(); row++) {
+                if (in.peek() == JsonToken.NULL || row >= 8) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginArray();
+                for (int col = 0; in.hasNext(); col++) {
+                    if (in.peek() == JsonToken.NULL || col >= 8) {
+                        in.skipValue();
+                        continue;
+                    }
+                    ChessPiece piece = pieces.read(in);
+                    if (piece.getTeamColor() == null || piece.getPieceType() == null) {
+                        throw new JsonParseException("board square " + (row * 8 + col) + " has an incomplete piece");
+                    }
+                    board.place(ChessPosition.ofSquare(row * 8 + col), piece);
+                }
+                in.endArray();
+            }
+            in.endArray();
+        }
+    }
+
+    /**
+     * Writes a game's move history as one Base64 string, see {@link MoveHistory#encode}
+     */
+    public static final class HistoryAdapter extends TypeAdapter<MoveHistory> {
+
+        @Override
+        public void write(JsonWriter out, MoveHistory history) throws IOException {
+            out.value(history.encode());
+        }
+
+        @Override
+        public MoveHistory read(JsonReader in) throws IOException {
+            try {
+                return MoveHistory.decode(in.nextString());
+            } catch (IllegalArgumentException ex) {
+                throw new JsonParseException("bad move history", ex);
+            }
+        }
+    }
+
+    /**
+     * Writes a game's board, turn, history, result and clock, in the order Gson's reflective
+     * adapter used to. The board, turn and history come from the game's published snapshot,
+     * so a game can be written while another thread is making a move on it.
+     */
+    public static final class GameAdapter extends TypeAdapter<ChessGame> {
+
+        private final BoardAdapter boards = new BoardAdapter();
+        private final HistoryAdapter histories = new HistoryAdapter();
+        private final ClockAdapter clocks = new ClockAdapter();
+
+        @Override
+        public void write(JsonWriter out, ChessGame game) throws IOException {
+            ChessGame.Snapshot snapshot = game.published();
+            out.beginObject();
+            out.name("board");
+            boards.write(out, snapshot.position().toBoard());
+            out.name("teamTurn");
+            writeEnum(out, snapshot.position().toMove());
+            out.name("history");
+            if (snapshot.history() == null) {
+                out.nullValue();
+            } else {
+                out.value(snapshot.history().encode());
+            }
+            out.name("result");
+            writeEnum(out, game.getResult());
+            out.name("clock");
+            if (game.getClock() == null) {
+                out.nullValue();
+            } else {
+                clocks.write(out, game.getClock());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ChessGame read(JsonReader in) throws IOException {
+            ChessBoard board = null;
+            // a field that's left out keeps what a new game starts with, as it did with reflection
+            ChessGame.TeamColor teamTurn = ChessGame.TeamColor.WHITE;
+            MoveHistory history = new MoveHistory();
+            ChessGame.Result result = null;
+            ChessClock clock = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL && !name.equals("teamTurn")) {
+                    in.nextNull();
+                    if (name.equals("history")) {
+                        history = null;
+                    }
+                    continue;
+                }
+                switch (name) {
+                    case "board" -> board = boards.read(in);
+                    case "teamTurn" -> teamTurn = readEnum(in, ChessGame.TeamColor.class);
+                    case "history" -> history = histories.read(in);
+                    case "result" -> result = readEnum(in, ChessGame.Result.class);
+                    case "clock" -> clock = clocks.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            if (board == null) {
+                board = new ChessBoard();
+                board.resetBoard();
+            }
+            return new ChessGame(board, teamTurn, history, result, clock);
+        }
+    }
+
+    public static final class ClockAdapter extends TypeAdapter<ChessClock> {
+
+        @Override
+        public void write(JsonWriter out, ChessClock clock) throws IOException {
+            out.beginObject();
+            out.name("baseMillis").value(clock.getBaseMillis());
+            out.name("incrementMillis").value(clock.getIncrementMillis());
+            out.name("whiteMillis").value(clock.storedMillis(ChessGame.TeamColor.WHITE));
+            out.name("blackMillis").value(clock.storedMillis(ChessGame.TeamColor.BLACK));
+            out.name("running");
+            writeEnum(out, clock.getRunning());
+            out.name("runningSince").value(clock.runningSince());
+            out.endObject();
+        }
+
+        @Override
+        public ChessClock read(JsonReader in) throws IOException {
+            long base = 0;
+            long increment = 0;
+            long white = 0;
+            long black = 0;
+            ChessGame.TeamColor running = null;
+            long runningSince = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "baseMillis" -> base = in.nextLong();
+                    case "incrementMillis" -> increment = in.nextLong();
+                    case "whiteMillis" -> white = in.nextLong();
+                    case "blackMillis" -> black = in.nextLong();
+                    case "running" -> running = readEnum(in, ChessGame.TeamColor.class);
+                    case "runningSince" -> runningSince = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ChessClock(base, increment, white, black, running, runningSince);
+        }
+    }
+
+    private static void writeEnum(JsonWriter out, Enum<?> value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.name());
+        }
+    }
+
+    private static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> type) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String name = in.nextString();
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            // Gson's default enum adapter reads unknown names as null too
+            return null;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Objects;
 
 /**
@@ -8,10 +10,34 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJsonAdapters.MoveAdapter.class)
 public class ChessMove {
-    private ChessPosition startPosition;
-    private ChessPosition endPosition;
-    private ChessPiece.PieceType promotionPiece;
+
+    // shared instances, see of(): every from/to pair without a promotion, and every
+    // pawn step onto the last rank with each promotion piece
+    private static final ChessMove[] MOVES = new ChessMove[64 * 64];
+    private static final ChessMove[][] PROMOTIONS = new ChessMove[64 * 64][];
+
+    static {
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                ChessPosition start = ChessPosition.ofSquare(from);
+                ChessPosition end = ChessPosition.ofSquare(to);
+                MOVES[from * 64 + to] = new ChessMove(start, end, null);
+                if (isPromotionStep(start, end)) {
+                    ChessMove[] promotions = new ChessMove[ChessPiece.PieceType.values().length];
+                    for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                        promotions[type.ordinal()] = new ChessMove(start, end, type);
+                    }
+                    PROMOTIONS[from * 64 + to] = promotions;
+                }
+            }
+        }
+    }
+
+    private final ChessPosition startPosition;
+    private final ChessPosition endPosition;
+    private final ChessPiece.PieceType promotionPiece;
 
     public ChessMove(ChessPosition startPosition, ChessPosition endPosition,
                      ChessPiece.PieceType promotionPiece) {
@@ -20,6 +46,33 @@ public class ChessMove {
         this.promotionPiece = promotionPiece;
     }
 
+    /**
+     * Moves never change, so equal moves on the board can be the same object
+     *
+     * @return the shared move, or a new one for a move that isn't in the table (off the
+     * board, or a promotion that no pawn step could make)
+     */
+    public static ChessMove of(ChessPosition startPosition, ChessPosition endPosition,
+                               ChessPiece.PieceType promotionPiece) {
+        int from = startPosition == null ? -1 : startPosition.square();
+        int to = endPosition == null ? -1 : endPosition.square();
+        if (from < 0 || to < 0) {
+            return new ChessMove(startPosition, endPosition, promotionPiece);
+        }
+        if (promotionPiece == null) {
+            return MOVES[from * 64 + to];
+        }
+        ChessMove[] promotions = PROMOTIONS[from * 64 + to];
+        return promotions == null ? new ChessMove(startPosition, endPosition, promotionPiece)
+                : promotions[promotionPiece.ordinal()];
+    }
+
+    private static boolean isPromotionStep(ChessPosition start, ChessPosition end) {
+        boolean white = start.getRow() == 7 && end.getRow() == 8;
+        boolean black = start.getRow() == 2 && end.getRow() == 1;
+        return (white || black) && Math.abs(start.getColumn() - end.getColumn()) <= 1;
+    }
+
     /**
      * @return ChessPosition of starting location
      */
@@ -57,7 +110,9 @@ public class ChessMove {
 
     @Override
     public int hashCode() {
-        return Objects.hash(startPosition, endPosition, promotionPiece);
+        int start = startPosition == null ? 0 : startPosition.hashCode();
+        int end = endPosition == null ? 0 : endPosition.hashCode();
+        return (start * 512 + end) * 8 + (promotionPiece == null ? 7 : promotionPiece.ordinal());
     }
 
     @Override
@@ -1,9 +1,10 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Represents a single chess piece
@@ -11,16 +12,62 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJsonAdapters.PieceAdapter.class)
 public class ChessPiece {
 
-    private ChessGame.TeamColor pieceColor;
-    private ChessPiece.PieceType type;
+    // one shared instance per color and type, see of(); indexed by code(), 0 is no piece
+    private static final ChessPiece[] PIECES = new ChessPiece[13];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (PieceType type : PieceType.values()) {
+                ChessPiece piece = new ChessPiece(color, type);
+                PIECES[code(piece)] = piece;
+            }
+        }
+    }
+
+    private final ChessGame.TeamColor pieceColor;
+    private final ChessPiece.PieceType type;
 
     public ChessPiece(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
     }
 
+    /**
+     * Pieces never change, so every piece of one color and type can be the same object
+     *
+     * @return the shared piece of that color and type
+     */
+    public static ChessPiece of(ChessGame.TeamColor pieceColor, ChessPiece.PieceType type) {
+        if (pieceColor == null || type == null) {
+            return new ChessPiece(pieceColor, type);
+        }
+        return PIECES[1 + pieceColor.ordinal() * 6 + type.ordinal()];
+    }
+
+    /**
+     * @return the piece's one-byte code, 1-12, or 0 for no piece
+     * @throws IllegalArgumentException if the piece has no color or type
+     */
+    static byte code(ChessPiece piece) {
+        if (piece == null) {
+            return 0;
+        }
+        if (piece.pieceColor == null || piece.type == null) {
+            throw new IllegalArgumentException("a piece on the board needs a color and a type");
+        }
+        return (byte) (1 + piece.pieceColor.ordinal() * 6 + piece.type.ordinal());
+    }
+
+    /**
+     * @return the shared piece with that code, or null for 0
+     */
+    static ChessPiece ofCode(int code) {
+        return PIECES[code];
+    }
+
     /**
      * The various different chess piece options
      */
@@ -134,10 +181,10 @@ public class ChessPiece {
 
     private void addMoveIfValid(ChessBoard board, ChessPosition myPosition, int newRow, int newCol, List<ChessMove> moves) {
         if(isValidPosition(newRow, newCol)) {
-            ChessPosition pos = new ChessPosition(newRow, newCol);
+            ChessPosition pos = ChessPosition.of(newRow, newCol);
             ChessPiece target = board.getPiece(pos);
             if(target == null || target.getTeamColor() != pieceColor) {
-                moves.add(new ChessMove(myPosition, pos, null));
+                moves.add(ChessMove.of(myPosition, pos, null));
             }
         }
     }
@@ -147,18 +194,18 @@ public class ChessPiece {
                                      int promotionRow, List<ChessMove> moves) {
         int nextRow = row + direction;
         if(isValidPosition(nextRow, col)) {
-            ChessPosition forwardOne = new ChessPosition(nextRow, col);
+            ChessPosition forwardOne = ChessPosition.of(nextRow, col);
             if(board.getPiece(forwardOne) == null) {
                 if(nextRow == promotionRow) {
                     addPromotionMoves(moves, myPosition, forwardOne);
                 } else {
-                    moves.add(new ChessMove(myPosition, forwardOne, null));
+                    moves.add(ChessMove.of(myPosition, forwardOne, null));
                 }
                 if(row == startRow){
                     int nextRowTwo = row + 2 * direction;
-                    ChessPosition forwardTwo = new ChessPosition(nextRowTwo, col);
+                    ChessPosition forwardTwo = ChessPosition.of(nextRowTwo, col);
                     if(board.getPiece(forwardTwo) == null) {
-                        moves.add(new ChessMove(myPosition, forwardTwo, null));
+                        moves.add(ChessMove.of(myPosition, forwardTwo, null));
                     }
                 }
             }
@@ -173,13 +220,13 @@ public class ChessPiece {
             int newCapturePosCol = col + diagonalCapture[i];
             int newCapturePosRow = row + direction;
             if(isValidPosition(newCapturePosRow, newCapturePosCol)) {
-                ChessPosition targetPos = new ChessPosition(newCapturePosRow, newCapturePosCol);
+                ChessPosition targetPos = ChessPosition.of(newCapturePosRow, newCapturePosCol);
                 ChessPiece target = board.getPiece(targetPos);
                 if(target != null && target.getTeamColor() != pieceColor){
                     if(newCapturePosRow == promotionRow) {
                         addPromotionMoves(moves, myPosition, targetPos);
                     } else {
-                        moves.add(new ChessMove(myPosition, targetPos, null));
+                        moves.add(ChessMove.of(myPosition, targetPos, null));
                     }
                 }
             }
@@ -197,13 +244,13 @@ public class ChessPiece {
             int newRow = row + directionRow;
             int newCol = col + directionCol;
             while(isValidPosition(newRow, newCol)) {
-                ChessPosition pos = new ChessPosition(newRow, newCol);
+                ChessPosition pos = ChessPosition.of(newRow, newCol);
                 ChessPiece target = board.getPiece(pos);
                 if (target == null) {
-                    moves.add(new ChessMove(start, pos, null));
+                    moves.add(ChessMove.of(start, pos, null));
                 } else {
                     if(target.getTeamColor() != pieceColor) {
-                        moves.add(new ChessMove(start, pos, null));
+                        moves.add(ChessMove.of(start, pos, null));
                     }
                     break;
                 }
@@ -214,10 +261,10 @@ public class ChessPiece {
     }
 
     private void addPromotionMoves(List<ChessMove> moves, ChessPosition start, ChessPosition end) {
-        moves.add(new ChessMove(start, end, PieceType.QUEEN));
-        moves.add(new ChessMove(start, end, PieceType.ROOK));
-        moves.add(new ChessMove(start, end, PieceType.KNIGHT));
-        moves.add(new ChessMove(start, end, PieceType.BISHOP));
+        moves.add(ChessMove.of(start, end, PieceType.QUEEN));
+        moves.add(ChessMove.of(start, end, PieceType.ROOK));
+        moves.add(ChessMove.of(start, end, PieceType.KNIGHT));
+        moves.add(ChessMove.of(start, end, PieceType.BISHOP));
     }
 
     @Override
@@ -231,6 +278,7 @@ public class ChessPiece {
 
     @Override
     public int hashCode() {
-        return Objects.hash(pieceColor, type);
+        int color = pieceColor == null ? 2 : pieceColor.ordinal();
+        return color * 7 + (type == null ? 6 : type.ordinal());
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package chess;
 
-import java.util.Objects;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
  * Represents a single square position on a chess board
@@ -8,15 +8,57 @@ import java.util.Objects;
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+@JsonAdapter(ChessJsonAdapters.PositionAdapter.class)
 public class ChessPosition {
-    private int row;
-    private int col;
+
+    // one shared instance per square, a1 = 0, see of()
+    private static final ChessPosition[] SQUARES = new ChessPosition[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARES[square] = new ChessPosition(square / 8 + 1, square % 8 + 1);
+        }
+    }
+
+    private final int row;
+    private final int col;
 
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * Positions never change, so every position of one square can be the same object
+     *
+     * @return the shared position for a square on the board, or a new one for a position
+     * off the board
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return new ChessPosition(row, col);
+        }
+        return SQUARES[(row - 1) * 8 + col - 1];
+    }
+
+    /**
+     * @param square 0-63, a1 = 0
+     * @return the shared position for that square
+     */
+    public static ChessPosition ofSquare(int square) {
+        return SQUARES[square];
+    }
+
+    /**
+     * @return 0-63 with a1 = 0, or -1 for a position off the board
+     */
+    public int square() {
+        if (row < 1 || row > 8 || col < 1 || col > 8) {
+            return -1;
+        }
+        return (row - 1) * 8 + col - 1;
+    }
+
     /**
      * @return which row this position is in
      * 1 codes for the bottom row
@@ -44,7 +86,7 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return row * 31 + col;
     }
     @Override
     public String toString(){
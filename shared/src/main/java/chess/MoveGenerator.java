@@ -0,0 +1,568 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Generates moves straight into a {@link MoveList} without allocating.
+ * <p>
+ * Nothing here changes the board, so it is safe on a {@link Position} shared between
+ * threads.
+ * <p>
+ * {@link #generate} follows the same rules as {@link ChessPiece#pieceMoves}: its moves are
+ * pseudo-legal, so a move may still leave the mover's own king attacked.
+ * {@link #generateLegal} emits only legal moves, using the checks and pins on the king
+ * instead of trying each move. This tree has no castling or en passant, so those are all
+ * the cases there are.
+ */
+public final class MoveGenerator {
+
+    private static final int[][] KNIGHT_STEPS = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    // straight directions first, then diagonals
+    private static final int[][] DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+        ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP
+    };
+
+    // the squares a knight or king on each square can step to, so the loops don't bounds check
+    private static final int[][] KNIGHT_TARGETS = targets(KNIGHT_STEPS);
+    private static final int[][] KING_TARGETS = targets(KING_STEPS);
+    private static final long[] KNIGHT_MASKS = masks(KNIGHT_TARGETS);
+    private static final long[] KING_MASKS = masks(KING_TARGETS);
+
+    // bit masks over squares: BETWEEN[a][b] is the squares strictly between two squares on a
+    // line, LINE[a][b] the whole line through both; empty if they don't share a line
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int from = 0; from < 64; from++) {
+            for (int[] direction : DIRECTIONS) {
+                long between = 0;
+                int row = from / 8 + direction[0];
+                int col = from % 8 + direction[1];
+                while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                    int to = row * 8 + col;
+                    BETWEEN[from][to] = between;
+                    between |= 1L << to;
+                    row += direction[0];
+                    col += direction[1];
+                }
+            }
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a != b && (BETWEEN[a][b] != 0 || isNeighbour(a, b))) {
+                    LINE[a][b] = ray(a, b) | ray(b, a) | BETWEEN[a][b] | 1L << a | 1L << b;
+                }
+            }
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Appends the pseudo-legal moves of every piece of one side
+     */
+    public static void generate(BoardView board, ChessGame.TeamColor side, MoveList out) {
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = pieceAt(board, square);
+            if (piece != null && piece.getTeamColor() == side) {
+                generate(board, piece, square, out);
+            }
+        }
+    }
+
+    /**
+     * Appends the pseudo-legal moves of the piece on a square, if any
+     */
+    public static void generate(BoardView board, int square, MoveList out) {
+        ChessPiece piece = pieceAt(board, square);
+        if (piece != null) {
+            generate(board, piece, square, out);
+        }
+    }
+
+    /**
+     * Appends the legal moves of every piece of one side.
+     * <p>
+     * Instead of playing each move to see whether it exposes the king, this finds the
+     * pieces giving check and the pieces pinned to the king first. A move is then legal if
+     * it lands on a square that answers the check (capturing the checker or blocking its
+     * ray), a pinned piece stays on its pin line, and the king only steps to unattacked
+     * squares. In double check only the king moves.
+     */
+    public static void generateLegal(BoardView board, ChessGame.TeamColor side, MoveList out) {
+        int start = out.size();
+        int king = findKing(board, side);
+        if (king < 0) {
+            // without a king nothing can be left in check
+            generate(board, side, out);
+            return;
+        }
+        long checkMask = checkMask(board, side, king);
+        if (checkMask == 0) {
+            generate(board, king, out);
+        } else {
+            generate(board, side, out);
+        }
+        filterLegal(board, side, king, checkMask, start, out);
+    }
+
+    /**
+     * Appends the legal moves of the piece on a square, if any
+     */
+    public static void generateLegal(BoardView board, int square, MoveList out) {
+        ChessPiece piece = pieceAt(board, square);
+        if (piece == null) {
+            return;
+        }
+        int start = out.size();
+        generate(board, piece, square, out);
+        int king = findKing(board, piece.getTeamColor());
+        if (king >= 0) {
+            filterLegal(board, piece.getTeamColor(), king, checkMask(board, piece.getTeamColor(), king), start, out);
+        }
+    }
+
+    /**
+     * Checks any move, not only generated ones: the piece on the start square must be able
+     * to make it (shape, a clear path, captures only of enemy pieces, pawn pushes onto empty
+     * squares, a promotion exactly when a pawn reaches the last rank), and it must not leave
+     * its own king attacked. Looks only at the squares the move involves and the lines
+     * through the king, and never changes the board.
+     */
+    public static boolean isLegalMove(BoardView board, int move) {
+        if (!isPseudoLegal(board, move)) {
+            return false;
+        }
+        int from = MoveList.from(move);
+        int to = MoveList.to(move);
+        ChessGame.TeamColor side = pieceAt(board, from).getTeamColor();
+        int king = findKing(board, side);
+        if (king < 0) {
+            return true;
+        }
+        if (from == king) {
+            return !isAttacked(board, to, opponent(side), king);
+        }
+        return (checkMask(board, side, king) & 1L << to) != 0
+                && ((pinned(board, side, king) & 1L << from) == 0 || (LINE[king][from] & 1L << to) != 0);
+    }
+
+    /**
+     * @return true if {@link #generate} would produce the move
+     */
+    public static boolean isPseudoLegal(BoardView board, int move) {
+        int from = MoveList.from(move);
+        int to = MoveList.to(move);
+        ChessPiece piece = pieceAt(board, from);
+        if (piece == null || from == to) {
+            return false;
+        }
+        ChessPiece target = pieceAt(board, to);
+        if (target != null && target.getTeamColor() == piece.getTeamColor()) {
+            return false;
+        }
+        ChessPiece.PieceType promotion = MoveList.promotion(move);
+        if (piece.getPieceType() != ChessPiece.PieceType.PAWN && promotion != null) {
+            return false;
+        }
+
+        boolean straight = from / 8 == to / 8 || from % 8 == to % 8;
+        boolean diagonal = Math.abs(from / 8 - to / 8) == Math.abs(from % 8 - to % 8);
+        return switch (piece.getPieceType()) {
+            case KNIGHT -> (KNIGHT_MASKS[from] & 1L << to) != 0;
+            case KING -> (KING_MASKS[from] & 1L << to) != 0;
+            case ROOK -> straight && isClear(board, from, to);
+            case BISHOP -> diagonal && isClear(board, from, to);
+            case QUEEN -> (straight || diagonal) && isClear(board, from, to);
+            case PAWN -> isPawnMove(board, piece.getTeamColor(), from, to, target != null, promotion);
+        };
+    }
+
+    /**
+     * @return true if the team's king is attacked; false if it has no king
+     */
+    public static boolean isInCheck(BoardView board, ChessGame.TeamColor team) {
+        int king = findKing(board, team);
+        return king >= 0 && isAttacked(board, king, opponent(team));
+    }
+
+    /**
+     * @return the square of the team's king, or -1 if it has none
+     */
+    public static int findKing(BoardView board, ChessGame.TeamColor team) {
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = pieceAt(board, square);
+            if (piece != null && piece.getTeamColor() == team && piece.getPieceType() == ChessPiece.PieceType.KING) {
+                return square;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if any piece of the attacking team could capture on the square
+     */
+    public static boolean isAttacked(BoardView board, int square, ChessGame.TeamColor attacker) {
+        return isAttacked(board, square, attacker, -1);
+    }
+
+    /**
+     * @param ignore a square whose piece doesn't block sliders, so a king can't hide from a
+     *               slider behind itself, or -1
+     */
+    private static boolean isAttacked(BoardView board, int square, ChessGame.TeamColor attacker, int ignore) {
+        int row = square / 8;
+        int col = square % 8;
+
+        // an attacking pawn sits one row behind the square, from the attacker's side
+        int pawnRow = attacker == ChessGame.TeamColor.WHITE ? row - 1 : row + 1;
+        if (pawnRow >= 0 && pawnRow < 8) {
+            if (col > 0 && isPiece(board, pawnRow * 8 + col - 1, attacker, ChessPiece.PieceType.PAWN)) {
+                return true;
+            }
+            if (col < 7 && isPiece(board, pawnRow * 8 + col + 1, attacker, ChessPiece.PieceType.PAWN)) {
+                return true;
+            }
+        }
+        for (int target : KNIGHT_TARGETS[square]) {
+            if (isPiece(board, target, attacker, ChessPiece.PieceType.KNIGHT)) {
+                return true;
+            }
+        }
+        for (int target : KING_TARGETS[square]) {
+            if (isPiece(board, target, attacker, ChessPiece.PieceType.KING)) {
+                return true;
+            }
+        }
+        for (int direction = 0; direction < 8; direction++) {
+            int first = firstPiece(board, square, direction, ignore);
+            if (first >= 0 && isSlider(pieceAt(board, first), attacker, direction)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the squares a non-king move must land on: everything when not in check, the
+     * checker and the squares between it and the king in single check, nothing in double
+     * check
+     */
+    private static long checkMask(BoardView board, ChessGame.TeamColor side, int king) {
+        ChessGame.TeamColor enemy = opponent(side);
+        long mask = 0;
+        int checkers = 0;
+
+        int row = king / 8;
+        int col = king % 8;
+        int pawnRow = side == ChessGame.TeamColor.WHITE ? row + 1 : row - 1;
+        if (pawnRow >= 0 && pawnRow < 8) {
+            for (int pawnCol = col - 1; pawnCol <= col + 1; pawnCol += 2) {
+                if (pawnCol >= 0 && pawnCol < 8 && isPiece(board, pawnRow * 8 + pawnCol, enemy, ChessPiece.PieceType.PAWN)) {
+                    mask |= 1L << (pawnRow * 8 + pawnCol);
+                    checkers++;
+                }
+            }
+        }
+        for (int target : KNIGHT_TARGETS[king]) {
+            if (isPiece(board, target, enemy, ChessPiece.PieceType.KNIGHT)) {
+                mask |= 1L << target;
+                checkers++;
+            }
+        }
+        // kings can't really touch, but a set-up board can have them side by side
+        for (int target : KING_TARGETS[king]) {
+            if (isPiece(board, target, enemy, ChessPiece.PieceType.KING)) {
+                mask |= 1L << target;
+                checkers++;
+            }
+        }
+        for (int direction = 0; direction < 8; direction++) {
+            int checker = firstPiece(board, king, direction, -1);
+            if (checker >= 0 && isSlider(pieceAt(board, checker), enemy, direction)) {
+                mask |= BETWEEN[king][checker] | 1L << checker;
+                checkers++;
+            }
+        }
+
+        if (checkers == 0) {
+            return -1L;
+        }
+        return checkers == 1 ? mask : 0;
+    }
+
+    /**
+     * Keeps the legal moves among {@code out[start..]}: pseudo-legal moves of one side whose
+     * king is on {@code king}
+     */
+    private static void filterLegal(BoardView board, ChessGame.TeamColor side, int king, long checkMask,
+                                    int start, MoveList out) {
+        long pinned = pinned(board, side, king);
+        ChessGame.TeamColor enemy = opponent(side);
+        int kept = start;
+        for (int i = start; i < out.size(); i++) {
+            int move = out.get(i);
+            int from = MoveList.from(move);
+            int to = MoveList.to(move);
+            boolean legal;
+            if (from == king) {
+                legal = !isAttacked(board, to, enemy, king);
+            } else {
+                legal = (checkMask & 1L << to) != 0
+                        && ((pinned & 1L << from) == 0 || (LINE[king][from] & 1L << to) != 0);
+            }
+            if (legal) {
+                out.set(kept++, move);
+            }
+        }
+        out.truncate(kept);
+    }
+
+    /**
+     * @return the side's pieces that are the only thing between their king and an enemy
+     * slider on the same line
+     */
+    private static long pinned(BoardView board, ChessGame.TeamColor side, int king) {
+        long pinned = 0;
+        for (int direction = 0; direction < 8; direction++) {
+            int first = firstPiece(board, king, direction, -1);
+            if (first < 0 || pieceAt(board, first).getTeamColor() != side) {
+                continue;
+            }
+            int second = firstPiece(board, first, direction, -1);
+            if (second >= 0 && isSlider(pieceAt(board, second), opponent(side), direction)) {
+                pinned |= 1L << first;
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     * @param direction an index into {@link #DIRECTIONS}
+     * @param ignore    a square to treat as empty, or -1
+     * @return the first occupied square after {@code square} in that direction, or -1
+     */
+    private static int firstPiece(BoardView board, int square, int direction, int ignore) {
+        int rowStep = DIRECTIONS[direction][0];
+        int colStep = DIRECTIONS[direction][1];
+        int row = square / 8 + rowStep;
+        int col = square % 8 + colStep;
+        while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+            int target = row * 8 + col;
+            if (target != ignore && pieceAt(board, target) != null) {
+                return target;
+            }
+            row += rowStep;
+            col += colStep;
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if the piece belongs to the team and slides along the direction
+     */
+    private static boolean isSlider(ChessPiece piece, ChessGame.TeamColor team, int direction) {
+        if (piece.getTeamColor() != team) {
+            return false;
+        }
+        ChessPiece.PieceType type = piece.getPieceType();
+        boolean straight = direction < 4;
+        return type == ChessPiece.PieceType.QUEEN
+                || type == (straight ? ChessPiece.PieceType.ROOK : ChessPiece.PieceType.BISHOP);
+    }
+
+    private static void generate(BoardView board, ChessPiece piece, int square, MoveList out) {
+        ChessGame.TeamColor side = piece.getTeamColor();
+        switch (piece.getPieceType()) {
+            case PAWN -> pawnMoves(board, side, square, out);
+            case KNIGHT -> stepMoves(board, side, square, KNIGHT_TARGETS[square], out);
+            case KING -> stepMoves(board, side, square, KING_TARGETS[square], out);
+            case ROOK -> slidingMoves(board, side, square, ROOK_DIRECTIONS, out);
+            case BISHOP -> slidingMoves(board, side, square, BISHOP_DIRECTIONS, out);
+            case QUEEN -> {
+                slidingMoves(board, side, square, ROOK_DIRECTIONS, out);
+                slidingMoves(board, side, square, BISHOP_DIRECTIONS, out);
+            }
+        }
+    }
+
+    private static void pawnMoves(BoardView board, ChessGame.TeamColor side, int square, MoveList out) {
+        boolean white = side == ChessGame.TeamColor.WHITE;
+        int direction = white ? 1 : -1;
+        int row = square / 8;
+        int col = square % 8;
+        int next = row + direction;
+        if (next < 0 || next > 7) {
+            return;
+        }
+        boolean promotes = next == (white ? 7 : 0);
+
+        int forward = next * 8 + col;
+        if (pieceAt(board, forward) == null) {
+            addPawnMove(square, forward, promotes, 0, out);
+            int twoRow = row + 2 * direction;
+            if (row == (white ? 1 : 6) && pieceAt(board, twoRow * 8 + col) == null) {
+                out.add(MoveList.encode(square, twoRow * 8 + col, null, 0));
+            }
+        }
+        for (int offset = -1; offset <= 1; offset += 2) {
+            int targetCol = col + offset;
+            if (targetCol < 0 || targetCol > 7) {
+                continue;
+            }
+            int target = next * 8 + targetCol;
+            ChessPiece victim = pieceAt(board, target);
+            if (victim != null && victim.getTeamColor() != side) {
+                addPawnMove(square, target, promotes, MoveList.CAPTURE, out);
+            }
+        }
+    }
+
+    private static void addPawnMove(int from, int to, boolean promotes, int flags, MoveList out) {
+        if (!promotes) {
+            out.add(MoveList.encode(from, to, null, flags));
+            return;
+        }
+        for (ChessPiece.PieceType type : PROMOTIONS) {
+            out.add(MoveList.encode(from, to, type, flags));
+        }
+    }
+
+    private static void stepMoves(BoardView board, ChessGame.TeamColor side, int square, int[] targets, MoveList out) {
+        for (int target : targets) {
+            ChessPiece occupant = pieceAt(board, target);
+            if (occupant == null) {
+                out.add(MoveList.encode(square, target, null, 0));
+            } else if (occupant.getTeamColor() != side) {
+                out.add(MoveList.encode(square, target, null, MoveList.CAPTURE));
+            }
+        }
+    }
+
+    private static void slidingMoves(BoardView board, ChessGame.TeamColor side, int square, int[][] directions,
+                                     MoveList out) {
+        for (int[] direction : directions) {
+            int row = square / 8 + direction[0];
+            int col = square % 8 + direction[1];
+            while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                int target = row * 8 + col;
+                ChessPiece occupant = pieceAt(board, target);
+                if (occupant == null) {
+                    out.add(MoveList.encode(square, target, null, 0));
+                } else {
+                    if (occupant.getTeamColor() != side) {
+                        out.add(MoveList.encode(square, target, null, MoveList.CAPTURE));
+                    }
+                    break;
+                }
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+    }
+
+    private static boolean isPawnMove(BoardView board, ChessGame.TeamColor side, int from, int to, boolean capture,
+                                      ChessPiece.PieceType promotion) {
+        boolean white = side == ChessGame.TeamColor.WHITE;
+        int direction = white ? 1 : -1;
+        int rowStep = to / 8 - from / 8;
+        int colStep = Math.abs(to % 8 - from % 8);
+
+        boolean promotes = to / 8 == (white ? 7 : 0);
+        if (promotes != (promotion != null) || promotion == ChessPiece.PieceType.KING
+                || promotion == ChessPiece.PieceType.PAWN) {
+            return false;
+        }
+        if (colStep == 1) {
+            return rowStep == direction && capture;
+        }
+        if (colStep != 0 || capture) {
+            return false;
+        }
+        if (rowStep == direction) {
+            return true;
+        }
+        return rowStep == 2 * direction && from / 8 == (white ? 1 : 6) && pieceAt(board, from + 8 * direction) == null;
+    }
+
+    /**
+     * @return true if nothing stands between two squares on a line
+     */
+    private static boolean isClear(BoardView board, int from, int to) {
+        long between = BETWEEN[from][to];
+        while (between != 0) {
+            if (pieceAt(board, Long.numberOfTrailingZeros(between)) != null) {
+                return false;
+            }
+            between &= between - 1;
+        }
+        return true;
+    }
+
+    private static boolean isPiece(BoardView board, int square, ChessGame.TeamColor team, ChessPiece.PieceType type) {
+        ChessPiece piece = pieceAt(board, square);
+        return piece != null && piece.getTeamColor() == team && piece.getPieceType() == type;
+    }
+
+    private static ChessPiece pieceAt(BoardView board, int square) {
+        return board.pieceAt(square);
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor team) {
+        return team == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+
+    private static boolean isNeighbour(int a, int b) {
+        return Math.abs(a / 8 - b / 8) <= 1 && Math.abs(a % 8 - b % 8) <= 1;
+    }
+
+    /**
+     * @return every square from {@code a} away from {@code b} to the edge of the board
+     */
+    private static long ray(int a, int b) {
+        int rowStep = Integer.signum(a / 8 - b / 8);
+        int colStep = Integer.signum(a % 8 - b % 8);
+        long ray = 0;
+        int row = a / 8 + rowStep;
+        int col = a % 8 + colStep;
+        while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+            ray |= 1L << (row * 8 + col);
+            row += rowStep;
+            col += colStep;
+        }
+        return ray;
+    }
+
+    private static long[] masks(int[][] targets) {
+        long[] masks = new long[64];
+        for (int square = 0; square < 64; square++) {
+            for (int target : targets[square]) {
+                masks[square] |= 1L << target;
+            }
+        }
+        return masks;
+    }
+
+    private static int[][] targets(int[][] steps) {
+        int[][] targets = new int[64][];
+        for (int square = 0; square < 64; square++) {
+            int[] found = new int[steps.length];
+            int count = 0;
+            for (int[] step : steps) {
+                int row = square / 8 + step[0];
+                int col = square % 8 + step[1];
+                if (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                    found[count++] = row * 8 + col;
+                }
+            }
+            targets[square] = Arrays.copyOf(found, count);
+        }
+        return targets;
+    }
+}
@@ -0,0 +1,339 @@
+package chess;
+
+import chess.engine.Zobrist;
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The moves played in a {@link ChessGame}, oldest first, with a parallel stack of
+ * {@link Zobrist} hashes of the position before each move and after the last one.
+ * <p>
+ * Each entry is one int: the move packed as {@link MoveList} does (bits 0-14), the
+ * captured piece's code (bits 16-19) and a flag for pawn moves (bit 20). That is enough to
+ * take a move back on the board, so only the entries are stored. Hashes are only kept as
+ * far back as the last pawn move or capture, since no earlier position can come up again,
+ * and are rebuilt from the current board by walking the moves backwards when the game is
+ * set up or restored.
+ * On the wire the entries are three bytes each, Base64 encoded.
+ * <p>
+ * Not thread-safe: like the board, it belongs to whichever thread makes the moves. Other
+ * threads read a {@link Frozen} copy instead, which shares the entries until they'd be
+ * overwritten.
+ */
+@JsonAdapter(ChessJsonAdapters.HistoryAdapter.class)
+final class MoveHistory {
+
+    private static final int CAPTURED_SHIFT = 16;
+    private static final int PAWN_MOVE = 1 << 20;
+    private static final int[] NO_ENTRIES = {};
+
+    private int[] entries;
+    private int size;
+    // positions before this index can't come up again: a pawn moved or a piece was taken since
+    private int reversibleFrom;
+    // hashes[i] is the position before entries[i] and hashes[size] the current one, for
+    // i >= hashedFrom; null until sync() is first called
+    private long[] hashes;
+    private int hashedFrom;
+    // entries below this index may be read through a Frozen copy, so they aren't overwritten in place
+    private int frozenSize;
+
+    MoveHistory() {
+        this(NO_ENTRIES, 0);
+    }
+
+    private MoveHistory(int[] entries, int size) {
+        this.entries = entries;
+        this.size = size;
+        findReversibleFrom();
+    }
+
+    /**
+     * @return a copy with the same moves; its hashes are rebuilt when first needed
+     */
+    MoveHistory copy() {
+        return new MoveHistory(Arrays.copyOf(entries, size), size);
+    }
+
+    /**
+     * The moves as they were when {@link #freeze} was called, for reading on another thread
+     *
+     * @param entries shared with the history, which never overwrites the first {@code size}
+     */
+    record Frozen(int[] entries, int size) {
+
+        /**
+         * @return the entries, three bytes each, Base64 encoded
+         */
+        String encode() {
+            return MoveHistory.encode(entries, size);
+        }
+    }
+
+    /**
+     * @return the moves as they are now, unchanged by anything done to this history later
+     */
+    Frozen freeze() {
+        frozenSize = Math.max(frozenSize, size);
+        return new Frozen(entries, size);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Forgets every move, for when the position was set up rather than played to
+     */
+    void clear() {
+        size = 0;
+        reversibleFrom = 0;
+        hashes = null;
+    }
+
+    /**
+     * Makes sure the current position and every position since the last pawn move or
+     * capture are hashed, walking back from the current board if they aren't
+     *
+     * @param board  the board as it is now
+     * @param toMove whose turn it is, or null if the game is over
+     */
+    void sync(ChessBoard board, ChessGame.TeamColor toMove) {
+        if (hashes != null && hashedFrom <= reversibleFrom) {
+            return;
+        }
+        byte[] squares = board.copySquares();
+        if (toMove == null) {
+            ChessPiece last = size == 0 ? null : ChessPiece.ofCode(squares[MoveList.to(entries[size - 1])]);
+            toMove = last == null ? ChessGame.TeamColor.WHITE : opponent(last.getTeamColor());
+        }
+        long[] rebuilt = new long[entries.length + 1];
+        long hash = Zobrist.hash(board, toMove);
+        rebuilt[size] = hash;
+        for (int i = size - 1; i >= reversibleFrom; i--) {
+            ChessPiece placed = ChessPiece.ofCode(squares[MoveList.to(entries[i])]);
+            if (placed == null) {
+                // stored moves that don't lead to this board can't be taken back: start afresh
+                size = 0;
+                reversibleFrom = 0;
+                rebuilt[0] = Zobrist.hash(board, toMove);
+                break;
+            }
+            hash = unhash(entries[i], placed, hash);
+            rebuilt[i] = hash;
+            squares[MoveList.from(entries[i])] = ChessPiece.code(moved(entries[i], placed));
+            squares[MoveList.to(entries[i])] = ChessPiece.code(captured(entries[i]));
+        }
+        hashes = rebuilt;
+        hashedFrom = reversibleFrom;
+    }
+
+    /**
+     * Records a move; {@link #sync} must have been called for the position before it
+     *
+     * @param move     the move, packed without flags
+     * @param moved    the piece that moved, before any promotion
+     * @param captured the piece taken, or null
+     */
+    void push(int move, ChessPiece moved, ChessPiece captured) {
+        int entry = move | ChessPiece.code(captured) << CAPTURED_SHIFT
+                | (moved.getPieceType() == ChessPiece.PieceType.PAWN ? PAWN_MOVE : 0);
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(16, size * 2));
+            frozenSize = 0;
+        } else if (size < frozenSize) {
+            // a move was taken back, and a frozen copy still holds the one this replaces
+            entries = entries.clone();
+            frozenSize = 0;
+        }
+        if (size + 1 >= hashes.length) {
+            hashes = Arrays.copyOf(hashes, entries.length + 1);
+        }
+
+        int from = MoveList.from(move);
+        int to = MoveList.to(move);
+        ChessPiece.PieceType promotion = MoveList.promotion(move);
+        ChessPiece placed = promotion == null ? moved : ChessPiece.of(moved.getTeamColor(), promotion);
+        long hash = hashes[size] ^ Zobrist.sideKey() ^ Zobrist.pieceKey(moved, from) ^ Zobrist.pieceKey(placed, to);
+        if (captured != null) {
+            hash ^= Zobrist.pieceKey(captured, to);
+        }
+
+        entries[size++] = entry;
+        hashes[size] = hash;
+        if (isIrreversible(entry)) {
+            reversibleFrom = size;
+        }
+    }
+
+    /**
+     * Takes the last move back on the board; {@link #sync} must have been called
+     *
+     * @return the team that made the move
+     */
+    ChessGame.TeamColor pop(ChessBoard board) {
+        int entry = entries[--size];
+        ChessPiece placed = board.pieceAt(MoveList.to(entry));
+        if (size < hashedFrom) {
+            hashes[size] = unhash(entry, placed, hashes[size + 1]);
+            hashedFrom = size;
+        }
+        board.place(ChessPosition.ofSquare(MoveList.from(entry)), moved(entry, placed));
+        board.place(ChessPosition.ofSquare(MoveList.to(entry)), captured(entry));
+        if (reversibleFrom > size) {
+            findReversibleFrom();
+        }
+        return placed.getTeamColor();
+    }
+
+    /**
+     * Counts earlier occurrences of the current position, looking back only as far as the
+     * last pawn move or capture and only at positions with the same side on move;
+     * {@link #sync} must have been called since the last {@link #pop}
+     *
+     * @return how many times the current position has occurred, this time included
+     */
+    int repetitions() {
+        long current = hashes[size];
+        int count = 1;
+        for (int i = size - 2; i >= reversibleFrom; i -= 2) {
+            if (hashes[i] == current) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the current position's hash; {@link #sync} must have been called
+     */
+    long currentHash() {
+        return hashes[size];
+    }
+
+    /**
+     * Hashes every position the moves led through, walking back from the current board;
+     * {@link #sync} must have been called
+     *
+     * @return the hash of the position each ply, from where the history starts (0) to now (size)
+     */
+    long[] allHashes(ChessBoard board) {
+        long[] all = new long[size + 1];
+        byte[] squares = board.copySquares();
+        long hash = hashes[size];
+        all[size] = hash;
+        for (int i = size - 1; i >= 0; i--) {
+            ChessPiece placed = ChessPiece.ofCode(squares[MoveList.to(entries[i])]);
+            if (placed == null) {
+                throw new IllegalStateException("move history doesn't match the board");
+            }
+            hash = unhash(entries[i], placed, hash);
+            all[i] = hash;
+            squares[MoveList.from(entries[i])] = ChessPiece.code(moved(entries[i], placed));
+            squares[MoveList.to(entries[i])] = ChessPiece.code(captured(entries[i]));
+        }
+        return all;
+    }
+
+    /**
+     * @return the most recent move, or null if there are none
+     */
+    ChessMove lastMove() {
+        return size == 0 ? null : MoveList.toChessMove(entries[size - 1] & (MoveList.CAPTURE - 1));
+    }
+
+    List<ChessMove> moves() {
+        List<ChessMove> moves = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            moves.add(MoveList.toChessMove(entries[i] & (MoveList.CAPTURE - 1)));
+        }
+        return moves;
+    }
+
+    /**
+     * @return the entries, three bytes each, Base64 encoded
+     */
+    String encode() {
+        return encode(entries, size);
+    }
+
+    private static String encode(int[] entries, int size) {
+        byte[] bytes = new byte[size * 3];
+        for (int i = 0; i < size; i++) {
+            int entry = entries[i];
+            bytes[i * 3] = (byte) entry;
+            bytes[i * 3 + 1] = (byte) (entry >>> 8);
+            bytes[i * 3 + 2] = (byte) (entry >>> 16);
+        }
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text isn't an encoded history
+     */
+    static MoveHistory decode(String text) {
+        byte[] bytes = Base64.getDecoder().decode(text);
+        if (bytes.length % 3 != 0) {
+            throw new IllegalArgumentException("move history has a partial entry");
+        }
+        int size = bytes.length / 3;
+        int[] entries = size == 0 ? NO_ENTRIES : new int[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = (bytes[i * 3] & 0xFF) | (bytes[i * 3 + 1] & 0xFF) << 8 | (bytes[i * 3 + 2] & 0xFF) << 16;
+            if ((entries[i] >>> CAPTURED_SHIFT & 0xF) > 12 || (entries[i] >>> 12 & 7) > 6) {
+                throw new IllegalArgumentException("move history has a bad entry");
+            }
+        }
+        return new MoveHistory(entries, size);
+    }
+
+    /**
+     * @param placed the piece the move left on its end square
+     * @param hash   the position's hash after the move
+     * @return the hash before the move
+     */
+    private static long unhash(int entry, ChessPiece placed, long hash) {
+        int to = MoveList.to(entry);
+        ChessPiece captured = captured(entry);
+        hash ^= Zobrist.sideKey() ^ Zobrist.pieceKey(placed, to) ^ Zobrist.pieceKey(moved(entry, placed), MoveList.from(entry));
+        if (captured != null) {
+            hash ^= Zobrist.pieceKey(captured, to);
+        }
+        return hash;
+    }
+
+    private static ChessPiece moved(int entry, ChessPiece placed) {
+        return MoveList.promotion(entry) == null ? placed
+                : ChessPiece.of(placed.getTeamColor(), ChessPiece.PieceType.PAWN);
+    }
+
+    private static ChessPiece captured(int entry) {
+        return ChessPiece.ofCode(entry >>> CAPTURED_SHIFT & 0xF);
+    }
+
+    private static boolean isIrreversible(int entry) {
+        return (entry & PAWN_MOVE) != 0 || (entry >>> CAPTURED_SHIFT & 0xF) != 0;
+    }
+
+    private void findReversibleFrom() {
+        reversibleFrom = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            if (isIrreversible(entries[i])) {
+                reversibleFrom = i + 1;
+                return;
+            }
+        }
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor team) {
+        return team == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,116 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of moves packed into ints, filled by {@link MoveGenerator}.
+ * <p>
+ * Bits 0-5 hold the start square and bits 6-11 the end square (0-63, a1 = 0), bits 12-14
+ * the promotion piece (0 for none, otherwise {@code PieceType.ordinal() + 1}) and bit 15 is
+ * set for captures. Callers own the list and {@link #clear} it between uses, so generating
+ * moves allocates nothing; {@link #toChessMove} turns a packed move into the shared
+ * {@link ChessMove} when one is needed.
+ */
+public final class MoveList {
+
+    public static final int CAPTURE = 1 << 15;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(256);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * Drops every move from {@code size} on
+     */
+    public void truncate(int size) {
+        this.size = Math.min(this.size, size);
+    }
+
+    /**
+     * @param promotion the promotion piece, or null for none
+     * @param flags     {@link #CAPTURE} or 0
+     */
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        int code = promotion == null ? 0 : promotion.ordinal() + 1;
+        return from | to << 6 | code << 12 | flags;
+    }
+
+    /**
+     * @return the packed form of a move (without flags), or -1 if it leaves the board
+     */
+    public static int encode(ChessMove move) {
+        int from = move.getStartPosition() == null ? -1 : move.getStartPosition().square();
+        int to = move.getEndPosition() == null ? -1 : move.getEndPosition().square();
+        if (from < 0 || to < 0) {
+            return -1;
+        }
+        return encode(from, to, move.getPromotionPiece(), 0);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return move >>> 6 & 63;
+    }
+
+    /**
+     * @return the promotion piece, or null if the move isn't a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int code = move >>> 12 & 7;
+        return code == 0 ? null : TYPES[code - 1];
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * @return the same move without its flags, for comparing moves
+     */
+    public static int withoutFlags(int move) {
+        return move & (CAPTURE - 1);
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return ChessMove.of(ChessPosition.ofSquare(from(move)), ChessPosition.ofSquare(to(move)), promotion(move));
+    }
+}
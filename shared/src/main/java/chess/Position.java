@@ -0,0 +1,168 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An immutable snapshot of a game: the pieces and whose turn it is.
+ * <p>
+ * A snapshot never changes after it is made, so any number of threads can read it,
+ * generate moves from it and serialize it without locking. The pieces are the same 64
+ * bytes a {@link ChessBoard} keeps, so {@link #after} makes the next snapshot with one small
+ * array copy, and keeping one per move is cheap.
+ */
+public final class Position implements BoardView {
+
+    // generation scratch space, one per thread, so reads don't allocate or share state
+    private static final ThreadLocal<MoveList> MOVES = ThreadLocal.withInitial(MoveList::new);
+
+    // ChessPiece codes, a1 first; never written after construction
+    private final byte[] squares;
+    private final ChessGame.TeamColor toMove;
+
+    private Position(byte[] squares, ChessGame.TeamColor toMove) {
+        this.squares = squares;
+        this.toMove = toMove;
+    }
+
+    /**
+     * Snapshots a board
+     *
+     * @param board  the pieces, copied
+     * @param toMove whose turn it is, or null if the game is over
+     */
+    public static Position of(BoardView board, ChessGame.TeamColor toMove) {
+        if (board instanceof ChessBoard chessBoard) {
+            return new Position(chessBoard.copySquares(), toMove);
+        }
+        byte[] squares = new byte[64];
+        for (int square = 0; square < 64; square++) {
+            squares[square] = ChessPiece.code(board.pieceAt(square));
+        }
+        return new Position(squares, toMove);
+    }
+
+    @Override
+    public ChessPiece getPiece(ChessPosition position) {
+        return ChessPiece.ofCode(squares[position.square()]);
+    }
+
+    @Override
+    public ChessPiece pieceAt(int square) {
+        return ChessPiece.ofCode(squares[square]);
+    }
+
+    /**
+     * @return whose turn it is, or null if the game is over
+     */
+    public ChessGame.TeamColor toMove() {
+        return toMove;
+    }
+
+    /**
+     * Plays a move without checking it
+     *
+     * @return the position after the move, with the other team on move
+     */
+    public Position after(ChessMove move) {
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        ChessPiece piece = getPiece(start);
+        ChessPiece placed = piece == null || move.getPromotionPiece() == null ? piece
+                : ChessPiece.of(piece.getTeamColor(), move.getPromotionPiece());
+
+        byte[] next = squares.clone();
+        next[start.square()] = 0;
+        next[end.square()] = ChessPiece.code(placed);
+
+        ChessGame.TeamColor nextToMove = toMove == null ? null
+                : toMove == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return new Position(next, nextToMove);
+    }
+
+    /**
+     * @return a new mutable board with the same pieces
+     */
+    public ChessBoard toBoard() {
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = pieceAt(square);
+            if (piece != null) {
+                board.addPiece(ChessPosition.ofSquare(square), piece);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Same as {@link ChessGame#validMoves}: the legal moves of the piece on a square,
+     * whoever's turn it is
+     *
+     * @return the moves, or null if the square is empty
+     */
+    public Collection<ChessMove> validMoves(ChessPosition start) {
+        if (getPiece(start) == null) {
+            return null;
+        }
+        MoveList moves = MOVES.get();
+        moves.clear();
+        MoveGenerator.generateLegal(this, start.square(), moves);
+        Collection<ChessMove> valid = new ArrayList<>(moves.size());
+        for (int i = 0; i < moves.size(); i++) {
+            valid.add(MoveList.toChessMove(moves.get(i)));
+        }
+        return valid;
+    }
+
+    /**
+     * @return true if the team on move can make this move
+     */
+    public boolean isLegal(ChessMove move) {
+        if (move == null || toMove == null) {
+            return false;
+        }
+        int encoded = MoveList.encode(move);
+        if (encoded < 0) {
+            return false;
+        }
+        ChessPiece piece = getPiece(move.getStartPosition());
+        return piece != null && piece.getTeamColor() == toMove && MoveGenerator.isLegalMove(this, encoded);
+    }
+
+    public boolean isInCheck(ChessGame.TeamColor team) {
+        return MoveGenerator.isInCheck(this, team);
+    }
+
+    public boolean isInCheckmate(ChessGame.TeamColor team) {
+        return isInCheck(team) && !hasLegalMoves(team);
+    }
+
+    public boolean isInStalemate(ChessGame.TeamColor team) {
+        return !isInCheck(team) && !hasLegalMoves(team);
+    }
+
+    private boolean hasLegalMoves(ChessGame.TeamColor team) {
+        MoveList moves = MOVES.get();
+        moves.clear();
+        MoveGenerator.generateLegal(this, team, moves);
+        return !moves.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Position that = (Position) o;
+        return toMove == that.toMove && Arrays.equals(squares, that.squares);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(squares) * 31 + (toMove == null ? 0 : toMove.ordinal() + 1);
+    }
+}
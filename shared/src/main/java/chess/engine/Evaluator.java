@@ -0,0 +1,17 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+
+/**
+ * Scores a position for a search
+ */
+public interface Evaluator {
+
+    /**
+     * @param board  the position
+     * @param toMove which team is on move
+     * @return the score in centipawns, positive when the side to move is better
+     */
+    int evaluate(ChessBoard board, ChessGame.TeamColor toMove);
+}
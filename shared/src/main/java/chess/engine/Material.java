@@ -0,0 +1,159 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes the set of pieces in an endgame, e.g. "KQvK" or "KBNvK".
+ * <p>
+ * The white pieces come first, then a 'v', then the black pieces. Inside each side the
+ * pieces are listed in PieceType order, so every material balance has exactly one name.
+ * A table is only stored for the canonical orientation (see {@link #isCanonical()}); the
+ * mirrored one is looked up by flipping the board and swapping colors.
+ */
+public final class Material {
+
+    private static final String LETTERS = "KQBNRP";
+
+    private final String signature;
+    private final ChessPiece[] pieces;
+
+    private Material(String signature, ChessPiece[] pieces) {
+        this.signature = signature;
+        this.pieces = pieces;
+    }
+
+    /**
+     * Parses a signature such as "KRvK"
+     *
+     * @param signature the material signature
+     * @return the parsed material
+     * @throws IllegalArgumentException if the signature is malformed
+     */
+    public static Material parse(String signature) {
+        int split = signature.indexOf('v');
+        if (split < 1 || signature.charAt(0) != 'K' || split + 1 >= signature.length()
+                || signature.charAt(split + 1) != 'K') {
+            throw new IllegalArgumentException("bad material signature: " + signature);
+        }
+
+        List<ChessPiece> list = new ArrayList<>();
+        addSide(signature.substring(0, split), ChessGame.TeamColor.WHITE, list, signature);
+        addSide(signature.substring(split + 1), ChessGame.TeamColor.BLACK, list, signature);
+        return of(list.toArray(new ChessPiece[0]));
+    }
+
+    /**
+     * Builds the material for a set of pieces in any order
+     *
+     * @param pieces the pieces on the board
+     * @return the material, with its pieces sorted into signature order
+     */
+    public static Material of(ChessPiece[] pieces) {
+        ChessPiece[] sorted = pieces.clone();
+        Arrays.sort(sorted, Material::compare);
+
+        StringBuilder sb = new StringBuilder();
+        ChessGame.TeamColor side = ChessGame.TeamColor.WHITE;
+        for (ChessPiece piece : sorted) {
+            if (piece.getTeamColor() != side) {
+                sb.append('v');
+                side = piece.getTeamColor();
+            }
+            sb.append(letter(piece.getPieceType()));
+        }
+        return new Material(sb.toString(), sorted);
+    }
+
+    /**
+     * Orders pieces the way they appear in a signature: white before black, then by type
+     */
+    static int compare(ChessPiece a, ChessPiece b) {
+        if (a.getTeamColor() != b.getTeamColor()) {
+            return a.getTeamColor() == ChessGame.TeamColor.WHITE ? -1 : 1;
+        }
+        return Integer.compare(a.getPieceType().ordinal(), b.getPieceType().ordinal());
+    }
+
+    public String signature() {
+        return signature;
+    }
+
+    /**
+     * @return the pieces in signature order; index i of a table position is the square of pieces[i]
+     */
+    public ChessPiece[] pieces() {
+        return pieces.clone();
+    }
+
+    public int size() {
+        return pieces.length;
+    }
+
+    /**
+     * @return the same material with the colors swapped
+     */
+    public Material mirror() {
+        ChessPiece[] flipped = new ChessPiece[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            flipped[i] = ChessPiece.of(opponent(pieces[i].getTeamColor()), pieces[i].getPieceType());
+        }
+        return of(flipped);
+    }
+
+    /**
+     * @return true if this is the orientation tables are stored under
+     */
+    public boolean isCanonical() {
+        return signature.compareTo(mirror().signature) <= 0;
+    }
+
+    /**
+     * @return true if a pawn is part of this material
+     */
+    public boolean hasPawns() {
+        for (ChessPiece piece : pieces) {
+            if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static char letter(ChessPiece.PieceType type) {
+        return LETTERS.charAt(type.ordinal());
+    }
+
+    static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+
+    private static void addSide(String letters, ChessGame.TeamColor color, List<ChessPiece> out, String signature) {
+        for (char c : letters.toCharArray()) {
+            int type = LETTERS.indexOf(c);
+            if (type < 0) {
+                throw new IllegalArgumentException("bad material signature: " + signature);
+            }
+            out.add(ChessPiece.of(color, ChessPiece.PieceType.values()[type]));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Material that && signature.equals(that.signature);
+    }
+
+    @Override
+    public int hashCode() {
+        return signature.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return signature;
+    }
+}
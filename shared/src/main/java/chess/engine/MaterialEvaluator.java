@@ -0,0 +1,34 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+/**
+ * The handcrafted evaluation: material plus a small bonus for pieces near the center
+ */
+public class MaterialEvaluator implements Evaluator {
+
+    // indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] VALUES = {0, 900, 330, 320, 500, 100};
+    private static final int[] CENTER_BONUS = {0, 2, 4, 6, 1, 3};
+
+    @Override
+    public int evaluate(ChessBoard board, ChessGame.TeamColor toMove) {
+        int score = 0;
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(ChessPosition.of(row, col));
+                if (piece == null) {
+                    continue;
+                }
+                int type = piece.getPieceType().ordinal();
+                int centrality = 6 - (Math.abs(2 * row - 9) + Math.abs(2 * col - 9)) / 2;
+                int value = VALUES[type] + CENTER_BONUS[type] * centrality;
+                score += piece.getTeamColor() == toMove ? value : -value;
+            }
+        }
+        return score;
+    }
+}
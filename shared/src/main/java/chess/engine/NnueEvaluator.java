@@ -0,0 +1,159 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates positions with an {@link NnueNetwork}, keeping the hidden layer up to date
+ * incrementally instead of recomputing it for every position.
+ * <p>
+ * A search calls {@link #refresh} once at the root, then {@link #push} before making a
+ * move, {@link #addPiece}/{@link #removePiece}/{@link #movePiece} for each piece the move
+ * changes, and {@link #pop} when it takes the move back. Each update touches one weight
+ * column per perspective instead of all 32 pieces.
+ * <p>
+ * The inner loops are plain counted loops over short arrays so C2 turns them into SIMD
+ * instructions on its own. Not thread safe: use one evaluator per search thread (they can
+ * share a network).
+ */
+public class NnueEvaluator implements Evaluator {
+
+    private static final int MAX_PLY = 128;
+
+    private final NnueNetwork network;
+    private final int hiddenSize;
+    private final short[][] white;
+    private final short[][] black;
+    private int ply;
+
+    public NnueEvaluator(NnueNetwork network) {
+        this.network = network;
+        this.hiddenSize = network.hiddenSize;
+        this.white = new short[MAX_PLY][hiddenSize];
+        this.black = new short[MAX_PLY][hiddenSize];
+    }
+
+    /**
+     * Evaluates a position from scratch, resetting the accumulator stack
+     */
+    @Override
+    public int evaluate(ChessBoard board, ChessGame.TeamColor toMove) {
+        refresh(board);
+        return evaluate(toMove);
+    }
+
+    /**
+     * Rebuilds the accumulators from every piece on a board and empties the stack
+     */
+    public void refresh(ChessBoard board) {
+        ply = 0;
+        System.arraycopy(network.featureBias, 0, white[0], 0, hiddenSize);
+        System.arraycopy(network.featureBias, 0, black[0], 0, hiddenSize);
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(ChessPosition.ofSquare(square));
+            if (piece != null) {
+                addPiece(piece, square);
+            }
+        }
+    }
+
+    /**
+     * Saves the current accumulators so the next updates can be undone with {@link #pop}
+     */
+    public void push() {
+        if (ply + 1 == MAX_PLY) {
+            throw new IllegalStateException("accumulator stack is full");
+        }
+        System.arraycopy(white[ply], 0, white[ply + 1], 0, hiddenSize);
+        System.arraycopy(black[ply], 0, black[ply + 1], 0, hiddenSize);
+        ply++;
+    }
+
+    /**
+     * Restores the accumulators saved by the matching {@link #push}
+     */
+    public void pop() {
+        if (ply == 0) {
+            throw new IllegalStateException("accumulator stack is empty");
+        }
+        ply--;
+    }
+
+    /**
+     * @param square 0-63, a1 = 0
+     */
+    public void addPiece(ChessPiece piece, int square) {
+        add(white[ply], NnueNetwork.featureOffset(ChessGame.TeamColor.WHITE, piece, square, hiddenSize));
+        add(black[ply], NnueNetwork.featureOffset(ChessGame.TeamColor.BLACK, piece, square, hiddenSize));
+    }
+
+    public void removePiece(ChessPiece piece, int square) {
+        subtract(white[ply], NnueNetwork.featureOffset(ChessGame.TeamColor.WHITE, piece, square, hiddenSize));
+        subtract(black[ply], NnueNetwork.featureOffset(ChessGame.TeamColor.BLACK, piece, square, hiddenSize));
+    }
+
+    public void movePiece(ChessPiece piece, int from, int to) {
+        move(white[ply], NnueNetwork.featureOffset(ChessGame.TeamColor.WHITE, piece, from, hiddenSize),
+                NnueNetwork.featureOffset(ChessGame.TeamColor.WHITE, piece, to, hiddenSize));
+        move(black[ply], NnueNetwork.featureOffset(ChessGame.TeamColor.BLACK, piece, from, hiddenSize),
+                NnueNetwork.featureOffset(ChessGame.TeamColor.BLACK, piece, to, hiddenSize));
+    }
+
+    /**
+     * Scores the position the accumulators currently describe
+     *
+     * @param toMove which team is on move
+     * @return centipawns, positive when the side to move is better
+     */
+    public int evaluate(ChessGame.TeamColor toMove) {
+        short[] us = toMove == ChessGame.TeamColor.WHITE ? white[ply] : black[ply];
+        short[] them = toMove == ChessGame.TeamColor.WHITE ? black[ply] : white[ply];
+        // in long: a wide layer with saturated activations overflows an int well before the scaling
+        long sum = dot(us, 0) + dot(them, hiddenSize);
+        return (int) ((sum + (long) network.outputBias * NnueNetwork.QA) * NnueNetwork.SCALE
+                / (NnueNetwork.QA * NnueNetwork.QB));
+    }
+
+    /**
+     * @return a copy of one side's current accumulator, for tests and debugging
+     */
+    short[] accumulator(ChessGame.TeamColor perspective) {
+        short[] current = perspective == ChessGame.TeamColor.WHITE ? white[ply] : black[ply];
+        return Arrays.copyOf(current, hiddenSize);
+    }
+
+    private void add(short[] accumulator, int offset) {
+        short[] weights = network.featureWeights;
+        for (int i = 0; i < hiddenSize; i++) {
+            accumulator[i] += weights[offset + i];
+        }
+    }
+
+    private void subtract(short[] accumulator, int offset) {
+        short[] weights = network.featureWeights;
+        for (int i = 0; i < hiddenSize; i++) {
+            accumulator[i] -= weights[offset + i];
+        }
+    }
+
+    private void move(short[] accumulator, int fromOffset, int toOffset) {
+        short[] weights = network.featureWeights;
+        for (int i = 0; i < hiddenSize; i++) {
+            accumulator[i] += (short) (weights[toOffset + i] - weights[fromOffset + i]);
+        }
+    }
+
+    private long dot(short[] accumulator, int weightOffset) {
+        short[] weights = network.outputWeights;
+        long sum = 0;
+        for (int i = 0; i < hiddenSize; i++) {
+            int activated = Math.min(Math.max(accumulator[i], 0), NnueNetwork.QA);
+            sum += activated * weights[weightOffset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,95 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessPiece;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The quantized weights of an efficiently updatable network, loaded once and shared by
+ * every {@link NnueEvaluator}.
+ * <p>
+ * The network is 768 inputs (color relative to the perspective x piece type x square,
+ * flipped for black) into a hidden layer of {@code hiddenSize} int16 neurons, computed once
+ * from each side's perspective, then a clipped ReLU and a single output neuron over both
+ * halves (side to move first).
+ * <p>
+ * File layout, little endian: the magic "CNN1", an int32 hidden size, then int16 feature
+ * weights [768][hiddenSize], feature biases [hiddenSize], output weights [2 * hiddenSize]
+ * and the output bias.
+ */
+public final class NnueNetwork {
+
+    public static final int INPUTS = 768;
+
+    /** the clipped ReLU ceiling, i.e. 1.0 in the hidden layer's fixed point */
+    static final int QA = 255;
+    /** 1.0 in the output weights' fixed point */
+    static final int QB = 64;
+    /** converts the network's output to centipawns */
+    static final int SCALE = 400;
+
+    private static final int MAGIC = 0x314E4E43; // "CNN1" read little endian
+
+    final int hiddenSize;
+    final short[] featureWeights;
+    final short[] featureBias;
+    final short[] outputWeights;
+    final int outputBias;
+
+    NnueNetwork(int hiddenSize, short[] featureWeights, short[] featureBias, short[] outputWeights, int outputBias) {
+        this.hiddenSize = hiddenSize;
+        this.featureWeights = featureWeights;
+        this.featureBias = featureBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Loads a network file
+     *
+     * @param file the weights
+     * @return the network
+     * @throws IOException if the file can't be read or has the wrong size
+     */
+    public static NnueNetwork load(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            throw new IOException("not a network file: " + file);
+        }
+        int hiddenSize = buffer.getInt();
+        long expected = 2L * ((long) INPUTS * hiddenSize + hiddenSize + 2L * hiddenSize + 1);
+        if (hiddenSize <= 0 || buffer.remaining() != expected) {
+            throw new IOException("network file has the wrong size: " + file);
+        }
+
+        short[] featureWeights = new short[INPUTS * hiddenSize];
+        short[] featureBias = new short[hiddenSize];
+        short[] outputWeights = new short[2 * hiddenSize];
+        buffer.asShortBuffer().get(featureWeights);
+        buffer.position(buffer.position() + 2 * featureWeights.length);
+        buffer.asShortBuffer().get(featureBias);
+        buffer.position(buffer.position() + 2 * featureBias.length);
+        buffer.asShortBuffer().get(outputWeights);
+        buffer.position(buffer.position() + 2 * outputWeights.length);
+        return new NnueNetwork(hiddenSize, featureWeights, featureBias, outputWeights, buffer.getShort());
+    }
+
+    public int hiddenSize() {
+        return hiddenSize;
+    }
+
+    /**
+     * @return the offset of a feature's weight column, as seen from one side
+     */
+    static int featureOffset(ChessGame.TeamColor perspective, ChessPiece piece, int square, int hiddenSize) {
+        int relativeColor = piece.getTeamColor() == perspective ? 0 : 1;
+        int relativeSquare = perspective == ChessGame.TeamColor.WHITE ? square : square ^ 56;
+        int feature = (relativeColor * 6 + piece.getPieceType().ordinal()) * 64 + relativeSquare;
+        return feature * hiddenSize;
+    }
+}
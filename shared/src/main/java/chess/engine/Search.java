@@ -0,0 +1,347 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.MoveGenerator;
+import chess.MoveList;
+
+import java.util.function.Consumer;
+
+/**
+ * An iterative deepening alpha-beta search.
+ * <p>
+ * The search plays packed {@link MoveList} moves on its own copy of the board
+ * (make/unmake), keeping an {@link NnueEvaluator}'s accumulators in step when one is used,
+ * and probes the tablebases once few enough pieces are left. {@link #stop()} may be called from any
+ * thread; the search then returns the last fully searched depth. A stopped Search stays
+ * stopped, so make a new one for the next search.
+ * <p>
+ * Not thread safe otherwise: use one Search per thread.
+ */
+public class Search {
+
+    public static final int MATE = 100_000;
+    public static final int MAX_PLY = 64;
+
+    private static final int INFINITY = MATE + 1;
+    private static final int NO_MOVE = -1;
+    // indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] ORDER_VALUES = {10_000, 900, 330, 320, 500, 100};
+
+    private final Evaluator evaluator;
+    private final NnueEvaluator nnue;
+    private final Tablebases tablebases;
+    // per ply, so generating and playing moves allocates nothing once the search is running
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][];
+    private final ChessPiece[] movedAt = new ChessPiece[MAX_PLY + 1];
+    private final ChessPiece[] capturedAt = new ChessPiece[MAX_PLY + 1];
+
+    private volatile boolean stopped;
+    private ChessBoard board;
+    private long nodes;
+    private long deadline;
+    private int pieceCount;
+
+    public Search() {
+        this(new MaterialEvaluator(), null);
+    }
+
+    /**
+     * @param evaluator  how to score positions
+     * @param tablebases endgame tables to probe, or null for none
+     */
+    public Search(Evaluator evaluator, Tablebases tablebases) {
+        this.evaluator = evaluator;
+        this.nnue = evaluator instanceof NnueEvaluator n ? n : null;
+        this.tablebases = tablebases;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            moveLists[ply] = new MoveList();
+            moveScores[ply] = new int[256];
+        }
+    }
+
+    /**
+     * Asks a running search to finish as soon as possible
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Searches a position, one depth at a time
+     *
+     * @param position    the position to search; it is copied, not modified
+     * @param toMove      which team is on move
+     * @param maxDepth    the deepest iteration to run
+     * @param timeLimit   milliseconds after which the search stops, or 0 for no limit
+     * @param onIteration called with the result of every completed depth, or null
+     * @return the result of the deepest completed iteration, or null if none completed
+     */
+    public SearchResult search(ChessBoard position, ChessGame.TeamColor toMove, int maxDepth, long timeLimit,
+                               Consumer<SearchResult> onIteration) {
+        board = new ChessBoard(position);
+        nodes = 0;
+        deadline = timeLimit > 0 ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+        pieceCount = countPieces();
+        if (nnue != null) {
+            nnue.refresh(board);
+        }
+
+        SearchResult best = null;
+        int previousBest = NO_MOVE;
+        for (int depth = 1; depth <= Math.min(maxDepth, MAX_PLY) && !stopped; depth++) {
+            int[] bestMove = {previousBest};
+            int score = searchRoot(toMove, depth, bestMove);
+            if (stopped) {
+                break;
+            }
+            previousBest = bestMove[0];
+            best = new SearchResult(previousBest == NO_MOVE ? null : MoveList.toChessMove(previousBest),
+                    score, depth, nodes);
+            if (onIteration != null) {
+                onIteration.accept(best);
+            }
+            if (best.bestMove() == null || best.isMate()) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param bestMove holds the previous iteration's best move, which is searched first, and
+     *                 receives this iteration's
+     */
+    private int searchRoot(ChessGame.TeamColor toMove, int depth, int[] bestMove) {
+        MoveList moves = orderedMoves(toMove, 0, false);
+        int previous = bestMove[0];
+        if (previous != NO_MOVE) {
+            for (int i = 0; i < moves.size(); i++) {
+                if (MoveList.withoutFlags(moves.get(i)) == MoveList.withoutFlags(previous)) {
+                    int first = moves.get(0);
+                    moves.set(0, moves.get(i));
+                    moves.set(i, first);
+                    break;
+                }
+            }
+        }
+
+        int alpha = -INFINITY;
+        int best = NO_MOVE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            make(move, 0);
+            int score = -negamax(opponent(toMove), depth - 1, 1, -INFINITY, -alpha);
+            unmake(move, 0);
+            if (stopped) {
+                break;
+            }
+            if (score > alpha || best == NO_MOVE) {
+                alpha = score;
+                best = move;
+            }
+        }
+
+        if (best == NO_MOVE) {
+            alpha = MoveGenerator.isInCheck(board, toMove) ? -MATE : 0;
+        }
+        bestMove[0] = best;
+        return alpha;
+    }
+
+    private int negamax(ChessGame.TeamColor toMove, int depth, int ply, int alpha, int beta) {
+        if (checkStop()) {
+            return 0;
+        }
+        Integer known = probeTablebase(toMove, ply);
+        if (known != null) {
+            return known;
+        }
+        if (depth <= 0) {
+            return quiescence(toMove, ply, alpha, beta);
+        }
+
+        MoveList moves = orderedMoves(toMove, ply, false);
+        if (moves.isEmpty()) {
+            return MoveGenerator.isInCheck(board, toMove) ? -(MATE - ply) : 0;
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            make(move, ply);
+            int score = -negamax(opponent(toMove), depth - 1, ply + 1, -beta, -alpha);
+            unmake(move, ply);
+            if (stopped) {
+                return 0;
+            }
+            if (score >= beta) {
+                return score;
+            }
+            alpha = Math.max(alpha, score);
+        }
+        return alpha;
+    }
+
+    private int quiescence(ChessGame.TeamColor toMove, int ply, int alpha, int beta) {
+        int standPat = evaluate(toMove);
+        if (standPat >= beta || ply >= MAX_PLY) {
+            return standPat;
+        }
+        alpha = Math.max(alpha, standPat);
+
+        MoveList moves = orderedMoves(toMove, ply, true);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            make(move, ply);
+            int score = -quiescence(opponent(toMove), ply + 1, -beta, -alpha);
+            unmake(move, ply);
+            if (stopped) {
+                return 0;
+            }
+            if (score >= beta) {
+                return score;
+            }
+            alpha = Math.max(alpha, score);
+        }
+        return alpha;
+    }
+
+    private Integer probeTablebase(ChessGame.TeamColor toMove, int ply) {
+        if (tablebases == null || pieceCount > Tablebases.MAX_PIECES) {
+            return null;
+        }
+        TablebaseResult result = tablebases.probe(board, toMove);
+        if (result == null) {
+            return null;
+        }
+        return switch (result.outcome()) {
+            case WIN -> MATE - ply - result.distanceToMate();
+            case LOSS -> -(MATE - ply - result.distanceToMate());
+            case DRAW -> 0;
+        };
+    }
+
+    private int evaluate(ChessGame.TeamColor toMove) {
+        nodes++;
+        return nnue != null ? nnue.evaluate(toMove) : evaluator.evaluate(board, toMove);
+    }
+
+    private boolean checkStop() {
+        nodes++;
+        if ((nodes & 1023) == 0 && System.currentTimeMillis() >= deadline) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    /**
+     * Fills the ply's move buffer with the legal moves for a side, captures and promotions
+     * first (most valuable victim first)
+     */
+    private MoveList orderedMoves(ChessGame.TeamColor toMove, int ply, boolean capturesOnly) {
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        MoveGenerator.generateLegal(board, toMove, moves);
+        if (moveScores[ply].length < moves.size()) {
+            moveScores[ply] = new int[moves.size()];
+        }
+        int[] scores = moveScores[ply];
+
+        int count = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int score = orderValue(move);
+            if (capturesOnly && score == 0) {
+                continue;
+            }
+            // insertion sort, highest score first; quiet moves keep their order at the end
+            int j = count++;
+            while (j > 0 && scores[j - 1] < score) {
+                scores[j] = scores[j - 1];
+                moves.set(j, moves.get(j - 1));
+                j--;
+            }
+            scores[j] = score;
+            moves.set(j, move);
+        }
+        moves.truncate(count);
+        return moves;
+    }
+
+    private int orderValue(int move) {
+        int value = 0;
+        if (MoveList.isCapture(move)) {
+            value += ORDER_VALUES[pieceAt(MoveList.to(move)).getPieceType().ordinal()];
+        }
+        ChessPiece.PieceType promotion = MoveList.promotion(move);
+        if (promotion != null) {
+            value += ORDER_VALUES[promotion.ordinal()];
+        }
+        return value;
+    }
+
+    private void make(int move, int ply) {
+        int from = MoveList.from(move);
+        int to = MoveList.to(move);
+        ChessPiece moving = pieceAt(from);
+        ChessPiece captured = pieceAt(to);
+        ChessPiece.PieceType promotion = MoveList.promotion(move);
+        ChessPiece placed = promotion == null ? moving : ChessPiece.of(moving.getTeamColor(), promotion);
+
+        board.addPiece(ChessPosition.ofSquare(from), null);
+        board.addPiece(ChessPosition.ofSquare(to), placed);
+        movedAt[ply] = moving;
+        capturedAt[ply] = captured;
+        if (captured != null) {
+            pieceCount--;
+        }
+
+        if (nnue != null) {
+            nnue.push();
+            if (captured != null) {
+                nnue.removePiece(captured, to);
+            }
+            if (placed == moving) {
+                nnue.movePiece(moving, from, to);
+            } else {
+                nnue.removePiece(moving, from);
+                nnue.addPiece(placed, to);
+            }
+        }
+    }
+
+    private void unmake(int move, int ply) {
+        board.addPiece(ChessPosition.ofSquare(MoveList.from(move)), movedAt[ply]);
+        board.addPiece(ChessPosition.ofSquare(MoveList.to(move)), capturedAt[ply]);
+        if (capturedAt[ply] != null) {
+            pieceCount++;
+        }
+        if (nnue != null) {
+            nnue.pop();
+        }
+    }
+
+    private ChessPiece pieceAt(int square) {
+        return board.getPiece(ChessPosition.ofSquare(square));
+    }
+
+    private int countPieces() {
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            if (pieceAt(square) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,35 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+/**
+ * The outcome of one completed search iteration
+ *
+ * @param bestMove the move the search prefers, or null if the side to move has no moves
+ * @param score    centipawns from the side to move's point of view; mates are scored
+ *                 near {@link Search#MATE}
+ * @param depth    how many plies were searched
+ * @param nodes    how many positions were visited so far
+ */
+public record SearchResult(ChessMove bestMove, int score, int depth, long nodes) {
+
+    /**
+     * @return true if the score is a forced mate for either side
+     */
+    public boolean isMate() {
+        return Math.abs(score) > Search.MATE - 1000;
+    }
+
+    /**
+     * @return moves until mate, positive if the side to move mates, negative if it is
+     * mated, or 0 if the score isn't a mate
+     */
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        int moves = (plies + 1) / 2;
+        return score > 0 ? moves : -moves;
+    }
+}
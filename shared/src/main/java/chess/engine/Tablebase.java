@@ -0,0 +1,159 @@
+package chess.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One generated endgame table, memory mapped from disk.
+ * <p>
+ * File layout: a 64 byte header (magic + signature), then a 2 bit WDL code for every
+ * position packed four to a byte, then one byte of distance to mate (in plies) for every
+ * position. A position's index is its side to move followed by the square of each piece
+ * in signature order, read as base 64 digits.
+ */
+public final class Tablebase {
+
+    static final short UNKNOWN = 0;
+    static final short INVALID = -1;
+    static final short DRAW = -2;
+
+    private static final int HEADER_SIZE = 64;
+    private static final byte[] MAGIC = {'C', 'T', 'B', '1'};
+
+    private static final int WDL_DRAW = 0;
+    private static final int WDL_WIN = 1;
+    private static final int WDL_LOSS = 2;
+    private static final int WDL_INVALID = 3;
+
+    private final Material material;
+    private final int entries;
+    private final MappedByteBuffer data;
+
+    private Tablebase(Material material, MappedByteBuffer data) {
+        this.material = material;
+        this.entries = entries(material.size());
+        this.data = data;
+    }
+
+    /**
+     * Maps a table file into memory
+     *
+     * @param file the file written by {@link TablebaseGenerator}
+     * @return the opened table
+     * @throws IOException if the file can't be read or isn't a table
+     */
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (data.get(i) != MAGIC[i]) {
+                    throw new IOException("not a tablebase file: " + file);
+                }
+            }
+            byte[] name = new byte[data.get(MAGIC.length)];
+            data.get(MAGIC.length + 1, name);
+            Material material = Material.parse(new String(name, StandardCharsets.US_ASCII));
+            if (channel.size() != fileSize(entries(material.size()))) {
+                throw new IOException("truncated tablebase file: " + file);
+            }
+            return new Tablebase(material, data);
+        }
+    }
+
+    static void write(Path file, Material material, short[] values) throws IOException {
+        int entries = values.length;
+        byte[] header = new byte[HEADER_SIZE];
+        System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+        byte[] name = material.signature().getBytes(StandardCharsets.US_ASCII);
+        header[MAGIC.length] = (byte) name.length;
+        System.arraycopy(name, 0, header, MAGIC.length + 1, name.length);
+
+        byte[] wdl = new byte[(entries + 3) / 4];
+        byte[] dtm = new byte[entries];
+        for (int i = 0; i < entries; i++) {
+            int code;
+            short value = values[i];
+            if (value == INVALID) {
+                code = WDL_INVALID;
+            } else if (value <= 0) {
+                code = WDL_DRAW;
+            } else {
+                int distance = value - 1;
+                code = distance % 2 == 0 ? WDL_LOSS : WDL_WIN;
+                // a byte holds 255 plies; past that, cut to the longest distance of the same
+                // parity, since the parity is what tells a win from a loss when it's read back
+                dtm[i] = (byte) Math.min(distance, distance % 2 == 0 ? 254 : 255);
+            }
+            wdl[i >> 2] |= (byte) (code << ((i & 3) * 2));
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (byte[] part : new byte[][]{header, wdl, dtm}) {
+                ByteBuffer buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    static int entries(int pieceCount) {
+        return 2 << (6 * pieceCount);
+    }
+
+    private static long fileSize(int entries) {
+        return HEADER_SIZE + (entries + 3) / 4 + (long) entries;
+    }
+
+    /**
+     * @param squares     the square (0-63, a1 = 0) of each piece, in signature order
+     * @param count       how many pieces
+     * @param whiteToMove who is on move
+     * @return the index of the position inside a table
+     */
+    static int index(int[] squares, int count, boolean whiteToMove) {
+        int index = whiteToMove ? 0 : 1;
+        for (int i = 0; i < count; i++) {
+            index = (index << 6) | squares[i];
+        }
+        return index;
+    }
+
+    public Material material() {
+        return material;
+    }
+
+    /**
+     * @return the value in the generator's encoding: INVALID, DRAW, or distance to mate + 1
+     */
+    short rawValue(int index) {
+        int code = (data.get(HEADER_SIZE + (index >> 2)) >> ((index & 3) * 2)) & 3;
+        return switch (code) {
+            case WDL_INVALID -> INVALID;
+            case WDL_DRAW -> DRAW;
+            default -> (short) ((data.get(HEADER_SIZE + (entries + 3) / 4 + index) & 0xFF) + 1);
+        };
+    }
+
+    static TablebaseResult toResult(short value) {
+        if (value == INVALID) {
+            return null;
+        }
+        if (value <= 0) {
+            return new TablebaseResult(TablebaseResult.Outcome.DRAW, 0);
+        }
+        int distance = value - 1;
+        return new TablebaseResult(distance % 2 == 0 ? TablebaseResult.Outcome.LOSS
+                : TablebaseResult.Outcome.WIN, distance);
+    }
+}
@@ -0,0 +1,445 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Builds endgame tables with retrograde analysis.
+ * <p>
+ * Every position of a material balance is first classified (illegal, mate, stalemate, or
+ * how many legal replies it has) using the normal {@link ChessPiece#pieceMoves} rules.
+ * Then, one ply at a time, the positions resolved at the previous ply are "un-moved" to
+ * find their predecessors: a predecessor of a lost position is won, and a position whose
+ * replies have all turned out to be won for the opponent is lost. Captures and promotions
+ * leave the table, so those replies are looked up in the smaller tables, which are
+ * generated first. Every pass runs as a parallel stream over all positions.
+ * <p>
+ * Run with {@code java chess.engine.TablebaseGenerator <dir> KQvK KRvK KPvK ...}
+ */
+public class TablebaseGenerator {
+
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+    private static final ChessPiece.PieceType[] PROMOTIONS = {ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            POSITIONS[square] = ChessPosition.ofSquare(square);
+        }
+    }
+
+    private final Tablebases tablebases;
+    private final PrintStream log;
+
+    public TablebaseGenerator(Path directory) {
+        this(directory, System.out);
+    }
+
+    public TablebaseGenerator(Path directory, PrintStream log) {
+        this.tablebases = new Tablebases(directory);
+        this.log = log;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: TablebaseGenerator <directory> <material>...  e.g. tb KQvK KRvK KPvK");
+            return;
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(Path.of(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            generator.generate(args[i]);
+        }
+    }
+
+    /**
+     * @return the tables this generator writes to and reads from
+     */
+    public Tablebases tablebases() {
+        return tablebases;
+    }
+
+    /**
+     * Generates (or reuses, if its file already exists) the table for some material,
+     * generating any smaller tables it depends on first
+     *
+     * @param signature the material, e.g. "KRvK"
+     * @return the finished table
+     * @throws IOException if the table can't be written
+     */
+    public Tablebase generate(String signature) throws IOException {
+        Material material = Material.parse(signature);
+        if (!material.isCanonical()) {
+            material = material.mirror();
+        }
+        if (material.size() < 3 || material.size() > Tablebases.MAX_PIECES) {
+            throw new IllegalArgumentException("tables are built for 3 to " + Tablebases.MAX_PIECES
+                    + " pieces: " + signature);
+        }
+
+        Tablebase existing = tablebases.table(material);
+        if (existing != null) {
+            return existing;
+        }
+        for (Material smaller : successors(material)) {
+            if (smaller.size() > 2) {
+                generate(smaller.signature());
+            }
+        }
+
+        Files.createDirectories(tablebases.directory());
+        long start = System.nanoTime();
+        Job job = new Job(material);
+        int longest = job.run();
+        Path file = tablebases.fileFor(material);
+        Tablebase.write(file, material, job.values);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        log.printf("%s: %,d positions in %.2fs (%,.0f positions/sec, %d threads), longest mate %d plies%n",
+                material, job.size, seconds, job.size / seconds, Runtime.getRuntime().availableProcessors(),
+                longest);
+
+        Tablebase table = Tablebase.open(file);
+        tablebases.register(table);
+        return table;
+    }
+
+    /**
+     * @return every material a capture or promotion can turn this material into
+     */
+    private static Set<Material> successors(Material material) {
+        Set<Material> result = new LinkedHashSet<>();
+        ChessPiece[] pieces = material.pieces();
+        for (int i = 0; i < pieces.length; i++) {
+            ChessPiece.PieceType type = pieces[i].getPieceType();
+            if (type == ChessPiece.PieceType.KING) {
+                continue;
+            }
+            ChessPiece[] fewer = new ChessPiece[pieces.length - 1];
+            for (int j = 0, k = 0; j < pieces.length; j++) {
+                if (j != i) {
+                    fewer[k++] = pieces[j];
+                }
+            }
+            result.add(canonical(Material.of(fewer)));
+
+            if (type == ChessPiece.PieceType.PAWN) {
+                for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                    ChessPiece[] promoted = pieces.clone();
+                    promoted[i] = ChessPiece.of(pieces[i].getTeamColor(), promotion);
+                    result.add(canonical(Material.of(promoted)));
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Material canonical(Material material) {
+        return material.isCanonical() ? material : material.mirror();
+    }
+
+    private static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    /**
+     * The working state for one table. values[] holds UNKNOWN, INVALID, DRAW, or the
+     * distance to mate + 1, where an even distance means the side to move is mated.
+     */
+    private final class Job {
+        private final ChessPiece[] pieces;
+        private final int count;
+        private final int size;
+        private final int sideBit;
+
+        private final short[] values;
+        private final AtomicIntegerArray remaining;
+        private final short[] lossDistance;
+        private final short[] scheduled;
+        private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+        Job(Material material) {
+            this.pieces = material.pieces();
+            this.count = pieces.length;
+            this.size = Tablebase.entries(count);
+            this.sideBit = 1 << (6 * count);
+            this.values = new short[size];
+            this.remaining = new AtomicIntegerArray(size);
+            this.lossDistance = new short[size];
+            this.scheduled = new short[size];
+        }
+
+        /**
+         * @return the longest distance to mate found
+         */
+        int run() {
+            IntStream.range(0, size).parallel().forEach(index -> workers.get().classify(index));
+            IntStream.range(0, size).parallel().forEach(index -> {
+                if (values[index] != Tablebase.INVALID) {
+                    workers.get().countReplies(index);
+                }
+            });
+            int lastScheduled = IntStream.range(0, size).parallel()
+                    .map(index -> Math.max(scheduled[index], lossDistance[index])).max().orElse(0);
+
+            int distance = 1;
+            int longest = 0;
+            while (true) {
+                final int ply = distance;
+                LongAdder resolved = new LongAdder();
+                IntStream.range(0, size).parallel().forEach(index -> {
+                    if (values[index] == ply) {
+                        workers.get().retract(index, ply);
+                    }
+                });
+                IntStream.range(0, size).parallel().forEach(index -> {
+                    if (values[index] == Tablebase.UNKNOWN && scheduled[index] == ply) {
+                        values[index] = (short) (ply + 1);
+                    }
+                    if (values[index] == ply + 1) {
+                        resolved.increment();
+                    }
+                });
+                if (resolved.sum() > 0) {
+                    longest = ply;
+                } else if (ply >= lastScheduled) {
+                    break;
+                }
+                distance++;
+            }
+
+            for (int index = 0; index < size; index++) {
+                if (values[index] == Tablebase.UNKNOWN) {
+                    values[index] = Tablebase.DRAW;
+                }
+            }
+            return longest;
+        }
+
+        private final class Worker {
+            private final ChessBoard board = new ChessBoard();
+            private final int[] squares = new int[count];
+            private final int[] placed = new int[count];
+            private int placedCount;
+            private ChessGame.TeamColor toMove;
+
+            private final ChessPiece[] childPieces = new ChessPiece[count];
+            private final int[] childSquares = new int[count];
+
+            /**
+             * Sets up the board for an index
+             *
+             * @return false if two pieces share a square
+             */
+            private boolean load(int index) {
+                for (int i = 0; i < placedCount; i++) {
+                    board.addPiece(POSITIONS[placed[i]], null);
+                }
+                placedCount = 0;
+
+                toMove = (index & sideBit) == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                for (int i = count - 1, rest = index; i >= 0; i--, rest >>= 6) {
+                    squares[i] = rest & 63;
+                }
+                for (int i = 0; i < count; i++) {
+                    for (int j = 0; j < i; j++) {
+                        if (squares[i] == squares[j]) {
+                            return false;
+                        }
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    board.addPiece(POSITIONS[squares[i]], pieces[i]);
+                    placed[placedCount++] = squares[i];
+                }
+                return true;
+            }
+
+            private void classify(int index) {
+                if (!load(index) || pawnOnLastRank() || kingAttacked(Material.opponent(toMove))) {
+                    values[index] = Tablebase.INVALID;
+                }
+            }
+
+            private void countReplies(int index) {
+                load(index);
+                int replies = 0;
+                boolean anyExternal = false;
+                boolean canLose = true;
+                int winDistance = Integer.MAX_VALUE;
+                int lossAt = 0;
+
+                for (int i = 0; i < count; i++) {
+                    if (pieces[i].getTeamColor() != toMove) {
+                        continue;
+                    }
+                    for (ChessMove move : pieces[i].pieceMoves(board, POSITIONS[squares[i]])) {
+                        int to = square(move.getEndPosition());
+                        int captured = pieceOn(to);
+                        if (captured < 0 && move.getPromotionPiece() == null) {
+                            if (values[moved(index, i, to) ^ sideBit] != Tablebase.INVALID) {
+                                replies++;
+                            }
+                            continue;
+                        }
+
+                        short child = probeChild(i, to, captured, move.getPromotionPiece());
+                        if (child == Tablebase.INVALID) {
+                            continue;
+                        }
+                        anyExternal = true;
+                        if (child <= 0) {
+                            canLose = false;
+                        } else if ((child - 1) % 2 == 0) {
+                            winDistance = Math.min(winDistance, child);
+                            canLose = false;
+                        } else {
+                            lossAt = Math.max(lossAt, child);
+                        }
+                    }
+                }
+
+                if (replies == 0 && !anyExternal) {
+                    values[index] = kingAttacked(toMove) ? (short) 1 : Tablebase.DRAW;
+                    return;
+                }
+                remaining.set(index, replies);
+                lossDistance[index] = (short) (canLose ? lossAt : -1);
+                if (winDistance != Integer.MAX_VALUE) {
+                    scheduled[index] = (short) winDistance;
+                } else if (replies == 0 && canLose) {
+                    scheduled[index] = (short) lossAt;
+                }
+            }
+
+            /**
+             * Propagates a position resolved at distance ply - 1 to the positions that lead to it
+             */
+            private void retract(int index, int ply) {
+                load(index);
+                boolean lost = (ply - 1) % 2 == 0;
+                ChessGame.TeamColor mover = Material.opponent(toMove);
+
+                for (int i = 0; i < count; i++) {
+                    if (pieces[i].getTeamColor() != mover) {
+                        continue;
+                    }
+                    if (pieces[i].getPieceType() == ChessPiece.PieceType.PAWN) {
+                        int step = mover == ChessGame.TeamColor.WHITE ? -8 : 8;
+                        int from = squares[i] + step;
+                        if (from < 0 || from > 63 || board.getPiece(POSITIONS[from]) != null) {
+                            continue;
+                        }
+                        resolvePredecessor(moved(index, i, from) ^ sideBit, lost, ply);
+                        int doubleFrom = from + step;
+                        int startRow = mover == ChessGame.TeamColor.WHITE ? 1 : 6;
+                        if (doubleFrom / 8 == startRow && board.getPiece(POSITIONS[doubleFrom]) == null) {
+                            resolvePredecessor(moved(index, i, doubleFrom) ^ sideBit, lost, ply);
+                        }
+                        continue;
+                    }
+                    for (ChessMove move : pieces[i].pieceMoves(board, POSITIONS[squares[i]])) {
+                        int from = square(move.getEndPosition());
+                        if (board.getPiece(move.getEndPosition()) == null) {
+                            resolvePredecessor(moved(index, i, from) ^ sideBit, lost, ply);
+                        }
+                    }
+                }
+            }
+
+            private void resolvePredecessor(int predecessor, boolean childLost, int ply) {
+                if (values[predecessor] != Tablebase.UNKNOWN) {
+                    return;
+                }
+                if (childLost) {
+                    values[predecessor] = (short) (ply + 1);
+                } else if (remaining.decrementAndGet(predecessor) == 0 && lossDistance[predecessor] >= 0) {
+                    int distance = Math.max(ply, lossDistance[predecessor]);
+                    if (distance == ply) {
+                        values[predecessor] = (short) (ply + 1);
+                    } else {
+                        scheduled[predecessor] = (short) distance;
+                    }
+                }
+            }
+
+            /**
+             * @return the index after piece i moves to a square, with the same side to move
+             */
+            private int moved(int index, int piece, int to) {
+                int shift = 6 * (count - 1 - piece);
+                return (index & ~(63 << shift)) | (to << shift);
+            }
+
+            private short probeChild(int mover, int to, int captured, ChessPiece.PieceType promotion) {
+                int n = 0;
+                for (int i = 0; i < count; i++) {
+                    if (i == captured) {
+                        continue;
+                    }
+                    if (i == mover) {
+                        childPieces[n] = promotion == null ? pieces[i]
+                                : ChessPiece.of(pieces[i].getTeamColor(), promotion);
+                        childSquares[n] = to;
+                    } else {
+                        childPieces[n] = pieces[i];
+                        childSquares[n] = squares[i];
+                    }
+                    n++;
+                }
+                return tablebases.probeRaw(childPieces, childSquares, n, Material.opponent(toMove));
+            }
+
+            private int pieceOn(int square) {
+                for (int i = 0; i < count; i++) {
+                    if (squares[i] == square) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+
+            private boolean pawnOnLastRank() {
+                for (int i = 0; i < count; i++) {
+                    int row = squares[i] / 8;
+                    if (pieces[i].getPieceType() == ChessPiece.PieceType.PAWN && (row == 0 || row == 7)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            private boolean kingAttacked(ChessGame.TeamColor kingColor) {
+                ChessPosition king = null;
+                for (int i = 0; i < count; i++) {
+                    if (pieces[i].getTeamColor() == kingColor && pieces[i].getPieceType() == ChessPiece.PieceType.KING) {
+                        king = POSITIONS[squares[i]];
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    if (pieces[i].getTeamColor() == kingColor) {
+                        continue;
+                    }
+                    for (ChessMove move : pieces[i].pieceMoves(board, POSITIONS[squares[i]])) {
+                        if (move.getEndPosition().equals(king)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package chess.engine;
+
+/**
+ * The exact value of an endgame position, from the point of view of the side to move
+ *
+ * @param outcome         whether the side to move wins, draws or loses with best play
+ * @param distanceToMate  plies until mate with best play, or 0 for a draw
+ */
+public record TablebaseResult(Outcome outcome, int distanceToMate) {
+
+    public enum Outcome {
+        WIN,
+        DRAW,
+        LOSS
+    }
+}
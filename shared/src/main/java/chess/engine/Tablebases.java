@@ -0,0 +1,165 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A directory of generated tables that a search can probe.
+ * <p>
+ * Tables are opened lazily the first time a position with their material is probed and
+ * stay mapped afterwards. Safe to share between threads.
+ */
+public class Tablebases {
+
+    public static final int MAX_PIECES = 4;
+
+    private final Path directory;
+    private final Map<String, Optional<Tablebase>> tables = new ConcurrentHashMap<>();
+
+    public Tablebases(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Looks up the exact value of a position
+     *
+     * @param board  the position
+     * @param toMove which team is on move
+     * @return the result for the side to move, or null if no table covers the position
+     */
+    public TablebaseResult probe(ChessBoard board, ChessGame.TeamColor toMove) {
+        ChessPiece[] pieces = new ChessPiece[MAX_PIECES];
+        int[] squares = new int[MAX_PIECES];
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(ChessPosition.ofSquare(square));
+            if (piece != null) {
+                if (count == MAX_PIECES) {
+                    return null;
+                }
+                pieces[count] = piece;
+                squares[count] = square;
+                count++;
+            }
+        }
+
+        if (!hasBothKings(pieces, count)) {
+            return null;
+        }
+
+        short value;
+        try {
+            value = probeRaw(pieces, squares, count, toMove);
+        } catch (IllegalStateException ex) {
+            return null;
+        }
+        return Tablebase.toResult(value);
+    }
+
+    /**
+     * @return the table for some material, or null if it hasn't been generated
+     */
+    public Tablebase table(Material material) {
+        return tables.computeIfAbsent(material.signature(), signature -> {
+            Path file = fileFor(material);
+            if (!Files.exists(file)) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(Tablebase.open(file));
+            } catch (IOException ex) {
+                return Optional.empty();
+            }
+        }).orElse(null);
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    Path fileFor(Material material) {
+        return directory.resolve(material.signature() + ".ctb");
+    }
+
+    void register(Tablebase table) {
+        tables.put(table.material().signature(), Optional.of(table));
+    }
+
+    /**
+     * Probes a position given as parallel piece/square arrays in any order
+     *
+     * @throws IllegalStateException if the needed table is missing
+     */
+    short probeRaw(ChessPiece[] pieces, int[] squares, int count, ChessGame.TeamColor toMove) {
+        if (count == 2) {
+            return kingsOnly(squares[0], squares[1]);
+        }
+
+        ChessPiece[] sortedPieces = new ChessPiece[count];
+        int[] sortedSquares = new int[count];
+        System.arraycopy(pieces, 0, sortedPieces, 0, count);
+        System.arraycopy(squares, 0, sortedSquares, 0, count);
+
+        Material material = Material.of(sortedPieces);
+        boolean whiteToMove = toMove == ChessGame.TeamColor.WHITE;
+        if (!material.isCanonical()) {
+            for (int i = 0; i < count; i++) {
+                ChessPiece piece = sortedPieces[i];
+                sortedPieces[i] = ChessPiece.of(Material.opponent(piece.getTeamColor()), piece.getPieceType());
+                sortedSquares[i] ^= 56;
+            }
+            material = material.mirror();
+            whiteToMove = !whiteToMove;
+        }
+
+        // insertion sort the squares into signature order
+        for (int i = 1; i < count; i++) {
+            ChessPiece piece = sortedPieces[i];
+            int square = sortedSquares[i];
+            int j = i - 1;
+            while (j >= 0 && Material.compare(sortedPieces[j], piece) > 0) {
+                sortedPieces[j + 1] = sortedPieces[j];
+                sortedSquares[j + 1] = sortedSquares[j];
+                j--;
+            }
+            sortedPieces[j + 1] = piece;
+            sortedSquares[j + 1] = square;
+        }
+
+        Tablebase table = table(material);
+        if (table == null) {
+            throw new IllegalStateException("missing tablebase " + material);
+        }
+        return table.rawValue(Tablebase.index(sortedSquares, count, whiteToMove));
+    }
+
+    private static boolean hasBothKings(ChessPiece[] pieces, int count) {
+        int whiteKings = 0;
+        int blackKings = 0;
+        for (int i = 0; i < count; i++) {
+            if (pieces[i].getPieceType() == ChessPiece.PieceType.KING) {
+                if (pieces[i].getTeamColor() == ChessGame.TeamColor.WHITE) {
+                    whiteKings++;
+                } else {
+                    blackKings++;
+                }
+            }
+        }
+        return whiteKings == 1 && blackKings == 1;
+    }
+
+    private static short kingsOnly(int a, int b) {
+        int rowDistance = Math.abs(a / 8 - b / 8);
+        int colDistance = Math.abs(a % 8 - b % 8);
+        return Math.max(rowDistance, colDistance) <= 1 ? Tablebase.INVALID : Tablebase.DRAW;
+    }
+}
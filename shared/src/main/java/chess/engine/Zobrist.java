@@ -0,0 +1,70 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.SplittableRandom;
+
+/**
+ * 64-bit position hashes: the XOR of one fixed random key per (piece, square) on the
+ * board, plus a key when black is on move.
+ * <p>
+ * The keys come from a fixed seed, so a hash means the same position in every run and can
+ * be stored. A move changes a hash by XORing out the keys it removes and XORing in the
+ * ones it adds, so callers that track a game move by move never need to rehash a board.
+ */
+public final class Zobrist {
+
+    private static final long SEED = 0x5EED_C4E5_5L;
+    // [color * 6 + type][square]
+    private static final long[][] PIECE_KEYS = new long[12][64];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (long[] keys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Hashes a position from scratch
+     *
+     * @param board  the pieces
+     * @param toMove which team is on move
+     * @return the position's hash
+     */
+    public static long hash(ChessBoard board, ChessGame.TeamColor toMove) {
+        long hash = toMove == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(ChessPosition.ofSquare(square));
+            if (piece != null) {
+                hash ^= pieceKey(piece, square);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @param square 0-63, a1 = 0
+     * @return the key to XOR in or out when a piece appears on or leaves a square
+     */
+    public static long pieceKey(ChessPiece piece, int square) {
+        return PIECE_KEYS[piece.getTeamColor().ordinal() * 6 + piece.getPieceType().ordinal()][square];
+    }
+
+    /**
+     * @return the key to XOR in after every move, since the side on move flips
+     */
+    public static long sideKey() {
+        return BLACK_TO_MOVE;
+    }
+}
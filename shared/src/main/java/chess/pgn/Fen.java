@@ -0,0 +1,89 @@
+package chess.pgn;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+/**
+ * Forsyth-Edwards Notation for the positions this tree's rules allow, so never any castling
+ * or en passant rights. Used by PGN for games that don't start from the usual position.
+ */
+public final class Fen {
+
+    private Fen() {
+    }
+
+    public static String format(ChessBoard board, ChessGame.TeamColor toMove) {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(ChessPosition.of(row, col));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = San.letter(piece.getPieceType());
+                fen.append(piece.getTeamColor() == ChessGame.TeamColor.WHITE ? letter : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 1) {
+                fen.append('/');
+            }
+        }
+        return fen.append(toMove == ChessGame.TeamColor.BLACK ? " b" : " w").append(" - - 0 1").toString();
+    }
+
+    /**
+     * Reads the piece placement and side to move; the other fields are ignored
+     *
+     * @return a game in that position with no history
+     * @throws IllegalArgumentException if the placement isn't eight ranks of eight squares
+     */
+    public static ChessGame parse(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN needs eight ranks");
+        }
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < 8; i++) {
+            int row = 8 - i;
+            int col = 1;
+            for (char c : ranks[i].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                    continue;
+                }
+                ChessPiece.PieceType type = switch (Character.toUpperCase(c)) {
+                    case 'K' -> ChessPiece.PieceType.KING;
+                    case 'Q' -> ChessPiece.PieceType.QUEEN;
+                    case 'R' -> ChessPiece.PieceType.ROOK;
+                    case 'B' -> ChessPiece.PieceType.BISHOP;
+                    case 'N' -> ChessPiece.PieceType.KNIGHT;
+                    case 'P' -> ChessPiece.PieceType.PAWN;
+                    default -> throw new IllegalArgumentException("FEN has an unknown piece '" + c + "'");
+                };
+                if (col > 8) {
+                    throw new IllegalArgumentException("FEN rank " + row + " is too long");
+                }
+                ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                board.addPiece(ChessPosition.of(row, col++), ChessPiece.of(color, type));
+            }
+            if (col != 9) {
+                throw new IllegalArgumentException("FEN rank " + row + " isn't eight squares");
+            }
+        }
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(fields.length > 1 && fields[1].equals("b") ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        return game;
+    }
+}
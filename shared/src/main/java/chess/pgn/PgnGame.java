@@ -0,0 +1,70 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.InvalidMoveException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game read from a PGN file
+ *
+ * @param tags   the tag pairs, in file order
+ * @param moves  the main line's moves in SAN, without move numbers, comments or variations
+ * @param result "1-0", "0-1", "1/2-1/2" or "*" if the game has no result
+ */
+public record PgnGame(Map<String, String> tags, List<String> moves, String result) {
+
+    /**
+     * @return the tag's value, or null if the game doesn't have it
+     */
+    public String tag(String name) {
+        return tags.get(name);
+    }
+
+    /**
+     * @return True if the game was won, lost or drawn rather than left unfinished
+     */
+    public boolean isFinished() {
+        return !"*".equals(result);
+    }
+
+    /**
+     * @return the result as the game's {@link ChessGame.Result}, or null if it has none
+     */
+    public ChessGame.Result outcome() {
+        return switch (result) {
+            case "1-0" -> ChessGame.Result.WHITE_WINS;
+            case "0-1" -> ChessGame.Result.BLACK_WINS;
+            case "1/2-1/2" -> ChessGame.Result.DRAW;
+            default -> null;
+        };
+    }
+
+    /**
+     * Plays the moves through the rules from the starting position, or from the FEN tag's
+     * position if the game has one
+     *
+     * @return the game after the last move
+     * @throws InvalidMoveException naming the first move that can't be played, or if the FEN
+     *                              tag can't be read
+     */
+    public ChessGame replay() throws InvalidMoveException {
+        ChessGame game;
+        try {
+            game = tag("FEN") == null ? new ChessGame() : Fen.parse(tag("FEN"));
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidMoveException(ex.getMessage());
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            String san = moves.get(i);
+            try {
+                game.makeMove(San.parse(game, san));
+            } catch (InvalidMoveException ex) {
+                throw new InvalidMoveException("move " + (i / 2 + 1) + (i % 2 == 0 ? ". " : "... ") + san
+                        + ": " + ex.getMessage());
+            }
+        }
+        return game;
+    }
+}
@@ -0,0 +1,193 @@
+package chess.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads PGN games one at a time from a stream, so a file of any size can be imported
+ * without loading it whole.
+ * <p>
+ * Only the main line is kept: comments, variations, NAGs ("$1") and move numbers are
+ * skipped. A game ends at its result token, or where the next game's tags begin if the
+ * result is missing.
+ */
+public class PgnReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private final StringBuilder token = new StringBuilder();
+
+    public PgnReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * @return the next game, or null at the end of the stream
+     * @throws IOException if reading fails or the stream ends inside a tag
+     */
+    public PgnGame next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+        boolean started = false;
+
+        for (int c = read(); c != -1; c = read()) {
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            switch (c) {
+                case '[' -> {
+                    if (!moves.isEmpty()) {
+                        position--;
+                        return new PgnGame(tags, moves, "*");
+                    }
+                    readTag(tags);
+                    started = true;
+                }
+                case '{' -> skipPast('}');
+                case ';' -> skipPast('\n');
+                case '(' -> skipVariation();
+                case ')' -> {
+                    // a stray close, nothing to skip
+                }
+                default -> {
+                    String word = readToken(c);
+                    started = true;
+                    if (isResult(word)) {
+                        return new PgnGame(tags, moves, word);
+                    }
+                    String move = stripMoveNumber(word);
+                    if (!move.isEmpty() && move.charAt(0) != '$') {
+                        moves.add(move);
+                    }
+                }
+            }
+        }
+        return started ? new PgnGame(tags, moves, "*") : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readTag(Map<String, String> tags) throws IOException {
+        token.setLength(0);
+        int c = read();
+        while (c != -1 && Character.isWhitespace(c)) {
+            c = read();
+        }
+        while (c != -1 && !Character.isWhitespace(c) && c != '"' && c != ']') {
+            token.append((char) c);
+            c = read();
+        }
+        String name = token.toString();
+        while (c != -1 && c != '"' && c != ']') {
+            c = read();
+        }
+        token.setLength(0);
+        if (c == '"') {
+            for (c = read(); c != -1 && c != '"'; c = read()) {
+                if (c == '\\') {
+                    c = read();
+                    if (c == -1) {
+                        break;
+                    }
+                }
+                token.append((char) c);
+            }
+            skipPast(']');
+        }
+        if (c == -1) {
+            throw new IOException("PGN ended inside a tag");
+        }
+        if (!name.isEmpty()) {
+            tags.put(name, token.toString());
+        }
+    }
+
+    private String readToken(int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+        for (int c = read(); c != -1; c = read()) {
+            if (Character.isWhitespace(c) || "[]{}();".indexOf(c) >= 0) {
+                position--;
+                break;
+            }
+            token.append((char) c);
+        }
+        return token.toString();
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        for (int c = read(); c != -1 && depth > 0; c = read()) {
+            switch (c) {
+                case '(' -> depth++;
+                case ')' -> depth--;
+                case '{' -> skipPast('}');
+                case ';' -> skipPast('\n');
+                default -> {
+                }
+            }
+        }
+    }
+
+    private void skipPast(char end) throws IOException {
+        for (int c = read(); c != -1 && c != end; c = read()) {
+            // skipping
+        }
+    }
+
+    private static boolean isResult(String word) {
+        return word.equals("1-0") || word.equals("0-1") || word.equals("1/2-1/2") || word.equals("*");
+    }
+
+    /**
+     * "12.", "12..." and "12.e4" all carry a move number; the first two carry nothing else
+     */
+    private static String stripMoveNumber(String word) {
+        int i = 0;
+        while (i < word.length() && Character.isDigit(word.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == word.length() || word.charAt(i) != '.') {
+            return word;
+        }
+        while (i < word.length() && word.charAt(i) == '.') {
+            i++;
+        }
+        return word.substring(i);
+    }
+
+    /**
+     * @return the next char, or -1 at the end; after a read, position-- steps back one char
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            // keep the last char so the step back above still works across a refill
+            if (limit > 0) {
+                buffer[0] = buffer[limit - 1];
+                position = 1;
+            } else {
+                position = 0;
+            }
+            int n = in.read(buffer, position, buffer.length - position);
+            if (n <= 0) {
+                limit = position;
+                position = limit;
+                return -1;
+            }
+            limit = position + n;
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,129 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games as PGN that {@link PgnReader} and other chess programs can read back.
+ * <p>
+ * The moves come from the game's history. A game whose history doesn't start from the
+ * usual starting position gets SetUp and FEN tags for the position it does start from.
+ */
+public final class PgnWriter {
+
+    // the tags PGN expects first, in this order
+    private static final List<String> ROSTER = List.of("Event", "Site", "Date", "Round", "White", "Black", "Result");
+    private static final int LINE_LENGTH = 79;
+
+    private PgnWriter() {
+    }
+
+    /**
+     * Writes one game followed by a blank line
+     *
+     * @param out    where to write
+     * @param tags   tags for the game; missing roster tags are written as "?"
+     * @param game   the game, which isn't changed
+     * @param result "1-0", "0-1", "1/2-1/2" or "*"
+     */
+    public static void write(Appendable out, Map<String, String> tags, ChessGame game, String result) throws IOException {
+        ChessGame replay = new ChessGame(game);
+        List<ChessMove> moves = replay.getMoveHistory();
+        while (replay.undoMove() != null) {
+            // back to where the history starts
+        }
+        ChessGame.TeamColor first = replay.getTeamTurn() == null ? ChessGame.TeamColor.WHITE : replay.getTeamTurn();
+        replay.setTeamTurn(first);
+
+        Map<String, String> all = new LinkedHashMap<>();
+        for (String name : ROSTER) {
+            all.put(name, tags.getOrDefault(name, "?"));
+        }
+        all.putAll(tags);
+        all.put("Result", result);
+        if (first != ChessGame.TeamColor.WHITE || !replay.getBoard().equals(new ChessGame().getBoard())) {
+            all.put("SetUp", "1");
+            all.put("FEN", Fen.format(replay.getBoard(), first));
+        }
+        for (Map.Entry<String, String> tag : all.entrySet()) {
+            out.append('[').append(tag.getKey()).append(" \"").append(escape(tag.getValue())).append("\"]\n");
+        }
+        out.append('\n');
+
+        StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+        int moveNumber = 1;
+        for (int i = 0; i < moves.size(); i++) {
+            ChessMove move = moves.get(i);
+            String token;
+            try {
+                token = San.format(replay, move);
+                replay.makeMove(move);
+            } catch (InvalidMoveException ex) {
+                // can't happen for a history the rules built; stop rather than write nonsense
+                break;
+            }
+            if (replay.getTeamTurn() == ChessGame.TeamColor.BLACK) {
+                token = moveNumber + ". " + token;
+            } else {
+                if (i == 0) {
+                    token = moveNumber + "... " + token;
+                }
+                moveNumber++;
+            }
+            appendToken(out, line, token);
+        }
+        appendToken(out, line, result);
+        out.append(line).append("\n\n");
+    }
+
+    /**
+     * Gets the game's result for PGN: the recorded result if the game has one, otherwise
+     * worked out from the position, a win if the team on move is mated and a draw on
+     * stalemate or repetition. Games that ended another way, or haven't ended, are "*".
+     */
+    public static String result(ChessGame game) {
+        if (game.getResult() != null) {
+            return switch (game.getResult()) {
+                case WHITE_WINS -> "1-0";
+                case BLACK_WINS -> "0-1";
+                case DRAW -> "1/2-1/2";
+            };
+        }
+        List<ChessMove> moves = game.getMoveHistory();
+        if (game.getTeamTurn() != null || moves.isEmpty()) {
+            return "*";
+        }
+        ChessPosition lastEnd = moves.get(moves.size() - 1).getEndPosition();
+        ChessGame.TeamColor mover = game.getBoard().getPiece(lastEnd).getTeamColor();
+        ChessGame.TeamColor other = mover == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        if (game.isInCheckmate(other)) {
+            return mover == ChessGame.TeamColor.WHITE ? "1-0" : "0-1";
+        }
+        if (game.isInStalemate(other) || game.isThreefoldRepetition()) {
+            return "1/2-1/2";
+        }
+        return "*";
+    }
+
+    private static void appendToken(Appendable out, StringBuilder line, String token) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+            out.append(line).append('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0) {
+            line.append(' ');
+        }
+        line.append(token);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace('\n', ' ').replace('\r', ' ');
+    }
+}
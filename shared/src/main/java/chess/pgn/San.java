@@ -0,0 +1,214 @@
+package chess.pgn;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.Position;
+
+/**
+ * Standard Algebraic Notation ("Nf3", "exd5", "e8=Q+", "Rad1") as used in PGN files.
+ * <p>
+ * A SAN move only names the piece type and the destination, so it is resolved against a
+ * game: the move is whichever legal move of the team on move fits. This tree's rules have
+ * no castling or en passant, so those moves never resolve.
+ */
+public final class San {
+
+    private San() {
+    }
+
+    /**
+     * Finds the move a SAN string describes
+     *
+     * @param game the game the move is played in, with the mover on turn
+     * @param san  the move; check marks and annotations like "!?" are ignored
+     * @return the legal move that fits
+     * @throws InvalidMoveException if no legal move fits, or more than one does
+     */
+    public static ChessMove parse(ChessGame game, String san) throws InvalidMoveException {
+        ChessGame.TeamColor team = game.getTeamTurn();
+        if (team == null) {
+            throw new InvalidMoveException("the game is over");
+        }
+        String text = stripSuffixes(san);
+        if (text.startsWith("O-O") || text.startsWith("0-0")) {
+            throw new InvalidMoveException("castling isn't supported");
+        }
+        if (text.isEmpty()) {
+            throw new InvalidMoveException("empty move");
+        }
+
+        ChessPiece.PieceType type = ChessPiece.PieceType.PAWN;
+        int start = 0;
+        if ("KQRBN".indexOf(text.charAt(0)) >= 0) {
+            type = pieceType(text.charAt(0));
+            start = 1;
+        }
+
+        int end = text.length();
+        ChessPiece.PieceType promotion = null;
+        int equals = text.indexOf('=');
+        if (equals >= 0) {
+            if (equals != text.length() - 2 || "QRBN".indexOf(text.charAt(equals + 1)) < 0) {
+                throw new InvalidMoveException("bad promotion");
+            }
+            promotion = pieceType(text.charAt(equals + 1));
+            end = equals;
+        } else if (type == ChessPiece.PieceType.PAWN && "QRBN".indexOf(text.charAt(end - 1)) >= 0) {
+            promotion = pieceType(text.charAt(end - 1));
+            end--;
+        }
+
+        if (end - start < 2) {
+            throw new InvalidMoveException("no destination square");
+        }
+        int toFile = text.charAt(end - 2) - 'a';
+        int toRank = text.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            throw new InvalidMoveException("bad destination square");
+        }
+
+        // disambiguation: a file, a rank or both; also takes long algebraic "e2-e4" and "Ng1xf3"
+        int fromFile = -1;
+        int fromRank = -1;
+        boolean capture = false;
+        for (int i = start; i < end - 2; i++) {
+            char c = text.charAt(i);
+            if (c == 'x') {
+                capture = true;
+            } else if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != '-' && c != ':') {
+                throw new InvalidMoveException("unexpected '" + c + "'");
+            }
+        }
+        if (type == ChessPiece.PieceType.PAWN && fromFile < 0) {
+            if (capture) {
+                throw new InvalidMoveException("pawn capture without a file");
+            }
+            fromFile = toFile;
+        }
+
+        ChessPosition to = ChessPosition.of(toRank + 1, toFile + 1);
+        ChessMove found = null;
+        for (int square = 0; square < 64; square++) {
+            if ((fromFile >= 0 && square % 8 != fromFile) || (fromRank >= 0 && square / 8 != fromRank)) {
+                continue;
+            }
+            ChessPiece piece = game.getBoard().pieceAt(square);
+            if (piece == null || piece.getTeamColor() != team || piece.getPieceType() != type) {
+                continue;
+            }
+            ChessMove move = ChessMove.of(ChessPosition.ofSquare(square), to, promotion);
+            if (game.isLegal(move)) {
+                if (found != null) {
+                    throw new InvalidMoveException("ambiguous move");
+                }
+                found = move;
+            }
+        }
+        if (found == null) {
+            throw new InvalidMoveException("no legal move fits");
+        }
+        return found;
+    }
+
+    /**
+     * Writes a move in SAN, with just enough of the start square to tell it apart from the
+     * same kind of piece's other legal moves to that square, and "+" or "#" after checks
+     *
+     * @param game the game the move is about to be played in
+     * @throws InvalidMoveException if the move isn't legal there
+     */
+    public static String format(ChessGame game, ChessMove move) throws InvalidMoveException {
+        if (!game.isLegal(move)) {
+            throw new InvalidMoveException("Invalid move");
+        }
+        ChessPosition start = move.getStartPosition();
+        ChessPosition end = move.getEndPosition();
+        ChessPiece piece = game.getBoard().getPiece(start);
+        boolean capture = game.getBoard().getPiece(end) != null;
+
+        StringBuilder san = new StringBuilder(8);
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            if (capture) {
+                san.append(file(start));
+            }
+        } else {
+            san.append(letter(piece.getPieceType()));
+            boolean others = false;
+            boolean sameFile = false;
+            boolean sameRank = false;
+            for (int square = 0; square < 64; square++) {
+                ChessPosition other = ChessPosition.ofSquare(square);
+                if (other.equals(start) || !piece.equals(game.getBoard().pieceAt(square))
+                        || !game.isLegal(ChessMove.of(other, end, null))) {
+                    continue;
+                }
+                others = true;
+                sameFile |= other.getColumn() == start.getColumn();
+                sameRank |= other.getRow() == start.getRow();
+            }
+            if (others && !sameFile) {
+                san.append(file(start));
+            } else if (others && !sameRank) {
+                san.append(start.getRow());
+            } else if (others) {
+                san.append(file(start)).append(start.getRow());
+            }
+        }
+        if (capture) {
+            san.append('x');
+        }
+        san.append(file(end)).append(end.getRow());
+        if (move.getPromotionPiece() != null) {
+            san.append('=').append(letter(move.getPromotionPiece()));
+        }
+
+        Position after = game.snapshot().after(move);
+        if (after.isInCheckmate(after.toMove())) {
+            san.append('#');
+        } else if (after.isInCheck(after.toMove())) {
+            san.append('+');
+        }
+        return san.toString();
+    }
+
+    private static char file(ChessPosition position) {
+        return (char) ('a' + position.getColumn() - 1);
+    }
+
+    static char letter(ChessPiece.PieceType type) {
+        return switch (type) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case ROOK -> 'R';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case PAWN -> 'P';
+        };
+    }
+
+    private static String stripSuffixes(String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return san.substring(0, end);
+    }
+
+    private static ChessPiece.PieceType pieceType(char letter) {
+        return switch (letter) {
+            case 'K' -> ChessPiece.PieceType.KING;
+            case 'Q' -> ChessPiece.PieceType.QUEEN;
+            case 'R' -> ChessPiece.PieceType.ROOK;
+            case 'B' -> ChessPiece.PieceType.BISHOP;
+            case 'N' -> ChessPiece.PieceType.KNIGHT;
+            default -> ChessPiece.PieceType.PAWN;
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package model;
+
+import chess.ChessMove;
+
+/**
+ * An engine's view of a game's current position; scores are from white's point of view
+ *
+ * @param bestMove   the move the engine prefers, or null if the side to move has none
+ * @param evaluation centipawns, positive when white is better
+ * @param mateIn     moves until mate (positive if white mates), or null if no mate was found
+ * @param depth      how many plies were searched
+ */
+public record AnalysisResult(ChessMove bestMove, int evaluation, Integer mateIn, int depth) {
+
+}
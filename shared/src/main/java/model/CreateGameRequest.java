@@ -1,6 +1,13 @@
 package model;
 
 
-public record CreateGameRequest(String gameName) {
-}
+/**
+ * @param baseSeconds      each player's time for a timed game, or null for no clock
+ * @param incrementSeconds time added after each move, or null for none
+ */
+public record CreateGameRequest(String gameName, Integer baseSeconds, Integer incrementSeconds) {
 
+    public CreateGameRequest(String gameName) {
+        this(gameName, null, null);
+    }
+}
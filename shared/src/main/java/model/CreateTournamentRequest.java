@@ -0,0 +1,12 @@
+package model;
+
+/**
+ * @param format           "ROUND_ROBIN" or "SWISS"
+ * @param rounds           how many rounds a Swiss event runs; a round robin plays everyone once and ignores it
+ * @param baseSeconds      each player's time per game, or null for untimed games
+ * @param incrementSeconds time added after each move, or null for none
+ */
+public record CreateTournamentRequest(String name, String format, Integer rounds, Integer baseSeconds,
+                                      Integer incrementSeconds) {
+
+}
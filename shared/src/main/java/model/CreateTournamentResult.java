@@ -0,0 +1,5 @@
+package model;
+
+public record CreateTournamentResult(Integer tournamentID) {
+
+}
@@ -0,0 +1,17 @@
+package model;
+
+import chess.ChessMove;
+
+/**
+ * A move played from the explored position and how those games came out
+ *
+ * @param move      the move
+ * @param san       the move in algebraic notation, like "Nf3"
+ * @param games     finished games that played it
+ * @param whiteWins of those, the ones white won
+ * @param draws     the ones drawn
+ * @param blackWins the ones black won
+ */
+public record ExplorerMove(ChessMove move, String san, int games, int whiteWins, int draws, int blackWins) {
+
+}
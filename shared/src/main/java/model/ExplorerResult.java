@@ -0,0 +1,6 @@
+package model;
+
+public record ExplorerResult(ExplorerMove[] moves) {
+
+
+}
@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * One row of the opening explorer: how the finished games that played a move from a
+ * position came out
+ *
+ * @param positionHash the position, as ChessGame.positionHash()
+ * @param move         the move in UCI form, like "e2e4" or "e7e8q"
+ * @param games        finished games that played it
+ * @param whiteWins    of those, the ones white won
+ * @param draws        the ones drawn
+ * @param blackWins    the ones black won
+ */
+public record ExplorerStat(long positionHash, String move, int games, int whiteWins, int draws, int blackWins) {
+
+}
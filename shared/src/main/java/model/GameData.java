@@ -1,8 +1,208 @@
 package model;
 
 import chess.ChessGame;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.Function;
 
-public record GameData(Integer gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
-}
+/**
+ * A game and who is playing it.
+ * <p>
+ * A game read from storage can hold its state still encoded, and decode it the first time
+ * {@link #game()} is called, so code that only looks at the seats or the name never pays
+ * for parsing the board and history. Written out as JSON, a game that was never decoded
+ * copies its encoded state straight through.
+ */
+@JsonAdapter(GameData.AdapterFactory.class)
+public final class GameData {
+
+    private final Integer gameID;
+    private final String whiteUsername;
+    private final String blackUsername;
+    private final String gameName;
+    // null until decoded, for a game read with its state still encoded
+    private volatile ChessGame game;
+    private final String encodedState;
+    private final Function<String, ChessGame> decoder;
+
+    public GameData(Integer gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, null, null);
+    }
+
+    private GameData(Integer gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game,
+                     String encodedState, Function<String, ChessGame> decoder) {
+        this.gameID = gameID;
+        this.whiteUsername = whiteUsername;
+        this.blackUsername = blackUsername;
+        this.gameName = gameName;
+        this.game = game;
+        this.encodedState = encodedState;
+        this.decoder = decoder;
+    }
+
+    /**
+     * A game whose state is decoded only when first asked for
+     *
+     * @param encodedState the game as Gson writes a {@link ChessGame}
+     * @param decoder      turns the encoded state back into a game
+     */
+    public static GameData encoded(Integer gameID, String whiteUsername, String blackUsername, String gameName,
+                                   String encodedState, Function<String, ChessGame> decoder) {
+        return new GameData(gameID, whiteUsername, blackUsername, gameName, null,
+                Objects.requireNonNull(encodedState), Objects.requireNonNull(decoder));
+    }
+
+    /**
+     * The same game with different players, still encoded if this one is
+     */
+    public GameData withPlayers(String whiteUsername, String blackUsername) {
+        ChessGame decoded = game;
+        return decoded != null || encodedState == null
+                ? new GameData(gameID, whiteUsername, blackUsername, gameName, decoded)
+                : new GameData(gameID, whiteUsername, blackUsername, gameName, null, encodedState, decoder);
+    }
+
+    public Integer gameID() {
+        return gameID;
+    }
+
+    public String whiteUsername() {
+        return whiteUsername;
+    }
+
+    public String blackUsername() {
+        return blackUsername;
+    }
+
+    public String gameName() {
+        return gameName;
+    }
+
+    public ChessGame game() {
+        ChessGame decoded = game;
+        if (decoded == null && encodedState != null) {
+            synchronized (this) {
+                if (game == null) {
+                    game = decoder.apply(encodedState);
+                }
+                decoded = game;
+            }
+        }
+        return decoded;
+    }
 
+    /**
+     * @return the encoded state this game was read with, or null if it was never encoded or
+     * has been decoded, since whoever decoded it may have changed it since
+     */
+    public String encodedState() {
+        return game == null ? encodedState : null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GameData other)) {
+            return false;
+        }
+        return Objects.equals(gameID, other.gameID) && Objects.equals(whiteUsername, other.whiteUsername)
+                && Objects.equals(blackUsername, other.blackUsername) && Objects.equals(gameName, other.gameName)
+                && Objects.equals(game(), other.game());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(gameID, whiteUsername, blackUsername, gameName, game());
+    }
+
+    @Override
+    public String toString() {
+        return "GameData[gameID=" + gameID + ", whiteUsername=" + whiteUsername + ", blackUsername=" + blackUsername
+                + ", gameName=" + gameName + ", game=" + game() + "]";
+    }
+
+    /**
+     * Reads and writes the same JSON as a record's field by field format, copying a still
+     * encoded state through as it is
+     */
+    static final class AdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            TypeAdapter<ChessGame> games = gson.getAdapter(ChessGame.class);
+            return (TypeAdapter<T>) new TypeAdapter<GameData>() {
+
+                @Override
+                public void write(JsonWriter out, GameData data) throws IOException {
+                    if (data == null) {
+                        out.nullValue();
+                        return;
+                    }
+                    out.beginObject();
+                    out.name("gameID").value(data.gameID);
+                    out.name("whiteUsername").value(data.whiteUsername);
+                    out.name("blackUsername").value(data.blackUsername);
+                    out.name("gameName").value(data.gameName);
+                    out.name("game");
+                    String encoded = data.encodedState();
+                    if (encoded != null) {
+                        out.jsonValue(encoded);
+                    } else {
+                        games.write(out, data.game);
+                    }
+                    out.endObject();
+                }
+
+                @Override
+                public GameData read(JsonReader in) throws IOException {
+                    Integer gameID = null;
+                    String white = null;
+                    String black = null;
+                    String name = null;
+                    ChessGame game = null;
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        switch (in.nextName()) {
+                            case "gameID" -> gameID = readInteger(in);
+                            case "whiteUsername" -> white = readString(in);
+                            case "blackUsername" -> black = readString(in);
+                            case "gameName" -> name = readString(in);
+                            case "game" -> game = games.read(in);
+                            default -> in.skipValue();
+                        }
+                    }
+                    in.endObject();
+                    return new GameData(gameID, white, black, name, game);
+                }
+            };
+        }
+
+        private static Integer readInteger(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return in.nextInt();
+        }
+
+        private static String readString(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return in.nextString();
+        }
+    }
+}
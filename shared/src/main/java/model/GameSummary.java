@@ -0,0 +1,27 @@
+package model;
+
+import chess.ChessGame;
+
+/**
+ * What the lobby shows of a game, without the game itself
+ *
+ * @param status {@link #ACTIVE} or {@link #FINISHED}
+ */
+public record GameSummary(Integer gameID, String whiteUsername, String blackUsername, String gameName,
+                          String status) {
+
+    public static final String ACTIVE = "ACTIVE";
+    public static final String FINISHED = "FINISHED";
+
+    /**
+     * @return {@link #FINISHED} once the game is over, {@link #ACTIVE} until then
+     */
+    public static String statusOf(ChessGame game) {
+        return game != null && game.getTeamTurn() == null ? FINISHED : ACTIVE;
+    }
+
+    public static GameSummary of(GameData game) {
+        return new GameSummary(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                statusOf(game.game()));
+    }
+}
@@ -0,0 +1,316 @@
+package model;
+
+import chess.ChessGame;
+import chess.ChessJsonAdapters;
+import chess.ChessMove;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+
+/**
+ * The Gson instances the server and client share.
+ * <p>
+ * A Gson is immutable and thread-safe once built, and it caches every adapter it makes, so
+ * one instance serves every request instead of each handler building its own and its
+ * reflective adapters with it. The types on the hot paths (users and auth on every login,
+ * the websocket commands and messages on every move) have streaming adapters written out
+ * by hand; {@link GameData} and the chess types carry their own through {@code @JsonAdapter}.
+ * The JSON is the same as Gson's reflective format, so anyone still using plain Gson reads
+ * it just the same.
+ */
+public final class JsonCodec {
+
+    /**
+     * Leaves out null fields, like {@code new Gson()}
+     */
+    public static final Gson GSON = builder().create();
+
+    /**
+     * Writes null fields too, for stored games and websocket messages
+     */
+    public static final Gson GSON_WITH_NULLS = builder().serializeNulls().create();
+
+    private JsonCodec() {
+    }
+
+    private static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(UserData.class, new UserDataAdapter())
+                .registerTypeAdapter(AuthData.class, new AuthDataAdapter())
+                .registerTypeAdapter(UserGameCommand.class, new CommandAdapter(false))
+                .registerTypeAdapter(MakeMoveCommand.class, new CommandAdapter(true))
+                .registerTypeAdapter(ServerMessage.class, new ServerMessageAdapter());
+    }
+
+    static final class UserDataAdapter extends TypeAdapter<UserData> {
+
+        @Override
+        public void write(JsonWriter out, UserData user) throws IOException {
+            if (user == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("username").value(user.username());
+            out.name("password").value(user.password());
+            out.name("email").value(user.email());
+            out.endObject();
+        }
+
+        @Override
+        public UserData read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String username = null;
+            String password = null;
+            String email = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username" -> username = readString(in);
+                    case "password" -> password = readString(in);
+                    case "email" -> email = readString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new UserData(username, password, email);
+        }
+    }
+
+    static final class AuthDataAdapter extends TypeAdapter<AuthData> {
+
+        @Override
+        public void write(JsonWriter out, AuthData auth) throws IOException {
+            if (auth == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("authToken").value(auth.authToken());
+            out.name("username").value(auth.username());
+            out.endObject();
+        }
+
+        @Override
+        public AuthData read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            String authToken = null;
+            String username = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "authToken" -> authToken = readString(in);
+                    case "username" -> username = readString(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new AuthData(authToken, username);
+        }
+    }
+
+    /**
+     * Reads any command in one pass: a MAKE_MOVE comes back as a {@link MakeMoveCommand}
+     * even when a plain command was asked for, so the server never parses a move twice
+     */
+    static final class CommandAdapter extends TypeAdapter<UserGameCommand> {
+
+        private final ChessJsonAdapters.MoveAdapter moves = new ChessJsonAdapters.MoveAdapter();
+        private final boolean alwaysMove;
+
+        /**
+         * @param alwaysMove read every command as a {@link MakeMoveCommand}, for callers asking for one
+         */
+        CommandAdapter(boolean alwaysMove) {
+            this.alwaysMove = alwaysMove;
+        }
+
+        @Override
+        public void write(JsonWriter out, UserGameCommand command) throws IOException {
+            if (command == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (command instanceof MakeMoveCommand move) {
+                out.name("move");
+                if (move.getMove() == null) {
+                    out.nullValue();
+                } else {
+                    moves.write(out, move.getMove());
+                }
+            }
+            out.name("commandType");
+            writeEnum(out, command.getCommandType());
+            out.name("authToken").value(command.getAuthToken());
+            out.name("gameID").value(command.getGameID());
+            // only true means anything, so false goes out as null
+            out.name("evaluation");
+            if (command.wantsEvaluation()) {
+                out.value(true);
+            } else {
+                out.nullValue();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public UserGameCommand read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            UserGameCommand.CommandType type = null;
+            String authToken = null;
+            Integer gameID = null;
+            Boolean evaluation = null;
+            ChessMove move = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "commandType" -> type = readEnum(in, UserGameCommand.CommandType.class);
+                    case "authToken" -> authToken = in.nextString();
+                    case "gameID" -> gameID = in.nextInt();
+                    case "evaluation" -> evaluation = in.nextBoolean();
+                    case "move" -> move = moves.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            UserGameCommand command = alwaysMove || type == UserGameCommand.CommandType.MAKE_MOVE
+                    ? new MakeMoveCommand(authToken, gameID, move)
+                    : new UserGameCommand(type, authToken, gameID);
+            if (evaluation != null) {
+                command.setWantsEvaluation(evaluation);
+            }
+            return command;
+        }
+    }
+
+    static final class ServerMessageAdapter extends TypeAdapter<ServerMessage> {
+
+        private final ChessJsonAdapters.GameAdapter games = new ChessJsonAdapters.GameAdapter();
+        private final ChessJsonAdapters.MoveAdapter moves = new ChessJsonAdapters.MoveAdapter();
+
+        @Override
+        public void write(JsonWriter out, ServerMessage message) throws IOException {
+            if (message == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("serverMessageType");
+            writeEnum(out, message.getServerMessageType());
+            out.name("game");
+            if (message.getGame() == null) {
+                out.nullValue();
+            } else {
+                games.write(out, message.getGame());
+            }
+            out.name("errorMessage").value(message.getErrorMessage());
+            out.name("message").value(message.getMessage());
+            out.name("evaluation").value(message.getEvaluation());
+            out.name("mateIn").value(message.getMateIn());
+            out.name("depth").value(message.getDepth());
+            out.name("bestMove");
+            if (message.getBestMove() == null) {
+                out.nullValue();
+            } else {
+                moves.write(out, message.getBestMove());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ServerMessage read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ServerMessage.ServerMessageType type = null;
+            ChessGame game = null;
+            String errorMessage = null;
+            String text = null;
+            Integer evaluation = null;
+            Integer mateIn = null;
+            Integer depth = null;
+            ChessMove bestMove = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "serverMessageType" -> type = readEnum(in, ServerMessage.ServerMessageType.class);
+                    case "game" -> game = games.read(in);
+                    case "errorMessage" -> errorMessage = in.nextString();
+                    case "message" -> text = in.nextString();
+                    case "evaluation" -> evaluation = in.nextInt();
+                    case "mateIn" -> mateIn = in.nextInt();
+                    case "depth" -> depth = in.nextInt();
+                    case "bestMove" -> bestMove = moves.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            ServerMessage message = new ServerMessage(type);
+            message.setGame(game);
+            message.setErrorMessage(errorMessage);
+            message.setMessage(text);
+            message.setEvaluation(evaluation);
+            message.setMateIn(mateIn);
+            message.setDepth(depth);
+            message.setBestMove(bestMove);
+            return message;
+        }
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static void writeEnum(JsonWriter out, Enum<?> value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else {
+            out.value(value.name());
+        }
+    }
+
+    private static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> type) throws IOException {
+        String name = in.nextString();
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException ex) {
+            // Gson's default enum adapter reads unknown names as null too
+            return null;
+        }
+    }
+}
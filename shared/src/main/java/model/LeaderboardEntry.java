@@ -0,0 +1,12 @@
+package model;
+
+/**
+ * A player's place on the leaderboard
+ *
+ * @param rank      1 for the highest rated player
+ * @param rating    rounded to a whole number
+ * @param deviation rounded to a whole number
+ */
+public record LeaderboardEntry(int rank, String username, int rating, int deviation, int games) {
+
+}
@@ -0,0 +1,9 @@
+package model;
+
+/**
+ * @param players the requested stretch of the leaderboard, highest rated first
+ * @param total   rated players in all
+ */
+public record LeaderboardResult(LeaderboardEntry[] players, int total) {
+
+}
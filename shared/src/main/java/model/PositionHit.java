@@ -0,0 +1,11 @@
+package model;
+
+/**
+ * A stored game that reached a position
+ *
+ * @param gameID the game
+ * @param ply    how many moves into the game the position came up, 1 after white's first
+ */
+public record PositionHit(int gameID, int ply) {
+
+}
@@ -0,0 +1,9 @@
+package model;
+
+/**
+ * @param baseSeconds      the time control to be paired for, or null for untimed games
+ * @param incrementSeconds time added after each move, or null for none
+ */
+public record QueueRequest(Integer baseSeconds, Integer incrementSeconds) {
+
+}
@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * What came of waiting in the matchmaking queue
+ *
+ * @param gameID       the game the player was paired into, or null if nobody was found in time
+ * @param playerColor  "WHITE" or "BLACK", or null if not paired
+ * @param opponent     the other player's username, or null if not paired
+ * @param waitedMillis how long the player waited
+ */
+public record QueueResult(Integer gameID, String playerColor, String opponent, long waitedMillis) {
+
+}
@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * How the matchmaking queue is doing; wait times are for recent pairings
+ *
+ * @param waiting   players waiting now
+ * @param paired    players paired since the server started
+ * @param p50Millis median wait
+ * @param p90Millis 90th percentile wait
+ * @param p99Millis 99th percentile wait
+ */
+public record QueueStats(int waiting, long paired, long p50Millis, long p90Millis, long p99Millis) {
+
+}
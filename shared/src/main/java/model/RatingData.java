@@ -0,0 +1,14 @@
+package model;
+
+/**
+ * A player's Glicko-2 rating
+ *
+ * @param username   the player
+ * @param rating     the rating, on the usual scale where new players start at 1500
+ * @param deviation  how unsure the rating is; new players start at 350 and it shrinks as they play
+ * @param volatility how erratic the player's results are
+ * @param games      rated games played
+ */
+public record RatingData(String username, double rating, double deviation, double volatility, int games) {
+
+}
@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * A tournament as it stands
+ *
+ * @param round     the round being played, or 0 before the first starts
+ * @param rounds    how many rounds there will be; for a round robin that depends on how many join
+ * @param pairings  the current round's boards
+ */
+public record TournamentData(int tournamentID, String name, String format, int round, int rounds,
+                             TournamentStanding[] standings, TournamentPairing[] pairings) {
+
+}
@@ -0,0 +1,11 @@
+package model;
+
+/**
+ * One board of a tournament round
+ *
+ * @param gameID the game the pair play, or null for a bye
+ * @param black  null for a bye
+ */
+public record TournamentPairing(Integer gameID, String white, String black) {
+
+}
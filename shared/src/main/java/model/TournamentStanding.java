@@ -0,0 +1,10 @@
+package model;
+
+/**
+ * @param score    a point a win and half a draw; a bye in a Swiss event counts as a win
+ * @param buchholz the sum of the player's opponents' scores, which breaks ties
+ * @param played   rounds played, byes included
+ */
+public record TournamentStanding(int rank, String username, double score, double buchholz, int played) {
+
+}
@@ -16,6 +16,9 @@ public class UserGameCommand {
 
     private final Integer gameID;
 
+    // CONNECT only: observers who set this get EVALUATION updates
+    private Boolean evaluation;
+
     public UserGameCommand(CommandType commandType, String authToken, Integer gameID) {
         this.commandType = commandType;
         this.authToken = authToken;
@@ -26,7 +29,9 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        // the player on move ends the game drawn once the position has come up three times
+        CLAIM_DRAW
     }
 
     public CommandType getCommandType() {
@@ -41,6 +46,17 @@ public class UserGameCommand {
         return gameID;
     }
 
+    /**
+     * @return true if the sender wants live engine evaluations while observing
+     */
+    public boolean wantsEvaluation() {
+        return Boolean.TRUE.equals(evaluation);
+    }
+
+    public void setWantsEvaluation(boolean wantsEvaluation) {
+        this.evaluation = wantsEvaluation;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
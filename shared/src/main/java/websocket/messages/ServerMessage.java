@@ -2,6 +2,7 @@ package websocket.messages;
 
 import java.util.Objects;
 import chess.ChessGame;
+import chess.ChessMove;
 
 /**
  * Represents a Message the server can send through a WebSocket
@@ -22,10 +23,17 @@ public class ServerMessage {
     // for za NOTIFICATION
     private String message;
 
+    // for EVALUATION, all from white's point of view
+    private Integer evaluation;
+    private Integer mateIn;
+    private Integer depth;
+    private ChessMove bestMove;
+
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        EVALUATION
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -62,6 +70,44 @@ public class ServerMessage {
         this.message = message;
     }
 
+    /**
+     * @return the engine's score in centipawns, positive when white is better
+     */
+    public Integer getEvaluation() {
+        return evaluation;
+    }
+
+    public void setEvaluation(Integer evaluation) {
+        this.evaluation = evaluation;
+    }
+
+    /**
+     * @return moves until mate, positive when white mates, or null if no mate was found
+     */
+    public Integer getMateIn() {
+        return mateIn;
+    }
+
+    public void setMateIn(Integer mateIn) {
+        this.mateIn = mateIn;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public void setDepth(Integer depth) {
+        this.depth = depth;
+    }
+
+    public ChessMove getBestMove() {
+        return bestMove;
+    }
+
+    public void setBestMove(ChessMove bestMove) {
+        this.bestMove = bestMove;
+    }
+
     @Override
     public boolean equals(Object o) {
 
@@ -0,0 +1,62 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessClockTests {
+
+    @Test
+    void punchingChargesTheMoverAndAddsTheIncrement() {
+        ChessClock clock = new ChessClock(60_000, 2_000);
+        assertNull(clock.getRunning());
+        assertEquals(Long.MAX_VALUE, clock.flagFallsAt());
+
+        clock.punch(ChessGame.TeamColor.WHITE, 1_000);
+        assertEquals(ChessGame.TeamColor.BLACK, clock.getRunning());
+        assertEquals(62_000, clock.remaining(ChessGame.TeamColor.WHITE, 5_000));
+        assertEquals(56_000, clock.remaining(ChessGame.TeamColor.BLACK, 5_000));
+        assertEquals(61_000, clock.flagFallsAt());
+
+        clock.punch(ChessGame.TeamColor.BLACK, 11_000);
+        assertEquals(52_000, clock.remaining(ChessGame.TeamColor.BLACK, 99_000));
+        assertEquals(62_000 - 9_000, clock.remaining(ChessGame.TeamColor.WHITE, 20_000));
+    }
+
+    @Test
+    void flagFallsWhenTimeRunsOut() {
+        ChessClock clock = new ChessClock(10_000, 0);
+        clock.punch(ChessGame.TeamColor.WHITE, 0);
+
+        assertFalse(clock.isFlagged(ChessGame.TeamColor.BLACK, 9_999));
+        assertTrue(clock.isFlagged(ChessGame.TeamColor.BLACK, 10_000));
+        assertFalse(clock.isFlagged(ChessGame.TeamColor.WHITE, 1_000_000));
+
+        clock.stop(4_000);
+        assertNull(clock.getRunning());
+        assertEquals(6_000, clock.remaining(ChessGame.TeamColor.BLACK, 1_000_000));
+        assertThrows(IllegalArgumentException.class, () -> new ChessClock(0, 0));
+    }
+
+    @Test
+    void clockTravelsWithTheGame() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.setClock(new ChessClock(300_000, 3_000));
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null));
+        game.getClock().punch(ChessGame.TeamColor.WHITE, 50_000);
+
+        Gson gson = new GsonBuilder().serializeNulls().create();
+        ChessGame stored = gson.fromJson(gson.toJson(game), ChessGame.class);
+        ChessGame copy = new ChessGame(game);
+        game.getClock().stop(60_000);
+
+        for (ChessGame other : new ChessGame[]{stored, copy}) {
+            assertEquals(ChessGame.TeamColor.BLACK, other.getClock().getRunning());
+            assertEquals(3_000, other.getClock().getIncrementMillis());
+            assertEquals(290_000, other.getClock().remaining(ChessGame.TeamColor.BLACK, 60_000));
+        }
+        assertNull(new ChessGame().getClock());
+    }
+}
@@ -0,0 +1,93 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessJsonAdaptersTests {
+
+    private final Gson gson = new Gson();
+
+    @Test
+    void factoriesShareInstancesAndMatchConstructors() {
+        ChessPiece piece = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT);
+        assertSame(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT),
+                ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        assertEquals(piece, ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        assertEquals(piece.hashCode(), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT).hashCode());
+
+        assertSame(ChessPosition.of(3, 5), ChessPosition.of(3, 5));
+        assertEquals(new ChessPosition(3, 5), ChessPosition.of(3, 5));
+        assertEquals(new ChessPosition(3, 5).hashCode(), ChessPosition.of(3, 5).hashCode());
+        assertEquals(new ChessPosition(0, 9), ChessPosition.of(0, 9));
+
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.QUEEN);
+        assertSame(ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN),
+                ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN));
+        assertEquals(promotion, ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN));
+        assertEquals(promotion.hashCode(),
+                ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN).hashCode());
+        assertNotEquals(promotion, ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.ROOK));
+    }
+
+    @Test
+    void jsonKeepsTheFieldFormat() {
+        ChessMove move = ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        assertEquals("{\"startPosition\":{\"row\":2,\"col\":5},\"endPosition\":{\"row\":4,\"col\":5}}",
+                gson.toJson(move));
+        assertEquals("{\"startPosition\":{\"row\":2,\"col\":5},\"endPosition\":{\"row\":4,\"col\":5},"
+                + "\"promotionPiece\":null}", new GsonBuilder().serializeNulls().create().toJson(move));
+        assertEquals("{\"pieceColor\":\"WHITE\",\"type\":\"PAWN\"}",
+                gson.toJson(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN)));
+    }
+
+    @Test
+    void jsonReadsSharedInstances() {
+        ChessMove move = gson.fromJson("{\"startPosition\":{\"row\":7,\"col\":1},\"endPosition\":{\"col\":1,\"row\":8},"
+                + "\"promotionPiece\":\"KNIGHT\",\"extra\":[1,2]}", ChessMove.class);
+        assertSame(ChessMove.of(ChessPosition.of(7, 1), ChessPosition.of(8, 1), ChessPiece.PieceType.KNIGHT), move);
+
+        ChessGame game = new ChessGame();
+        ChessGame copy = gson.fromJson(gson.toJson(game), ChessGame.class);
+        assertEquals(game, copy);
+        assertSame(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING),
+                copy.getBoard().getPiece(ChessPosition.of(1, 5)));
+        assertNull(copy.getBoard().getPiece(ChessPosition.of(4, 4)));
+    }
+
+    @Test
+    void boardJsonKeepsTheSquaresArray() {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(ChessPosition.of(8, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+
+        String json = gson.toJson(board);
+        assertTrue(json.startsWith("{\"squares\":[[{\"pieceColor\":\"WHITE\",\"type\":\"ROOK\"},null,"), json);
+        assertTrue(json.endsWith("null,{\"pieceColor\":\"BLACK\",\"type\":\"KING\"}]]}"), json);
+
+        ChessBoard copy = gson.fromJson(json, ChessBoard.class);
+        assertEquals(board, copy);
+        assertEquals(board.hashCode(), copy.hashCode());
+        assertSame(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING),
+                copy.getPiece(ChessPosition.of(8, 8)));
+
+        // the old default format also left whole rows out as null
+        ChessBoard sparse = gson.fromJson("{\"squares\":[[{\"pieceColor\":\"WHITE\",\"type\":\"ROOK\"}],null]}",
+                ChessBoard.class);
+        assertSame(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK),
+                sparse.getPiece(ChessPosition.of(1, 1)));
+        assertNull(sparse.getPiece(ChessPosition.of(2, 1)));
+    }
+
+    @Test
+    void boardRejectsIncompletePieces() {
+        ChessBoard board = new ChessBoard();
+        assertThrows(IllegalArgumentException.class,
+                () -> board.addPiece(ChessPosition.of(1, 1), new ChessPiece(null, ChessPiece.PieceType.ROOK)));
+        assertThrows(JsonParseException.class,
+                () -> gson.fromJson("{\"squares\":[[{\"type\":\"ROOK\"}]]}", ChessBoard.class));
+    }
+}
@@ -0,0 +1,316 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveGeneratorTests {
+
+    @Test
+    void perftFromTheStartingPosition() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        // no castling or en passant can happen this early, so these are the standard counts
+        assertEquals(20, perft(board, ChessGame.TeamColor.WHITE, 1));
+        assertEquals(400, perft(board, ChessGame.TeamColor.WHITE, 2));
+        assertEquals(8902, perft(board, ChessGame.TeamColor.WHITE, 3));
+        assertEquals(197281, perft(board, ChessGame.TeamColor.WHITE, 4));
+    }
+
+    @Test
+    void matchesPieceMovesAlongRandomGames() throws InvalidMoveException {
+        Random random = new Random(240);
+        MoveList moves = new MoveList();
+        for (int gameNumber = 0; gameNumber < 50; gameNumber++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < 120; ply++) {
+                ChessBoard board = game.getBoard();
+                for (int square = 0; square < 64; square++) {
+                    ChessPosition position = ChessPosition.ofSquare(square);
+                    ChessPiece piece = board.getPiece(position);
+                    if (piece == null) {
+                        continue;
+                    }
+                    moves.clear();
+                    MoveGenerator.generate(board, square, moves);
+                    Set<ChessMove> generated = new HashSet<>();
+                    for (int i = 0; i < moves.size(); i++) {
+                        generated.add(MoveList.toChessMove(moves.get(i)));
+                        assertEquals(board.getPiece(MoveList.toChessMove(moves.get(i)).getEndPosition()) != null,
+                                MoveList.isCapture(moves.get(i)));
+                    }
+                    assertEquals(new HashSet<>(piece.pieceMoves(board, position)), generated);
+                }
+
+                moves.clear();
+                MoveGenerator.generateLegal(board, game.getTeamTurn(), moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                game.makeMove(MoveList.toChessMove(moves.get(random.nextInt(moves.size()))));
+            }
+        }
+    }
+
+    @Test
+    void legalMovesMatchPlayingEveryMoveOnRandomPositions() {
+        Random random = new Random(32);
+        ChessPiece.PieceType[] others = {ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.PAWN};
+        for (int n = 0; n < 3000; n++) {
+            ChessBoard board = new ChessBoard();
+            placeRandomly(board, random, ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+            placeRandomly(board, random, ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+            int extra = 2 + random.nextInt(12);
+            for (int i = 0; i < extra; i++) {
+                ChessGame.TeamColor color = ChessGame.TeamColor.values()[random.nextInt(2)];
+                placeRandomly(board, random, ChessPiece.of(color, others[random.nextInt(others.length)]));
+            }
+            for (ChessGame.TeamColor side : ChessGame.TeamColor.values()) {
+                assertEquals(oldLegalMoves(board, side), legalMoves(board, side), "position " + n);
+            }
+        }
+    }
+
+    @Test
+    void legalMovesMatchPlayingEveryMoveAlongRandomGames() throws InvalidMoveException {
+        Random random = new Random(2024);
+        for (int gameNumber = 0; gameNumber < 100; gameNumber++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < 200 && game.getTeamTurn() != null; ply++) {
+                Set<ChessMove> legal = legalMoves(game.getBoard(), game.getTeamTurn());
+                assertEquals(oldLegalMoves(game.getBoard(), game.getTeamTurn()), legal);
+                if (legal.isEmpty()) {
+                    assertEquals(MoveGenerator.isInCheck(game.getBoard(), game.getTeamTurn()),
+                            game.isInCheckmate(game.getTeamTurn()));
+                    assertEquals(!MoveGenerator.isInCheck(game.getBoard(), game.getTeamTurn()),
+                            game.isInStalemate(game.getTeamTurn()));
+                    break;
+                }
+                ChessMove[] options = legal.toArray(new ChessMove[0]);
+                game.makeMove(options[random.nextInt(options.length)]);
+            }
+        }
+    }
+
+    @Test
+    void isLegalMatchesValidMovesForSampledMoves() throws InvalidMoveException {
+        Random random = new Random(33);
+        ChessPiece.PieceType[] promotions = {null, ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KNIGHT,
+            ChessPiece.PieceType.KING, ChessPiece.PieceType.PAWN};
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            ChessGame game = new ChessGame();
+            for (int ply = 0; ply < 150 && game.getTeamTurn() != null; ply++) {
+                Set<ChessMove> valid = new HashSet<>();
+                for (int from = 0; from < 64; from++) {
+                    ChessPosition start = ChessPosition.ofSquare(from);
+                    ChessPiece piece = game.getBoard().getPiece(start);
+                    if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                        valid.addAll(game.validMoves(start));
+                    }
+                }
+                for (ChessMove move : valid) {
+                    assertTrue(game.isLegal(move), move.toString());
+                }
+                // every from/to/promotion is 20480 moves a ply; a fixed sample from each square
+                // covers the illegal shapes without taking most of a minute
+                for (int from = 0; from < 64; from++) {
+                    for (int i = 0; i < 12; i++) {
+                        ChessMove move = ChessMove.of(ChessPosition.ofSquare(from),
+                                ChessPosition.ofSquare(random.nextInt(64)),
+                                promotions[random.nextInt(promotions.length)]);
+                        assertEquals(valid.contains(move), game.isLegal(move), move.toString());
+                    }
+                }
+                Set<ChessMove> legal = legalMoves(game.getBoard(), game.getTeamTurn());
+                if (legal.isEmpty()) {
+                    break;
+                }
+                ChessMove[] options = legal.toArray(new ChessMove[0]);
+                game.makeMove(options[random.nextInt(options.length)]);
+            }
+        }
+        ChessGame game = new ChessGame();
+        assertFalse(game.isLegal(null));
+        assertFalse(game.isLegal(new ChessMove(new ChessPosition(0, 1), new ChessPosition(3, 1), null)));
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(null));
+    }
+
+    @Test
+    void pinnedPieceOnlyMovesAlongThePin() {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(1, 5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(3, 5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(ChessPosition.of(8, 5), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        board.addPiece(ChessPosition.of(8, 1), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(board, 2 * 8 + 4, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            assertEquals(4, MoveList.to(moves.get(i)) % 8);
+        }
+        assertEquals(6, moves.size());
+    }
+
+    @Test
+    void generatingAndTestingLegalityDoesNotAllocate() {
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        MoveList moves = new MoveList();
+        for (int i = 0; i < 2000; i++) {
+            legalCount(board, moves);
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        int total = 0;
+        for (int i = 0; i < 1000; i++) {
+            total += legalCount(board, moves);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(20_000, total);
+        assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+    }
+
+    private static Set<ChessMove> legalMoves(ChessBoard board, ChessGame.TeamColor side) {
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(board, side, moves);
+        Set<ChessMove> result = new HashSet<>();
+        for (int i = 0; i < moves.size(); i++) {
+            assertTrue(result.add(MoveList.toChessMove(moves.get(i))), "duplicate move");
+        }
+
+        MoveList played = new MoveList();
+        generateLegalByPlaying(board, side, played);
+        assertEquals(played.size(), moves.size());
+        return result;
+    }
+
+    /**
+     * The old way of finding legal moves, kept to check {@link MoveGenerator#generateLegal}
+     * against: generate pseudo-legal moves and play each one
+     */
+    private static void generateLegalByPlaying(ChessBoard board, ChessGame.TeamColor side, MoveList out) {
+        int start = out.size();
+        MoveGenerator.generate(board, side, out);
+        int kept = start;
+        for (int i = start; i < out.size(); i++) {
+            int move = out.get(i);
+            if (isLegalByPlaying(board, move)) {
+                out.set(kept++, move);
+            }
+        }
+        out.truncate(kept);
+    }
+
+    /**
+     * Checks that a pseudo-legal move doesn't leave the mover's king attacked, by playing it
+     * on the board and taking it back
+     */
+    private static boolean isLegalByPlaying(ChessBoard board, int move) {
+        ChessPosition start = ChessPosition.ofSquare(MoveList.from(move));
+        ChessPosition end = ChessPosition.ofSquare(MoveList.to(move));
+        ChessPiece moving = board.getPiece(start);
+        if (moving == null) {
+            return false;
+        }
+        ChessPiece captured = board.getPiece(end);
+        ChessPiece.PieceType promotion = MoveList.promotion(move);
+
+        board.addPiece(start, null);
+        board.addPiece(end, promotion == null ? moving : ChessPiece.of(moving.getTeamColor(), promotion));
+        boolean legal = !MoveGenerator.isInCheck(board, moving.getTeamColor());
+        board.addPiece(end, captured);
+        board.addPiece(start, moving);
+        return legal;
+    }
+
+    /**
+     * What ChessGame did before the move generator: try every pieceMoves move on a copy of
+     * the board and look for an enemy piece that could take the king
+     */
+    private static Set<ChessMove> oldLegalMoves(ChessBoard board, ChessGame.TeamColor side) {
+        Set<ChessMove> result = new HashSet<>();
+        for (int square = 0; square < 64; square++) {
+            ChessPosition from = ChessPosition.ofSquare(square);
+            ChessPiece piece = board.getPiece(from);
+            if (piece == null || piece.getTeamColor() != side) {
+                continue;
+            }
+            for (ChessMove move : piece.pieceMoves(board, from)) {
+                ChessBoard copy = new ChessBoard(board);
+                copy.addPiece(from, null);
+                copy.addPiece(move.getEndPosition(), move.getPromotionPiece() == null ? piece
+                        : new ChessPiece(side, move.getPromotionPiece()));
+                if (!oldIsInCheck(copy, side)) {
+                    result.add(move);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean oldIsInCheck(ChessBoard board, ChessGame.TeamColor side) {
+        for (int square = 0; square < 64; square++) {
+            ChessPosition position = ChessPosition.ofSquare(square);
+            ChessPiece piece = board.getPiece(position);
+            if (piece == null || piece.getTeamColor() == side) {
+                continue;
+            }
+            for (ChessMove move : piece.pieceMoves(board, position)) {
+                ChessPiece target = board.getPiece(move.getEndPosition());
+                if (target != null && target.getPieceType() == ChessPiece.PieceType.KING) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void placeRandomly(ChessBoard board, Random random, ChessPiece piece) {
+        while (true) {
+            int row = piece.getPieceType() == ChessPiece.PieceType.PAWN ? 2 + random.nextInt(6) : 1 + random.nextInt(8);
+            ChessPosition position = ChessPosition.of(row, 1 + random.nextInt(8));
+            if (board.getPiece(position) == null) {
+                board.addPiece(position, piece);
+                return;
+            }
+        }
+    }
+
+    private static int legalCount(ChessBoard board, MoveList moves) {
+        moves.clear();
+        MoveGenerator.generateLegal(board, ChessGame.TeamColor.WHITE, moves);
+        return moves.size();
+    }
+
+    private static long perft(ChessBoard board, ChessGame.TeamColor toMove, int depth) {
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegal(board, toMove, moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        ChessGame.TeamColor next = toMove == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long count = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            ChessPosition from = ChessPosition.ofSquare(MoveList.from(move));
+            ChessPosition to = ChessPosition.ofSquare(MoveList.to(move));
+            ChessPiece moving = board.getPiece(from);
+            ChessPiece captured = board.getPiece(to);
+            ChessPiece.PieceType promotion = MoveList.promotion(move);
+            board.addPiece(from, null);
+            board.addPiece(to, promotion == null ? moving : ChessPiece.of(moving.getTeamColor(), promotion));
+            count += perft(board, next, depth - 1);
+            board.addPiece(to, captured);
+            board.addPiece(from, moving);
+        }
+        return count;
+    }
+}
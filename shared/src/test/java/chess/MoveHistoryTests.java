@@ -0,0 +1,216 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveHistoryTests {
+
+    private static final List<ChessMove> KNIGHT_SHUFFLE = List.of(
+            move(1, 7, 3, 6), move(8, 7, 6, 6), move(3, 6, 1, 7), move(6, 6, 8, 7));
+
+    private final Gson gson = new Gson();
+
+    @Test
+    void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (ChessMove move : KNIGHT_SHUFFLE) {
+            game.makeMove(move);
+        }
+        assertFalse(game.isThreefoldRepetition());
+        for (int i = 0; i < 3; i++) {
+            game.makeMove(KNIGHT_SHUFFLE.get(i));
+        }
+
+        // the history survives a round trip, as it does through the database
+        String json = gson.toJson(game);
+        assertTrue(json.contains("\"history\":\""), json);
+        ChessGame copy = gson.fromJson(json, ChessGame.class);
+        assertEquals(game.getMoveHistory(), copy.getMoveHistory());
+        assertFalse(copy.isThreefoldRepetition());
+        copy.makeMove(KNIGHT_SHUFFLE.get(3));
+        assertTrue(copy.isThreefoldRepetition());
+        assertEquals(8, copy.getMoveHistory().size());
+
+        copy.undoMove();
+        assertFalse(copy.isThreefoldRepetition());
+
+        // only the fifth time ends the game without a claim
+        copy.makeMove(KNIGHT_SHUFFLE.get(3));
+        for (int round = 0; round < 2; round++) {
+            assertFalse(copy.isFivefoldRepetition());
+            for (ChessMove move : KNIGHT_SHUFFLE) {
+                copy.makeMove(move);
+            }
+        }
+        assertTrue(copy.isFivefoldRepetition());
+    }
+
+    @Test
+    void readingAGameLeavesItAsItWas() throws InvalidMoveException {
+        Gson withNulls = new GsonBuilder().serializeNulls().create();
+        String json = withNulls.toJson(new ChessGame()).replace("\"history\":\"\"", "\"history\":null");
+        ChessGame game = withNulls.fromJson(json, ChessGame.class);
+
+        assertEquals(List.of(), game.getMoveHistory());
+        assertEquals(0, game.getMoveCount());
+        assertFalse(game.isThreefoldRepetition());
+        assertEquals(new ChessGame().positionHash(), game.positionHash());
+        assertEquals(1, game.positionHashes().length);
+        // none of that made up a history to write out
+        assertTrue(withNulls.toJson(game).contains("\"history\":null"));
+
+        game.makeMove(KNIGHT_SHUFFLE.get(0));
+        assertEquals(1, game.getMoveCount());
+        assertNotEquals(new ChessGame().positionHash(), game.positionHash());
+    }
+
+    @Test
+    void undoRestoresCapturesPromotionsAndTurn() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        assertNull(game.undoMove());
+        game.makeMove(move(2, 5, 4, 5));
+        game.makeMove(move(7, 4, 5, 4));
+        game.makeMove(move(4, 5, 5, 4));
+        game.setTeamTurn(null);
+
+        assertEquals(move(4, 5, 5, 4), game.undoMove());
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+        assertEquals(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN),
+                game.getBoard().getPiece(ChessPosition.of(5, 4)));
+        assertEquals(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN),
+                game.getBoard().getPiece(ChessPosition.of(4, 5)));
+        assertEquals(game.getBoard(), game.snapshot().toBoard());
+        game.undoMove();
+        game.undoMove();
+        assertEquals(new ChessGame(), game);
+        assertTrue(game.getMoveHistory().isEmpty());
+
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(7, 2), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        board.addPiece(ChessPosition.of(8, 1), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        board.addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(8, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        ChessBoard before = new ChessBoard(board);
+        game.setBoard(board);
+        game.makeMove(ChessMove.of(ChessPosition.of(7, 2), ChessPosition.of(8, 1), ChessPiece.PieceType.KNIGHT));
+        game.undoMove();
+        assertEquals(before, game.getBoard());
+        assertEquals(ChessGame.TeamColor.WHITE, game.getTeamTurn());
+    }
+
+    @Test
+    void settingUpAPositionStartsANewHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(move(2, 5, 4, 5));
+        game.getBoard().addPiece(ChessPosition.of(4, 4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        assertTrue(game.getMoveHistory().isEmpty());
+        assertNull(game.undoMove());
+
+        game.makeMove(move(7, 5, 5, 5));
+        game.setBoard(new ChessGame().getBoard());
+        assertTrue(game.getMoveHistory().isEmpty());
+
+        game.makeMove(move(2, 1, 3, 1));
+        game.setTeamTurn(null);
+        assertEquals(1, game.getMoveHistory().size());
+    }
+
+    @Test
+    void randomGamesMatchAPlainCount() throws InvalidMoveException {
+        Random random = new Random(36);
+        int repeated = 0;
+        for (int round = 0; round < 50; round++) {
+            ChessGame game = new ChessGame();
+            List<Position> positions = new ArrayList<>(List.of(game.snapshot()));
+            int reversibleFrom = 0;
+            for (int ply = 0; ply < 120 && game.getTeamTurn() != null; ply++) {
+                List<ChessMove> moves = new ArrayList<>();
+                for (int square = 0; square < 64; square++) {
+                    ChessPiece piece = game.getBoard().pieceAt(square);
+                    if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                        moves.addAll(game.validMoves(ChessPosition.ofSquare(square)));
+                    }
+                }
+                if (moves.isEmpty()) {
+                    break;
+                }
+                // often walk a piece back to where it came from, so positions come back
+                List<ChessMove> played = game.getMoveHistory();
+                ChessMove move = moves.get(random.nextInt(moves.size()));
+                if (played.size() >= 2 && random.nextInt(3) != 0) {
+                    ChessMove back = played.get(played.size() - 2);
+                    ChessMove reverse = ChessMove.of(back.getEndPosition(), back.getStartPosition(), null);
+                    if (moves.contains(reverse)) {
+                        move = reverse;
+                    }
+                }
+                ChessPiece piece = game.getBoard().getPiece(move.getStartPosition());
+                boolean irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN
+                        || game.getBoard().getPiece(move.getEndPosition()) != null;
+                game.makeMove(move);
+                positions.add(game.snapshot());
+                if (irreversible) {
+                    reversibleFrom = positions.size() - 1;
+                }
+                if (ply % 17 == 0) {
+                    game = gson.fromJson(gson.toJson(game), ChessGame.class);
+                }
+
+                Position current = positions.get(positions.size() - 1);
+                int count = 0;
+                for (int i = reversibleFrom; i < positions.size(); i++) {
+                    if (positions.get(i).equals(current)) {
+                        count++;
+                    }
+                }
+                assertEquals(count >= 3, game.isThreefoldRepetition(), "round " + round + " ply " + ply);
+                repeated += count >= 3 ? 1 : 0;
+            }
+
+            game = gson.fromJson(gson.toJson(game), ChessGame.class);
+            for (int i = positions.size() - 2; i >= 0; i--) {
+                assertNotNull(game.undoMove());
+                assertEquals(positions.get(i), game.snapshot());
+            }
+            assertNull(game.undoMove());
+        }
+        assertTrue(repeated > 0);
+    }
+
+    @Test
+    void positionHashesFollowTheGame() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        List<Long> seen = new ArrayList<>(List.of(game.positionHash()));
+        for (ChessMove move : List.of(move(2, 5, 4, 5), move(7, 5, 5, 5), move(1, 7, 3, 6), move(8, 2, 6, 3))) {
+            game.makeMove(move);
+            seen.add(game.positionHash());
+        }
+        assertEquals(4, game.getMoveCount());
+
+        // the same position reached by another order hashes the same, with no history at all
+        ChessGame transposed = new ChessGame();
+        for (ChessMove move : List.of(move(1, 7, 3, 6), move(8, 2, 6, 3), move(2, 5, 4, 5), move(7, 5, 5, 5))) {
+            transposed.makeMove(move);
+        }
+        ChessGame setUp = new ChessGame();
+        setUp.setBoard(new ChessBoard(game.getBoard()));
+        assertEquals(seen.get(4), transposed.positionHash());
+        assertEquals(seen.get(4), setUp.positionHash());
+
+        game = gson.fromJson(gson.toJson(game), ChessGame.class);
+        long[] hashes = game.positionHashes();
+        assertEquals(seen, Arrays.stream(hashes).boxed().toList());
+    }
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol) {
+        return ChessMove.of(ChessPosition.of(startRow, startCol), ChessPosition.of(endRow, endCol), null);
+    }
+}
@@ -0,0 +1,185 @@
+package chess;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PositionTests {
+
+    @Test
+    void snapshotsFollowMovesAndNeverChange() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        Position start = game.snapshot();
+        ChessMove move = ChessMove.of(ChessPosition.of(2, 5), ChessPosition.of(4, 5), null);
+        game.makeMove(move);
+        Position after = game.snapshot();
+
+        assertEquals(Position.of(game.getBoard(), ChessGame.TeamColor.BLACK), after);
+        assertEquals(start.after(move), after);
+        assertNotNull(start.getPiece(ChessPosition.of(2, 5)));
+        assertNull(after.getPiece(ChessPosition.of(2, 5)));
+        assertEquals(ChessGame.TeamColor.WHITE, start.toMove());
+        assertEquals(game.getBoard(), after.toBoard());
+        assertSame(after, game.snapshot());
+    }
+
+    @Test
+    void snapshotSeesDirectBoardChanges() {
+        ChessGame game = new ChessGame();
+        game.snapshot();
+        game.getBoard().addPiece(ChessPosition.of(4, 4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        assertEquals(ChessPiece.PieceType.QUEEN, game.snapshot().getPiece(ChessPosition.of(4, 4)).getPieceType());
+
+        ChessBoard empty = new ChessBoard();
+        game.setBoard(empty);
+        assertNull(game.snapshot().getPiece(ChessPosition.of(1, 5)));
+        game.setTeamTurn(null);
+        assertNull(game.snapshot().toMove());
+    }
+
+    @Test
+    void snapshotMatchesGameAfterJson() throws InvalidMoveException {
+        Gson gson = new Gson();
+        ChessGame game = new ChessGame();
+        game.makeMove(ChessMove.of(ChessPosition.of(2, 4), ChessPosition.of(4, 4), null));
+        String json = gson.toJson(game);
+        assertFalse(json.contains("snapshot"));
+        assertFalse(json.contains("modCount"));
+
+        ChessGame copy = gson.fromJson(json, ChessGame.class);
+        assertEquals(game.snapshot(), copy.snapshot());
+        assertEquals(ChessGame.TeamColor.BLACK, copy.snapshot().toMove());
+    }
+
+    @Test
+    void readersOnOtherThreadsOnlySeeWholePositions() throws Exception {
+        // replay the game once up front to know every position a reader may legally see
+        Random random = new Random(34);
+        List<ChessMove> moves = new ArrayList<>();
+        Map<Position, Integer> legalCounts = new HashMap<>();
+        Position position = new ChessGame().snapshot();
+        for (int ply = 0; ply < 300; ply++) {
+            MoveList legal = new MoveList();
+            MoveGenerator.generateLegal(position, position.toMove(), legal);
+            legalCounts.put(position, legal.size());
+            if (legal.isEmpty()) {
+                break;
+            }
+            ChessMove move = MoveList.toChessMove(legal.get(random.nextInt(legal.size())));
+            moves.add(move);
+            position = position.after(move);
+        }
+        // readers may still be looking once the last move is made
+        MoveList last = new MoveList();
+        MoveGenerator.generateLegal(position, position.toMove(), last);
+        legalCounts.putIfAbsent(position, last.size());
+
+        for (int round = 0; round < 20; round++) {
+            ChessGame game = new ChessGame();
+            AtomicBoolean done = new AtomicBoolean();
+            CountDownLatch started = new CountDownLatch(4);
+            ExecutorService readers = Executors.newFixedThreadPool(4);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(readers.submit(() -> {
+                    int seen = 0;
+                    started.countDown();
+                    do {
+                        Position snapshot = game.snapshot();
+                        assertTrue(legalCounts.containsKey(snapshot), "torn snapshot");
+                        int count = 0;
+                        for (int square = 0; square < 64; square++) {
+                            ChessPiece piece = snapshot.getPiece(ChessPosition.ofSquare(square));
+                            if (piece != null && piece.getTeamColor() == snapshot.toMove()) {
+                                count += snapshot.validMoves(ChessPosition.ofSquare(square)).size();
+                            }
+                        }
+                        assertEquals(legalCounts.get(snapshot), count);
+                        seen++;
+                    } while (!done.get());
+                    return seen;
+                }));
+            }
+            started.await();
+            for (ChessMove move : moves) {
+                game.makeMove(move);
+            }
+            done.set(true);
+            for (Future<Integer> result : results) {
+                assertTrue(result.get() > 0);
+            }
+            readers.shutdown();
+        }
+    }
+
+    @Test
+    void gamesWrittenDuringMovesAreWholePositions() throws Exception {
+        Random random = new Random(35);
+        List<ChessMove> moves = new ArrayList<>();
+        ChessGame replay = new ChessGame();
+        for (int ply = 0; ply < 200; ply++) {
+            Position position = replay.snapshot();
+            MoveList legal = new MoveList();
+            MoveGenerator.generateLegal(position, position.toMove(), legal);
+            if (legal.isEmpty()) {
+                break;
+            }
+            ChessMove move = MoveList.toChessMove(legal.get(random.nextInt(legal.size())));
+            moves.add(move);
+            replay.makeMove(move);
+        }
+
+        Gson gson = new Gson();
+        ChessGame game = new ChessGame();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(4);
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(writers.submit(() -> {
+                int seen = 0;
+                started.countDown();
+                do {
+                    ChessGame copy = gson.fromJson(gson.toJson(game), ChessGame.class);
+                    // the history written must lead to the board written, move for move
+                    List<ChessMove> played = copy.getMoveHistory();
+                    assertEquals(moves.subList(0, played.size()), played);
+                    ChessGame expected = new ChessGame();
+                    for (ChessMove move : played) {
+                        expected.makeMove(move);
+                    }
+                    assertEquals(expected.snapshot(), copy.snapshot(), "torn game");
+                    seen++;
+                } while (!done.get());
+                return seen;
+            }));
+        }
+        started.await();
+        for (int round = 0; round < 300; round++) {
+            for (ChessMove move : moves) {
+                game.makeMove(move);
+            }
+            // taking moves back and playing them again reuses the history's entries
+            for (int ply = 0; ply < moves.size(); ply++) {
+                assertNotNull(game.undoMove());
+            }
+        }
+        done.set(true);
+        for (Future<Integer> result : results) {
+            assertTrue(result.get() > 0);
+        }
+        writers.shutdown();
+    }
+}
@@ -0,0 +1,129 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NnueEvaluatorTests {
+
+    private static final int HIDDEN = 32;
+
+    @TempDir
+    static Path directory;
+
+    private static NnueNetwork network;
+
+    @BeforeAll
+    static void writeNetwork() throws IOException {
+        Random random = new Random(240);
+        int shorts = NnueNetwork.INPUTS * HIDDEN + HIDDEN + 2 * HIDDEN + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 2 * shorts).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{'C', 'N', 'N', '1'});
+        buffer.putInt(HIDDEN);
+        for (int i = 0; i < shorts; i++) {
+            buffer.putShort((short) (random.nextInt(41) - 20));
+        }
+        Path file = directory.resolve("test.nnue");
+        Files.write(file, buffer.array());
+        network = NnueNetwork.load(file);
+    }
+
+    @Test
+    void incrementalUpdatesMatchRefresh() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        NnueEvaluator evaluator = new NnueEvaluator(network);
+        evaluator.refresh(board);
+
+        // 1. e4 d5 2. exd5
+        ChessPiece whitePawn = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
+        ChessPiece blackPawn = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN);
+        evaluator.push();
+        evaluator.movePiece(whitePawn, 12, 28);
+        evaluator.push();
+        evaluator.movePiece(blackPawn, 51, 35);
+        evaluator.push();
+        evaluator.removePiece(blackPawn, 35);
+        evaluator.movePiece(whitePawn, 28, 35);
+
+        board.addPiece(new ChessPosition(2, 5), null);
+        board.addPiece(new ChessPosition(7, 4), null);
+        board.addPiece(new ChessPosition(5, 4), whitePawn);
+        NnueEvaluator fresh = new NnueEvaluator(network);
+        fresh.refresh(board);
+
+        assertArrayEquals(fresh.accumulator(ChessGame.TeamColor.WHITE), evaluator.accumulator(ChessGame.TeamColor.WHITE));
+        assertArrayEquals(fresh.accumulator(ChessGame.TeamColor.BLACK), evaluator.accumulator(ChessGame.TeamColor.BLACK));
+        assertEquals(fresh.evaluate(ChessGame.TeamColor.BLACK), evaluator.evaluate(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    void popRestoresPreviousPosition() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        NnueEvaluator evaluator = new NnueEvaluator(network);
+        evaluator.refresh(board);
+        int before = evaluator.evaluate(ChessGame.TeamColor.WHITE);
+
+        evaluator.push();
+        evaluator.movePiece(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT), 6, 21);
+        evaluator.pop();
+
+        assertEquals(before, evaluator.evaluate(ChessGame.TeamColor.WHITE));
+        assertThrows(IllegalStateException.class, evaluator::pop);
+    }
+
+    @Test
+    void mirroredPositionScoresTheSame() {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(4, 3), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+
+        ChessBoard mirrored = new ChessBoard();
+        mirrored.addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        mirrored.addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        mirrored.addPiece(new ChessPosition(5, 3), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+
+        NnueEvaluator evaluator = new NnueEvaluator(network);
+        assertEquals(evaluator.evaluate(board, ChessGame.TeamColor.WHITE),
+                evaluator.evaluate(mirrored, ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    void saturatedWideLayerDoesNotOverflow() {
+        int hidden = 512;
+        short[] featureBias = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        Arrays.fill(featureBias, (short) NnueNetwork.QA);
+        Arrays.fill(outputWeights, (short) NnueNetwork.QB);
+        NnueNetwork wide = new NnueNetwork(hidden, new short[NnueNetwork.INPUTS * hidden], featureBias,
+                outputWeights, 0);
+
+        // every activation at 1.0 times every weight at 1.0, over both halves
+        NnueEvaluator evaluator = new NnueEvaluator(wide);
+        evaluator.refresh(new ChessBoard());
+        assertEquals(2 * hidden * NnueNetwork.SCALE, evaluator.evaluate(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void rejectsWrongSizedFile() throws IOException {
+        Path file = directory.resolve("short.nnue");
+        Files.write(file, new byte[]{'C', 'N', 'N', '1', 32, 0, 0, 0, 1, 2});
+        assertThrows(IOException.class, () -> NnueNetwork.load(file));
+    }
+}
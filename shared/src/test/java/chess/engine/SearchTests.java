@@ -0,0 +1,67 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTests {
+
+    @Test
+    void findsMateInOne() {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(new ChessPosition(8, 8), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(6, 7), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(1, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+
+        SearchResult result = new Search().search(board, ChessGame.TeamColor.WHITE, 4, 0, null);
+
+        assertEquals(new ChessMove(new ChessPosition(1, 1), new ChessPosition(8, 1), null), result.bestMove());
+        assertEquals(1, result.mateIn());
+    }
+
+    @Test
+    void takesHangingQueen() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        board.addPiece(new ChessPosition(8, 4), null);
+        board.addPiece(new ChessPosition(5, 4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN));
+        board.addPiece(new ChessPosition(2, 5), null);
+        board.addPiece(new ChessPosition(4, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+
+        SearchResult result = new Search().search(board, ChessGame.TeamColor.WHITE, 3, 0, null);
+
+        assertEquals(new ChessMove(new ChessPosition(4, 5), new ChessPosition(5, 4), null), result.bestMove());
+        assertTrue(result.score() > 500);
+    }
+
+    @Test
+    void reportsEveryDepthAndLeavesBoardAlone() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        ChessBoard original = new ChessBoard(board);
+        List<Integer> depths = new ArrayList<>();
+
+        new Search().search(board, ChessGame.TeamColor.WHITE, 3, 0, result -> depths.add(result.depth()));
+
+        assertEquals(List.of(1, 2, 3), depths);
+        assertEquals(original, board);
+    }
+
+    @Test
+    void stoppedSearchReturnsQuickly() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        Search search = new Search();
+        search.stop();
+
+        assertNull(search.search(board, ChessGame.TeamColor.WHITE, 30, 0, null));
+    }
+}
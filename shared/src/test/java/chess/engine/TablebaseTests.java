@@ -0,0 +1,117 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TablebaseTests {
+
+    @TempDir
+    static Path directory;
+
+    private static Tablebases tablebases;
+
+    @BeforeAll
+    static void generate() throws IOException {
+        var generator = new TablebaseGenerator(directory, new PrintStream(OutputStream.nullOutputStream()));
+        generator.generate("KQvK");
+        tablebases = new Tablebases(directory);
+    }
+
+    @Test
+    void mateIsLostInZero() {
+        ChessBoard board = board("h8", ChessPiece.PieceType.KING, ChessGame.TeamColor.BLACK,
+                "g6", ChessPiece.PieceType.KING, ChessGame.TeamColor.WHITE,
+                "g7", ChessPiece.PieceType.QUEEN, ChessGame.TeamColor.WHITE);
+
+        var result = tablebases.probe(board, ChessGame.TeamColor.BLACK);
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.LOSS, 0), result);
+    }
+
+    @Test
+    void mateInOne() {
+        ChessBoard board = board("h8", ChessPiece.PieceType.KING, ChessGame.TeamColor.BLACK,
+                "g6", ChessPiece.PieceType.KING, ChessGame.TeamColor.WHITE,
+                "a7", ChessPiece.PieceType.QUEEN, ChessGame.TeamColor.WHITE);
+
+        var result = tablebases.probe(board, ChessGame.TeamColor.WHITE);
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, 1), result);
+    }
+
+    @Test
+    void stalemateIsDraw() {
+        ChessBoard board = board("h8", ChessPiece.PieceType.KING, ChessGame.TeamColor.BLACK,
+                "g6", ChessPiece.PieceType.KING, ChessGame.TeamColor.WHITE,
+                "f7", ChessPiece.PieceType.QUEEN, ChessGame.TeamColor.WHITE);
+
+        var result = tablebases.probe(board, ChessGame.TeamColor.BLACK);
+        assertEquals(TablebaseResult.Outcome.DRAW, result.outcome());
+    }
+
+    @Test
+    void mirroredColorsUseSameTable() {
+        ChessBoard board = board("h1", ChessPiece.PieceType.KING, ChessGame.TeamColor.WHITE,
+                "g3", ChessPiece.PieceType.KING, ChessGame.TeamColor.BLACK,
+                "a2", ChessPiece.PieceType.QUEEN, ChessGame.TeamColor.BLACK);
+
+        var result = tablebases.probe(board, ChessGame.TeamColor.BLACK);
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, 1), result);
+    }
+
+    @Test
+    void longestMateIsTenMoves() {
+        Tablebase table = tablebases.table(Material.parse("KQvK"));
+        int longestWin = 0;
+        for (int index = 0; index < Tablebase.entries(3); index++) {
+            int distance = table.rawValue(index) - 1;
+            if (distance % 2 == 1) {
+                longestWin = Math.max(longestWin, distance);
+            }
+        }
+        assertEquals(19, longestWin);
+    }
+
+    @Test
+    void distancesPastAByteKeepTheirOutcome() throws IOException {
+        Material material = Material.parse("KQvK");
+        short[] values = new short[Tablebase.entries(material.size())];
+        values[0] = 300 + 1;
+        values[1] = 301 + 1;
+        values[2] = 255 + 1;
+        Path file = directory.resolve("long.ctb");
+        Tablebase.write(file, material, values);
+
+        Tablebase table = Tablebase.open(file);
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.LOSS, 254), Tablebase.toResult(table.rawValue(0)));
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, 255), Tablebase.toResult(table.rawValue(1)));
+        assertEquals(new TablebaseResult(TablebaseResult.Outcome.WIN, 255), Tablebase.toResult(table.rawValue(2)));
+    }
+
+    @Test
+    void uncoveredMaterialReturnsNull() {
+        ChessBoard board = new ChessBoard();
+        board.resetBoard();
+        assertNull(tablebases.probe(board, ChessGame.TeamColor.WHITE));
+    }
+
+    private static ChessBoard board(Object... placements) {
+        ChessBoard board = new ChessBoard();
+        for (int i = 0; i < placements.length; i += 3) {
+            String square = (String) placements[i];
+            board.addPiece(new ChessPosition(square.charAt(1) - '0', square.charAt(0) - 'a' + 1),
+                    new ChessPiece((ChessGame.TeamColor) placements[i + 2], (ChessPiece.PieceType) placements[i + 1]));
+        }
+        return board;
+    }
+}
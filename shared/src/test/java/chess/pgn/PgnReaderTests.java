@@ -0,0 +1,115 @@
+package chess.pgn;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PgnReaderTests {
+
+    private static final String GAMES = """
+            [Event "Casual \\"blitz\\""]
+            [White "Ann"]
+            [Black "Bob"]
+
+            1. e4 {best by test} e5 2. Nf3 (2. Bc4 Nc6 (2... Nf6) 3. Qh5) 2... Nc6 $1 3. Bb5 a6!?
+            4. Bxc6 dxc6 ; a comment to the end of the line
+            5.Nc3 Bd6 1-0
+
+            [Event "No result"]
+            1. d4 d5 2. c4
+            [Event "Empty"]
+            *
+            """;
+
+    @Test
+    void readsTagsAndTheMainLine() throws IOException {
+        PgnReader reader = new PgnReader(new StringReader(GAMES));
+
+        PgnGame first = reader.next();
+        assertEquals("Casual \"blitz\"", first.tag("Event"));
+        assertEquals("Ann", first.tag("White"));
+        assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6!?", "Bxc6", "dxc6", "Nc3", "Bd6"), first.moves());
+        assertEquals("1-0", first.result());
+        assertTrue(first.isFinished());
+
+        PgnGame second = reader.next();
+        assertEquals(List.of("d4", "d5", "c4"), second.moves());
+        assertFalse(second.isFinished());
+
+        PgnGame third = reader.next();
+        assertEquals("Empty", third.tag("Event"));
+        assertTrue(third.moves().isEmpty());
+
+        assertNull(reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void readsAcrossBufferRefills() throws IOException {
+        String game = "[Event \"x\"]\n1. Nf3 Nf6 2. Ng1 Ng8 1/2-1/2\n\n";
+        PgnReader reader = new PgnReader(new StringReader(game.repeat(5000)));
+        int count = 0;
+        for (PgnGame next = reader.next(); next != null; next = reader.next()) {
+            assertEquals(List.of("Nf3", "Nf6", "Ng1", "Ng8"), next.moves(), "game " + count);
+            assertEquals("1/2-1/2", next.result());
+            count++;
+        }
+        assertEquals(5000, count);
+    }
+
+    @Test
+    void replaysThroughTheRules() throws IOException, InvalidMoveException {
+        ChessGame game = new PgnReader(new StringReader(GAMES)).next().replay();
+        assertEquals(ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.BISHOP),
+                game.getBoard().getPiece(ChessPosition.of(6, 4)));
+        assertNull(game.getBoard().getPiece(ChessPosition.of(5, 2)));
+        assertEquals(10, game.getMoveHistory().size());
+
+        PgnGame illegal = new PgnReader(new StringReader("1. e4 e5 2. Ke3 *")).next();
+        InvalidMoveException ex = assertThrows(InvalidMoveException.class, illegal::replay);
+        assertTrue(ex.getMessage().startsWith("move 2. Ke3"), ex.getMessage());
+    }
+
+    @Test
+    void sanDisambiguatesAndPromotes() throws InvalidMoveException {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(1, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(ChessPosition.of(1, 8), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(ChessPosition.of(5, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(ChessPosition.of(7, 2), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        board.addPiece(ChessPosition.of(8, 3), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KNIGHT));
+        board.addPiece(ChessPosition.of(2, 5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(6, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+
+        assertEquals(move(1, 1, 1, 4, null), San.parse(game, "Rad1"));
+        assertEquals(move(1, 8, 1, 4, null), San.parse(game, "Rhd1+"));
+        assertEquals(move(5, 1, 3, 1, null), San.parse(game, "R5a3"));
+        assertEquals(move(1, 1, 3, 1, null), San.parse(game, "R1a3"));
+        assertEquals(move(7, 2, 8, 2, ChessPiece.PieceType.QUEEN), San.parse(game, "b8=Q"));
+        assertEquals(move(7, 2, 8, 3, ChessPiece.PieceType.KNIGHT), San.parse(game, "bxc8N#"));
+
+        assertThrows(InvalidMoveException.class, () -> San.parse(game, "Rd1"));
+        assertThrows(InvalidMoveException.class, () -> San.parse(game, "Ra3"));
+        assertThrows(InvalidMoveException.class, () -> San.parse(game, "b8"));
+        assertThrows(InvalidMoveException.class, () -> San.parse(game, "Qd1"));
+        assertThrows(InvalidMoveException.class, () -> San.parse(game, "O-O"));
+        assertThrows(InvalidMoveException.class, () -> San.parse(game, "Ri9"));
+        assertThrows(InvalidMoveException.class, () -> San.parse(game, "+"));
+    }
+
+    private static ChessMove move(int startRow, int startCol, int endRow, int endCol, ChessPiece.PieceType promotion) {
+        return ChessMove.of(ChessPosition.of(startRow, startCol), ChessPosition.of(endRow, endCol), promotion);
+    }
+}
@@ -0,0 +1,122 @@
+package chess.pgn;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PgnWriterTests {
+
+    @Test
+    void writesTagsMovesAndResult() throws IOException, InvalidMoveException {
+        ChessGame game = new PgnReader(new StringReader("1. f3 e5 2. g4 Qh4# 0-1")).next().replay();
+        game.setTeamTurn(null);
+        StringBuilder out = new StringBuilder();
+
+        PgnWriter.write(out, Map.of("White", "Ann", "Black", "Bob \"the\" Second"), game, PgnWriter.result(game));
+
+        assertEquals("""
+                [Event "?"]
+                [Site "?"]
+                [Date "?"]
+                [Round "?"]
+                [White "Ann"]
+                [Black "Bob \\"the\\" Second"]
+                [Result "0-1"]
+
+                1. f3 e5 2. g4 Qh4# 0-1
+
+                """, out.toString());
+    }
+
+    @Test
+    void randomGamesRoundTrip() throws IOException, InvalidMoveException {
+        Random random = new Random(38);
+        StringBuilder out = new StringBuilder();
+        List<ChessGame> games = new ArrayList<>();
+        for (int round = 0; round < 30; round++) {
+            ChessGame game = randomGame(random, 1 + random.nextInt(120));
+            games.add(game);
+            PgnWriter.write(out, Map.of("Round", String.valueOf(round)), game, "*");
+        }
+
+        PgnReader reader = new PgnReader(new StringReader(out.toString()));
+        for (ChessGame game : games) {
+            ChessGame read = reader.next().replay();
+            assertEquals(game, read);
+            assertEquals(game.getMoveHistory(), read.getMoveHistory());
+        }
+        assertNull(reader.next());
+    }
+
+    @Test
+    void setUpPositionsGetAFenTag() throws IOException, InvalidMoveException {
+        ChessBoard board = new ChessBoard();
+        board.addPiece(ChessPosition.of(1, 5), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(7, 1), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        board.addPiece(ChessPosition.of(8, 5), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(6, 8), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.ROOK));
+        ChessGame game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(ChessGame.TeamColor.BLACK);
+        game.makeMove(ChessMove.of(ChessPosition.of(6, 8), ChessPosition.of(6, 1), null));
+        game.makeMove(ChessMove.of(ChessPosition.of(7, 1), ChessPosition.of(8, 1), ChessPiece.PieceType.QUEEN));
+        StringBuilder out = new StringBuilder();
+
+        PgnWriter.write(out, Map.of(), game, "*");
+
+        assertTrue(out.toString().contains("[FEN \"4k3/P7/7r/8/8/8/8/4K3 b - - 0 1\"]"), out.toString());
+        assertTrue(out.toString().contains("1... Ra6 2. a8=Q+ *"), out.toString());
+        ChessGame read = new PgnReader(new StringReader(out.toString())).next().replay();
+        assertEquals(game, read);
+    }
+
+    @Test
+    void recordedResultsWin() throws IOException, InvalidMoveException {
+        ChessGame game = new PgnReader(new StringReader("1. e4 e5 1-0")).next().replay();
+        assertEquals("*", PgnWriter.result(game));
+
+        game.endGame(ChessGame.Result.BLACK_WINS);
+        assertEquals("0-1", PgnWriter.result(game));
+        Gson gson = new GsonBuilder().serializeNulls().create();
+        ChessGame stored = gson.fromJson(gson.toJson(game), ChessGame.class);
+        assertEquals(ChessGame.Result.BLACK_WINS, stored.getResult());
+        assertNull(stored.getTeamTurn());
+        assertEquals(2, stored.getMoveCount());
+
+        stored.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertNull(stored.getResult());
+    }
+
+    private static ChessGame randomGame(Random random, int plies) throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (int ply = 0; ply < plies; ply++) {
+            List<ChessMove> moves = new ArrayList<>();
+            for (int square = 0; square < 64; square++) {
+                ChessPiece piece = game.getBoard().pieceAt(square);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    moves.addAll(game.validMoves(ChessPosition.ofSquare(square)));
+                }
+            }
+            if (moves.isEmpty()) {
+                break;
+            }
+            game.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return game;
+    }
+}
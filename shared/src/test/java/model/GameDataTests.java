@@ -0,0 +1,55 @@
+package model;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameDataTests {
+
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+
+    @Test
+    void decodesOnceAndOnlyWhenAsked() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        String state = gson.toJson(game);
+        AtomicInteger decodes = new AtomicInteger();
+
+        GameData data = GameData.encoded(7, "white", null, "g", state, json -> {
+            decodes.incrementAndGet();
+            return gson.fromJson(json, ChessGame.class);
+        });
+        GameData joined = data.withPlayers("white", "black");
+        assertEquals("black", joined.blackUsername());
+        assertEquals(state, joined.encodedState());
+        assertEquals(0, decodes.get());
+
+        assertEquals(game, joined.game());
+        assertSame(joined.game(), joined.game());
+        assertEquals(1, decodes.get());
+        // whoever has the game may change it, so the encoded state no longer stands for it
+        assertNull(joined.encodedState());
+        assertEquals(state, data.encodedState());
+        assertNull(new GameData(1, null, null, "g", game).encodedState());
+    }
+
+    @Test
+    void jsonIsTheSameEncodedOrNot() {
+        ChessGame game = new ChessGame();
+        GameData decoded = new GameData(3, null, "black", "g", game);
+        GameData encoded = GameData.encoded(3, null, "black", "g", gson.toJson(game),
+                json -> fail("writing shouldn't decode"));
+
+        assertEquals(gson.toJson(decoded), gson.toJson(encoded));
+        assertEquals(decoded, gson.fromJson(gson.toJson(encoded), GameData.class));
+        assertFalse(new Gson().toJson(decoded).contains("whiteUsername"));
+    }
+}
@@ -0,0 +1,94 @@
+package model;
+
+import chess.ChessClock;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonCodecTests {
+
+    // without the codec's adapters, Gson falls back on reflection for the model and websocket types
+    private final Gson reflective = new GsonBuilder().serializeNulls().create();
+
+    @Test
+    void writesWhatReflectionWrote() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 4), new ChessPosition(4, 4), null));
+        ServerMessage load = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME);
+        load.setGame(game);
+        ServerMessage evaluation = new ServerMessage(ServerMessage.ServerMessageType.EVALUATION);
+        evaluation.setEvaluation(-35);
+        evaluation.setDepth(12);
+        evaluation.setBestMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        UserGameCommand connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 4);
+        connect.setWantsEvaluation(true);
+
+        Object[] values = {
+            new UserData("ann", "secret", "ann@mail.com"),
+            new AuthData("token", "ann"),
+            connect,
+            new MakeMoveCommand("token", 4, new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1),
+                    chess.ChessPiece.PieceType.QUEEN)),
+            load,
+            evaluation,
+        };
+        for (Object value : values) {
+            assertEquals(JsonParser.parseString(reflective.toJson(value)),
+                    JsonParser.parseString(JsonCodec.GSON_WITH_NULLS.toJson(value)), value.getClass().getName());
+            assertEquals(JsonParser.parseString(new Gson().toJson(value)),
+                    JsonParser.parseString(JsonCodec.GSON.toJson(value)), value.getClass().getName());
+        }
+    }
+
+    @Test
+    void readsCommandsInOnePass() {
+        String move = JsonCodec.GSON.toJson(new MakeMoveCommand("token", 9,
+                new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null)));
+
+        UserGameCommand command = JsonCodec.GSON.fromJson(move, UserGameCommand.class);
+        MakeMoveCommand makeMove = assertInstanceOf(MakeMoveCommand.class, command);
+        assertEquals(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null), makeMove.getMove());
+        assertEquals(9, makeMove.getGameID());
+
+        UserGameCommand leave = JsonCodec.GSON.fromJson("{\"commandType\":\"LEAVE\",\"authToken\":\"t\",\"gameID\":3}",
+                UserGameCommand.class);
+        assertEquals(new UserGameCommand(UserGameCommand.CommandType.LEAVE, "t", 3), leave);
+        assertFalse(leave.wantsEvaluation());
+    }
+
+    @Test
+    void gamesRoundTrip() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.setClock(new ChessClock(60_000, 2_000));
+        game.makeMove(new ChessMove(new ChessPosition(2, 7), new ChessPosition(4, 7), null));
+        game.getClock().punch(ChessGame.TeamColor.WHITE, 1_000);
+        game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(5, 5), null));
+        game.getClock().punch(ChessGame.TeamColor.BLACK, 4_500);
+        game.endGame(ChessGame.Result.BLACK_WINS);
+
+        ChessGame read = JsonCodec.GSON_WITH_NULLS.fromJson(JsonCodec.GSON_WITH_NULLS.toJson(game), ChessGame.class);
+        assertEquals(game, read);
+        assertNull(read.getTeamTurn());
+        assertEquals(ChessGame.Result.BLACK_WINS, read.getResult());
+        assertEquals(game.getMoveHistory(), read.getMoveHistory());
+        assertEquals(game.positionHash(), read.positionHash());
+        assertEquals(game.getClock().remaining(ChessGame.TeamColor.BLACK, 10_000),
+                read.getClock().remaining(ChessGame.TeamColor.BLACK, 10_000));
+        assertEquals(ChessGame.TeamColor.WHITE, read.getClock().getRunning());
+
+        // a game stored without some fields keeps what a new game starts with
+        ChessGame sparse = JsonCodec.GSON.fromJson("{\"result\":null}", ChessGame.class);
+        assertEquals(new ChessGame(), sparse);
+        assertNull(sparse.getClock());
+    }
+}